@@ -46,6 +46,11 @@ public class CloseOut {
    */
   private RankSumEstimator rankSumEstimator;
 
+  /**
+   * A LocContext object containing the state shared by the location logic for this location only.
+   */
+  private LocContext context;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(CloseOut.class.getName());
 
@@ -53,13 +58,30 @@ public class CloseOut {
    * The CloseOut construtor. This constructor
    *
    * @param event An Event object containing the event to perform closeout calculations for.
+   * @param context A LocContext object containing the state of this location
+   */
+  public CloseOut(Event event, LocContext context) {
+    this.event = event;
+    this.context = context;
+    hypo = event.getHypo();
+    rawWeightedResiduals = event.getRawWeightedResiduals();
+    projectedWeightedResiduals = event.getProjectedWeightedResiduals();
+    rankSumEstimator = event.getRawRankSumEstimator();
+  }
+
+  /**
+   * This function rebinds the close out logic to a new event so that it can be reused.
+   *
+   * @param event An Event object containing the event to compute statistics for
    */
-  public CloseOut(Event event) {
+  public void reset(Event event) {
     this.event = event;
     hypo = event.getHypo();
     rawWeightedResiduals = event.getRawWeightedResiduals();
     projectedWeightedResiduals = event.getProjectedWeightedResiduals();
     rankSumEstimator = event.getRawRankSumEstimator();
+    degreesOfFreedom = 0;
+    compFactor = 0d;
   }
 
   /**
@@ -112,11 +134,13 @@ public class CloseOut {
     }
 
     // Construct the lower half of the "normal" matrix.
-    if (LocUtil.useDecorrelation) {
+    double[] derivatives = new double[degreesOfFreedom];
+    if (context.getUseDecorrelation()) {
       // If we're decorrelating, use the projected pick data.
       for (int k = 0; k < projectedWeightedResiduals.size(); k++) {
-        double[] derivatives =
-            projectedWeightedResiduals.get(k).calculateWeightedDeMedDeriv(degreesOfFreedom);
+        projectedWeightedResiduals
+            .get(k)
+            .calculateWeightedDeMedDeriv(degreesOfFreedom, derivatives);
         for (int i = 0; i < degreesOfFreedom; i++) {
           for (int j = 0; j < degreesOfFreedom; j++) {
             correlationMatrix[i][j] += derivatives[i] * derivatives[j];
@@ -126,8 +150,7 @@ public class CloseOut {
     } else {
       // Otherwise, use the raw pick data.
       for (int k = 0; k < rawWeightedResiduals.size(); k++) {
-        double[] derivatives =
-            rawWeightedResiduals.get(k).calculateWeightedDeMedDeriv(degreesOfFreedom);
+        rawWeightedResiduals.get(k).calculateWeightedDeMedDeriv(degreesOfFreedom, derivatives);
         for (int i = 0; i < degreesOfFreedom; i++) {
           for (int j = 0; j < degreesOfFreedom; j++) {
             correlationMatrix[i][j] += derivatives[i] * derivatives[j];
@@ -200,7 +223,7 @@ public class CloseOut {
 
     // Construct the lower half of the "normal" matrix.
     for (int k = 0; k < rawWeightedResiduals.size(); k++) {
-      double[] derivatives = rawWeightedResiduals.get(k).calculateWeightedDeriv(degreesOfFreedom);
+      rawWeightedResiduals.get(k).calculateWeightedDeriv(degreesOfFreedom, derivatives);
       for (int i = 0; i < degreesOfFreedom; i++) {
         for (int j = 0; j < degreesOfFreedom; j++) {
           correlationMatrix[i][j] += derivatives[i] * derivatives[j];
@@ -363,14 +386,14 @@ public class CloseOut {
    */
   private void computeImportance(double[][] correlationMatrix) {
     double sumImportance = 0d;
+    double[] weightedDerivatives = new double[degreesOfFreedom];
+    double[] dotProduct = new double[degreesOfFreedom];
 
     // The data importances are just the inner product of the derivative
     // vector with the correlation matrix.
     for (int k = 0; k < rawWeightedResiduals.size(); k++) {
       if (!rawWeightedResiduals.get(k).getIsBayesianDepth()) {
-        double[] weightedDerivatives =
-            rawWeightedResiduals.get(k).calculateWeightedDeriv(degreesOfFreedom);
-        double[] dotProduct = new double[degreesOfFreedom];
+        rawWeightedResiduals.get(k).calculateWeightedDeriv(degreesOfFreedom, weightedDerivatives);
 
         for (int i = 0; i < degreesOfFreedom; i++) {
           // init to zero
@@ -5,6 +5,12 @@ import Jama.Matrix;
 import gov.usgs.locaux.LocUtil;
 import gov.usgs.traveltime.TauUtilities;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -15,6 +21,12 @@ import org.apache.logging.log4j.Logger;
  * @author Ray Buland
  */
 public class Decorrelator {
+  /** An int containing the size of the tiles the covariance matrix is built in. */
+  private static final int COVARIANCETILESIZE = 64;
+
+  /** An int containing the most covariance matrix tiles built by one parallel task. */
+  private static final int COVARIANCETILESPERTASK = 4;
+
   /** An int containing the number of decorrelation data. */
   private int numData;
 
@@ -24,7 +36,10 @@ public class Decorrelator {
   /** An int containing the number of projected data. */
   private int numProjectedData;
 
-  /** A double[][] containing the eigenvectors. */
+  /**
+   * A double[][] containing the eigenvectors that are kept, one per row, so that row i -
+   * numProjectedData is the eigenvector of eigenvalue i.
+   */
   private double[][] eigenvectors;
 
   /** A double array containing the projected weights. */
@@ -33,6 +48,12 @@ public class Decorrelator {
   /** A double[][] containing the covariance matrix. */
   private double[][] covMatrix;
 
+  /**
+   * A boolean flag, true if only the eigenvectors that are kept are found (see SymmetricEigen),
+   * false to use Jama's full eigen decomposition.
+   */
+  private boolean partialEigen = LocUtil.PARTIALEIGEN;
+
   /** An Event object containing the event to decorrelate. */
   private Event event;
 
@@ -44,16 +65,196 @@ public class Decorrelator {
 
   /**
    * An ArrayList of WeightedResidual objects containing the projected weighted residuals in their
-   * original order.
+   * original order, which is reused from one projection to the next.
+   */
+  private ArrayList<WeightedResidual> weightedResidualsProjOrg = new ArrayList<WeightedResidual>();
+
+  /**
+   * An ArrayList of WeightedResidual objects containing the storage for the projected picks, which
+   * is reused from one projection (and one event) to the next.
+   */
+  private ArrayList<WeightedResidual> projectedStorage = new ArrayList<WeightedResidual>();
+
+  /**
+   * A double[][] containing the original residuals, linearly estimated residuals, and latitude,
+   * longitude, and depth derivatives of the pick data as columns, so that the projections can be
+   * summed over primitive arrays.
+   */
+  private double[][] originalColumns = new double[5][0];
+
+  /**
+   * An IdentityHashMap of Station objects and Integers containing the index of each station in the
+   * station correlation cache.
+   */
+  private IdentityHashMap<Station, Integer> stationIndices =
+      new IdentityHashMap<Station, Integer>();
+
+  /**
+   * A double[][] containing the cached station to station correlations (the distance dependent part
+   * of the pick covariance) indexed by the order the stations appear in the covariance matrix, or
+   * NaN if they haven't been computed yet. The station positions don't change during a location,
+   * so only pairs of stations not seen before need to be computed when the covariance matrix is
+   * rebuilt.
+   */
+  private double[][] stationCorrelations = new double[0][0];
+
+  /** An array of Station objects containing the station of each pick being decorrelated. */
+  private Station[] pickStations = new Station[0];
+
+  /** An array of ints containing the station correlation cache index of each pick. */
+  private int[] pickStationIndices = new int[0];
+
+  /** An array of ints identifying the phase of each pick, for comparing phases. */
+  private int[] pickPhases = new int[0];
+
+  /** An array of doubles containing the weight of each pick. */
+  private double[] pickWeights = new double[0];
+
+  /**
+   * An array of ints containing the index of each pick in the last covariance matrix, or -1 if it
+   * wasn't there or its phase or weight has changed since.
    */
-  private ArrayList<WeightedResidual> weightedResidualsProjOrg;
+  private int[] pickLastIndices = new int[0];
 
-  /** A Jama.Matrix object containing the final covariance matrix. */
-  private Matrix covMatrixFinal;
+  /**
+   * A double[][] containing a copy of the last covariance matrix built, before triage. The
+   * covariance of a pair of picks only depends on their stations, phases, and weights, and the
+   * phase identification usually only changes a few picks, so only the rows and columns of the
+   * picks that changed need to be rebuilt.
+   */
+  private double[][] lastCovMatrix = new double[0][0];
+
+  /**
+   * An IdentityHashMap of Pick objects and Integers containing the index of each pick in the last
+   * covariance matrix.
+   */
+  private IdentityHashMap<Pick, Integer> lastPickIndices = new IdentityHashMap<Pick, Integer>();
+
+  /** An array of Strings containing the phase code of each pick in the last covariance matrix. */
+  private String[] lastPhaseCodes = new String[0];
+
+  /** An array of doubles containing the weight of each pick in the last covariance matrix. */
+  private double[] lastWeights = new double[0];
 
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(Decorrelator.class.getName());
 
+  /**
+   * The NewCorrelations class saves up the station correlations found while building one tile of
+   * the covariance matrix in parallel, so that they can be added to the cache afterwards.
+   */
+  private static class NewCorrelations {
+    /** An int containing the number of correlations saved. */
+    private int numCorrelations = 0;
+
+    /** An array of ints containing the cache index of the first station of each correlation. */
+    private int[] stations1 = new int[0];
+
+    /** An array of ints containing the cache index of the second station of each correlation. */
+    private int[] stations2 = new int[0];
+
+    /** An array of doubles containing the correlations. */
+    private double[] correlations = new double[0];
+
+    /**
+     * This function saves a correlation.
+     *
+     * @param station1 An int containing the cache index of the first station
+     * @param station2 An int containing the cache index of the second station
+     * @param correlation A double containing the correlation between the stations
+     */
+    private void add(int station1, int station2, double correlation) {
+      if (numCorrelations == correlations.length) {
+        int size = Math.max(2 * numCorrelations, 16);
+        stations1 = Arrays.copyOf(stations1, size);
+        stations2 = Arrays.copyOf(stations2, size);
+        correlations = Arrays.copyOf(correlations, size);
+      }
+
+      stations1[numCorrelations] = station1;
+      stations2[numCorrelations] = station2;
+      correlations[numCorrelations++] = correlation;
+    }
+
+    /**
+     * This function adds the saved correlations to the cache.
+     *
+     * @param cache A double[][] containing the station correlation cache
+     */
+    private void store(double[][] cache) {
+      for (int i = 0; i < numCorrelations; i++) {
+        cache[stations1[i]][stations2[i]] = correlations[i];
+      }
+    }
+  }
+
+  /**
+   * The CovarianceTask class builds a range of the tiles covering the upper triangle of the
+   * covariance matrix, splitting the range in half until it's small enough to do directly. Tiles
+   * are numbered across each tile row, starting from the diagonal.
+   */
+  private class CovarianceTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    /** An int containing the first tile to build. */
+    private final int start;
+
+    /** An int containing one past the last tile to build. */
+    private final int end;
+
+    /** An int containing the number of tile rows (and columns). */
+    private final int numBlocks;
+
+    /** An array of NewCorrelations objects to hold the new station correlations of each tile. */
+    private final NewCorrelations[] newCorrelations;
+
+    /**
+     * The CovarianceTask constructor.
+     *
+     * @param start An int containing the first tile to build
+     * @param end An int containing one past the last tile to build
+     * @param numBlocks An int containing the number of tile rows (and columns)
+     * @param newCorrelations An array of NewCorrelations objects to hold the new station
+     *     correlations of each tile
+     */
+    private CovarianceTask(int start, int end, int numBlocks, NewCorrelations[] newCorrelations) {
+      this.start = start;
+      this.end = end;
+      this.numBlocks = numBlocks;
+      this.newCorrelations = newCorrelations;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start > COVARIANCETILESPERTASK) {
+        int middle = (start + end) >>> 1;
+        invokeAll(
+            new CovarianceTask(start, middle, numBlocks, newCorrelations),
+            new CovarianceTask(middle, end, numBlocks, newCorrelations));
+        return;
+      }
+
+      // Find the first tile.
+      int rowBlock = 0;
+      int columnBlock = start;
+      while (columnBlock >= numBlocks - rowBlock) {
+        columnBlock -= numBlocks - rowBlock;
+        rowBlock++;
+      }
+      columnBlock += rowBlock;
+
+      for (int tile = start; tile < end; tile++) {
+        newCorrelations[tile] = new NewCorrelations();
+        makeCovarianceTile(rowBlock, columnBlock, newCorrelations[tile]);
+
+        if (++columnBlock == numBlocks) {
+          rowBlock++;
+          columnBlock = rowBlock;
+        }
+      }
+    }
+  }
+
   /**
    * The Decorrelator constructor. This constructor initializes the event and projected residuals to
    * the provided event and residuals.
@@ -65,6 +266,34 @@ public class Decorrelator {
     this.weightedResidualsProj = event.getProjectedWeightedResiduals();
   }
 
+  /**
+   * Function to set whether only the eigenvectors that are kept are found.
+   *
+   * @param partialEigen A boolean flag, true to find only the kept eigenvectors, false to use
+   *     Jama's full eigen decomposition
+   */
+  public void setPartialEigen(boolean partialEigen) {
+    this.partialEigen = partialEigen;
+  }
+
+  /**
+   * This function rebinds the decorrelator to a new event, dropping any results left over from the
+   * last event decorrelated.
+   *
+   * @param event An Event object containing event information to decorrelate
+   */
+  public void reset(Event event) {
+    this.event = event;
+    weightedResidualsProj = event.getProjectedWeightedResiduals();
+    weightedResidualsOrg = null;
+    weightedResidualsProjOrg.clear();
+    eigenvectors = null;
+    projectedWeights = null;
+    covMatrix = null;
+    stationIndices.clear();
+    lastPickIndices.clear();
+  }
+
   /** This function performs the decorrelation. */
   public void decorrelate() {
     // We can't remember the original sort of the raw residuals
@@ -91,38 +320,59 @@ public class Decorrelator {
   }
 
   /** This function projects the raw pick data into a set of decorrelated virtual picks. */
-  @SuppressWarnings("unchecked")
   public void projectPicks() {
     WeightedResidual weightedResiduals;
 
     // Get rid of triaged picks.
     weightedResidualsOrg = event.getOriginalWeightedResiduals();
-    for (int j = weightedResidualsOrg.size() - 2; j >= 0; j--) {
-      if (weightedResidualsOrg.get(j).getPick().getIsTriage()) {
-        weightedResidualsOrg.remove(j);
+    int numKept = 0;
+    for (int j = 0; j < weightedResidualsOrg.size(); j++) {
+      WeightedResidual weightedResidual = weightedResidualsOrg.get(j);
+      if (j == weightedResidualsOrg.size() - 1 || !weightedResidual.getPick().getIsTriage()) {
+        weightedResidualsOrg.set(numKept++, weightedResidual);
       }
     }
+    weightedResidualsOrg.subList(numKept, weightedResidualsOrg.size()).clear();
 
     // Project the pick data.
     if (weightedResidualsProj.size() > 0) {
       weightedResidualsProj.clear();
     }
-    for (int i = numProjectedData; i < numPickData; i++) {
-      weightedResiduals =
-          new WeightedResidual(
-              null, 0d, projectedWeights[i - numProjectedData], false, 0d, 0d, 0d, 0d, 0d);
+    loadOriginalColumns();
+    double[] residuals = originalColumns[0];
+    double[] latDerivs = originalColumns[2];
+    double[] lonDerivs = originalColumns[3];
+    double[] depthDerivs = originalColumns[4];
 
+    for (int i = numProjectedData; i < numPickData; i++) {
+      int k = i - numProjectedData;
+      if (k == projectedStorage.size()) {
+        projectedStorage.add(new WeightedResidual());
+      }
+      weightedResiduals = projectedStorage.get(k);
+      weightedResiduals.reInit(null, 0d, projectedWeights[k], false, 0d, 0d, 0d, 0d, 0d);
+
+      double residual = 0d;
+      double latDeriv = 0d;
+      double lonDeriv = 0d;
+      double depthDeriv = 0d;
+      double[] eigenvector = eigenvectors[k];
       for (int j = 0; j < numPickData; j++) {
-        weightedResiduals.project(weightedResidualsOrg.get(j), eigenvectors[j][i]);
+        double eigenvectorElem = eigenvector[j];
+        residual += eigenvectorElem * residuals[j];
+        latDeriv += eigenvectorElem * latDerivs[j];
+        lonDeriv += eigenvectorElem * lonDerivs[j];
+        depthDeriv += eigenvectorElem * depthDerivs[j];
       }
+      weightedResiduals.setProjection(residual, latDeriv, lonDeriv, depthDeriv);
 
-      if ((event.getHasPhaseIdChanged()) && !checkEigenSigns(i, weightedResiduals)) {
+      if ((event.getHasPhaseIdChanged()) && !checkEigenSigns(eigenvector, weightedResiduals)) {
         // If so, fix the residual and derivatives.
         weightedResiduals.changeSign();
 
         // Fix the eigenvector so it will be right next time.
         for (int j = 0; j < numPickData; j++) {
-          eigenvectors[j][i] = -eigenvectors[j][i];
+          eigenvector[j] = -eigenvector[j];
         }
       }
       weightedResidualsProj.add(weightedResiduals);
@@ -137,7 +387,8 @@ public class Decorrelator {
 
     // Because the weighted residuals get sorted, we need a copy in
     // the original order to project the estimated residuals.
-    weightedResidualsProjOrg = (ArrayList<WeightedResidual>) weightedResidualsProj.clone();
+    weightedResidualsProjOrg.clear();
+    weightedResidualsProjOrg.addAll(weightedResidualsProj);
 
     if (LOGGER.isTraceEnabled()) {
       LOGGER.trace(event.printWeightedResiduals("Proj", true));
@@ -149,48 +400,344 @@ public class Decorrelator {
    * estimated residuals.
    */
   public void projectEstimatedPicks() {
+    projectEstimatedPicks(
+        weightedResidualsOrg, weightedResidualsProjOrg, weightedResidualsProj, originalColumns[1]);
+  }
+
+  /**
+   * This function projects the estimated pick residuals of copies of the original and projected
+   * weighted residuals, so that several trial steps can be projected at once. The decorrelation
+   * itself is only read, so this may be called from several threads at once, as long as each has
+   * its own copies and scratch storage.
+   *
+   * @param original An ArrayList of WeightedResidual objects containing the original weighted
+   *     residuals (or copies of them) in their original order
+   * @param projectedOriginal An ArrayList of WeightedResidual objects containing the projected
+   *     weighted residuals (or copies of them) in their original order
+   * @param projected An ArrayList of WeightedResidual objects to hold the projected estimated
+   *     residuals
+   * @param linEstResiduals A double[] of at least the number of picks used as scratch storage
+   */
+  public void projectEstimatedPicks(
+      ArrayList<WeightedResidual> original,
+      ArrayList<WeightedResidual> projectedOriginal,
+      ArrayList<WeightedResidual> projected,
+      double[] linEstResiduals) {
     WeightedResidual weightedResiduals;
 
     // Project the pick data.
-    if (weightedResidualsProj.size() > 0) {
-      weightedResidualsProj.clear();
+    if (projected.size() > 0) {
+      projected.clear();
     }
+    for (int j = 0; j < numPickData; j++) {
+      linEstResiduals[j] = original.get(j).getLinEstResidual();
+    }
+
     for (int i = numProjectedData; i < numPickData; i++) {
-      weightedResiduals = weightedResidualsProjOrg.get(i - numProjectedData);
-      weightedResiduals.setLinEstResidual(0d);
+      weightedResiduals = projectedOriginal.get(i - numProjectedData);
 
-      for (int j = 0; j < numPickData; j++) {
-        weightedResiduals.projectEstimated(weightedResidualsOrg.get(j), eigenvectors[j][i]);
-      }
+      weightedResiduals.setLinEstResidual(
+          dotProduct(eigenvectors[i - numProjectedData], linEstResiduals, numPickData));
 
-      weightedResidualsProj.add(weightedResiduals);
+      projected.add(weightedResiduals);
     }
 
     // Add the Bayesian depth here since it doesn't correlate with
     // anything else.
-    weightedResidualsProj.add(weightedResidualsOrg.get(numPickData));
+    projected.add(original.get(numPickData));
+  }
+
+  /**
+   * This function computes the dot product of an eigenvector with a column of pick data. The sum is
+   * accumulated in pick order, so it's the same however it's called.
+   *
+   * @param eigenvector A double array containing the eigenvector
+   * @param column A double array containing the pick data
+   * @param length An int containing the number of picks
+   * @return A double containing the dot product
+   */
+  private static double dotProduct(double[] eigenvector, double[] column, int length) {
+    double sum = 0d;
+    for (int j = 0; j < length; j++) {
+      sum += eigenvector[j] * column[j];
+    }
+
+    return sum;
+  }
+
+  /**
+   * Function to return the original weighted residuals being projected, without the triaged picks.
+   *
+   * @return An ArrayList of WeightedResidual objects containing the original weighted residuals in
+   *     their original order
+   */
+  public ArrayList<WeightedResidual> getOriginalResiduals() {
+    return weightedResidualsOrg;
+  }
+
+  /**
+   * Function to return the projected weighted residuals in their original order.
+   *
+   * @return An ArrayList of WeightedResidual objects containing the projected weighted residuals
+   *     in their original order
+   */
+  public ArrayList<WeightedResidual> getProjectedOriginalResiduals() {
+    return weightedResidualsProjOrg;
+  }
+
+  /**
+   * This function copies the residuals and derivatives of the original pick data into columns,
+   * making sure the columns are big enough.
+   */
+  private void loadOriginalColumns() {
+    if (originalColumns[0].length < numPickData) {
+      originalColumns = new double[5][numPickData];
+    }
+
+    for (int j = 0; j < numPickData; j++) {
+      WeightedResidual weightedResidual = weightedResidualsOrg.get(j);
+      double[] derivatives = weightedResidual.getSpatialDerivatives();
+      originalColumns[0][j] = weightedResidual.getResidual();
+      originalColumns[2][j] = derivatives[0];
+      originalColumns[3][j] = derivatives[1];
+      originalColumns[4][j] = derivatives[2];
+    }
   }
 
   /**
    * This function creates the covariance matrix. Note that the Bayesian depth is excluded from the
    * covariance matrix. This makes it easier to trim the eigenvalues. Since it doesn't correlate
-   * with anything else anyway, it can be added back into the projected data later.
+   * with anything else anyway, it can be added back into the projected data later. Covariances
+   * between picks that haven't changed since the last covariance matrix are copied from it.
    */
   private void makeCovariance() {
-    Pick pickI;
+    // Look up the station, phase, and weight of each pick once.
+    if (pickStations.length < numPickData) {
+      pickStations = new Station[numPickData];
+      pickStationIndices = new int[numPickData];
+      pickPhases = new int[numPickData];
+      pickWeights = new double[numPickData];
+      pickLastIndices = new int[numPickData];
+    }
+    HashMap<String, Integer> phaseCodes = new HashMap<String, Integer>();
+
+    for (int i = 0; i < numPickData; i++) {
+      Pick pick = weightedResidualsOrg.get(i).getPick();
+      pickStations[i] = pick.getStation();
+      pickStationIndices[i] = getStationIndex(pick.getStation());
+      pickPhases[i] =
+          phaseCodes.computeIfAbsent(pick.getCurrentPhaseCode(), k -> phaseCodes.size());
+      pickWeights[i] = pick.getWeight();
+
+      // See if the pick is unchanged since the last covariance matrix.
+      Integer last = lastPickIndices.get(pick);
+      if (last != null
+          && Objects.equals(pick.getCurrentPhaseCode(), lastPhaseCodes[last])
+          && pickWeights[i] == lastWeights[last]) {
+        pickLastIndices[i] = last;
+      } else {
+        pickLastIndices[i] = -1;
+      }
+    }
 
-    // Do the pick covariance.
+    // Do the pick covariance (see LocUtil.computeCovariance) in tiles
+    // covering the upper triangle.
     covMatrix = new double[numPickData][numPickData];
+    int numBlocks = (numPickData + COVARIANCETILESIZE - 1) / COVARIANCETILESIZE;
+
+    if (numPickData < LocUtil.PARALLELCOVARIANCEPICKS) {
+      for (int i = 0; i < numBlocks; i++) {
+        for (int j = i; j < numBlocks; j++) {
+          makeCovarianceTile(i, j, null);
+        }
+      }
+    } else {
+      // The tiles don't overlap, so they can be done in parallel.  New
+      // station correlations are saved up and added to the cache afterwards.
+      int numTiles = numBlocks * (numBlocks + 1) / 2;
+      NewCorrelations[] newCorrelations = new NewCorrelations[numTiles];
+      ForkJoinPool.commonPool()
+          .invoke(new CovarianceTask(0, numTiles, numBlocks, newCorrelations));
+
+      for (NewCorrelations tileCorrelations : newCorrelations) {
+        tileCorrelations.store(stationCorrelations);
+      }
+    }
+
+    // Triage and the eigenvalue problem overwrite the covariance matrix, so keep a copy.
+    saveCovariance();
+  }
+
+  /**
+   * This function keeps a copy of the covariance matrix and the picks it was built from for the
+   * next rebuild. The copy costs as much memory as the covariance matrix itself, so it isn't kept
+   * for more than LocUtil.MAXINCREMENTALCOVARIANCEPICKS picks.
+   */
+  private void saveCovariance() {
+    lastPickIndices.clear();
+    if (numPickData > LocUtil.MAXINCREMENTALCOVARIANCEPICKS) {
+      lastCovMatrix = new double[0][0];
+      return;
+    }
+
+    if (lastCovMatrix.length < numPickData) {
+      lastCovMatrix = new double[numPickData][numPickData];
+      lastPhaseCodes = new String[numPickData];
+      lastWeights = new double[numPickData];
+    }
+
     for (int i = 0; i < numPickData; i++) {
-      pickI = weightedResidualsOrg.get(i).getPick();
+      Pick pick = weightedResidualsOrg.get(i).getPick();
+      System.arraycopy(covMatrix[i], 0, lastCovMatrix[i], 0, numPickData);
+      lastPickIndices.put(pick, i);
+      lastPhaseCodes[i] = pick.getCurrentPhaseCode();
+      lastWeights[i] = pickWeights[i];
+    }
+  }
 
-      for (int j = i; j < numPickData; j++) {
-        covMatrix[i][j] = LocUtil.computeCovariance(pickI, weightedResidualsOrg.get(j).getPick());
-        covMatrix[j][i] = covMatrix[i][j];
+  /**
+   * This function computes one tile of the covariance matrix and its mirror image.
+   *
+   * @param rowBlock An int containing the tile row
+   * @param columnBlock An int containing the tile column, which is at least the tile row
+   * @param newCorrelations A NewCorrelations object to save station correlations not yet in the
+   *     cache, or null to add them to the cache directly
+   */
+  private void makeCovarianceTile(int rowBlock, int columnBlock, NewCorrelations newCorrelations) {
+    int rowEnd = Math.min((rowBlock + 1) * COVARIANCETILESIZE, numPickData);
+    int columnStart = columnBlock * COVARIANCETILESIZE;
+    int columnEnd = Math.min(columnStart + COVARIANCETILESIZE, numPickData);
+
+    for (int i = rowBlock * COVARIANCETILESIZE; i < rowEnd; i++) {
+      double[] row = covMatrix[i];
+
+      for (int j = Math.max(columnStart, i); j < columnEnd; j++) {
+        if (i == j) {
+          // Do the autocorrelation.
+          row[i] = 1d / (pickWeights[i] * pickWeights[i]);
+        } else if (pickPhases[i] == pickPhases[j]) {
+          // Assume the correlation between different phases is zero.
+          int last1 = pickLastIndices[i];
+          int last2 = pickLastIndices[j];
+          if (last1 >= 0 && last1 < last2) {
+            // Neither pick has changed, and they're still in the same order.
+            row[j] = lastCovMatrix[last1][last2];
+          } else {
+            row[j] =
+                getStationCorrelation(i, j, newCorrelations) / (pickWeights[i] * pickWeights[j]);
+          }
+          covMatrix[j][i] = row[j];
+        }
+      }
+    }
+  }
+
+  /**
+   * This function stably sorts the rows of the covariance matrix on their correlation sums. Since
+   * the rows start out in their previous order, equal sums stay in the order they were in before,
+   * just as they would with a stable sort of the whole list. The sums only ever decrease, so the
+   * rows are usually nearly in order already and most of the merges can be skipped.
+   *
+   * @param order An array of ints containing the row indices in their previous order
+   * @param length An int containing the number of rows to sort
+   * @param corrSums An array of doubles containing the correlation sums indexed by row
+   * @param scratch An array of ints at least as long as the rows being sorted, used for merging
+   */
+  static void sortCorrelationSums(int[] order, int length, double[] corrSums, int[] scratch) {
+    for (int width = 1; width < length; width *= 2) {
+      for (int start = 0; start + width < length; start += 2 * width) {
+        int middle = start + width;
+        int end = Math.min(start + 2 * width, length);
+
+        // Skip the merge if the two runs are already in order.
+        if (corrSums[order[middle - 1]] <= corrSums[order[middle]]) {
+          continue;
+        }
+
+        System.arraycopy(order, start, scratch, start, end - start);
+        int left = start;
+        int right = middle;
+        for (int j = start; j < end; j++) {
+          if (left < middle
+              && (right >= end || corrSums[scratch[right]] >= corrSums[scratch[left]])) {
+            order[j] = scratch[left++];
+          } else {
+            order[j] = scratch[right++];
+          }
+        }
       }
     }
   }
 
+  /**
+   * This function gets the index of a station in the station correlation cache, adding it if it's
+   * new and there's room.
+   *
+   * @param station A Station object containing the station to look up
+   * @return An int containing the index of the station, or -1 if the cache is full
+   */
+  private int getStationIndex(Station station) {
+    Integer index = stationIndices.get(station);
+    if (index != null) {
+      return index;
+    }
+
+    int numStations = stationIndices.size();
+    if (numStations >= LocUtil.MAXCORRELATIONSTATIONS) {
+      return -1;
+    }
+
+    // Grow the cache if needed.
+    if (numStations == stationCorrelations.length) {
+      int size = Math.min(Math.max(2 * numStations, 64), LocUtil.MAXCORRELATIONSTATIONS);
+      double[][] grown = new double[size][size];
+      for (int i = 0; i < numStations; i++) {
+        System.arraycopy(stationCorrelations[i], 0, grown[i], 0, numStations);
+      }
+      stationCorrelations = grown;
+    }
+
+    // Forget anything left over from the last event in this slot.
+    for (int i = 0; i <= numStations; i++) {
+      stationCorrelations[numStations][i] = Double.NaN;
+      stationCorrelations[i][numStations] = Double.NaN;
+    }
+
+    stationIndices.put(station, numStations);
+    return numStations;
+  }
+
+  /**
+   * This function gets the correlation between the stations of two picks, computing it only the
+   * first time the pair is seen. Note that the stations are kept in order because the computed
+   * correlation can differ in the last bit if they're swapped.
+   *
+   * @param pick1 An int containing the index of the first pick
+   * @param pick2 An int containing the index of the second pick
+   * @param newCorrelations A NewCorrelations object to save a correlation not yet in the cache, or
+   *     null to add it to the cache directly
+   * @return A double containing the unweighted correlation between the two stations
+   */
+  private double getStationCorrelation(int pick1, int pick2, NewCorrelations newCorrelations) {
+    int station1 = pickStationIndices[pick1];
+    int station2 = pickStationIndices[pick2];
+    if (station1 < 0 || station2 < 0) {
+      return LocUtil.computeStationCorrelation(pickStations[pick1], pickStations[pick2]);
+    }
+
+    double correlation = stationCorrelations[station1][station2];
+    if (Double.isNaN(correlation)) {
+      correlation = LocUtil.computeStationCorrelation(pickStations[pick1], pickStations[pick2]);
+      if (newCorrelations == null) {
+        stationCorrelations[station1][station2] = correlation;
+      } else {
+        newCorrelations.add(station1, station2, correlation);
+      }
+    }
+
+    return correlation;
+  }
+
   /**
    * This function removes the most correlated picks until the eigenvalue problem is a reasonable
    * size. Note that correlation is assumed to be zero between phases of different types.
@@ -198,7 +745,7 @@ public class Decorrelator {
   private void triagePicks() {
     if (weightedResidualsOrg.size() > LocUtil.MAXPICKSTODECORRELATE) {
 
-      LocUtil.startTimer();
+      long triageStartTime = System.currentTimeMillis();
       if (LOGGER.isTraceEnabled()) {
         LOGGER.trace(LocUtil.printMatrix(covMatrix, "Raw Covariance Matrix"));
       }
@@ -206,98 +753,98 @@ public class Decorrelator {
       // Reset all the triage flags.
       event.resetTriage();
 
-      // We need to eliminate the most correlated data.  Create a list
-      // to help out.
-      ArrayList<CorrelationsSum> corrSums = new ArrayList<CorrelationsSum>();
+      // We need to eliminate the most correlated data.  Keep the rows
+      // in order of their correlation sums to help out.
+      int numRows = covMatrix.length;
+      double[] corrSums = new double[numRows];
+      int[] order = new int[numRows];
+      int[] scratch = new int[numRows];
 
-      // Populate the list.
-      for (int i = 0; i < covMatrix.length; i++) {
+      // Populate the sums.
+      for (int i = 0; i < numRows; i++) {
         double sum = 0d;
 
-        for (int j = 0; j < covMatrix.length; j++) {
+        for (int j = 0; j < numRows; j++) {
           if (i != j) {
             // Don't include the autocorrelation
             sum += covMatrix[i][j];
           }
         }
-        corrSums.add(new CorrelationsSum(i, sum));
+        corrSums[i] = sum;
+        order[i] = i;
       }
 
       // Sort on the correlation sums.
-      corrSums.sort(null);
+      sortCorrelationSums(order, numRows, corrSums, scratch);
 
       // Eliminate the biggest correlation sums.
-      for (int i = corrSums.size() - 1; i >= LocUtil.MAXPICKSTODECORRELATE; i--) {
+      boolean[] eliminated = new boolean[numRows];
+      for (int i = numRows - 1; i >= LocUtil.MAXPICKSTODECORRELATE; i--) {
         if (LOGGER.isTraceEnabled()) {
           String corrSumsStr = "F:";
-          for (int j = 0; j < corrSums.size(); j++) {
-            corrSumsStr += "\t" + corrSums.get(j);
+          for (int j = 0; j <= i; j++) {
+            corrSumsStr += "\t" + String.format("%4d %7.2f", order[j], corrSums[order[j]]);
           }
           LOGGER.trace(corrSumsStr);
         }
 
+        int k = order[i];
+        eliminated[k] = true;
+
         if (LOGGER.isTraceEnabled()) {
-          LOGGER.trace(String.format("\tTriage: eliminate %3d %s", i, corrSums.get(i)));
+          LOGGER.trace(String.format("\tTriage: eliminate %3d %4d %7.2f", i, k, corrSums[k]));
         }
 
-        int k = corrSums.get(i).getRowIndex();
-        corrSums.remove(i);
-
         // Now compensate the sums for the row and column eliminated.
-        for (int j = 0; j < corrSums.size(); j++) {
-          int l = corrSums.get(j).getRowIndex();
-          if (k != l) {
-            corrSums.get(j).decSum(covMatrix[l][k]);
-          }
+        double[] column = covMatrix[k];
+        for (int j = 0; j < i; j++) {
+          int l = order[j];
+          corrSums[l] -= column[l];
         }
 
         // And re-sort.
-        corrSums.sort(null);
+        sortCorrelationSums(order, i, corrSums, scratch);
       }
 
-      // Sort the correlation sums back into order.
-      for (int j = 0; j < corrSums.size(); j++) {
-        corrSums.get(j).rowSort();
+      // Finally remove the most highly correlated rows and columns.
+      int[] keep = new int[LocUtil.MAXPICKSTODECORRELATE];
+      for (int j = 0, l = 0; j < numRows; j++) {
+        if (!eliminated[j]) {
+          keep[l++] = j;
+        }
       }
-      corrSums.sort(null);
 
-      // Finally remove the most highly correlated rows and columns.
-      int[] keep = new int[corrSums.size()];
+      // Compact the kept rows and columns in place.  Since the kept
+      // indices are increasing, nothing is overwritten before it's moved.
       for (int j = 0; j < keep.length; j++) {
-        keep[j] = corrSums.get(j).getRowIndex();
+        double[] row = covMatrix[keep[j]];
+        for (int l = 0; l < keep.length; l++) {
+          row[l] = row[keep[l]];
+        }
+        covMatrix[j] = row;
       }
 
-      // Use the JAMA Matrix to eliminate the most correlated rows and
-      // columns.
-      Matrix covRaw = new Matrix(covMatrix);
-      covMatrixFinal = covRaw.getMatrix(keep, keep);
-      covRaw = null;
-      covMatrix = covMatrixFinal.getArray();
-
       if (LOGGER.isTraceEnabled()) {
-        LOGGER.trace(LocUtil.printMatrix(covMatrix, "Final Covariance Matrix"));
+        double[][] covFinal = new double[keep.length][];
+        for (int j = 0; j < keep.length; j++) {
+          covFinal[j] = Arrays.copyOf(covMatrix[j], keep.length);
+        }
+        LOGGER.trace(LocUtil.printMatrix(covFinal, "Final Covariance Matrix"));
       }
 
       // We're not quite done.  We need to eliminate the same picks
       // from the weighted residuals.  And make sure they don't come
       // back.
-      int k = keep.length - 1;
-      int i = weightedResidualsOrg.size() - 2;
-      for (; i >= 0 && k >= 0; i--) {
-        if (i != keep[k]) {
-          weightedResidualsOrg.get(i).getPick().setIsTriage(true);
-          weightedResidualsOrg.remove(i);
+      int numKept = 0;
+      for (int j = 0; j < weightedResidualsOrg.size(); j++) {
+        WeightedResidual weightedResidual = weightedResidualsOrg.get(j);
+        if (j < numRows && eliminated[j]) {
+          weightedResidual.getPick().setIsTriage(true);
         } else {
-          k--;
-        }
-      }
-      // We may have some weighted residuals left.
-      if (i >= 0) {
-        for (; i >= 0; i--) {
-          weightedResidualsOrg.get(i).getPick().setIsTriage(true);
-          weightedResidualsOrg.remove(i);
+          weightedResidualsOrg.set(numKept++, weightedResidual);
         }
       }
+      weightedResidualsOrg.subList(numKept, weightedResidualsOrg.size()).clear();
 
       numData = weightedResidualsOrg.size();
       numPickData = numData - 1;
@@ -305,45 +852,45 @@ public class Decorrelator {
       if (LOGGER.isTraceEnabled()) {
         LOGGER.trace(event.printWeightedResiduals("Org", true));
       }
-      LOGGER.debug(LocUtil.endTimer("Triage"));
-    } else {
-      // We're OK.  Just create the correlation matrix in a form
-      // suitable for extracting the eigenvalues.
-      covMatrixFinal = new Matrix(covMatrix);
+      LOGGER.debug(LocUtil.endTimer("Triage time", triageStartTime));
     }
-
-    // We're done with the covariance matrix.
-    covMatrix = null;
   }
 
   /**
-   * This function gets the eigenvalues and eigenvectors of the covariance matrix. Note that using
-   * the JAMA package computes all eigenvectors every time. This is less efficient than the Fortran
-   * Linpak routines that allowed the computation of only the eigenvectors corresponding to
-   * eigenvalues being kept.
+   * This function gets the eigenvalues and eigenvectors of the covariance matrix. By default, the
+   * JAMA package computes all eigenvectors every time. If partialEigen is set, then like the
+   * Fortran Linpak routines, only the eigenvectors corresponding to eigenvalues being kept are
+   * computed.
    */
   private void doEigen() {
-    // Do the eigenvalue problem (and time it).
-    LocUtil.startTimer();
-    EigenvalueDecomposition eig = covMatrixFinal.eig();
-
-    LOGGER.debug(LocUtil.endTimer("Eigenvalue"));
-
-    double[] eigenvalues = eig.getRealEigenvalues();
-
+    // Keep a copy of the covariance matrix to test the eigenvectors.
+    double[][] covCopy = null;
     if (LOGGER.isTraceEnabled()) {
-      LOGGER.trace(LocUtil.printVector(eigenvalues, "Eigenvalues"));
+      covCopy = new double[numPickData][];
+      for (int j = 0; j < numPickData; j++) {
+        covCopy[j] = Arrays.copyOf(covMatrix[j], numPickData);
+      }
     }
 
-    eigenvectors = eig.getV().getArray();
-
-    if (LOGGER.isTraceEnabled()) {
-      LOGGER.trace(testEig(covMatrixFinal, eig));
+    // Do the eigenvalue problem (and time it).
+    long eigenStartTime = System.currentTimeMillis();
+    SymmetricEigen eig = null;
+    EigenvalueDecomposition jamaEig = null;
+    double[] eigenvalues;
+    if (partialEigen) {
+      eig = new SymmetricEigen(covMatrix, numPickData);
+      eigenvalues = eig.getEigenvalues();
+    } else {
+      jamaEig = new Matrix(covMatrix, numPickData, numPickData).eig();
+      eigenvalues = jamaEig.getRealEigenvalues();
     }
 
     // We don't need the covariance matrix any more.
-    covMatrixFinal = null;
-    eig = null;
+    covMatrix = null;
+
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace(LocUtil.printVector(eigenvalues, "Eigenvalues"));
+    }
 
     // Work out the eigenvalue elimination.
     double evSum = 0d;
@@ -377,6 +924,25 @@ public class Decorrelator {
             "Project: wsum wlim elim: %10.3e %10.3e %10.3e numProjectedData: %5d",
             evSum, evLim, evThresh, numProjectedData));
 
+    // Get the corresponding eigenvectors.
+    if (partialEigen) {
+      eigenvectors = eig.getEigenvectors(numProjectedData);
+    } else {
+      double[][] allEigenvectors = jamaEig.getV().getArray();
+      eigenvectors = new double[numPickData - numProjectedData][numPickData];
+      for (int j = 0; j < numPickData; j++) {
+        for (int i = numProjectedData; i < numPickData; i++) {
+          eigenvectors[i - numProjectedData][j] = allEigenvectors[j][i];
+        }
+      }
+    }
+
+    LOGGER.debug(LocUtil.endTimer("Eigenvalue time", eigenStartTime));
+
+    if (LOGGER.isTraceEnabled()) {
+      LOGGER.trace(testEig(covCopy, eigenvalues));
+    }
+
     // Get the corresponding weights.
     projectedWeights = new double[numData - numProjectedData];
     for (int j = numProjectedData; j < numPickData; j++) {
@@ -394,18 +960,18 @@ public class Decorrelator {
    * actually is. Alternatively, the residual will have the wrong sign, which, of course, will wreak
    * havoc on the location.
    *
-   * @param index An int containing the index of the eigenvector
+   * @param eigenvector A double array containing the eigenvector
    * @param weightedResiduals A WeightedResidual object containing the weighted residual storage for
    *     the projected pick
    * @return True if the sign is OK, false otherwise
    */
-  private boolean checkEigenSigns(int index, WeightedResidual weightedResiduals) {
+  private boolean checkEigenSigns(double[] eigenvector, WeightedResidual weightedResiduals) {
     double corrMax = -1d;
     double corrMin = 1d;
     double depthSum = 0d;
 
     for (int j = 0; j < numPickData; j++) {
-      if (Math.abs(eigenvectors[j][index]) > TauUtilities.DOUBLETOLERANCE) {
+      if (Math.abs(eigenvector[j]) > TauUtilities.DOUBLETOLERANCE) {
         double corr = weightedResidualsOrg.get(j).calculateCorrelation(weightedResiduals);
         corrMax = Math.max(corrMax, corr);
         corrMin = Math.min(corrMin, corr);
@@ -455,37 +1021,44 @@ public class Decorrelator {
 
   /**
    * This function tests the eigenvectors. Test the eigenvectors by computing the norm of (A - value
-   * * I) * vector for each eigenvalue-eigenvector pair.
+   * * I) * vector for each eigenvalue-eigenvector pair kept.
    *
-   * @param a A Matrix object for which eigenvalues have been computed
-   * @param eig An EigenvalueDecomposition object containing the Eigenvalues and eigenvectors
+   * @param a A double[][] containing the matrix for which eigenvalues have been computed
+   * @param values A double array containing the eigenvalues
    * @return A String containing the rest results
    */
-  private String testEig(Matrix a, EigenvalueDecomposition eig) {
+  private String testEig(double[][] a, double[] values) {
     boolean bad = false;
-    double[] values = eig.getRealEigenvalues();
-    int numValues = values.length;
-    Matrix vectors = eig.getV();
     String results = "";
 
     // Loop over the eigenvalues.
-    for (int j = 0; j < numValues; j++) {
-      // Construct A-value*I.
-      Matrix test = a.minus(Matrix.identity(numValues, numValues).times(values[j]));
+    for (int j = numProjectedData; j < numPickData; j++) {
+      double[] vector = eigenvectors[j - numProjectedData];
+      double norm1 = 0d;
+      double norm2 = 0d;
+      double normInf = 0d;
+
+      // Multiply A-value*I by the eigenvector.
+      for (int i = 0; i < numPickData; i++) {
+        double result = -values[j] * vector[i];
+        for (int k = 0; k < numPickData; k++) {
+          result += a[i][k] * vector[k];
+        }
 
-      // Multiply by the eigenvector.
-      Matrix result = test.times(vectors.getMatrix(0, numValues - 1, j, j));
+        norm1 += Math.abs(result);
+        norm2 += result * result;
+        normInf = Math.max(normInf, Math.abs(result));
+      }
+      norm2 = Math.sqrt(norm2);
 
       // Only print something if it doesn't look right.
-      if (result.norm2() > TauUtilities.DOUBLETOLERANCE) {
+      if (norm2 > TauUtilities.DOUBLETOLERANCE) {
         if (!bad) {
           bad = true;
           results += "Bad eigenvector(s):";
         }
 
-        results +=
-            String.format(
-                "\t%3d %8.2e %8.2e %8.2e", j, result.norm1(), result.norm2(), result.normInf());
+        results += String.format("\t%3d %8.2e %8.2e %8.2e", j, norm1, norm2, normInf);
       }
     }
 
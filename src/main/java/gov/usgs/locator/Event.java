@@ -165,6 +165,18 @@ public class Event {
   /** A Decorrelator object used when decorrelating the event picks. */
   private Decorrelator decorrelator;
 
+  /**
+   * A RankSumEstimator object taken over from the event located before, to be reused for the
+   * projected picks if this event is decorrelated, null if there isn't one.
+   */
+  private RankSumEstimator spareProjectedRankSumEstimator = null;
+
+  /**
+   * A Decorrelator object taken over from the event located before, to be reused if this event is
+   * decorrelated, null if there isn't one.
+   */
+  private Decorrelator spareDecorrelator = null;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(LocService.class.getName());
 
@@ -510,6 +522,18 @@ public class Event {
    * @param earthModel A String containing the name of earth model to be used
    */
   public Event(String earthModel) {
+    this(earthModel, null);
+  }
+
+  /**
+   * The Event constructor for a locator engine that locates one event after another. The rank-sum
+   * estimators and decorrelator of the event located before are taken over and rebound to this
+   * event rather than being allocated again, so the previous event must not be located again.
+   *
+   * @param earthModel A String containing the name of earth model to be used
+   * @param previous An Event object containing the event located before, null if there wasn't one
+   */
+  public Event(String earthModel, Event previous) {
     this.earthModel = earthModel;
     id = null;
     stationList = new TreeMap<StationID, Station>();
@@ -517,7 +541,21 @@ public class Event {
     pickList = new ArrayList<gov.usgs.locator.Pick>();
     hypoAuditList = new ArrayList<HypoAudit>();
     rawWeightedResiduals = new ArrayList<WeightedResidual>();
-    rawRankSumEstimator = new RankSumEstimator(rawWeightedResiduals);
+
+    if (previous == null) {
+      rawRankSumEstimator = new RankSumEstimator(rawWeightedResiduals);
+    } else {
+      rawRankSumEstimator = previous.rawRankSumEstimator;
+      rawRankSumEstimator.reset(rawWeightedResiduals);
+
+      // The previous event may not have been decorrelated, but may have kept some from before.
+      spareProjectedRankSumEstimator =
+          previous.projectedRankSumEstimator != null
+              ? previous.projectedRankSumEstimator
+              : previous.spareProjectedRankSumEstimator;
+      spareDecorrelator =
+          previous.decorrelator != null ? previous.decorrelator : previous.spareDecorrelator;
+    }
   }
 
   /**
@@ -757,11 +795,26 @@ public class Event {
       }
     }
 
-    // If we're decorrelating, instantiate some more classes.
+    // If we're decorrelating, instantiate some more classes (or reuse the spares).
     if (useDecorrelation) {
       projectedWeightedResiduals = new ArrayList<WeightedResidual>();
-      projectedRankSumEstimator = new RankSumEstimator(projectedWeightedResiduals);
-      decorrelator = new Decorrelator(this);
+
+      if (spareProjectedRankSumEstimator != null) {
+        projectedRankSumEstimator = spareProjectedRankSumEstimator;
+        projectedRankSumEstimator.reset(projectedWeightedResiduals);
+      } else {
+        projectedRankSumEstimator = new RankSumEstimator(projectedWeightedResiduals);
+      }
+
+      if (spareDecorrelator != null) {
+        decorrelator = spareDecorrelator;
+        decorrelator.reset(this);
+      } else {
+        decorrelator = new Decorrelator(this);
+      }
+
+      spareProjectedRankSumEstimator = null;
+      spareDecorrelator = null;
     }
 
     // Sort the picks into "Hydra" input order.
@@ -864,9 +917,11 @@ public class Event {
    * @param stage An int containing the audit stage
    * @param iteration An int containing the iteration in this stage
    * @param status A LocStatus object containing the status at this audit stage
+   * @param useDecorrelation A boolean flag, true if the decorrelation algorithm is currently in use
+   *     (count the projected phases rather than the raw phases)
    */
-  public void addAudit(int stage, int iteration, LocStatus status) {
-    if (LocUtil.useDecorrelation) {
+  public void addAudit(int stage, int iteration, LocStatus status, boolean useDecorrelation) {
+    if (useDecorrelation) {
       hypoAuditList.add(new HypoAudit(hypo, stage, iteration, numProjectedPhasesUsed, status));
     } else {
       hypoAuditList.add(new HypoAudit(hypo, stage, iteration, numPhasesUsed, status));
@@ -30,8 +30,14 @@ public class InitialPhaseID {
   private Hypocenter hypo;
 
   /**
-   * A TravelTimeSession object containing a local travel-time manager used to perform initial phase
-   * identification.
+   * A TravelTimeSessionCache object containing the local travel-time managers used to perform
+   * initial phase identification.
+   */
+  private TravelTimeSessionCache travelTimeSessions;
+
+  /**
+   * A TravelTimeSession object containing the local travel-time manager set up for the current
+   * hypocenter.
    */
   private TravelTimeSession travelTimeSession;
 
@@ -58,6 +64,11 @@ public class InitialPhaseID {
    */
   private Stepper stepper;
 
+  /**
+   * A LocContext object containing the state shared by the location logic for this location only.
+   */
+  private LocContext context;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(InitialPhaseID.class.getName());
 
@@ -67,22 +78,42 @@ public class InitialPhaseID {
    *
    * @param event An Event object containing the information for the event to perform initial phase
    *     identification upon.
-   * @param travelTimeSession A TravelTimeSession object holding the local travel-time manager
+   * @param travelTimeSessions A TravelTimeSessionCache object holding the local travel-time
+   *     managers
    * @param phaseID A PhaseID object containing the phase identification logic for initial phase
    *     identification
    * @param stepper A RankSumEstimator object containing the rank-sum estimation driver logic
+   * @param context A LocContext object containing the state of this location
    */
   public InitialPhaseID(
-      Event event, TravelTimeSession travelTimeSession, PhaseID phaseID, Stepper stepper) {
+      Event event,
+      TravelTimeSessionCache travelTimeSessions,
+      PhaseID phaseID,
+      Stepper stepper,
+      LocContext context) {
     this.event = event;
+    this.context = context;
     hypo = event.getHypo();
-    this.travelTimeSession = travelTimeSession;
+    this.travelTimeSessions = travelTimeSessions;
     this.phaseID = phaseID;
     weightedResiduals = event.getRawWeightedResiduals();
     rankSumEstimator = event.getRawRankSumEstimator();
     this.stepper = stepper;
   }
 
+  /**
+   * This function rebinds the initial phase identification logic to a new event so that it can be
+   * reused.
+   *
+   * @param event An Event object containing the event to use for phase identification
+   */
+  public void reset(Event event) {
+    this.event = event;
+    hypo = event.getHypo();
+    weightedResiduals = event.getRawWeightedResiduals();
+    rankSumEstimator = event.getRawRankSumEstimator();
+  }
+
   /**
    * The phaseID function performs a tentative phase identification to see if the event is making
    * sense.
@@ -99,15 +130,19 @@ public class InitialPhaseID {
     }
 
     // Set up a new travel-time session if the depth has changed.
-    travelTimeSession.newSession(
-        event.getEarthModel(),
-        hypo.getDepth(),
-        LocUtil.PHASELIST,
-        hypo.getLatitude(),
-        hypo.getLongitude(),
-        LocUtil.SUPRESSUNLIKELYPHASES,
-        LocUtil.SUPRESSBACKBRANCHES,
-        LocUtil.isTectonic);
+    travelTimeSession =
+        travelTimeSessions.newSession(
+            event.getEarthModel(),
+            hypo.getDepth(),
+            hypo.getLatitude(),
+            hypo.getLongitude(),
+            context.getIsTectonic());
+
+    // If there are enough stations, compute the travel times in parallel up front.
+    TravelTime[] groupTravelTimes = null;
+    if (event.getReassessInitialPhaseIDs()) {
+      groupTravelTimes = phaseID.computeGroupTravelTimes(true);
+    }
 
     // Loop over picks in the groups.
     for (int j = 0; j < event.getNumStations(); j++) {
@@ -119,14 +154,7 @@ public class InitialPhaseID {
         LOGGER.trace("InitialPhaseID: " + station + ":");
 
         // Do the travel-time calculation.
-        TravelTime ttList;
-        ttList =
-            travelTimeSession.getTravelTimes(
-                station.getLatitude(),
-                station.getLongitude(),
-                station.getElevation(),
-                group.getDistance(),
-                group.getAzimuth());
+        TravelTime ttList = phaseID.getTravelTimes(j, groupTravelTimes);
 
         // Print them.
         // ttList.print(event.hypo.depth, group.getDistance());
@@ -2,6 +2,10 @@ package gov.usgs.locator;
 
 import gov.usgs.locaux.LocUtil;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -12,6 +16,14 @@ import org.apache.logging.log4j.Logger;
  * long as the curvature of the Earth is negligible within the step length (and, of course, the
  * seismic phases still exist at the new epicentral distance and hypocentral depth).
  *
+ * <p>Each trial step length costs a pass over all the residuals, a median, and a sort, and the
+ * estimated dispersion depends only on the step length. So, if more than one candidate per round is
+ * allowed, the step lengths the search may need next (the next few doublings or halvings while
+ * bracketing, and both half intervals while homing in) are evaluated in parallel on copies of the
+ * residuals and remembered. The search itself is unchanged, so it takes exactly the same steps
+ * either way. Once the search is done, its last trial step is evaluated again on the event's own
+ * residuals, so that they are left as a one at a time search would have left them.
+ *
  * @author Ray Buland
  */
 public class LinearStep {
@@ -42,21 +54,248 @@ public class LinearStep {
   /** A Decorrelator object used when decorrelating the event picks. */
   private Decorrelator decorrelator;
 
+  /**
+   * A LocContext object containing the state shared by the location logic for this location only.
+   */
+  private LocContext context;
+
+  /** An int containing the number of trial step lengths to evaluate at once. */
+  private final int candidatesPerRound;
+
+  /** A TrialEvaluator object used to evaluate trial steps on the event's own residuals. */
+  private TrialEvaluator liveEvaluator;
+
+  /**
+   * An ArrayList of TrialEvaluator objects used to evaluate trial steps in parallel on copies of
+   * the event's residuals.
+   */
+  private ArrayList<TrialEvaluator> copyEvaluators = new ArrayList<TrialEvaluator>();
+
+  /** An int containing the number of copy evaluators loaded for the current search. */
+  private int numCopiesLoaded;
+
+  /**
+   * A HashMap of RSumEstResult objects containing the trial steps already evaluated in parallel for
+   * the current search, keyed by step length.
+   */
+  private HashMap<Double, RSumEstResult> trials = new HashMap<Double, RSumEstResult>();
+
+  /** A double containing the last trial step length the search asked for in kilometers. */
+  private double lastStepLen = Double.NaN;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(LinearStep.class.getName());
 
+  /**
+   * The TrialEvaluator class estimates the dispersion at a trial step length on one set of weighted
+   * residuals, either the event's own or a private copy of them.
+   */
+  private class TrialEvaluator {
+    /** An ArrayList of WeightedResidual objects containing the raw weighted residuals. */
+    private final ArrayList<WeightedResidual> rawResiduals;
+
+    /** A RankSumEstimator object used for the rank-sum estimation of the raw residuals. */
+    private final RankSumEstimator rawEstimator;
+
+    /**
+     * An ArrayList of WeightedResidual objects containing the original weighted residuals in the
+     * decorrelation order, or null to use the decorrelator's own.
+     */
+    private final ArrayList<WeightedResidual> originalResiduals;
+
+    /**
+     * An ArrayList of WeightedResidual objects containing the projected weighted residuals in their
+     * original order, or null to use the decorrelator's own.
+     */
+    private final ArrayList<WeightedResidual> projectedOriginalResiduals;
+
+    /** An ArrayList of WeightedResidual objects containing the projected weighted residuals. */
+    private final ArrayList<WeightedResidual> projectedResiduals;
+
+    /** A RankSumEstimator object used for the rank-sum estimation of the projected residuals. */
+    private final RankSumEstimator projectedEstimator;
+
+    /** A double[] containing this evaluator's trial step vector in kilometers. */
+    private double[] trialVector;
+
+    /** A double[] containing scratch storage for the decorrelation projection. */
+    private double[] linEstResiduals = new double[0];
+
+    /** An ArrayList of WeightedResidual objects containing the storage for the copies. */
+    private final ArrayList<WeightedResidual> copyStorage = new ArrayList<WeightedResidual>();
+
+    /** An int containing the number of copies in use. */
+    private int numCopies;
+
+    /**
+     * The TrialEvaluator constructor for evaluating trial steps on the event's own residuals.
+     *
+     * @param event An Event object containing the event being located
+     */
+    private TrialEvaluator(Event event) {
+      rawResiduals = event.getRawWeightedResiduals();
+      rawEstimator = event.getRawRankSumEstimator();
+      originalResiduals = null;
+      projectedOriginalResiduals = null;
+      projectedResiduals = null;
+      projectedEstimator = event.getProjectedRankSumEstimator();
+    }
+
+    /**
+     * The TrialEvaluator constructor for evaluating trial steps on private copies of the event's
+     * residuals. The copies are filled in by load().
+     */
+    private TrialEvaluator() {
+      rawResiduals = new ArrayList<WeightedResidual>();
+      rawEstimator = new RankSumEstimator(rawResiduals);
+      originalResiduals = new ArrayList<WeightedResidual>();
+      projectedOriginalResiduals = new ArrayList<WeightedResidual>();
+      projectedResiduals = new ArrayList<WeightedResidual>();
+      projectedEstimator = new RankSumEstimator(projectedResiduals);
+    }
+
+    /**
+     * This function copies the event's current residuals (and, if decorrelating, the decorrelator's
+     * projected residuals) into this evaluator, reusing its storage.
+     */
+    private void load() {
+      rawEstimator.reset(rawResiduals);
+      projectedEstimator.reset(projectedResiduals);
+
+      IdentityHashMap<WeightedResidual, WeightedResidual> copies =
+          new IdentityHashMap<WeightedResidual, WeightedResidual>();
+      numCopies = 0;
+      rawResiduals.clear();
+      originalResiduals.clear();
+      projectedOriginalResiduals.clear();
+      projectedResiduals.clear();
+
+      for (WeightedResidual weightedResidual : rawWeightedResiduals) {
+        rawResiduals.add(copy(weightedResidual, copies));
+      }
+
+      if (context.getUseDecorrelation()) {
+        for (WeightedResidual weightedResidual : decorrelator.getOriginalResiduals()) {
+          originalResiduals.add(copy(weightedResidual, copies));
+        }
+        for (WeightedResidual weightedResidual : decorrelator.getProjectedOriginalResiduals()) {
+          projectedOriginalResiduals.add(copy(weightedResidual, copies));
+        }
+
+        if (linEstResiduals.length < originalResiduals.size()) {
+          linEstResiduals = new double[originalResiduals.size()];
+        }
+      }
+    }
+
+    /**
+     * Function to return the copy of a weighted residual, making it if necessary. Each weighted
+     * residual is copied only once, so that residuals shared between the lists are still shared.
+     *
+     * @param weightedResidual A WeightedResidual object containing the weighted residual to copy
+     * @param copies An IdentityHashMap containing the copies made so far
+     * @return A WeightedResidual object containing the copy
+     */
+    private WeightedResidual copy(
+        WeightedResidual weightedResidual,
+        IdentityHashMap<WeightedResidual, WeightedResidual> copies) {
+      WeightedResidual copy = copies.get(weightedResidual);
+      if (copy == null) {
+        if (numCopies == copyStorage.size()) {
+          copyStorage.add(new WeightedResidual());
+        }
+        copy = copyStorage.get(numCopies++);
+
+        copy.copyFrom(weightedResidual);
+        copies.put(weightedResidual, copy);
+      }
+
+      return copy;
+    }
+
+    /**
+     * This function calculates the estimated dispersion at the trial step length based on linear
+     * estimates of the travel-time residuals.
+     *
+     * @param currentStepLen A double containing the current Trial step length in kilometers
+     * @return A RSumEstResult object containing the results of the R-estimator algorithm
+     */
+    private RSumEstResult evaluate(double currentStepLen) {
+      if (trialVector == null || trialVector.length != stepDirectionUnitVector.length) {
+        trialVector = new double[stepDirectionUnitVector.length];
+      }
+
+      // Do the initial pass to project and demean the correlated residuals.
+      createTrialStepVector(currentStepLen, trialVector);
+      for (int j = 0; j < rawResiduals.size(); j++) {
+        rawResiduals.get(j).updateEstResiduals(trialVector);
+        rawResiduals.get(j).updateEstWeights(trialVector); // Added 9/16/19.
+      }
+
+      double median = rawEstimator.computeLinEstMedian();
+      rawEstimator.deMedianEstResiduals();
+      double dispRaw = rawEstimator.computeEstDispersionValue(true); // Went live with true 9/16/19.
+
+      // Finish up.
+      if (context.getUseDecorrelation()) {
+        // If we're decorrelating, we have more to do.
+        if (originalResiduals == null) {
+          decorrelator.projectEstimatedPicks();
+        } else {
+          decorrelator.projectEstimatedPicks(
+              originalResiduals, projectedOriginalResiduals, projectedResiduals, linEstResiduals);
+        }
+        projectedEstimator.computeLinEstMedian();
+        double dispProj =
+            projectedEstimator.computeEstDispersionValue(true); // Went live with true 9/16/19.
+
+        LOGGER.debug(
+            String.format(
+                "Estlin: x dsp = %7.3f %9.4f %9.4f %5.2f",
+                currentStepLen, dispProj, dispRaw, median));
+
+        return new RSumEstResult(currentStepLen, median, 0d, dispProj);
+      } else {
+        // Otherwise, we're pretty much done.
+        LOGGER.debug(
+            String.format("Estlin: x dsp = %7.3f %9.4f %5.2f", currentStepLen, dispRaw, median));
+
+        return new RSumEstResult(currentStepLen, median, 0d, dispRaw);
+      }
+    }
+  }
+
   /**
    * The LinearStep constructor. This constructor sets the event (and thus the hypo, residuals, rank
    * sum estimators, and decorrelator) to the provided value.
    *
    * @param event Event information
+   * @param context A LocContext object containing the state of this location
+   * @param candidatesPerRound An int containing the number of trial step lengths to evaluate at
+   *     once. With one, trial steps are evaluated one at a time on the event's own residuals. With
+   *     more, the trial steps the search may need next are evaluated in parallel on copies of the
+   *     residuals. Either way, the search takes exactly the same steps.
    */
-  public LinearStep(Event event) {
+  public LinearStep(Event event, LocContext context, int candidatesPerRound) {
+    this.context = context;
+    this.candidatesPerRound = Math.max(candidatesPerRound, 1);
+    reset(event);
+  }
+
+  /**
+   * This function rebinds the linear step logic to a new event (and thus the hypo, residuals, rank
+   * sum estimators, and decorrelator). The trial step storage is kept for reuse.
+   *
+   * @param event Event information
+   */
+  public void reset(Event event) {
     hypo = event.getHypo();
     rawWeightedResiduals = event.getRawWeightedResiduals();
     rawRankSumEstimator = event.getRawRankSumEstimator();
     projectedRankSumEstimator = event.getProjectedRankSumEstimator();
     decorrelator = event.getDecorrelator();
+    stepDirectionUnitVector = null;
+    liveEvaluator = new TrialEvaluator(event);
   }
 
   /**
@@ -81,24 +320,63 @@ public class LinearStep {
       double minStepLen,
       double maxStepLen,
       double currentDispersionValue) {
+    lastStepLen = Double.NaN;
+    RSumEstResult result =
+        searchStepLength(
+            stepDirectionUnitVector, startStepLen, minStepLen, maxStepLen, currentDispersionValue);
+
+    // Searching one trial at a time leaves the event's residuals (their linear estimates, order,
+    // and the rank-sum estimators' tie breaking) as the last trial step left them, and the rest of
+    // the location works from there.  The copies don't touch them, so redo the last trial on them.
+    if (candidatesPerRound > 1 && !Double.isNaN(lastStepLen)) {
+      liveEvaluator.evaluate(lastStepLen);
+    }
+
+    return result;
+  }
+
+  /**
+   * This function does the messy bisection for stepLength.
+   *
+   * @param stepDirectionUnitVector A double[] containing the spatial steepest descents direction
+   *     unit vector
+   * @param startStepLen A double containing the starting step length in kilometers
+   * @param minStepLen A double containing the minimum step length
+   * @param maxStepLen A double containing the maximum step length
+   * @param currentDispersionValue A double containing the current R-estimator dispersion value
+   * @return A RSumEstResult containing the step length in kilometers needed to reach the minimum
+   *     dispersion
+   */
+  private RSumEstResult searchStepLength(
+      double[] stepDirectionUnitVector,
+      double startStepLen,
+      double minStepLen,
+      double maxStepLen,
+      double currentDispersionValue) {
     // The trial vector has to be the same size as the step vector.
-    trialStepVector = new double[stepDirectionUnitVector.length];
+    if (trialStepVector == null || trialStepVector.length != stepDirectionUnitVector.length) {
+      trialStepVector = new double[stepDirectionUnitVector.length];
+    }
 
     // Initialize the bisection.
     this.stepDirectionUnitVector = stepDirectionUnitVector;
     double initialStepLen = startStepLen;
     double currentStepLen = startStepLen;
+    trials.clear();
+    numCopiesLoaded = 0;
 
     // Make a default step.
     RSumEstResult[] sample = new RSumEstResult[3];
     sample[0] = new RSumEstResult(0d, 0d, 0d, currentDispersionValue);
     //  sample[0] = estDispersionValue(0d);
+    prefetchFirst(currentStepLen, maxStepLen);
     sample[1] = estDispersionValue(currentStepLen);
 
     // Do some preliminary hunting to surround the minimum.
     if (sample[0].getDispersion() >= sample[1].getDispersion()) {
       // If the trial step was too short, keep doubling it.
       currentStepLen = 2d * currentStepLen;
+      prefetchLonger(currentStepLen, initialStepLen, maxStepLen);
       sample[2] = estDispersionValue(currentStepLen);
 
       // Keep stepping until the penalty gets bigger.
@@ -123,6 +401,7 @@ public class LinearStep {
         // The steps keep getting bigger.
         initialStepLen *= 2d;
         currentStepLen = Math.min(sample[1].getStepLength() + initialStepLen, maxStepLen);
+        prefetchLonger(currentStepLen, initialStepLen, maxStepLen);
         sample[2] = estDispersionValue(currentStepLen);
       }
     } else {
@@ -130,6 +409,7 @@ public class LinearStep {
       do {
         sample[2] = sample[1];
         currentStepLen = 0.5 * (sample[0].getStepLength() + sample[2].getStepLength());
+        prefetchShorter(currentStepLen);
         sample[1] = estDispersionValue(currentStepLen);
 
         // See if we've converged.
@@ -158,6 +438,7 @@ public class LinearStep {
         && sample[2].getStepLength() - sample[0].getStepLength() > minStepLen) {
       // Try the lower half first.
       currentStepLen = 0.5 * (sample[0].getStepLength() + sample[1].getStepLength());
+      prefetch(currentStepLen, 0.5 * (sample[1].getStepLength() + sample[2].getStepLength()));
       RSumEstResult testSample = estDispersionValue(currentStepLen);
 
       if (testSample.getDispersion() >= sample[1].getDispersion()) {
@@ -210,38 +491,171 @@ public class LinearStep {
    * @return A RSumEstResult object containing the results of the R-estimator algorithm
    */
   private RSumEstResult estDispersionValue(double currentStepLen) {
-    // Do the initial pass to project and demean the correlated residuals.
-    createTrialStepVector(currentStepLen);
-    for (int j = 0; j < rawWeightedResiduals.size(); j++) {
-      rawWeightedResiduals.get(j).updateEstResiduals(trialStepVector);
-      rawWeightedResiduals.get(j).updateEstWeights(trialStepVector); // Added 9/16/19.
+    lastStepLen = currentStepLen;
+    if (candidatesPerRound <= 1) {
+      return liveEvaluator.evaluate(currentStepLen);
     }
 
-    double median = rawRankSumEstimator.computeLinEstMedian();
-    rawRankSumEstimator.deMedianEstResiduals();
-    double dispRaw =
-        rawRankSumEstimator.computeEstDispersionValue(true); // Went live with true 9/16/19.
-
-    // Finish up.
-    if (LocUtil.useDecorrelation) {
-      // If we're decorrelating, we have more to do.
-      decorrelator.projectEstimatedPicks();
-      projectedRankSumEstimator.computeLinEstMedian();
-      double dispProj =
-          projectedRankSumEstimator.computeEstDispersionValue(true); // Went live with true 9/16/19.
-
-      LOGGER.debug(
-          String.format(
-              "Estlin: x dsp = %7.3f %9.4f %9.4f %5.2f",
-              currentStepLen, dispProj, dispRaw, median));
-
-      return new RSumEstResult(currentStepLen, median, 0d, dispProj);
-    } else {
-      // Otherwise, we're pretty much done.
-      LOGGER.debug(
-          String.format("Estlin: x dsp = %7.3f %9.4f %5.2f", currentStepLen, dispRaw, median));
+    RSumEstResult result = trials.get(currentStepLen);
+    if (result == null) {
+      prefetch(currentStepLen);
+      result = trials.get(currentStepLen);
+    }
+
+    return result;
+  }
+
+  /**
+   * This function evaluates the first trial step, together with the next few steps the search
+   * would try whether the first turns out to be too short (doubling) or too long (halving).
+   *
+   * @param startStepLen A double containing the starting step length in kilometers
+   * @param maxStepLen A double containing the maximum step length in kilometers
+   */
+  private void prefetchFirst(double startStepLen, double maxStepLen) {
+    if (candidatesPerRound <= 1) {
+      return;
+    }
+
+    double[] longer = new double[candidatesPerRound];
+    double[] shorter = new double[candidatesPerRound];
+    int numLonger = longerSteps(2d * startStepLen, startStepLen, maxStepLen, longer);
+    shorterSteps(0.5 * (0d + startStepLen), shorter);
+
+    // Take turns between the two directions.
+    double[] stepLens = new double[candidatesPerRound];
+    stepLens[0] = startStepLen;
+    for (int j = 1, k = 0; j < candidatesPerRound; k++) {
+      if (k < numLonger) {
+        stepLens[j++] = longer[k];
+      }
+      if (j < candidatesPerRound) {
+        stepLens[j++] = shorter[k];
+      }
+    }
+
+    prefetch(stepLens);
+  }
+
+  /**
+   * This function evaluates a trial step while the step is being lengthened, together with the
+   * next few longer steps the search would try if it needs to keep going.
+   *
+   * @param currentStepLen A double containing the trial step length in kilometers
+   * @param initialStepLen A double containing the current step increment in kilometers
+   * @param maxStepLen A double containing the maximum step length in kilometers
+   */
+  private void prefetchLonger(double currentStepLen, double initialStepLen, double maxStepLen) {
+    if (candidatesPerRound <= 1) {
+      return;
+    }
+
+    double[] stepLens = new double[candidatesPerRound];
+    int numStepLens = longerSteps(currentStepLen, initialStepLen, maxStepLen, stepLens);
+    prefetch(Arrays.copyOf(stepLens, numStepLens));
+  }
+
+  /**
+   * This function evaluates a trial step while the step is being shortened, together with the next
+   * few shorter steps the search would try if it needs to keep going.
+   *
+   * @param currentStepLen A double containing the trial step length in kilometers
+   */
+  private void prefetchShorter(double currentStepLen) {
+    if (candidatesPerRound <= 1) {
+      return;
+    }
+
+    double[] stepLens = new double[candidatesPerRound];
+    shorterSteps(currentStepLen, stepLens);
+    prefetch(stepLens);
+  }
 
-      return new RSumEstResult(currentStepLen, median, 0d, dispRaw);
+  /**
+   * This function works out the sequence of step lengths the search tries while lengthening the
+   * step, exactly as stepLength computes them.
+   *
+   * @param currentStepLen A double containing the first step length in kilometers
+   * @param initialStepLen A double containing the step increment used to get to the first step
+   * @param maxStepLen A double containing the maximum step length in kilometers
+   * @param stepLens A double[] to hold the step lengths
+   * @return An int containing the number of step lengths, which stops at the maximum step length
+   */
+  private int longerSteps(
+      double currentStepLen, double initialStepLen, double maxStepLen, double[] stepLens) {
+    int numStepLens = 0;
+    stepLens[numStepLens++] = currentStepLen;
+
+    while (numStepLens < stepLens.length && currentStepLen < maxStepLen) {
+      initialStepLen *= 2d;
+      currentStepLen = Math.min(currentStepLen + initialStepLen, maxStepLen);
+      stepLens[numStepLens++] = currentStepLen;
+    }
+
+    return numStepLens;
+  }
+
+  /**
+   * This function works out the sequence of step lengths the search tries while shortening the
+   * step, exactly as stepLength computes them.
+   *
+   * @param currentStepLen A double containing the first step length in kilometers
+   * @param stepLens A double[] to hold the step lengths
+   */
+  private void shorterSteps(double currentStepLen, double[] stepLens) {
+    for (int j = 0; j < stepLens.length; j++) {
+      stepLens[j] = currentStepLen;
+      currentStepLen = 0.5 * (0d + currentStepLen);
+    }
+  }
+
+  /**
+   * This function evaluates any of the trial step lengths that haven't been evaluated yet, as many
+   * at once as allowed, in parallel on copies of the residuals. The first step length is always
+   * evaluated. The results are remembered for estDispersionValue.
+   *
+   * @param stepLens A double[] containing the step lengths in kilometers, most urgent first
+   */
+  private void prefetch(double... stepLens) {
+    if (candidatesPerRound <= 1) {
+      return;
+    }
+
+    // Pick out the step lengths we don't have yet.
+    ArrayList<Double> needed = new ArrayList<Double>();
+    for (double stepLen : stepLens) {
+      if (needed.size() < candidatesPerRound
+          && !trials.containsKey(stepLen)
+          && !needed.contains(stepLen)) {
+        needed.add(stepLen);
+      }
+    }
+
+    if (needed.isEmpty()) {
+      return;
+    }
+
+    // Make sure we have enough copies of the residuals.
+    while (copyEvaluators.size() < needed.size()) {
+      copyEvaluators.add(new TrialEvaluator());
+    }
+    for (; numCopiesLoaded < needed.size(); numCopiesLoaded++) {
+      copyEvaluators.get(numCopiesLoaded).load();
+    }
+
+    // Evaluate them.  The last one is done on this thread.
+    ArrayList<CompletableFuture<RSumEstResult>> futures =
+        new ArrayList<CompletableFuture<RSumEstResult>>();
+    for (int j = 0; j < needed.size() - 1; j++) {
+      TrialEvaluator evaluator = copyEvaluators.get(j);
+      double stepLen = needed.get(j);
+      futures.add(CompletableFuture.supplyAsync(() -> evaluator.evaluate(stepLen)));
+    }
+
+    int last = needed.size() - 1;
+    trials.put(needed.get(last), copyEvaluators.get(last).evaluate(needed.get(last)));
+    for (int j = 0; j < futures.size(); j++) {
+      trials.put(needed.get(j), futures.get(j).join());
     }
   }
 
@@ -252,6 +666,18 @@ public class LinearStep {
    * @param currentStepLen A double containing the length of the current trial step in kilometers.
    */
   private void createTrialStepVector(double currentStepLen) {
+    createTrialStepVector(currentStepLen, trialStepVector);
+  }
+
+  /**
+   * This function creates a trial step vector in the steepest descent direction with the length of
+   * stepLen in the given storage. It also ensures that the depth is still in a valid earthquake
+   * depth range.
+   *
+   * @param currentStepLen A double containing the length of the current trial step in kilometers.
+   * @param trialStepVector A double[] to hold the trial step vector in kilometers
+   */
+  private void createTrialStepVector(double currentStepLen, double[] trialStepVector) {
     // Make the trial step vector.
     for (int j = 0; j < stepDirectionUnitVector.length; j++) {
       trialStepVector[j] = currentStepLen * stepDirectionUnitVector[j];
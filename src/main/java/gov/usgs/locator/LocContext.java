@@ -0,0 +1,80 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+
+/**
+ * The LocContext class holds the state that changes during the location of one event, but that is
+ * shared between the Locate, Stepper, PhaseID, InitialPhaseID, LinearStep, and CloseOut logic.
+ * Each location gets its own context, so that several events can be located in the same JVM at the
+ * same time. A reused Locate resets its context before each location.
+ */
+public class LocContext {
+  /**
+   * A boolean flag indicating if the decorrelation algorithm is to be used. Note that it is never
+   * used in the initial pass, hence the default.
+   */
+  private boolean useDecorrelation = false;
+
+  /**
+   * A boolean flag indicating if the the event is in a tectonic area where Pb and Sb are extensions
+   * of Pg and Sg respectively or in a craton with a well defined Conrad discontinuity and distinct
+   * Pb and Sb phases.
+   */
+  private boolean isTectonic = false;
+
+  /** A double containing the current anti-loop jiggle dampening value. */
+  private double dampeningValue = LocUtil.DAMPENINGVALUE;
+
+  /** This function returns the context to its initial state, ready for the next location. */
+  public void reset() {
+    useDecorrelation = false;
+    isTectonic = false;
+    dampeningValue = LocUtil.DAMPENINGVALUE;
+  }
+
+  /**
+   * Function to return whether the decorrelation algorithm is currently in use.
+   *
+   * @return A boolean flag, true if the decorrelation algorithm is in use
+   */
+  public boolean getUseDecorrelation() {
+    return useDecorrelation;
+  }
+
+  /**
+   * Function to set whether the decorrelation algorithm is currently in use.
+   *
+   * @param useDecorrelation A boolean flag, true if the decorrelation algorithm is to be used
+   */
+  public void setUseDecorrelation(boolean useDecorrelation) {
+    this.useDecorrelation = useDecorrelation;
+  }
+
+  /**
+   * Function to return whether the event is in a tectonic area.
+   *
+   * @return A boolean flag, true if the event is in a tectonic area
+   */
+  public boolean getIsTectonic() {
+    return isTectonic;
+  }
+
+  /**
+   * Function to set whether the event is in a tectonic area.
+   *
+   * @param isTectonic A boolean flag, true if the event is in a tectonic area
+   */
+  public void setIsTectonic(boolean isTectonic) {
+    this.isTectonic = isTectonic;
+  }
+
+  /**
+   * This function computes the next anti-loop jiggle dampening factor for this location.
+   *
+   * @return A double containing the dampening factor
+   */
+  public double computeDampeningFactor() {
+    dampeningValue = LocUtil.computeDampeningFactor(dampeningValue);
+    return dampeningValue;
+  }
+}
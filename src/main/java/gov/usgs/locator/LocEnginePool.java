@@ -0,0 +1,164 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import gov.usgs.processingformats.LocationException;
+import gov.usgs.processingformats.LocationRequest;
+import gov.usgs.processingformats.LocationResult;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The LocEnginePool class holds a fixed number of LocService engines, so that several threads can
+ * locate at once without each loading its own models for every location. Each engine is created
+ * once, up front, so that the travel-time tables, cratons, zone statistics, and slab models are
+ * already loaded when a location is requested. A location borrows an engine for its duration and
+ * returns it afterwards. A LocService is not safe to use from more than one thread at a time, so
+ * an engine is never lent to two locations at once.
+ */
+public class LocEnginePool {
+  /** An int containing the default number of engines in the pool. */
+  public static final int DEFAULT_POOL_SIZE = 1;
+
+  /** A String containing the path to the locator models. */
+  private final String modelPath;
+
+  /** A String containing the path to the locator serialized files. */
+  private final String serializedPath;
+
+  /** A BlockingQueue of LocService objects containing the engines not currently lent out. */
+  private final BlockingQueue<LocService> idleEngines;
+
+  /** An int containing the number of engines in the pool. */
+  private final int poolSize;
+
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(LocEnginePool.class.getName());
+
+  /**
+   * The LocEnginePool constructor, using the default tuning, so requests wait for any slab
+   * resolution that isn't loaded yet and every location uses the resolution it asked for.
+   *
+   * @param modelPath A String containing the path to the locator models
+   * @param serializedPath A String containing the path to the locator serialized files
+   * @param poolSize An int containing the number of engines to create
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException if an engine
+   *     could not load its models
+   */
+  public LocEnginePool(String modelPath, String serializedPath, int poolSize)
+      throws LocationException {
+    this(modelPath, serializedPath, poolSize, new LocTuning());
+  }
+
+  /**
+   * The LocEnginePool constructor. All engines are created (and their models loaded) before the
+   * constructor returns.
+   *
+   * @param modelPath A String containing the path to the locator models
+   * @param serializedPath A String containing the path to the locator serialized files
+   * @param poolSize An int containing the number of engines to create
+   * @param tuning A LocTuning object containing the settings for how the engines locate
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException if an engine
+   *     could not load its models
+   */
+  public LocEnginePool(String modelPath, String serializedPath, int poolSize, LocTuning tuning)
+      throws LocationException {
+    this.modelPath = modelPath;
+    this.serializedPath = serializedPath;
+    this.poolSize = Math.max(poolSize, DEFAULT_POOL_SIZE);
+
+    long poolStartTime = System.currentTimeMillis();
+    idleEngines = new ArrayBlockingQueue<LocService>(this.poolSize);
+    int numTravelTimeSessions = 0;
+    for (int i = 0; i < this.poolSize; i++) {
+      LocService engine = new LocService(modelPath, serializedPath, tuning);
+      numTravelTimeSessions += engine.getNumTravelTimeSessions();
+      idleEngines.add(engine);
+    }
+
+    // Each travel-time session holds a full copy of the travel-time tables, so this is what drives
+    // the memory the pool needs.
+    LOGGER.info(
+        LocUtil.endTimer(
+            "Time to load "
+                + this.poolSize
+                + " locator engine(s) with "
+                + numTravelTimeSessions
+                + " travel-time session(s)",
+            poolStartTime));
+  }
+
+  /**
+   * Function to get the path to the locator models.
+   *
+   * @return A String containing the path to the locator models
+   */
+  public String getModelPath() {
+    return modelPath;
+  }
+
+  /**
+   * Function to get the path to the locator serialized files.
+   *
+   * @return A String containing the path to the locator serialized files
+   */
+  public String getSerializedPath() {
+    return serializedPath;
+  }
+
+  /**
+   * Function to get the number of engines in the pool.
+   *
+   * @return An int containing the number of engines in the pool
+   */
+  public int getPoolSize() {
+    return poolSize;
+  }
+
+  /**
+   * This function borrows an engine from the pool, waiting until one is available. Every engine
+   * borrowed must be handed back with release().
+   *
+   * @return A LocService containing a locator engine
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException if the wait
+   *     is interrupted
+   */
+  public LocService borrow() throws LocationException {
+    try {
+      return idleEngines.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new LocationException("Interrupted waiting for a locator engine.");
+    }
+  }
+
+  /**
+   * This function returns a borrowed engine to the pool.
+   *
+   * @param engine A LocService containing the engine previously obtained from borrow()
+   */
+  public void release(LocService engine) {
+    if (engine != null) {
+      idleEngines.offer(engine);
+    }
+  }
+
+  /**
+   * Function to get a location using a pooled engine. The engine is returned to the pool whether or
+   * not the location succeeds.
+   *
+   * @param request a final LocationRequest containing the location request
+   * @return A LocationResult containing the resulting location
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException upon certain
+   *     severe errors.
+   */
+  public LocationResult getLocation(final LocationRequest request) throws LocationException {
+    LocService engine = borrow();
+    try {
+      return engine.getLocation(request);
+    } finally {
+      release(engine);
+    }
+  }
+}
@@ -0,0 +1,286 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The LocEnvironmentCache class remembers the location environment (the tectonic flag and the list
+ * of candidate Bayesian depths) by geographic cell, so that the craton, slab, and zone statistics
+ * lookups are only done once per cell rather than at every step of every location. This pays off
+ * for aftershock sequences and for events that are relocated as more picks come in, which keep
+ * coming back to the same few cells.
+ *
+ * <p>Cells are squares of a fixed size in latitude and longitude, and the environment of a cell is
+ * always computed at its center, so the cached values don't depend on which location happened to
+ * fill the cell first. A cell size of zero caches the environment by exact position instead, so
+ * only a location that comes back to exactly the same point is found in the cache. The cache is
+ * bounded, evicting the least recently used cell when it's full, and is safe to share between
+ * locator engines on different threads as long as they all use the same models. The candidate
+ * Bayesian depth lists are shared between all users of a cell, so they must not be modified.
+ */
+public class LocEnvironmentCache {
+  /**
+   * A Map of LocEnvironmentCache objects, keyed by model path and cell size, holding the caches
+   * shared by all the locator engines using each set of models.
+   */
+  private static final Map<String, LocEnvironmentCache> sharedCaches =
+      new ConcurrentHashMap<String, LocEnvironmentCache>();
+
+  /** A double containing the size of a cell in degrees, zero to cache by exact position. */
+  private final double cellSize;
+
+  /** An int containing the maximum number of cells to remember. */
+  private final int maxCells;
+
+  /** A LinkedHashMap in access order containing the cached environments, keyed by cell. */
+  private final LinkedHashMap<CellKey, Environment> cells;
+
+  /** An AtomicLong containing the number of lookups found in the cache. */
+  private final AtomicLong hits = new AtomicLong();
+
+  /** An AtomicLong containing the number of lookups that had to be computed. */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * The Environment class holds the location environment for one cell. Environment objects are
+   * immutable.
+   */
+  public static class Environment {
+    /** A boolean flag, true if the cell is in a tectonic area rather than a craton. */
+    private final boolean isTectonic;
+
+    /** An unmodifiable List of BayesianDepth objects containing the candidate Bayesian depths. */
+    private final List<BayesianDepth> bayesianDepths;
+
+    /**
+     * The Environment constructor.
+     *
+     * @param isTectonic A boolean flag, true if the cell is in a tectonic area
+     * @param bayesianDepths An ArrayList of BayesianDepth objects containing the candidate
+     *     Bayesian depths in increasing depth order, which is not copied
+     */
+    public Environment(boolean isTectonic, ArrayList<BayesianDepth> bayesianDepths) {
+      this.isTectonic = isTectonic;
+      this.bayesianDepths = Collections.unmodifiableList(bayesianDepths);
+    }
+
+    /**
+     * Function to return whether the cell is in a tectonic area.
+     *
+     * @return A boolean flag, true if the cell is in a tectonic area rather than a craton
+     */
+    public boolean getIsTectonic() {
+      return isTectonic;
+    }
+
+    /**
+     * Function to return the candidate Bayesian depths.
+     *
+     * @return An unmodifiable List of BayesianDepth objects containing the candidate Bayesian
+     *     depths in increasing depth order
+     */
+    public List<BayesianDepth> getBayesianDepths() {
+      return bayesianDepths;
+    }
+  }
+
+  /**
+   * The Source interface is implemented by the code that computes the location environment when it
+   * isn't in the cache.
+   */
+  public interface Source {
+    /**
+     * This function computes the location environment at a point.
+     *
+     * @param latitude A double containing the geographic latitude in degrees
+     * @param longitude A double containing the geographic longitude in degrees
+     * @return An Environment object containing the location environment
+     */
+    Environment compute(double latitude, double longitude);
+  }
+
+  /** The CellKey class identifies a cell for a particular slab model resolution. */
+  private static class CellKey {
+    /** A String containing the slab model resolution. */
+    private final String slabRes;
+
+    /** A long containing the latitude index of the cell, or the exact latitude bits. */
+    private final long latIndex;
+
+    /** A long containing the longitude index of the cell, or the exact longitude bits. */
+    private final long lonIndex;
+
+    /**
+     * The CellKey constructor.
+     *
+     * @param slabRes A String containing the slab model resolution
+     * @param latIndex A long containing the latitude index of the cell
+     * @param lonIndex A long containing the longitude index of the cell
+     */
+    private CellKey(String slabRes, long latIndex, long lonIndex) {
+      this.slabRes = slabRes;
+      this.latIndex = latIndex;
+      this.lonIndex = lonIndex;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof CellKey)) {
+        return false;
+      }
+
+      CellKey key = (CellKey) other;
+      return latIndex == key.latIndex
+          && lonIndex == key.lonIndex
+          && Objects.equals(slabRes, key.slabRes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(slabRes, latIndex, lonIndex);
+    }
+  }
+
+  /**
+   * The LocEnvironmentCache constructor.
+   *
+   * @param cellSize A double containing the size of a cell in degrees, zero to cache by exact
+   *     position
+   * @param maxCells An int containing the maximum number of cells to remember
+   */
+  public LocEnvironmentCache(double cellSize, int maxCells) {
+    this.cellSize = Math.max(cellSize, 0d);
+    this.maxCells = maxCells;
+    cells =
+        new LinkedHashMap<CellKey, Environment>(16, 0.75f, true) {
+          private static final long serialVersionUID = 1L;
+
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<CellKey, Environment> eldest) {
+            return size() > LocEnvironmentCache.this.maxCells;
+          }
+        };
+  }
+
+  /**
+   * Function to return the cache shared by all the locator engines using a set of models and cell
+   * size, creating it with the default capacity if necessary.
+   *
+   * @param modelPath A String containing the path to the locator models
+   * @param cellSize A double containing the size of a cell in degrees, zero to cache by exact
+   *     position
+   * @return A LocEnvironmentCache object containing the shared cache
+   */
+  public static LocEnvironmentCache getShared(String modelPath, double cellSize) {
+    double size = Math.max(cellSize, 0d);
+    return sharedCaches.computeIfAbsent(
+        modelPath + "@" + size, key -> new LocEnvironmentCache(size, LocUtil.ENVIRONMENTCELLS));
+  }
+
+  /**
+   * Function to return the size of a cell.
+   *
+   * @return A double containing the size of a cell in degrees, zero if the environment is cached
+   *     by exact position
+   */
+  public double getCellSize() {
+    return cellSize;
+  }
+
+  /**
+   * This function gets the location environment of the cell containing a point, computing it at the
+   * center of the cell (or at the point itself if the cell size is zero) if it isn't already
+   * cached.
+   *
+   * @param slabRes A String containing the slab model resolution
+   * @param latitude A double containing the geographic latitude in degrees
+   * @param longitude A double containing the geographic longitude in degrees
+   * @param source A Source object used to compute the environment if it isn't cached
+   * @return An Environment object containing the location environment of the cell
+   */
+  public Environment get(String slabRes, double latitude, double longitude, Source source) {
+    long latIndex;
+    long lonIndex;
+    double cellLatitude;
+    double cellLongitude;
+    if (cellSize > 0d) {
+      latIndex = (long) Math.floor(latitude / cellSize);
+      lonIndex = (long) Math.floor(longitude / cellSize);
+      cellLatitude = Math.max(Math.min((latIndex + 0.5d) * cellSize, 90d), -90d);
+      cellLongitude = (lonIndex + 0.5d) * cellSize;
+    } else {
+      latIndex = Double.doubleToLongBits(latitude);
+      lonIndex = Double.doubleToLongBits(longitude);
+      cellLatitude = latitude;
+      cellLongitude = longitude;
+    }
+    CellKey key = new CellKey(slabRes, latIndex, lonIndex);
+
+    Environment environment;
+    synchronized (cells) {
+      environment = cells.get(key);
+    }
+
+    if (environment != null) {
+      hits.incrementAndGet();
+      return environment;
+    }
+
+    // Compute it outside the lock.  If another thread beats us to it, it will have computed
+    // exactly the same thing.
+    misses.incrementAndGet();
+    environment = source.compute(cellLatitude, cellLongitude);
+
+    synchronized (cells) {
+      cells.put(key, environment);
+    }
+
+    return environment;
+  }
+
+  /**
+   * Function to return the number of lookups found in the cache.
+   *
+   * @return A long containing the number of cache hits
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * Function to return the number of lookups that had to be computed.
+   *
+   * @return A long containing the number of cache misses
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  /**
+   * Function to return the number of cells currently cached.
+   *
+   * @return An int containing the number of cached cells
+   */
+  public int getSize() {
+    synchronized (cells) {
+      return cells.size();
+    }
+  }
+
+  /** This function empties the cache and clears the hit and miss counters. */
+  public void clear() {
+    synchronized (cells) {
+      cells.clear();
+    }
+
+    hits.set(0L);
+    misses.set(0L);
+  }
+}
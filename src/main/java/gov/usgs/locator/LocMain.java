@@ -15,6 +15,9 @@ import java.io.IOException;
 import java.io.PrintWriter;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.Level;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -84,10 +87,18 @@ public class LocMain {
   /** A String containing the argument for specifying to output a csv file. */
   public static final String CSVFILE_ARGUMENT = "--csvFile=";
 
+  /** A String containing the argument for specifying the number of batch worker threads. */
+  public static final String THREADS_ARGUMENT = "--threads=";
+
+  /** A String containing the argument for specifying the watch mode settle time. */
+  public static final String SETTLEMILLIS_ARGUMENT = "--settleMillis=";
+
   /** Mode to process one file (default) */
   public static final String MODE_SINGLE = "single";
   /** Mode to process batch */
   public static final String MODE_BATCH = "batch";
+  /** Mode to watch a directory, processing files as they arrive */
+  public static final String MODE_WATCH = "watch";
   /** Mode to run web service. */
   public static final String MODE_SERVICE = "service";
 
@@ -119,6 +130,10 @@ public class LocMain {
               + "\n\t[--archiveDir=[optional archive path]] [--outputType=[optional json or hydra]] "
               + "\n\t[--logFileType=[optional file or memory file]"
               + "\n\t--csvFile=[optional csv file path]"
+              + "\n\t[--threads=[optional number of worker threads, default 1]]"
+              + "\nneic-locator --mode=watch [same arguments as batch mode]"
+              + "\n\t[--settleMillis=[optional milliseconds a file written in place must stay "
+              + "unchanged, default 100]]"
               + "\nneic-locator --mode=service"
               + "\n\t--logPath=[log file path] --logLevel=[logging level] "
               + "\n\t[--logFileType=[optional file or memory file]");
@@ -145,6 +160,8 @@ public class LocMain {
     String csvFile = null;
     String locationConfigPath = null;
     boolean useMemoryMapLog = false;
+    int numThreads = 1;
+    long settleMillis = LocWatcher.DEFAULT_SETTLE_MILLIS;
 
     // process arguments
     StringBuffer argumentList = new StringBuffer();
@@ -197,6 +214,23 @@ public class LocMain {
       } else if (arg.startsWith(CSVFILE_ARGUMENT)) {
         // get csv file
         csvFile = arg.replace(CSVFILE_ARGUMENT, "");
+      } else if (arg.startsWith(THREADS_ARGUMENT)) {
+        // get number of batch worker threads
+        try {
+          numThreads = Integer.parseInt(arg.replace(THREADS_ARGUMENT, ""));
+        } catch (NumberFormatException e) {
+          System.err.println("Invalid thread count " + arg + ", using 1");
+          numThreads = 1;
+        }
+      } else if (arg.startsWith(SETTLEMILLIS_ARGUMENT)) {
+        // get watch mode settle time
+        try {
+          settleMillis = Long.parseLong(arg.replace(SETTLEMILLIS_ARGUMENT, ""));
+        } catch (NumberFormatException e) {
+          System.err.println(
+              "Invalid settle time " + arg + ", using " + LocWatcher.DEFAULT_SETTLE_MILLIS);
+          settleMillis = LocWatcher.DEFAULT_SETTLE_MILLIS;
+        }
       } else if (arg.startsWith(LOCCONFIG_ARGUMENT)) {
         // get locator configuration
         locationConfigPath = arg.replace(LOCCONFIG_ARGUMENT, "");
@@ -278,6 +312,21 @@ public class LocMain {
       gov.usgs.locatorservice.Application.main(args);
       // service runs in separate thread, just return from this method...
       return;
+    } else if (MODE_WATCH.equals(mode)) {
+      locRC =
+          locMain.watchForEvents(
+              modelPath,
+              inputPath,
+              inputExtension,
+              outputPath,
+              outputExtension,
+              archivePath,
+              inputType,
+              outputType,
+              csvFile,
+              locationConfig,
+              numThreads,
+              settleMillis);
     } else if (MODE_BATCH.equals(mode)) {
       locRC =
           locMain.locateManyEvents(
@@ -290,7 +339,8 @@ public class LocMain {
               inputType,
               outputType,
               csvFile,
-              locationConfig);
+              locationConfig,
+              numThreads);
     } else {
       locRC =
           locMain.locateSingleEvent(
@@ -600,22 +650,111 @@ public class LocMain {
       String outputExtension,
       String csvFile,
       JSONObject locationConfig) {
+    // set up service
+    LocService service = null;
+    try {
+      service = new LocService(modelPath, modelPath);
+    } catch (LocationException e) {
+      LOGGER.fatal("Exception: " + e.toString());
+      return false;
+    }
+
+    return locateSingleEvent(
+        service,
+        inputFile,
+        inputType,
+        outputFile,
+        outputType,
+        outputPath,
+        outputExtension,
+        csvFile,
+        locationConfig);
+  }
+
+  /**
+   * This function locates a single event using an already loaded locator service.
+   *
+   * @param service A LocService containing the locator service to use, it must not be in use by
+   *     another thread
+   * @param inputFile A String containing the full path to the locator input file
+   * @param inputType A String containing the type of the locator input file
+   * @param outputFile An optional String containing the full path to the locator output file,
+   *     overrides output path
+   * @param outputType A String containing the type of the locator output file
+   * @param outputExtension A String containing the extension to use for output files
+   * @param outputPath A String containing the path to write the locator output file
+   * @param csvFile An optional String containing full path to the csv formatted file, null to
+   *     disable
+   * @param locationConfig An optional JSONObject containing the locator config for detections, null
+   *     to disable
+   * @return A boolean flag indicating whether the locaton was successful
+   */
+  public boolean locateSingleEvent(
+      LocService service,
+      String inputFile,
+      String inputType,
+      String outputFile,
+      String outputType,
+      String outputPath,
+      String outputExtension,
+      String csvFile,
+      JSONObject locationConfig) {
+
+    // parse the file
+    long requestStartTime = System.currentTimeMillis();
+    LocationRequest request = parseRequestFile(inputFile, inputType, locationConfig);
+
+    if (request == null) {
+      return false;
+    }
+
+    LOGGER.info(LocUtil.endTimer("Time to parse request", requestStartTime));
+
+    // do location
+    long locationStartTime = System.currentTimeMillis();
+    LocationResult result = null;
+    try {
+      result = service.getLocation(request);
+    } catch (LocationException e) {
+      LOGGER.fatal("Exception: " + e.toString());
+
+      LOGGER.info(LocUtil.endTimer("Total time to set up and get location", locationStartTime));
+
+      return false;
+    }
+
+    LOGGER.info(LocUtil.endTimer("Total time to set up and get location", locationStartTime));
 
+    // Write the result to disk
+    return writeResult(
+        result, inputFile, outputFile, outputType, outputPath, outputExtension, csvFile);
+  }
+
+  /**
+   * This function reads and parses a locator input file into a location request.
+   *
+   * @param inputFile A String containing the full path to the locator input file
+   * @param inputType A String containing the type of the locator input file
+   * @param locationConfig An optional JSONObject containing the locator config for detections, null
+   *     to disable
+   * @return A LocationRequest containing the parsed request, or null if the file was invalid
+   */
+  public LocationRequest parseRequestFile(
+      String inputFile, String inputType, JSONObject locationConfig) {
     // read the file
     String inputString = loadStringFromFile(inputFile);
 
     if (inputString == null) {
       LOGGER.fatal("String from file is null.");
-      return false;
+      return null;
     }
 
     if ("".equals(inputString)) {
       LOGGER.fatal("String from file is empty.");
-      return false;
+      return null;
     }
 
     // parse the file
-    long requestStartTime = System.currentTimeMillis();
     LocationRequest request = null;
     if ("json".equals(inputType)) {
       LOGGER.debug("Parsing a json file: " + inputFile);
@@ -626,7 +765,7 @@ public class LocMain {
       } catch (ParseException e) {
         // parse failure
         LOGGER.fatal("Exception: " + e.toString());
-        return false;
+        return null;
       }
     } else if ("detection".equals(inputType)) {
       LOGGER.debug("Parsing a detection file.");
@@ -638,7 +777,7 @@ public class LocMain {
       } catch (ParseException e) {
         // parse failure
         LOGGER.fatal("Exception: " + e.toString());
-        return false;
+        return null;
       }
 
       // convert to request
@@ -655,7 +794,7 @@ public class LocMain {
       // Use LocInput to get access to read routine
       LocInput hydraIn = new LocInput();
       if (!hydraIn.readHydra(inputString)) {
-        return false;
+        return null;
       }
 
       request = (LocationRequest) hydraIn;
@@ -664,28 +803,31 @@ public class LocMain {
       request.ID = getFileName(inputFile);
     }
 
-    LOGGER.info(LocUtil.endTimer("Time to parse request", requestStartTime));
-
-    // do location
-    long locationStartTime = System.currentTimeMillis();
-    LocationResult result = null;
-    if (request != null) {
-      try {
-        // set up service
-        LocService service = new LocService(modelPath, modelPath);
-        result = service.getLocation(request);
-      } catch (LocationException e) {
-        LOGGER.fatal("Exception: " + e.toString());
-
-        LOGGER.info(LocUtil.endTimer("Total time to set up and get location", locationStartTime));
-
-        return false;
-      }
-    }
-
-    LOGGER.info(LocUtil.endTimer("Total time to set up and get location", locationStartTime));
+    return request;
+  }
 
-    // Write the result to disk
+  /**
+   * This function writes a location result to disk, and optionally appends it to the csv file.
+   *
+   * @param result A LocationResult containing the location to write, may be null
+   * @param inputFile A String containing the full path to the locator input file
+   * @param outputFile An optional String containing the full path to the locator output file,
+   *     overrides output path
+   * @param outputType A String containing the type of the locator output file
+   * @param outputPath A String containing the path to write the locator output file
+   * @param outputExtension A String containing the extension to use for output files
+   * @param csvFile An optional String containing full path to the csv formatted file, null to
+   *     disable
+   * @return A boolean flag indicating whether there was a result to write
+   */
+  public boolean writeResult(
+      LocationResult result,
+      String inputFile,
+      String outputFile,
+      String outputType,
+      String outputPath,
+      String outputExtension,
+      String csvFile) {
     long resultStartTime = System.currentTimeMillis();
     if (result != null) {
       // create the output file name
@@ -711,14 +853,7 @@ public class LocMain {
 
       // append csv to file
       if (csvFile != null) {
-        try {
-          FileWriter fileWriter = new FileWriter(csvFile, true); // Set true for append mode
-          PrintWriter printWriter = new PrintWriter(fileWriter);
-          printWriter.println(result.toCSV());
-          printWriter.close();
-        } catch (Exception e) {
-          LOGGER.fatal(e.toString());
-        }
+        appendCSV(csvFile, result.toCSV());
       }
 
       LOGGER.info(LocUtil.endTimer("Time to generate result", resultStartTime));
@@ -734,7 +869,26 @@ public class LocMain {
   }
 
   /**
-   * This function locates all events in a given input directory
+   * This function appends a line to the csv file. Batch workers share the csv file, so appends are
+   * serialized to keep each line whole.
+   *
+   * @param csvFile A String containing full path to the csv formatted file
+   * @param csvLine A String containing the csv line to append
+   */
+  private static synchronized void appendCSV(String csvFile, String csvLine) {
+    try {
+      FileWriter fileWriter = new FileWriter(csvFile, true); // Set true for append mode
+      PrintWriter printWriter = new PrintWriter(fileWriter);
+      printWriter.println(csvLine);
+      printWriter.close();
+    } catch (Exception e) {
+      LOGGER.fatal(e.toString());
+    }
+  }
+
+  /**
+   * This function locates all events in a given input directory. The locator models are loaded
+   * once for each worker thread, and the input files are shared out among the workers.
    *
    * @param modelPath A String containing the path to the required model files
    * @param inputPath A String containing the full path to directory containing input files
@@ -749,6 +903,7 @@ public class LocMain {
    *     disable
    * @param locationConfig An optional JSONObject containing the locator config for detections, null
    *     to disable
+   * @param numThreads An int containing the number of worker threads (and locator engines) to use
    * @return A boolean flag indicating whether the locatons were successful
    */
   public boolean locateManyEvents(
@@ -761,8 +916,143 @@ public class LocMain {
       String inputType,
       String outputType,
       String csvFile,
-      JSONObject locationConfig) {
+      JSONObject locationConfig,
+      int numThreads) {
+
+    // setup the directories
+    if (!setupDirectories(inputPath, outputPath, archivePath)) {
+      return false;
+    }
+    File inputDir = new File(inputPath);
 
+    // load the locator engines once for the whole batch
+    LocEnginePool engines;
+    try {
+      engines = new LocEnginePool(modelPath, modelPath, numThreads);
+    } catch (LocationException e) {
+      LOGGER.fatal("Exception: " + e.toString());
+      return false;
+    }
+
+    // for all the files currently in the input directory
+    ExecutorService workers = Executors.newFixedThreadPool(engines.getPoolSize());
+    for (File inputFile : inputDir.listFiles()) {
+      // if the file has the right extension
+      if (inputFile.getName().endsWith((inputExtension))) {
+        workers.execute(
+            () ->
+                locateBatchFile(
+                    engines,
+                    inputFile,
+                    inputExtension,
+                    outputPath,
+                    outputExtension,
+                    archivePath,
+                    inputType,
+                    outputType,
+                    csvFile,
+                    locationConfig));
+      }
+    }
+
+    // wait for the workers to finish
+    workers.shutdown();
+    try {
+      while (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+        LOGGER.debug("Waiting for batch workers to finish.");
+      }
+    } catch (InterruptedException e) {
+      LOGGER.fatal("Interrupted waiting for batch workers.");
+      workers.shutdownNow();
+      Thread.currentThread().interrupt();
+      return false;
+    }
+    //    LocUtil.record(null);
+
+    // done
+    return true;
+  }
+
+  /**
+   * This function watches a given input directory, locating each event as its input file arrives,
+   * until the locator is stopped. The locator models are loaded once for each worker thread.
+   *
+   * @param modelPath A String containing the path to the required model files
+   * @param inputPath A String containing the full path to directory to watch for input files
+   * @param inputExtension A String containing the extension of locator input files
+   * @param outputPath A String containing the path to write the results
+   * @param outputExtension A String containing the extension to use for output files
+   * @param archivePath An optional String containing the full path to directory to archive input
+   *     files, null to disable, if disabled, input files are deleted
+   * @param inputType A String containing the type of the locator input file
+   * @param outputType A String containing the type of the locator output file
+   * @param csvFile An optional String containing full path to the csv formatted file, null to
+   *     disable
+   * @param locationConfig An optional JSONObject containing the locator config for detections, null
+   *     to disable
+   * @param numThreads An int containing the number of locate worker threads (and locator engines)
+   *     to use
+   * @param settleMillis A long containing the time in milliseconds between the looks at an input
+   *     file written in place that must find it unchanged before it is parsed
+   * @return A boolean flag, false if the watch could not be started or failed
+   */
+  public boolean watchForEvents(
+      String modelPath,
+      String inputPath,
+      String inputExtension,
+      String outputPath,
+      String outputExtension,
+      String archivePath,
+      String inputType,
+      String outputType,
+      String csvFile,
+      JSONObject locationConfig,
+      int numThreads,
+      long settleMillis) {
+
+    // setup the directories
+    if (!setupDirectories(inputPath, outputPath, archivePath)) {
+      return false;
+    }
+
+    // load the locator engines once for as long as we watch
+    LocEnginePool engines;
+    try {
+      engines = new LocEnginePool(modelPath, modelPath, numThreads);
+    } catch (LocationException e) {
+      LOGGER.fatal("Exception: " + e.toString());
+      return false;
+    }
+
+    LocWatcher watcher =
+        new LocWatcher(
+            this,
+            engines,
+            inputPath,
+            inputExtension,
+            outputPath,
+            outputExtension,
+            archivePath,
+            inputType,
+            outputType,
+            csvFile,
+            locationConfig,
+            settleMillis);
+
+    return watcher.watch();
+  }
+
+  /**
+   * This function creates the output and archive directories if they don't already exist, and
+   * checks that the input directory exists.
+   *
+   * @param inputPath A String containing the full path to directory containing input files
+   * @param outputPath A String containing the path to write the results
+   * @param archivePath An optional String containing the full path to directory to archive input
+   *     files, null to disable
+   * @return A boolean flag, false if the directories are not valid
+   */
+  private boolean setupDirectories(String inputPath, String outputPath, String archivePath) {
     // create the output and archive paths if they don't
     // already exist
     if (outputPath != null) {
@@ -782,49 +1072,99 @@ public class LocMain {
       }
     }
 
-    // setup the directories
     File inputDir = new File(inputPath);
     if (!inputDir.exists()) {
       LOGGER.fatal("Input Path is not valid, exitting.");
       return false;
     }
 
-    // for all the files currently in the input directory
-    for (File inputFile : inputDir.listFiles()) {
-      // if the file has the right extension
-      if (inputFile.getName().endsWith((inputExtension))) {
-        // read the file
-        String filePath = inputFile.getAbsolutePath();
+    return true;
+  }
 
-        if (locateSingleEvent(
-            modelPath,
-            filePath,
-            inputType,
-            null,
-            outputType,
-            outputPath,
-            outputExtension,
-            csvFile,
-            locationConfig)) {
-          // done with the file
-          if (archivePath == null) {
-            // not archiving, just delete it
-            inputFile.delete();
-          } else {
-            // Move file to archive directory
-            inputFile.renameTo(
-                new File(
-                    archivePath + File.separatorChar + getFileName(filePath) + inputExtension));
-          }
-        } else {
-          // we had an error, rename file as errored so we don't retry the same file
-          inputFile.renameTo(new File(filePath + ".error"));
-        }
-      }
+  /**
+   * This function locates one batch input file with a pooled locator engine, then archives or
+   * deletes the input file on success, or renames it as errored on failure.
+   *
+   * @param engines A LocEnginePool containing the locator engines shared by the batch workers
+   * @param inputFile A File containing the locator input file
+   * @param inputExtension A String containing the extension of locator input files
+   * @param outputPath A String containing the path to write the results
+   * @param outputExtension A String containing the extension to use for output files
+   * @param archivePath An optional String containing the full path to directory to archive input
+   *     files, null to disable, if disabled, input files are deleted
+   * @param inputType A String containing the type of the locator input file
+   * @param outputType A String containing the type of the locator output file
+   * @param csvFile An optional String containing full path to the csv formatted file, null to
+   *     disable
+   * @param locationConfig An optional JSONObject containing the locator config for detections, null
+   *     to disable
+   */
+  private void locateBatchFile(
+      LocEnginePool engines,
+      File inputFile,
+      String inputExtension,
+      String outputPath,
+      String outputExtension,
+      String archivePath,
+      String inputType,
+      String outputType,
+      String csvFile,
+      JSONObject locationConfig) {
+    // read the file
+    String filePath = inputFile.getAbsolutePath();
+    boolean located = false;
+
+    LocService service = null;
+    try {
+      service = engines.borrow();
+      located =
+          locateSingleEvent(
+              service,
+              filePath,
+              inputType,
+              null,
+              outputType,
+              outputPath,
+              outputExtension,
+              csvFile,
+              locationConfig);
+    } catch (Exception e) {
+      LOGGER.fatal("Exception locating " + filePath + ": " + e.toString());
+    } finally {
+      engines.release(service);
     }
-    //    LocUtil.record(null);
 
-    // done
-    return true;
+    finishInputFile(inputFile, inputExtension, archivePath, located);
+  }
+
+  /**
+   * This function disposes of an input file once it has been processed. On success the input file
+   * is archived, or deleted if not archiving. On failure it is renamed as errored, so that the same
+   * file is not retried.
+   *
+   * @param inputFile A File containing the locator input file
+   * @param inputExtension A String containing the extension of locator input files
+   * @param archivePath An optional String containing the full path to directory to archive input
+   *     files, null to disable, if disabled, input files are deleted
+   * @param located A boolean flag indicating whether the location was successful
+   */
+  public void finishInputFile(
+      File inputFile, String inputExtension, String archivePath, boolean located) {
+    String filePath = inputFile.getAbsolutePath();
+
+    if (located) {
+      // done with the file
+      if (archivePath == null) {
+        // not archiving, just delete it
+        inputFile.delete();
+      } else {
+        // Move file to archive directory
+        inputFile.renameTo(
+            new File(archivePath + File.separatorChar + getFileName(filePath) + inputExtension));
+      }
+    } else {
+      // we had an error, rename file as errored so we don't retry the same file
+      inputFile.renameTo(new File(filePath + ".error"));
+    }
   }
 }
@@ -10,6 +10,7 @@ import java.util.ArrayList;
 import java.util.Date;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONObject;
 
 /**
  * The LocOutput class stores the outputs from an event relocation. This class is designed to
@@ -22,6 +23,13 @@ public class LocOutput extends LocationResult {
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(LocOutput.class.getName());
 
+  /**
+   * A String containing the slab model resolution actually used, set only when the requested
+   * resolution was still loading and the location was done with the default resolution instead,
+   * null otherwise.
+   */
+  public String SlabResolution = null;
+
   /** The LocOutput default constructor. */
   public LocOutput() {
     super();
@@ -402,6 +410,24 @@ public class LocOutput extends LocationResult {
         pick.Importance);
   }
 
+  /**
+   * This function converts the location output to JSON, adding the slab model resolution actually
+   * used if it differs from the one requested.
+   *
+   * @return A JSONObject containing the location output
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public JSONObject toJSON() {
+    JSONObject json = super.toJSON();
+
+    if (SlabResolution != null && json != null) {
+      json.put("SlabResolution", SlabResolution);
+    }
+
+    return json;
+  }
+
   /**
    * This function generates a json formatted output file.
    *
@@ -17,9 +17,21 @@ public class LocService implements LocationService {
   /** Class to manage the travel-time external files. */
   private TravelTimeSession ttLocal = null;
 
+  /** Class to reuse the travel-time sessions set up for each source depth. */
+  private TravelTimeSessionCache ttSessions = null;
+
   /** Class to manage the locator external files. */
   private LocSessionLocal locLocal = null;
 
+  /**
+   * An Event object containing the event this engine located last, whose rank-sum estimators and
+   * decorrelator the next event takes over, null before the first.
+   */
+  private Event lastEvent = null;
+
+  /** A String containing the earth model path for the locator, null to use default. */
+  private String modelPath = null;
+
   /** A String containing the serialized path for the locator, null to use default. */
   private String serializedPath = null;
 
@@ -27,7 +39,8 @@ public class LocService implements LocationService {
   private static final Logger LOGGER = LogManager.getLogger(LocService.class.getName());
 
   /**
-   * The LocService constructor. Sets up the travel-times and locator external files.
+   * The LocService constructor. Sets up the travel-times and locator external files with the
+   * default tuning.
    *
    * @param modelPath A String containing the earth model path to use
    * @param serializedPath A String containing the serialization path to use
@@ -35,10 +48,62 @@ public class LocService implements LocationService {
    *     severe errors.
    */
   public LocService(String modelPath, String serializedPath) throws LocationException {
+    this(modelPath, serializedPath, new LocTuning());
+  }
+
+  /**
+   * The LocService constructor. Sets up the travel-times and locator external files, including
+   * the extra travel-time sessions the tuning asks for. Each extra session (for another source
+   * depth or another phase identification thread) reads and holds its own copy of the travel-time
+   * tables, costing as much memory and start up time as the main one, so an engine holds
+   * getNumTravelTimeSessions() copies. The number of each is capped at LocUtil.MAXTTSESSIONS and
+   * LocUtil.MAXPHASEIDTHREADS.
+   *
+   * @param modelPath A String containing the earth model path to use
+   * @param serializedPath A String containing the serialization path to use
+   * @param tuning A LocTuning object containing the settings for how this engine locates
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException upon certain
+   *     severe errors.
+   */
+  public LocService(String modelPath, String serializedPath, LocTuning tuning)
+      throws LocationException {
+    this.modelPath = modelPath;
+    this.serializedPath = serializedPath;
+    tuning = new LocTuning(tuning);
+
     long ttStartTime = System.currentTimeMillis();
     // init the tt models
     try {
       ttLocal = new TravelTimeSession(true, true, true, modelPath, serializedPath);
+      ttSessions = new TravelTimeSessionCache(ttLocal);
+      ttSessions.setDepthTolerance(tuning.getTravelTimeDepthTolerance());
+
+      // Set up the extra sessions for other depths and for the phase identification threads.  Each
+      // holds its own copy of the travel-time tables, so their number is capped.
+      int numSessions = Math.min(tuning.getTravelTimeSessions(), LocUtil.MAXTTSESSIONS);
+      int numThreads = Math.min(tuning.getPhaseIDThreads(), LocUtil.MAXPHASEIDTHREADS);
+      if (numSessions < tuning.getTravelTimeSessions()
+          || numThreads < tuning.getPhaseIDThreads()) {
+        LOGGER.warn(
+            "Limiting each engine to "
+                + numSessions
+                + " travel-time session(s) and "
+                + numThreads
+                + " phase identification thread(s).");
+      }
+
+      TravelTimeSession[] sessions = new TravelTimeSession[numSessions];
+      sessions[0] = ttLocal;
+      for (int i = 1; i < sessions.length; i++) {
+        sessions[i] = new TravelTimeSession(true, true, true, modelPath, serializedPath);
+      }
+      ttSessions.setSessions(sessions);
+
+      TravelTimeSession[] workers = new TravelTimeSession[numThreads - 1];
+      for (int i = 0; i < workers.length; i++) {
+        workers[i] = new TravelTimeSession(true, true, true, modelPath, serializedPath);
+      }
+      ttSessions.setWorkers(workers);
     } catch (IOException | ClassNotFoundException e) {
       LOGGER.fatal("Unable to read travel-time auxiliary data.");
       e.printStackTrace();
@@ -50,7 +115,7 @@ public class LocService implements LocationService {
     // Read the Locator auxiliary files.
     long auxStartTime = System.currentTimeMillis();
     try {
-      locLocal = new LocSessionLocal(modelPath, serializedPath);
+      locLocal = new LocSessionLocal(modelPath, serializedPath, tuning);
     } catch (IOException | ClassNotFoundException e) {
       LOGGER.fatal("Unable to read Locator auxiliary data.");
       e.printStackTrace();
@@ -60,6 +125,27 @@ public class LocService implements LocationService {
     LOGGER.info(LocUtil.endTimer("Time to load aux files", auxStartTime));
   }
 
+  /**
+   * Function to get the number of travel-time sessions this engine holds, each with its own copy of
+   * the travel-time tables.
+   *
+   * @return An int containing the number of travel-time sessions
+   */
+  public int getNumTravelTimeSessions() {
+    return ttSessions.getNumSessions() + ttSessions.getWorkers().length;
+  }
+
+  /**
+   * Function to set what happens when a request asks for a slab model resolution that isn't loaded
+   * yet, overriding the tuning this engine was created with (as during a warm-up).
+   *
+   * @param waitForSlabs A boolean flag, true to wait for the resolution to load, false to locate
+   *     with the default resolution while the requested one loads in the background
+   */
+  public void setWaitForSlabs(boolean waitForSlabs) {
+    locLocal.setWaitForSlabs(waitForSlabs);
+  }
+
   /**
    * Function to get a location using the provided input, implementing the location service
    * interface.
@@ -75,7 +161,7 @@ public class LocService implements LocationService {
       LOGGER.fatal("Null request.");
       throw new LocationException("Null request");
     }
-    LocUtil.startLocationTimer();
+    long locationStartTime = System.currentTimeMillis();
 
     // create locInput from LocationRequest
     LocInput in = new LocInput(request);
@@ -89,7 +175,7 @@ public class LocService implements LocationService {
             + ", Result: "
             + result.LocatorExitCode
             + ", "
-            + LocUtil.endLocationTimer()
+            + LocUtil.endLocationTimer(locationStartTime)
             + ", numData: "
             + request.InputData.size());
 
@@ -130,7 +216,8 @@ public class LocService implements LocationService {
     // setup the event
     long setupStartTime = System.currentTimeMillis();
 
-    Event event = new Event(in.EarthModel);
+    Event event = new Event(in.EarthModel, lastEvent);
+    lastEvent = event;
     event.input(in);
 
     LOGGER.info(LocUtil.endTimer("Time to setup event for location", setupStartTime));
@@ -152,14 +239,17 @@ public class LocService implements LocationService {
 
     // make sure we have a slab resolution
     if (in.SlabResolution == null) {
-      in.SlabResolution = "2spd";
+      in.SlabResolution = LocSessionLocal.DEFAULT_SLAB_RES;
     }
 
-    // Get a locator with the required slab model resolution
+    // Get a locator with the required slab model resolution, or the default
+    // resolution if the required one is still loading
     long slabStartTime = System.currentTimeMillis();
     Locate loc = null;
+    String slabRes = null;
     try {
-      loc = locLocal.getLocate(event, ttLocal, in.SlabResolution);
+      slabRes = locLocal.getAvailableSlabRes(in.SlabResolution);
+      loc = locLocal.getLocate(event, ttSessions, slabRes);
     } catch (ClassNotFoundException | IOException e) {
       LOGGER.fatal("Unable to read slab model data.");
       e.printStackTrace();
@@ -182,6 +272,11 @@ public class LocService implements LocationService {
     // get the output
     LocOutput out = event.output();
 
+    // flag a location done with a substitute slab resolution
+    if (!slabRes.equals(in.SlabResolution)) {
+      out.SlabResolution = slabRes;
+    }
+
     LOGGER.info(LocUtil.endTimer("Time to generate output", outputStartTime));
 
     // print output for debugging
@@ -1,8 +1,10 @@
 package gov.usgs.locator;
 
 import gov.usgs.locaux.AuxLocRef;
+import gov.usgs.locaux.LocAuxFile;
 import gov.usgs.locaux.LocUtil;
 import gov.usgs.locaux.NewZoneStats;
+import gov.usgs.locaux.NumberScanner;
 import gov.usgs.locaux.SlabArea;
 import gov.usgs.locaux.SlabPoint;
 import gov.usgs.locaux.SlabRow;
@@ -11,16 +13,15 @@ import gov.usgs.locaux.TiltedArea;
 import gov.usgs.locaux.ZoneStats;
 import gov.usgs.traveltime.FileChanged;
 import gov.usgs.traveltime.TauUtilities;
-import gov.usgs.traveltime.TravelTimeSession;
 import java.io.BufferedInputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.nio.channels.FileLock;
-import java.util.Scanner;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -33,9 +34,6 @@ public class LocSessionLocal {
   /** An array of String objects containing the raw slab model file names. */
   private String[] modelFileNames = {"slabmaster.txt", "slabtilted.txt"};
 
-  /** A String object containing the name of the last slab model used */
-  private String lastSlabRes = "";
-
   /** A String object containing the path to the slab models, null to use default. */
   private String modelPath = null;
 
@@ -45,20 +43,51 @@ public class LocSessionLocal {
   /** Default path for model files. */
   public static final String DEFAULT_MODEL_PATH = "./models/";
 
-  /** A Tree map containing the Locate instance storage. */
-  private TreeMap<String, Locate> locByRes;
+  /** A String containing the default slab model resolution, which is always loaded on demand. */
+  public static final String DEFAULT_SLAB_RES = "2spd";
+
+  /**
+   * A LocSlabCache object containing the slab model resolutions loaded, shared by every session
+   * using the same models.
+   */
+  private LocSlabCache slabCache;
+
+  /**
+   * A boolean flag, true if a request for a slab model resolution that isn't loaded should wait
+   * for it to load, false if it should be located with the default resolution while the requested
+   * one loads in the background.
+   */
+  private boolean waitForSlabs = true;
+
+  /** A LocTuning object containing the settings handed to each Locate created. */
+  private LocTuning tuning;
+
+  /**
+   * A Tree map containing the Locate instances, keyed by slab resolution. Each is rebound to the
+   * next event located rather than rebuilt.
+   */
+  private TreeMap<String, Locate> locByRes = new TreeMap<String, Locate>();
+
+  /**
+   * A HashMap containing the Slabs object each Locate in locByRes was built with, keyed by slab
+   * resolution.
+   */
+  private HashMap<String, Slabs> locSlabsByRes = new HashMap<String, Slabs>();
 
   /** An AuxLocRef object containing the invariant external file data. */
   private AuxLocRef auxLoc;
 
-  /** A Locate object containing the last locate instance */
-  private Locate lastLocate;
+  /**
+   * A LocEnvironmentCache object containing the location environment cache shared by every session
+   * using the same models.
+   */
+  private LocEnvironmentCache environmentCache;
 
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(LocSessionLocal.class.getName());
 
   /**
-   * Read in the invariant external Locator files.
+   * Read in the invariant external Locator files, using the default tuning.
    *
    * @param modelPath Path to the Locator model files
    * @param serializedPath A String containing the serialization path to use
@@ -67,6 +96,23 @@ public class LocSessionLocal {
    */
   public LocSessionLocal(String modelPath, String serializedPath)
       throws ClassNotFoundException, IOException {
+    this(modelPath, serializedPath, new LocTuning());
+  }
+
+  /**
+   * Read in the invariant external Locator files.
+   *
+   * @param modelPath Path to the Locator model files
+   * @param serializedPath A String containing the serialization path to use
+   * @param tuning A LocTuning object containing the settings for the Locates created
+   * @throws ClassNotFoundException If the serialized file objects don't exist
+   * @throws IOException If the serialized I/O fails in any way
+   */
+  public LocSessionLocal(String modelPath, String serializedPath, LocTuning tuning)
+      throws ClassNotFoundException, IOException {
+    this.tuning = new LocTuning(tuning);
+    waitForSlabs = tuning.getWaitForSlabs();
+
     if (modelPath == null) {
       this.modelPath = DEFAULT_MODEL_PATH;
     } else {
@@ -81,46 +127,98 @@ public class LocSessionLocal {
 
     // Read in the invariant external file data.
     auxLoc = new AuxLocRef(modelPath, serializedPath);
+    environmentCache =
+        LocEnvironmentCache.getShared(this.modelPath, tuning.getEnvironmentCellSize());
+    slabCache = LocSlabCache.getShared(this.modelPath);
   }
 
   /**
-   * Get a Locate instantiation with the required slab model resolution.
+   * Function to set what happens when a slab model resolution that isn't loaded yet is requested.
+   *
+   * @param waitForSlabs A boolean flag, true (the default) to wait for the resolution to load,
+   *     false to use the default resolution while the requested one loads in the background
+   */
+  public void setWaitForSlabs(boolean waitForSlabs) {
+    this.waitForSlabs = waitForSlabs;
+  }
+
+  /**
+   * Function to get whether requests wait for slab model resolutions that aren't loaded yet.
+   *
+   * @return A boolean flag, true if requests wait, false if they use the default resolution
+   */
+  public boolean getWaitForSlabs() {
+    return waitForSlabs;
+  }
+
+  /**
+   * This function decides which slab model resolution to locate with. The default resolution, and
+   * any resolution already loaded by any session using the same models, are used as is. Otherwise
+   * the requested resolution is loaded in the background (if it isn't already loading), and either
+   * waited for, or, if this session doesn't wait for slabs, the default resolution is used until it
+   * is ready.
+   *
+   * @param slabRes String specifying the requested slab model resolution in samples per degree
+   * @return A String containing the slab model resolution to pass to getLocate
+   * @throws IOException If the requested resolution failed to load
+   */
+  public String getAvailableSlabRes(String slabRes) throws IOException {
+    if (DEFAULT_SLAB_RES.equals(slabRes) || slabCache.get(slabRes) != null) {
+      return slabRes;
+    }
+
+    CompletableFuture<Slabs> pending = slabCache.load(slabRes, this::getSlabRes, true);
+    if (!waitForSlabs && !pending.isDone()) {
+      LOGGER.info("Slab resolution " + slabRes + " is still loading, using " + DEFAULT_SLAB_RES);
+      return DEFAULT_SLAB_RES;
+    }
+
+    // Collect the finished (or awaited) load.
+    LocSlabCache.waitFor(slabRes, pending);
+    return slabRes;
+  }
+
+  /**
+   * Get a Locate instantiation with the required slab model resolution, set up to locate the
+   * given event. The Locate returned is reused for later events, so it must be finished with before
+   * the next call.
    *
    * @param event Event object
-   * @param ttLocal Travel-time manager object
+   * @param ttSessions Travel-time manager cache object
    * @param slabRes String specifying the slab model resolution in samples per degree
    * @return Locate object
    * @throws ClassNotFoundException If the serialized slab master object doesn't exist
    * @throws IOException If the serialized I/O fails in any way
    */
-  public Locate getLocate(Event event, TravelTimeSession ttLocal, String slabRes)
+  public Locate getLocate(Event event, TravelTimeSessionCache ttSessions, String slabRes)
       throws ClassNotFoundException, IOException {
-    // If the slab resolution is the same as last time, we're done.
-    if (!slabRes.contentEquals(lastSlabRes)) {
-      // Otherwise, fetch the proper Locate instantiation.
-      lastSlabRes = slabRes;
-
-      // If necessary, initialize the Locate instance storage.
-      if (locByRes == null) {
-        locByRes = new TreeMap<String, Locate>();
-      }
-
-      // Fetch the saved Locate instance.
-      Locate locate = locByRes.get(slabRes);
-
-      // If there isn't one, get the required slab resolution, create a new
-      // Locate object with that resolution, and save it for next time.
-      if (locate == null) {
-        Slabs slabStats = getSlabRes(slabRes);
-
-        locate = new Locate(event, ttLocal, auxLoc, slabStats);
-        locByRes.put(slabRes, locate);
+    // Fetch the shared slab model.  If there isn't one, get the required slab
+    // resolution and share it for next time.
+    Slabs slabStats = slabCache.waitFor(slabRes, this::getSlabRes);
+
+    // Forget the Locates built with slab models the shared cache has dropped.
+    Iterator<Map.Entry<String, Slabs>> resolutions = locSlabsByRes.entrySet().iterator();
+    while (resolutions.hasNext()) {
+      Map.Entry<String, Slabs> entry = resolutions.next();
+      if (!slabCache.holds(entry.getKey(), entry.getValue())) {
+        locByRes.remove(entry.getKey());
+        resolutions.remove();
       }
+    }
 
-      lastLocate = locate;
+    // Reuse the Locate for this slab resolution if we have one, rebinding it to
+    // the new event.  Otherwise, build one and save it for next time.
+    Locate locate = locByRes.get(slabRes);
+    if (locate == null || locSlabsByRes.get(slabRes) != slabStats) {
+      locate = new Locate(event, ttSessions, auxLoc, slabStats, tuning);
+      locate.setEnvironmentCache(environmentCache, slabRes);
+      locByRes.put(slabRes, locate);
+      locSlabsByRes.put(slabRes, slabStats);
+    } else {
+      locate.reset(event);
     }
 
-    return lastLocate;
+    return locate;
   }
 
   /**
@@ -131,18 +229,12 @@ public class LocSessionLocal {
    * @param slabRes String specifying the slab model resolution in samples per degree
    * @return A slabs object containing all the slab model data for the requested resolution
    * @throws IOException If the serialized I/O fails in any way
-   * @throws ClassNotFoundException If the serialized slab master object doesn't exist
+   * @throws ClassNotFoundException Retained for compatibility, no longer thrown
    */
   public Slabs getSlabRes(String slabRes) throws IOException, ClassNotFoundException {
-    Slabs slabs;
     String serializedFileName;
     String[] absNames;
     BufferedInputStream inSlabs;
-    FileInputStream serIn;
-    FileOutputStream serOut;
-    ObjectInputStream objIn;
-    ObjectOutputStream objOut;
-    FileLock lock;
 
     // Construct path names to the slab files.
     absNames = new String[modelFileNames.length];
@@ -154,71 +246,33 @@ public class LocSessionLocal {
     absNames[0] = absNames[0].substring(0, absNames[0].indexOf(".txt")) + slabRes + ".txt";
     LOGGER.debug("Slab file: " + absNames[0]);
 
-    // If any of the raw input files have changed, regenerate the serialized file.
-    serializedFileName = "slab" + slabRes + ".ser";
-    if (FileChanged.isChanged(serializedPath + serializedFileName, absNames)) {
+    // If any of the raw input files have changed, or the serialized file can't
+    // be used, regenerate the serialized file.
+    serializedFileName = serializedPath + "slab" + slabRes + ".bin";
+    Slabs[] slabs = new Slabs[1];
+    if (FileChanged.isChanged(serializedFileName, absNames)
+        || !LocAuxFile.read(
+            serializedFileName, LocAuxFile.TYPE_SLABS, in -> slabs[0] = Slabs.readBinary(in))) {
 
       // Open and read the master slab geometry model file.
       inSlabs = new BufferedInputStream(new FileInputStream(absNames[0]));
-      slabs = new Slabs();
-      readSlabs(inSlabs, slabs);
+      slabs[0] = new Slabs();
+      readSlabs(inSlabs, slabs[0]);
       inSlabs.close();
 
       // Open and read the tilted slab geometry model file.
       inSlabs = new BufferedInputStream(new FileInputStream(absNames[1]));
-      readTilted(inSlabs, slabs);
+      readTilted(inSlabs, slabs[0]);
       inSlabs.close();
 
       // Write out the serialized file.
       LOGGER.debug("Recreate the serialized file.");
-      serOut = new FileOutputStream(serializedPath + serializedFileName);
-      objOut = new ObjectOutputStream(serOut);
-
-      // Wait for an exclusive lock for writing.
-      lock = serOut.getChannel().lock();
-      LOGGER.debug(
-          "LocSessionLocal write lock: valid = " + lock.isValid() + " shared = " + lock.isShared());
-
-      /*
-       * The auxiliary data can be read and written very quickly, so for persistent
-       * applications such as the travel time or location server, serialization is
-       * not necessary.  However, if the travel times are needed for applications
-       * that start and stop frequently, the serialization should save some set up
-       * time.
-       */
-      objOut.writeObject(slabs);
-
-      if (lock.isValid()) {
-        lock.release();
-      }
-
-      // close files
-      objOut.close();
-      serOut.close();
+      LocAuxFile.write(serializedFileName, LocAuxFile.TYPE_SLABS, slabs[0]::writeBinary);
     } else {
-      // Read in the serialized file.
       LOGGER.debug("Read the serialized file.");
-      serIn = new FileInputStream(serializedPath + serializedFileName);
-      objIn = new ObjectInputStream(serIn);
-
-      // Wait for a shared lock for reading.
-      lock = serIn.getChannel().lock(0, Long.MAX_VALUE, true);
-      LOGGER.debug(
-          "LocSessionLocal read lock: valid = " + lock.isValid() + " shared = " + lock.isShared());
-
-      // load the cratons and zoneStats
-      slabs = (Slabs) objIn.readObject();
-
-      if (lock.isValid()) {
-        lock.release();
-      }
-
-      // close files
-      objIn.close();
-      serIn.close();
     }
 
-    return slabs;
+    return slabs[0];
   }
 
   /**
@@ -232,10 +286,10 @@ public class LocSessionLocal {
     SlabArea area = null;
     SlabRow row;
     SlabPoint point;
-    Scanner scan;
+    NumberScanner scan;
 
     // Set up a scanner for the text file.
-    scan = new Scanner(inSlabs);
+    scan = new NumberScanner(inSlabs);
 
     // Initialize the first row.
     row = new SlabRow();
@@ -324,16 +378,19 @@ public class LocSessionLocal {
    * Read the tilted slab file and append a summary to the end of the master slab areas. Note that
    * the tilted slabs file is huge and very dense. Instead of sorting it out, we read the whole
    * thing in, create a latitude-longitude grid, sort the samples into the grid elements, and
-   * extract the handful of numbers we need.
+   * extract the handful of numbers we need. The areas are independent, so each one is gridded in
+   * the background as soon as its last point has been read, while reading carries on with the next.
    */
   private void readTilted(BufferedInputStream inSlabs, Slabs slabs) {
     double slabInc;
     SlabPoint point, firstPoint, lastPoint;
     TiltedArea area;
-    Scanner scan;
+    NumberScanner scan;
+    ArrayList<CompletableFuture<TiltedArea>> griddedAreas;
 
     // Set up a scanner for the text file.
-    scan = new Scanner(inSlabs);
+    scan = new NumberScanner(inSlabs);
+    griddedAreas = new ArrayList<CompletableFuture<TiltedArea>>();
 
     // Set the slab latitude-longitude grid spacing in degrees.
     slabInc = slabs.getSlabInc();
@@ -362,8 +419,7 @@ public class LocSessionLocal {
         if (Math.abs(point.getLat() - firstPoint.getLat()) > LocUtil.TILTEDAREAINCREMENT
             || Math.abs(point.getLon() - firstPoint.getLon()) > LocUtil.TILTEDAREAINCREMENT) {
           // New area.  Process the data from the last area and start a new one.
-          area.makeGrid();
-          slabs.add(area);
+          griddedAreas.add(makeGridAsync(area));
           area = new TiltedArea(slabInc);
         }
         firstPoint = point;
@@ -374,19 +430,38 @@ public class LocSessionLocal {
     }
 
     // Clean up the last area.
-    area.makeGrid();
-    slabs.add(area);
+    griddedAreas.add(makeGridAsync(area));
+
+    // Add the areas in file order, so the slab model is the same as if they had been done one at
+    // a time.
+    for (CompletableFuture<TiltedArea> griddedArea : griddedAreas) {
+      slabs.add(griddedArea.join());
+    }
 
     // Allow the garbage collector to collect the temporary storage.
     area = null;
   }
 
+  /**
+   * Function to grid a tilted slab area in the background.
+   *
+   * @param area A TiltedArea object containing all the points of the area
+   * @return A CompletableFuture that completes with the area once it has been gridded
+   */
+  private CompletableFuture<TiltedArea> makeGridAsync(TiltedArea area) {
+    return CompletableFuture.supplyAsync(
+        () -> {
+          area.makeGrid();
+          return area;
+        });
+  }
+
   /**
    * Scan an input line.
    *
    * @return Slab depth point
    */
-  private SlabPoint scanLine(Scanner scan) {
+  private SlabPoint scanLine(NumberScanner scan) {
     double lat, lon, lower, center, upper;
 
     // Leave the longitude in the 0-360 degree format because the date
@@ -0,0 +1,273 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import gov.usgs.locaux.Slabs;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The LocSlabCache class keeps the slab model resolutions loaded for one set of models, shared by
+ * every locator engine in the process using those models. Each resolution is loaded only once,
+ * however many engines ask for it, and the resolutions kept are bounded by LocUtil.MAXSLABMEMORY
+ * for the whole process rather than for each engine. The least recently used resolution is dropped
+ * first, except for the default resolution and the one just loaded.
+ *
+ * <p>Engines keep their own Locates for each resolution, so they must check that the Slabs object
+ * their Locate was built with is still the one kept here (see holds) before reusing it. A Locate
+ * built with a dropped resolution keeps it in memory until its engine next locates.
+ */
+public class LocSlabCache {
+  /**
+   * A Map of LocSlabCache objects, keyed by model path, holding the slab models shared by all the
+   * locator engines using each set of models.
+   */
+  private static final Map<String, LocSlabCache> sharedCaches =
+      new ConcurrentHashMap<String, LocSlabCache>();
+
+  /**
+   * An ExecutorService containing the single daemon thread that loads slab model resolutions in
+   * the background for every engine. Loading one resolution at a time means that later loads just
+   * read the binary file written by the first one, rather than each regenerating it.
+   */
+  private static final ExecutorService slabLoader =
+      Executors.newSingleThreadExecutor(
+          task -> {
+            Thread thread = new Thread(task, "locator-slab-loader");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  /**
+   * A LinkedHashMap in access order containing the slab model storage, keyed by slab resolution.
+   * Access is synchronized on this cache.
+   */
+  private final LinkedHashMap<String, Slabs> slabsByRes =
+      new LinkedHashMap<String, Slabs>(8, 0.75f, true);
+
+  /**
+   * A HashMap containing the slab model resolutions being loaded, keyed by slab resolution. Access
+   * is synchronized on this cache.
+   */
+  private final HashMap<String, CompletableFuture<Slabs>> pendingSlabs =
+      new HashMap<String, CompletableFuture<Slabs>>();
+
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(LocSlabCache.class.getName());
+
+  /**
+   * The Loader interface is implemented by the code that reads a slab model resolution when it
+   * isn't in the cache.
+   */
+  public interface Loader {
+    /**
+     * This function reads a slab model resolution.
+     *
+     * @param slabRes A String containing the slab model resolution in samples per degree
+     * @return A Slabs object containing the slab model
+     * @throws IOException If the slab model files can't be read
+     * @throws ClassNotFoundException If the serialized slab model can't be read
+     */
+    Slabs load(String slabRes) throws IOException, ClassNotFoundException;
+  }
+
+  /** The LocSlabCache constructor, private so that caches are only created by getShared. */
+  private LocSlabCache() {}
+
+  /**
+   * Function to get the slab model cache shared by all the locator engines using the same models,
+   * creating it if necessary.
+   *
+   * @param modelPath A String containing the path to the locator models
+   * @return A LocSlabCache object containing the shared cache
+   */
+  public static LocSlabCache getShared(String modelPath) {
+    return sharedCaches.computeIfAbsent(modelPath, key -> new LocSlabCache());
+  }
+
+  /**
+   * Function to get a slab model resolution if it is loaded, marking it as recently used.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @return A Slabs object containing the slab model, null if it isn't loaded
+   */
+  public synchronized Slabs get(String slabRes) {
+    return slabsByRes.get(slabRes);
+  }
+
+  /**
+   * Function to check whether a slab model is still the one kept for its resolution, without
+   * marking it as recently used.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @param slabs A Slabs object containing the slab model to check
+   * @return A boolean flag, true if slabs is the slab model kept for slabRes
+   */
+  public synchronized boolean holds(String slabRes, Slabs slabs) {
+    for (Map.Entry<String, Slabs> entry : slabsByRes.entrySet()) {
+      if (entry.getKey().equals(slabRes)) {
+        return entry.getValue() == slabs;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * This function starts loading a slab model resolution if it isn't loaded or already loading.
+   * The finished load is added to the cache (dropping other resolutions if need be) before the
+   * CompletableFuture returned completes.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @param loader A Loader object used to read the resolution if it isn't already loading
+   * @param inBackground A boolean flag, true to load on the background loader thread, false to
+   *     load on this thread (returning once it's done)
+   * @return A CompletableFuture that completes with the slab model
+   */
+  public CompletableFuture<Slabs> load(String slabRes, Loader loader, boolean inBackground) {
+    CompletableFuture<Slabs> pending;
+    synchronized (this) {
+      Slabs slabs = slabsByRes.get(slabRes);
+      if (slabs != null) {
+        return CompletableFuture.completedFuture(slabs);
+      }
+
+      pending = pendingSlabs.get(slabRes);
+      if (pending != null) {
+        return pending;
+      }
+
+      pending = new CompletableFuture<Slabs>();
+      pendingSlabs.put(slabRes, pending);
+    }
+
+    CompletableFuture<Slabs> result = pending;
+    if (inBackground) {
+      LOGGER.info("Loading slab resolution " + slabRes + " in the background.");
+      slabLoader.execute(() -> complete(slabRes, loader, result));
+    } else {
+      complete(slabRes, loader, result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Function to wait for a slab model resolution to be loaded, loading it on this thread if it
+   * isn't loaded or already loading.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @param loader A Loader object used to read the resolution if it isn't already loading
+   * @return A Slabs object containing the slab model
+   * @throws IOException If the resolution failed to load
+   */
+  public Slabs waitFor(String slabRes, Loader loader) throws IOException {
+    return waitFor(slabRes, load(slabRes, loader, false));
+  }
+
+  /**
+   * Function to wait for a slab model resolution load to finish.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @param pending A CompletableFuture containing the load, as returned by load
+   * @return A Slabs object containing the slab model
+   * @throws IOException If the resolution failed to load
+   */
+  public static Slabs waitFor(String slabRes, CompletableFuture<Slabs> pending)
+      throws IOException {
+    try {
+      return pending.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted loading slab resolution " + slabRes);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UncheckedIOException) {
+        throw ((UncheckedIOException) e.getCause()).getCause();
+      }
+      throw new IOException("Unable to load slab resolution " + slabRes, e.getCause());
+    }
+  }
+
+  /**
+   * Function to load a slab model resolution, add it to the cache, and complete its pending load.
+   * A failed load is forgotten, so that the next request tries again.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @param loader A Loader object used to read the resolution
+   * @param pending A CompletableFuture containing the pending load to complete
+   */
+  private void complete(String slabRes, Loader loader, CompletableFuture<Slabs> pending) {
+    Slabs slabs;
+    try {
+      slabs = loader.load(slabRes);
+    } catch (IOException e) {
+      fail(slabRes, pending, new UncheckedIOException(e));
+      return;
+    } catch (ClassNotFoundException e) {
+      fail(slabRes, pending, new UncheckedIOException(new IOException(e)));
+      return;
+    } catch (RuntimeException e) {
+      fail(slabRes, pending, e);
+      return;
+    }
+
+    synchronized (this) {
+      pendingSlabs.remove(slabRes);
+      add(slabRes, slabs);
+    }
+    pending.complete(slabs);
+  }
+
+  /**
+   * Function to forget a failed slab model resolution load and complete it exceptionally.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @param pending A CompletableFuture containing the pending load to complete
+   * @param cause A RuntimeException containing the reason the load failed
+   */
+  private void fail(String slabRes, CompletableFuture<Slabs> pending, RuntimeException cause) {
+    synchronized (this) {
+      pendingSlabs.remove(slabRes);
+    }
+    pending.completeExceptionally(cause);
+  }
+
+  /**
+   * Function to add a slab model resolution to the slab model storage, dropping the least recently
+   * used non-default resolutions while they take too much memory. The caller must hold the lock on
+   * this cache.
+   *
+   * @param slabRes String specifying the slab model resolution in samples per degree
+   * @param slabStats A Slabs object containing the slab model
+   */
+  private void add(String slabRes, Slabs slabStats) {
+    slabsByRes.put(slabRes, slabStats);
+
+    long memorySize = 0;
+    for (Slabs slabs : slabsByRes.values()) {
+      memorySize += slabs.getMemorySize();
+    }
+
+    Iterator<Map.Entry<String, Slabs>> resolutions = slabsByRes.entrySet().iterator();
+    while (memorySize > LocUtil.MAXSLABMEMORY && resolutions.hasNext()) {
+      Map.Entry<String, Slabs> oldEntry = resolutions.next();
+      String oldRes = oldEntry.getKey();
+
+      if (!oldRes.equals(LocSessionLocal.DEFAULT_SLAB_RES) && !oldRes.equals(slabRes)) {
+        LOGGER.info("Dropping slab resolution " + oldRes);
+        memorySize -= oldEntry.getValue().getMemorySize();
+        resolutions.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,258 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+
+/**
+ * The LocTuning class holds the settings that change how a locator engine goes about a location,
+ * but not what it is locating: how many trial steps are evaluated at once, how many threads and
+ * travel-time sessions are used, and how much the hypocenter may change before work already done is
+ * redone or looked up again. The defaults reproduce the original serial locator exactly.
+ *
+ * <p>The settings are read once, when a LocService is created, and handed down to the parts of
+ * the engine that use them. Changing a LocTuning afterwards doesn't change engines already created
+ * from it.
+ */
+public class LocTuning {
+  /**
+   * A boolean flag, true if a request for a slab model resolution that isn't loaded should wait for
+   * it to load, false if it should be located with the default resolution while the requested one
+   * loads in the background.
+   */
+  private boolean waitForSlabs = true;
+
+  /** An int containing the number of trial step lengths each line search evaluates at once. */
+  private int lineSearchCandidates = LocUtil.LINESEARCHCANDIDATES;
+
+  /** An int containing the number of threads used to compute station travel times. */
+  private int phaseIDThreads = LocUtil.PHASEIDTHREADS;
+
+  /** An int containing the number of travel-time sessions kept set up for different depths. */
+  private int travelTimeSessions = LocUtil.TTSESSIONS;
+
+  /** A double containing the source depth tolerance in kilometers for travel-time sessions. */
+  private double travelTimeDepthTolerance = LocUtil.TTDEPTHTOLERANCE;
+
+  /** A double containing how far in kilometers the hypocenter may move before reidentifying. */
+  private double phaseIDMoveTolerance = LocUtil.PHASEIDMOVETOLERANCE;
+
+  /** A double containing how far in seconds the pick travel times may move before reidentifying. */
+  private double phaseIDTimeTolerance = LocUtil.PHASEIDTIMETOLERANCE;
+
+  /** A double containing the size in degrees of the location environment cache cells. */
+  private double environmentCellSize = LocUtil.ENVIRONMENTCELLSIZE;
+
+  /** A boolean flag, true if the decorrelation finds only the eigenvectors it keeps. */
+  private boolean partialEigen = LocUtil.PARTIALEIGEN;
+
+  /** The LocTuning default constructor, which sets up the default settings. */
+  public LocTuning() {}
+
+  /**
+   * The LocTuning copy constructor.
+   *
+   * @param tuning A LocTuning object containing the settings to copy
+   */
+  public LocTuning(LocTuning tuning) {
+    waitForSlabs = tuning.waitForSlabs;
+    lineSearchCandidates = tuning.lineSearchCandidates;
+    phaseIDThreads = tuning.phaseIDThreads;
+    travelTimeSessions = tuning.travelTimeSessions;
+    travelTimeDepthTolerance = tuning.travelTimeDepthTolerance;
+    phaseIDMoveTolerance = tuning.phaseIDMoveTolerance;
+    phaseIDTimeTolerance = tuning.phaseIDTimeTolerance;
+    environmentCellSize = tuning.environmentCellSize;
+    partialEigen = tuning.partialEigen;
+  }
+
+  /**
+   * Function to get whether requests wait for slab model resolutions that aren't loaded yet.
+   *
+   * @return A boolean flag, true (the default) if requests wait for the resolution to load, false
+   *     if they use the default resolution while the requested one loads in the background
+   */
+  public boolean getWaitForSlabs() {
+    return waitForSlabs;
+  }
+
+  /**
+   * Function to set whether requests wait for slab model resolutions that aren't loaded yet.
+   *
+   * @param waitForSlabs A boolean flag, true to wait for the resolution to load, false to use the
+   *     default resolution while the requested one loads in the background
+   */
+  public void setWaitForSlabs(boolean waitForSlabs) {
+    this.waitForSlabs = waitForSlabs;
+  }
+
+  /**
+   * Function to get the number of trial step lengths each linear step search evaluates at once.
+   *
+   * @return An int containing the number of trial step lengths, one (the default) to evaluate them
+   *     one at a time
+   */
+  public int getLineSearchCandidates() {
+    return lineSearchCandidates;
+  }
+
+  /**
+   * Function to set the number of trial step lengths each linear step search evaluates at once.
+   * More than one evaluates the trial steps in parallel, which can shorten the location of large
+   * events on multi-core hosts without changing the result.
+   *
+   * @param lineSearchCandidates An int containing the number of trial step lengths, at least one
+   */
+  public void setLineSearchCandidates(int lineSearchCandidates) {
+    this.lineSearchCandidates = Math.max(lineSearchCandidates, 1);
+  }
+
+  /**
+   * Function to get the number of threads used to compute the station travel times during phase
+   * identification.
+   *
+   * @return An int containing the number of threads, one (the default) to compute them serially
+   */
+  public int getPhaseIDThreads() {
+    return phaseIDThreads;
+  }
+
+  /**
+   * Function to set the number of threads used to compute the station travel times during phase
+   * identification. Each thread past the first gets its own travel-time session, with its own copy
+   * of the travel-time tables, so engines use at most LocUtil.MAXPHASEIDTHREADS threads.
+   *
+   * @param phaseIDThreads An int containing the number of threads, at least one
+   */
+  public void setPhaseIDThreads(int phaseIDThreads) {
+    this.phaseIDThreads = Math.max(phaseIDThreads, 1);
+  }
+
+  /**
+   * Function to get the number of travel-time sessions kept set up for different source depths.
+   *
+   * @return An int containing the number of sessions, one (the default) to keep only the main one
+   */
+  public int getTravelTimeSessions() {
+    return travelTimeSessions;
+  }
+
+  /**
+   * Function to set the number of travel-time sessions kept set up for different source depths,
+   * which lets the locator move back and forth between depths (as during damping retries) without
+   * correcting the travel-time tables for the depth again. Each session has its own copy of the
+   * travel-time tables, so engines keep at most LocUtil.MAXTTSESSIONS sessions.
+   *
+   * @param travelTimeSessions An int containing the number of sessions, at least one
+   */
+  public void setTravelTimeSessions(int travelTimeSessions) {
+    this.travelTimeSessions = Math.max(travelTimeSessions, 1);
+  }
+
+  /**
+   * Function to get the source depth tolerance used when setting up travel-time sessions.
+   *
+   * @return A double containing the source depth tolerance in kilometers, zero (the default) if
+   *     exact depths are used
+   */
+  public double getTravelTimeDepthTolerance() {
+    return travelTimeDepthTolerance;
+  }
+
+  /**
+   * Function to set the source depth tolerance used when setting up travel-time sessions. Source
+   * depths are rounded to the nearest multiple of the tolerance, at the cost of up to half the
+   * tolerance in depth accuracy for the travel times.
+   *
+   * @param travelTimeDepthTolerance A double containing the source depth tolerance in kilometers,
+   *     zero to use exact depths
+   */
+  public void setTravelTimeDepthTolerance(double travelTimeDepthTolerance) {
+    this.travelTimeDepthTolerance = Math.max(travelTimeDepthTolerance, 0d);
+  }
+
+  /**
+   * Function to get how far the hypocenter may move before a pick group's travel times are
+   * recomputed.
+   *
+   * @return A double containing the distance in kilometers, zero (the default) for not at all
+   */
+  public double getPhaseIDMoveTolerance() {
+    return phaseIDMoveTolerance;
+  }
+
+  /**
+   * Function to set how far the hypocenter may move before a pick group's travel times are
+   * recomputed. Non-zero tolerances skip more of the phase identification work during the final
+   * iterations, but may change the location slightly.
+   *
+   * @param phaseIDMoveTolerance A double containing the distance in kilometers, zero for not at
+   *     all
+   */
+  public void setPhaseIDMoveTolerance(double phaseIDMoveTolerance) {
+    this.phaseIDMoveTolerance = Math.max(phaseIDMoveTolerance, 0d);
+  }
+
+  /**
+   * Function to get how far the pick travel times may move before an otherwise unchanged pick
+   * group is identified again.
+   *
+   * @return A double containing the time in seconds, zero (the default) for not at all
+   */
+  public double getPhaseIDTimeTolerance() {
+    return phaseIDTimeTolerance;
+  }
+
+  /**
+   * Function to set how far the pick travel times may move (as the origin time changes) before an
+   * otherwise unchanged pick group is identified again. Non-zero tolerances skip more of the phase
+   * identification work, but may change the location slightly.
+   *
+   * @param phaseIDTimeTolerance A double containing the time in seconds, zero for not at all
+   */
+  public void setPhaseIDTimeTolerance(double phaseIDTimeTolerance) {
+    this.phaseIDTimeTolerance = Math.max(phaseIDTimeTolerance, 0d);
+  }
+
+  /**
+   * Function to get the size of the cells used to cache the location environment.
+   *
+   * @return A double containing the cell size in degrees, zero (the default) if the environment is
+   *     cached by exact position
+   */
+  public double getEnvironmentCellSize() {
+    return environmentCellSize;
+  }
+
+  /**
+   * Function to set the size of the cells used to cache the location environment (the tectonic
+   * flag and candidate Bayesian depths). The environment of a cell is computed at its center, so
+   * larger cells find more of it in the cache, but move the locations slightly.
+   *
+   * @param environmentCellSize A double containing the cell size in degrees, zero to cache by
+   *     exact position
+   */
+  public void setEnvironmentCellSize(double environmentCellSize) {
+    this.environmentCellSize = Math.max(environmentCellSize, 0d);
+  }
+
+  /**
+   * Function to get whether the decorrelation finds only the eigenvectors it keeps.
+   *
+   * @return A boolean flag, true if only the kept eigenvectors are found, false (the default) for
+   *     Jama's full eigen decomposition
+   */
+  public boolean getPartialEigen() {
+    return partialEigen;
+  }
+
+  /**
+   * Function to set whether the decorrelation finds only the eigenvectors it keeps. This is faster
+   * for large events, but the eigenvectors may differ from Jama's in sign, or within repeated
+   * eigenvalues, which may change the location slightly.
+   *
+   * @param partialEigen A boolean flag, true to find only the kept eigenvectors, false for Jama's
+   *     full eigen decomposition
+   */
+  public void setPartialEigen(boolean partialEigen) {
+    this.partialEigen = partialEigen;
+  }
+}
@@ -0,0 +1,434 @@
+package gov.usgs.locator;
+
+import gov.usgs.processingformats.LocationRequest;
+import gov.usgs.processingformats.LocationResult;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.json.simple.JSONObject;
+
+/**
+ * The LocWatcher class drives the locator in watch mode. It watches the input directory for new
+ * input files and passes each one through a pipeline of parse, locate, and write stages, with a
+ * bounded queue between each stage. The locator models are loaded once, when the watcher starts,
+ * and there is one locate worker (and locator engine) per thread. Input files are archived,
+ * deleted, or renamed as errored exactly as in batch mode.
+ *
+ * <p>Input files are best moved (renamed) into the input directory once they are complete, and
+ * are then parsed straight away, as are the files found when the directory is scanned. A file
+ * written in place (one the watcher has seen modified, or that is still empty) is only parsed once
+ * its size and modification time have stayed the same between two looks the settle time apart.
+ * Hidden files (such as the temporary files some copy tools write before renaming) are ignored.
+ */
+public class LocWatcher {
+  /** An int containing the number of jobs each stage queue can hold per locate worker. */
+  public static final int QUEUE_DEPTH_PER_WORKER = 4;
+
+  /**
+   * A long containing the default time in milliseconds between the looks at an input file written
+   * in place that must find it unchanged before it is parsed.
+   */
+  public static final long DEFAULT_SETTLE_MILLIS = 100L;
+
+  /**
+   * A long containing the longest time in milliseconds to wait for an input file to settle. A file
+   * that is still being modified after this is parsed anyway.
+   */
+  public static final long MAX_SETTLE_MILLIS = 60000L;
+
+  /** A LocMain object used to parse requests, write results, and dispose of input files. */
+  private final LocMain locMain;
+
+  /** A LocEnginePool containing the locator engines shared by the locate workers. */
+  private final LocEnginePool engines;
+
+  /** A File containing the directory to watch for input files. */
+  private final File inputDir;
+
+  /** A String containing the extension of locator input files. */
+  private final String inputExtension;
+
+  /** A String containing the path to write the results. */
+  private final String outputPath;
+
+  /** A String containing the extension to use for output files. */
+  private final String outputExtension;
+
+  /** An optional String containing the full path to directory to archive input files. */
+  private final String archivePath;
+
+  /** A String containing the type of the locator input file. */
+  private final String inputType;
+
+  /** A String containing the type of the locator output file. */
+  private final String outputType;
+
+  /** An optional String containing full path to the csv formatted file, null to disable. */
+  private final String csvFile;
+
+  /** An optional JSONObject containing the locator config for detections, null to disable. */
+  private final JSONObject locationConfig;
+
+  /**
+   * A long containing the time in milliseconds between the looks at an input file written in place
+   * that must find it unchanged before it is parsed.
+   */
+  private final long settleMillis;
+
+  /** A BlockingQueue of Files containing the input files waiting to be parsed. */
+  private final BlockingQueue<File> parseQueue;
+
+  /** A BlockingQueue of WatchJobs containing the parsed requests waiting to be located. */
+  private final BlockingQueue<WatchJob> locateQueue;
+
+  /** A BlockingQueue of WatchJobs containing the locations waiting to be written. */
+  private final BlockingQueue<WatchJob> writeQueue;
+
+  /**
+   * A Set of Strings containing the paths of the input files currently in the pipeline, so that a
+   * file seen more than once by the watcher is only processed once.
+   */
+  private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+  /**
+   * A Set of Strings containing the paths of the input files the watcher has seen modified, which
+   * are being written in place rather than renamed into the input directory.
+   */
+  private final Set<String> modified = ConcurrentHashMap.newKeySet();
+
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(LocWatcher.class.getName());
+
+  /**
+   * The WatchJob class carries one input file, and its request and result, through the pipeline.
+   */
+  private static class WatchJob {
+    /** A File containing the locator input file. */
+    private final File inputFile;
+
+    /** A LocationRequest containing the parsed request. */
+    private final LocationRequest request;
+
+    /** A LocationResult containing the location, or null if the location failed. */
+    private LocationResult result = null;
+
+    /**
+     * The WatchJob constructor.
+     *
+     * @param inputFile A File containing the locator input file
+     * @param request A LocationRequest containing the parsed request
+     */
+    private WatchJob(File inputFile, LocationRequest request) {
+      this.inputFile = inputFile;
+      this.request = request;
+    }
+  }
+
+  /**
+   * The LocWatcher constructor.
+   *
+   * @param locMain A LocMain object used to parse requests, write results, and dispose of files
+   * @param engines A LocEnginePool containing the locator engines, one per locate worker
+   * @param inputPath A String containing the full path to directory to watch for input files
+   * @param inputExtension A String containing the extension of locator input files
+   * @param outputPath A String containing the path to write the results
+   * @param outputExtension A String containing the extension to use for output files
+   * @param archivePath An optional String containing the full path to directory to archive input
+   *     files, null to disable, if disabled, input files are deleted
+   * @param inputType A String containing the type of the locator input file
+   * @param outputType A String containing the type of the locator output file
+   * @param csvFile An optional String containing full path to the csv formatted file, null to
+   *     disable
+   * @param locationConfig An optional JSONObject containing the locator config for detections, null
+   *     to disable
+   * @param settleMillis A long containing the time in milliseconds between the looks at an input
+   *     file written in place that must find it unchanged before it is parsed
+   */
+  public LocWatcher(
+      LocMain locMain,
+      LocEnginePool engines,
+      String inputPath,
+      String inputExtension,
+      String outputPath,
+      String outputExtension,
+      String archivePath,
+      String inputType,
+      String outputType,
+      String csvFile,
+      JSONObject locationConfig,
+      long settleMillis) {
+    this.locMain = locMain;
+    this.engines = engines;
+    this.inputDir = new File(inputPath);
+    this.inputExtension = inputExtension;
+    this.outputPath = outputPath;
+    this.outputExtension = outputExtension;
+    this.archivePath = archivePath;
+    this.inputType = inputType;
+    this.outputType = outputType;
+    this.csvFile = csvFile;
+    this.locationConfig = locationConfig;
+    this.settleMillis = settleMillis;
+
+    int queueDepth = QUEUE_DEPTH_PER_WORKER * engines.getPoolSize();
+    parseQueue = new ArrayBlockingQueue<File>(queueDepth);
+    locateQueue = new ArrayBlockingQueue<WatchJob>(queueDepth);
+    writeQueue = new ArrayBlockingQueue<WatchJob>(queueDepth);
+  }
+
+  /**
+   * This function starts the pipeline stages and then watches the input directory until the
+   * calling thread is interrupted. Any input files already in the directory are processed first.
+   *
+   * @return A boolean flag, false if the input directory could not be watched
+   */
+  public boolean watch() {
+    ArrayList<Thread> stages = new ArrayList<Thread>();
+    stages.add(new Thread(this::parseStage, "locator-parse"));
+    for (int i = 0; i < engines.getPoolSize(); i++) {
+      stages.add(new Thread(this::locateStage, "locator-locate-" + i));
+    }
+    stages.add(new Thread(this::writeStage, "locator-write"));
+
+    try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+      Path inputDirPath = inputDir.toPath();
+      inputDirPath.register(
+          watcher,
+          StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_MODIFY,
+          StandardWatchEventKinds.OVERFLOW);
+
+      for (Thread stage : stages) {
+        stage.setDaemon(true);
+        stage.start();
+      }
+
+      LOGGER.info("Watching " + inputDir.getAbsolutePath() + " for *" + inputExtension + " files");
+
+      // pick up anything that arrived before we started watching
+      scanInputDir();
+
+      while (!Thread.currentThread().isInterrupted()) {
+        WatchKey key = watcher.take();
+
+        // note which files are being written in place before any of them is submitted, so that
+        // a file created and then written is never taken for one renamed into place
+        List<WatchEvent<?>> events = key.pollEvents();
+        for (WatchEvent<?> event : events) {
+          if (event.kind() == StandardWatchEventKinds.ENTRY_MODIFY) {
+            Path fileName = (Path) event.context();
+            modified.add(inputDirPath.resolve(fileName).toFile().getAbsolutePath());
+          }
+        }
+
+        for (WatchEvent<?> event : events) {
+          if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+            // we missed some events, so look at everything
+            LOGGER.warn("Watch events overflowed, rescanning input directory.");
+            scanInputDir();
+          } else {
+            Path fileName = (Path) event.context();
+            submit(inputDirPath.resolve(fileName).toFile());
+          }
+        }
+
+        if (!key.reset()) {
+          LOGGER.fatal("Input directory is no longer accessible, exitting.");
+          return false;
+        }
+      }
+    } catch (IOException e) {
+      LOGGER.fatal("Unable to watch input directory: " + e.toString());
+      return false;
+    } catch (InterruptedException e) {
+      LOGGER.info("Watcher interrupted, exitting.");
+      Thread.currentThread().interrupt();
+    } finally {
+      for (Thread stage : stages) {
+        stage.interrupt();
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * This function submits every input file currently in the input directory.
+   *
+   * @throws InterruptedException Throws an InterruptedException if interrupted while queueing
+   */
+  private void scanInputDir() throws InterruptedException {
+    File[] inputFiles = inputDir.listFiles();
+    if (inputFiles == null) {
+      return;
+    }
+
+    for (File inputFile : inputFiles) {
+      submit(inputFile);
+    }
+  }
+
+  /**
+   * This function queues an input file for parsing, if it has the right extension, isn't hidden,
+   * and isn't already in the pipeline. It blocks if the parse queue is full.
+   *
+   * @param inputFile A File containing the candidate input file
+   * @throws InterruptedException Throws an InterruptedException if interrupted while queueing
+   */
+  private void submit(File inputFile) throws InterruptedException {
+    String fileName = inputFile.getName();
+    if (!fileName.endsWith(inputExtension) || fileName.startsWith(".") || !inputFile.isFile()) {
+      modified.remove(inputFile.getAbsolutePath());
+      return;
+    }
+
+    if (inFlight.add(inputFile.getAbsolutePath())) {
+      parseQueue.put(inputFile);
+    }
+  }
+
+  /** The parse stage, which reads each input file into a location request. */
+  private void parseStage() {
+    try {
+      while (true) {
+        File inputFile = parseQueue.take();
+
+        // it may have been handled already after a duplicate event, or renamed away while settling
+        if (!waitUntilSettled(inputFile)) {
+          modified.remove(inputFile.getAbsolutePath());
+          inFlight.remove(inputFile.getAbsolutePath());
+          continue;
+        }
+
+        LocationRequest request = null;
+        try {
+          request =
+              locMain.parseRequestFile(inputFile.getAbsolutePath(), inputType, locationConfig);
+        } catch (Exception e) {
+          LOGGER.fatal("Exception parsing " + inputFile + ": " + e.toString());
+        }
+
+        if (request == null) {
+          finish(inputFile, false);
+        } else {
+          locateQueue.put(new WatchJob(inputFile, request));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Function to wait until an input file written in place is complete, so that a file noticed
+   * while it is still being written isn't parsed half done and renamed as errored. A file renamed
+   * into place (one that the watcher hasn't seen modified, and isn't empty) is complete already.
+   * Otherwise, the file is taken to be complete once its size and modification time are the same
+   * at two looks settleMillis apart.
+   *
+   * @param inputFile A File containing the locator input file
+   * @return A boolean flag, false if the file no longer exists
+   * @throws InterruptedException Throws an InterruptedException if interrupted while waiting
+   */
+  private boolean waitUntilSettled(File inputFile) throws InterruptedException {
+    // lastModified is 0 if the file is gone
+    long lastModified = inputFile.lastModified();
+    long length = inputFile.length();
+    if (lastModified == 0L) {
+      return false;
+    } else if (!modified.contains(inputFile.getAbsolutePath()) && length > 0L) {
+      return true;
+    }
+
+    long deadline = System.currentTimeMillis() + MAX_SETTLE_MILLIS;
+    while (true) {
+      Thread.sleep(settleMillis);
+
+      long nextModified = inputFile.lastModified();
+      long nextLength = inputFile.length();
+      if (nextModified == 0L) {
+        return false;
+      } else if (nextModified == lastModified && nextLength == length) {
+        return true;
+      } else if (System.currentTimeMillis() >= deadline) {
+        LOGGER.warn(inputFile + " is still being modified, parsing it anyway.");
+        return true;
+      }
+
+      lastModified = nextModified;
+      length = nextLength;
+    }
+  }
+
+  /** The locate stage, which locates each request with a pooled locator engine. */
+  private void locateStage() {
+    try {
+      while (true) {
+        WatchJob job = locateQueue.take();
+
+        try {
+          job.result = engines.getLocation(job.request);
+        } catch (Exception e) {
+          LOGGER.fatal("Exception locating " + job.inputFile + ": " + e.toString());
+        }
+
+        writeQueue.put(job);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** The write stage, which writes each location and disposes of its input file. */
+  private void writeStage() {
+    try {
+      while (true) {
+        WatchJob job = writeQueue.take();
+
+        boolean located = false;
+        try {
+          located =
+              locMain.writeResult(
+                  job.result,
+                  job.inputFile.getAbsolutePath(),
+                  null,
+                  outputType,
+                  outputPath,
+                  outputExtension,
+                  csvFile);
+        } catch (Exception e) {
+          LOGGER.fatal("Exception writing " + job.inputFile + ": " + e.toString());
+        }
+
+        finish(job.inputFile, located);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * This function archives, deletes, or errors an input file, and takes it out of the pipeline.
+   *
+   * @param inputFile A File containing the locator input file
+   * @param located A boolean flag indicating whether the location was successful
+   */
+  private void finish(File inputFile, boolean located) {
+    locMain.finishInputFile(inputFile, inputExtension, archivePath, located);
+    modified.remove(inputFile.getAbsolutePath());
+    inFlight.remove(inputFile.getAbsolutePath());
+  }
+}
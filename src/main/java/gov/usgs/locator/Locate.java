@@ -4,7 +4,6 @@ import gov.usgs.locaux.AuxLocRef;
 import gov.usgs.locaux.LocUtil;
 import gov.usgs.locaux.Slabs;
 import gov.usgs.traveltime.BadDepthException;
-import gov.usgs.traveltime.TravelTimeSession;
 import gov.usgs.traveltime.tables.TauIntegralException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
@@ -30,6 +29,9 @@ public class Locate {
    */
   private ArrayList<HypoAudit> hypoAuditList;
 
+  /** A PhaseID object containing the phase identification logic. */
+  private PhaseID phaseID;
+
   /**
    * A InitialPhaseID object used to perform initial phase identification before any location
    * iterations.
@@ -48,6 +50,11 @@ public class Locate {
    */
   private CloseOut close;
 
+  /**
+   * A LocContext object containing the state shared by the location logic for this location only.
+   */
+  private LocContext context;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(Locate.class.getName());
 
@@ -55,22 +62,73 @@ public class Locate {
    * The Locate constructor. Sets up the class to locate a single event.
    *
    * @param event An Event object containing the Event to locate
-   * @param travelTimeSession A TravelTimeSession object containing the travel-time information for
-   *     a local implementation to use in computing the location
+   * @param travelTimeSessions A TravelTimeSessionCache object containing the travel-time
+   *     information for a local implementation to use in computing the location
+   * @param auxLoc An AuxLocRef object containing auxiliary location information such as continental
+   *     craton boundaries and earthquake statistics
+   * @param slabStats A Slabs object containing the slab part of the auxiliary data
+   */
+  public Locate(
+      Event event, TravelTimeSessionCache travelTimeSessions, AuxLocRef auxLoc, Slabs slabStats) {
+    this(event, travelTimeSessions, auxLoc, slabStats, new LocTuning());
+  }
+
+  /**
+   * The Locate constructor. Sets up the class to locate a single event with the given tuning.
+   *
+   * @param event An Event object containing the Event to locate
+   * @param travelTimeSessions A TravelTimeSessionCache object containing the travel-time
+   *     information for a local implementation to use in computing the location
    * @param auxLoc An AuxLocRef object containing auxiliary location information such as continental
    *     craton boundaries and earthquake statistics
    * @param slabStats A Slabs object containing the slab part of the auxiliary data
+   * @param tuning A LocTuning object containing the settings for how to locate
    */
   public Locate(
-      Event event, TravelTimeSession travelTimeSession, AuxLocRef auxLoc, Slabs slabStats) {
+      Event event,
+      TravelTimeSessionCache travelTimeSessions,
+      AuxLocRef auxLoc,
+      Slabs slabStats,
+      LocTuning tuning) {
+    this.event = event;
+    hypo = event.getHypo();
+    hypoAuditList = event.getHypoAuditList();
+    context = new LocContext();
+    phaseID = new PhaseID(event, travelTimeSessions, context, tuning);
+    stepper = new Stepper(event, phaseID, auxLoc, slabStats, context, tuning);
+    initialPhaseID = new InitialPhaseID(event, travelTimeSessions, phaseID, stepper, context);
+    close = new CloseOut(event, context);
+  }
+
+  /**
+   * Function to set the cache used to look up the location environment (the tectonic flag and
+   * candidate Bayesian depths), which may be shared with other locator engines using the same
+   * models.
+   *
+   * @param environmentCache A LocEnvironmentCache object containing the cache, null to disable
+   * @param slabRes A String containing the slab model resolution of this Locate's slab model
+   */
+  public void setEnvironmentCache(LocEnvironmentCache environmentCache, String slabRes) {
+    stepper.setEnvironmentCache(environmentCache, slabRes);
+  }
+
+  /**
+   * This function prepares this Locate to locate a different event. The phase identification,
+   * stepper, and close out logic are kept and rebound to the new event rather than being rebuilt
+   * (the new event brings the rank-sum estimators and decorrelator, see the Event constructor).
+   * Note that the same Locate must never be used by two threads at once.
+   *
+   * @param event An Event object containing the Event to locate
+   */
+  public void reset(Event event) {
     this.event = event;
     hypo = event.getHypo();
     hypoAuditList = event.getHypoAuditList();
-    PhaseID phaseID = new PhaseID(event, travelTimeSession);
-    stepper = new Stepper(event, phaseID, auxLoc, slabStats);
-    initialPhaseID = new InitialPhaseID(event, travelTimeSession, phaseID, stepper);
-    close = new CloseOut(event);
-    LocUtil.useDecorrelation = false;
+    context.reset();
+    phaseID.reset(event);
+    stepper.reset(event);
+    initialPhaseID.reset(event);
+    close.reset(event);
   }
 
   /**
@@ -90,7 +148,7 @@ public class Locate {
         hypo.getDepth())); */
 
     // Save the essentials of this event for comparison.
-    event.addAudit(0, 0, LocStatus.INITIAL_HYPOCENTER);
+    event.addAudit(0, 0, LocStatus.INITIAL_HYPOCENTER, context.getUseDecorrelation());
 
     // Bail on insufficient data.
     if (event.getNumStationsUsed() < 3) {
@@ -104,7 +162,7 @@ public class Locate {
       if (event.getIsLocationHeld()) {
         LOGGER.info("Held Location");
         // Reidentify and reweight phases.
-        LocUtil.useDecorrelation = event.getUseDecorrelation();
+        context.setUseDecorrelation(event.getUseDecorrelation());
         stepper.doPhaseIdentification(0.1d, 1d, true, true);
         close.compFinalStats(LocStatus.HELD_HYPOCENTER);
         return LocStatus.SUCCESS;
@@ -139,7 +197,7 @@ public class Locate {
             // seismic network being used is "lumpy" (I.e., has dense sub-
             // networks.  On the other hand, the locator is faster and much
             // more stable without the decorrelation.
-            LocUtil.useDecorrelation = event.getUseDecorrelation();
+            context.setUseDecorrelation(event.getUseDecorrelation());
 
             // Do a looser phase identification.
             status = stepper.doPhaseIdentification(0.1d, 1.0d, true, true);
@@ -218,7 +276,7 @@ public class Locate {
           // check to see if we've converged
           if (stage > 0 && lastStepLength <= LocUtil.CONVERGENCESTAGELIMITS[stage]) {
             // Create the stage level audit anyway.
-            event.addAudit(stage, iter, status);
+            event.addAudit(stage, iter, status, context.getUseDecorrelation());
             // If we've converged, create a final location level audit.  In this case, the step
             // length
             // is from the starting location.
@@ -228,7 +286,7 @@ public class Locate {
                 Math.sqrt(
                     Math.pow(hypo.getHorizontalStepLength(), 2d)
                         + Math.pow(hypo.getVerticalStepLength(), 2d)));
-            event.addAudit(stage, iter, LocStatus.FINAL_HYPOCENTER);
+            event.addAudit(stage, iter, LocStatus.FINAL_HYPOCENTER, context.getUseDecorrelation());
 
             LOGGER.info("Location Converged, Final wrap up:" + event.printHypoAudit());
 
@@ -237,11 +295,11 @@ public class Locate {
             return status;
           } else {
             // Otherwise, create the stage level audit.
-            event.addAudit(stage, iter, status);
+            event.addAudit(stage, iter, status, context.getUseDecorrelation());
           }
         } else {
           // Create the stage level audit so we know what happened.
-          event.addAudit(stage, iter, status);
+          event.addAudit(stage, iter, status, context.getUseDecorrelation());
         }
       }
 
@@ -10,6 +10,8 @@ import gov.usgs.traveltime.TravelTimeData;
 import gov.usgs.traveltime.TravelTimeSession;
 import gov.usgs.traveltime.tables.TauIntegralException;
 import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -28,10 +30,10 @@ public class PhaseID {
   private Hypocenter hypo;
 
   /**
-   * A TravelTimeSession object containing a local travel-time manager used to perform phase
+   * A TravelTimeSessionCache object containing the local travel-time managers used to perform phase
    * identification.
    */
-  private TravelTimeSession travelTimeSession;
+  private TravelTimeSessionCache travelTimeSessions;
 
   /**
    * An AuxiliaryTTReference object containing a auxiliary travel-time information used to perform
@@ -81,6 +83,24 @@ public class PhaseID {
   /** A String containing the last travel time phase group name processed by phaseID. */
   private String currPhaseGroupName = null;
 
+  /**
+   * A LocContext object containing the state shared by the location logic for this location only.
+   */
+  private LocContext context;
+
+  /**
+   * A double containing how far in kilometers the hypocenter may move before a pick group's travel
+   * times are recomputed, zero to recompute them whenever it moves at all.
+   */
+  private final double moveTolerance;
+
+  /**
+   * A double containing how far in seconds the pick travel times may move (as the origin time
+   * changes) before an otherwise unchanged pick group is identified again, zero to identify it
+   * again whenever they move at all.
+   */
+  private final double timeTolerance;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(PhaseID.class.getName());
 
@@ -89,15 +109,26 @@ public class PhaseID {
    *
    * @param event An Event object containing the information for the event to perform phase
    *     identification upon.
-   * @param travelTimeSession A TravelTimeSession object holding the local travel-time manager
+   * @param travelTimeSessions A TravelTimeSessionCache object holding the local travel-time
+   *     managers
+   * @param context A LocContext object containing the state of this location
+   * @param tuning A LocTuning object containing how much the hypocenter may change before the
+   *     phase identification of a pick group is redone
    */
-  public PhaseID(Event event, TravelTimeSession travelTimeSession) {
+  public PhaseID(
+      Event event,
+      TravelTimeSessionCache travelTimeSessions,
+      LocContext context,
+      LocTuning tuning) {
     this.event = event;
+    this.context = context;
     hypo = event.getHypo();
-    this.travelTimeSession = travelTimeSession;
+    this.travelTimeSessions = travelTimeSessions;
+    moveTolerance = tuning.getPhaseIDMoveTolerance();
+    timeTolerance = tuning.getPhaseIDTimeTolerance();
 
-    if (travelTimeSession != null) {
-      this.auxiliaryTTInfo = travelTimeSession.getAuxTTData();
+    if (travelTimeSessions != null) {
+      this.auxiliaryTTInfo = travelTimeSessions.getSession().getAuxTTData();
     } else {
       this.auxiliaryTTInfo = null;
     }
@@ -105,6 +136,26 @@ public class PhaseID {
     weightedResiduals = event.getRawWeightedResiduals();
   }
 
+  /**
+   * This function rebinds the phase identification logic to a new event so that it can be reused,
+   * forgetting the pick and phase group state left over from the last event.
+   *
+   * @param event An Event object containing the event to use for phase identification
+   */
+  public void reset(Event event) {
+    this.event = event;
+    hypo = event.getHypo();
+    weightedResiduals = event.getRawWeightedResiduals();
+    currentGroup = null;
+    lastPick = null;
+    currentTTList = null;
+    otherWeight = 0d;
+    stickyWeight = 0d;
+    isGeneric = false;
+    isPrimary = false;
+    currPhaseGroupName = null;
+  }
+
   /**
    * The phaseID function performs the the phase identification on the event.
    *
@@ -139,15 +190,16 @@ public class PhaseID {
     }
 
     // Set up a new travel-time session.
-    travelTimeSession.newSession(
+    travelTimeSessions.newSession(
         event.getEarthModel(),
         hypo.getDepth(),
-        LocUtil.PHASELIST,
         hypo.getLatitude(),
         hypo.getLongitude(),
-        LocUtil.SUPRESSUNLIKELYPHASES,
-        LocUtil.SUPRESSBACKBRANCHES,
-        LocUtil.isTectonic);
+        context.getIsTectonic());
+
+    // If there are enough stations, compute all the travel times in parallel up front.  The phase
+    // identification itself is still done in station order, so the result is the same either way.
+    TravelTime[] groupTravelTimes = computeGroupTravelTimes(false);
 
     // Do the travel-time calculation for each pick group
     for (int j = 0; j < event.getNumStations(); j++) {
@@ -163,24 +215,31 @@ public class PhaseID {
               currentGroup.getAzimuth()));
 
       // For the first pick in the group, get the travel times.
-      currentTTList =
-          travelTimeSession.getTravelTimes(
-              station.getLatitude(),
-              station.getLongitude(),
-              station.getElevation(),
-              currentGroup.getDistance(),
-              currentGroup.getAzimuth());
-
-      // If reidentifyPhases is true, do a full phase re-identification for the
-      // current group.
-      // NOTE this is done using class variables rather than just passing the
-      // group in, ick.  NOTE class variables are cool when there are so many
-      // interlinked methods!
-      if (reidentifyPhases) {
-        reidentifyPhases();
+      currentTTList = getTravelTimes(j, groupTravelTimes);
+
+      // If neither the travel times nor the picks have changed since this group was last
+      // identified, the identification would come out the same, so just repeat it.
+      if (currentGroup.repeatIdentification(
+          reidentifyPhases, otherWeight, stickyWeight, timeTolerance)) {
+        // The next pick's phase group must be looked up again, as it would have been.
+        lastPick = null;
+        LOGGER.trace("PhaseID: unchanged");
       } else {
-        // Otherwise, try not to re-identify the phases.
-        noReidentification();
+        currentGroup.saveIdentificationInputs(reidentifyPhases, otherWeight, stickyWeight);
+
+        // If reidentifyPhases is true, do a full phase re-identification for the
+        // current group.
+        // NOTE this is done using class variables rather than just passing the
+        // group in, ick.  NOTE class variables are cool when there are so many
+        // interlinked methods!
+        if (reidentifyPhases) {
+          reidentifyPhases();
+        } else {
+          // Otherwise, try not to re-identify the phases.
+          noReidentification();
+        }
+
+        currentGroup.saveIdentificationResult();
       }
 
       // update changed flag
@@ -211,6 +270,184 @@ public class PhaseID {
     return changed;
   }
 
+  /**
+   * This function computes the travel times for the pick groups in parallel, the groups being dealt
+   * out in turn to the travel-time session set up last (on this thread) and to each of the extra
+   * sessions (on the common fork-join pool). The session set up last must already be set up for the
+   * current hypocenter; the extra sessions are set up the same way (at the same, possibly rounded,
+   * depth) here. Each group's travel times are stored by group index, so the result doesn't depend
+   * on which thread computed them.
+   *
+   * @param usedOnly If true, skip the pick groups that have no used picks
+   * @return An array of TravelTime objects containing the travel times indexed by pick group (null
+   *     for skipped groups and groups whose last travel times can be reused), or null if there are
+   *     too few groups or no extra sessions, in which case the caller should compute the travel
+   *     times serially as it goes
+   * @throws BadDepthException If source depth is out of range
+   * @throws TauIntegralException If the tau integrals fail
+   */
+  TravelTime[] computeGroupTravelTimes(boolean usedOnly)
+      throws BadDepthException, TauIntegralException {
+    TravelTimeSessionCache[] travelTimeWorkers = travelTimeSessions.getWorkers();
+    int numGroups = event.getNumStations();
+    if (travelTimeWorkers.length == 0 || numGroups < LocUtil.PARALLELPHASEIDSTATIONS) {
+      return null;
+    }
+
+    TravelTime[] travelTimes = new TravelTime[numGroups];
+    double sessionDepth = travelTimeSessions.getSessionDepth();
+    int stride = travelTimeWorkers.length + 1;
+    ArrayList<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+
+    for (int i = 0; i < travelTimeWorkers.length && i + 1 < numGroups; i++) {
+      TravelTimeSessionCache worker = travelTimeWorkers[i];
+      int first = i + 1;
+      futures.add(
+          CompletableFuture.runAsync(
+              () -> {
+                try {
+                  // This is skipped if the worker is already set up for this source.
+                  TravelTimeSession session =
+                      worker.newSession(
+                          event.getEarthModel(),
+                          sessionDepth,
+                          hypo.getLatitude(),
+                          hypo.getLongitude(),
+                          context.getIsTectonic());
+                  computeTravelTimes(session, first, stride, usedOnly, travelTimes);
+                } catch (BadDepthException | TauIntegralException e) {
+                  throw new CompletionException(e);
+                }
+              }));
+    }
+
+    // Do our share, then wait for all the workers to finish (even if one has failed) so that no
+    // session is still busy when we return.
+    Throwable failure = null;
+    try {
+      computeTravelTimes(travelTimeSessions.getSession(), 0, stride, usedOnly, travelTimes);
+    } catch (BadDepthException | TauIntegralException e) {
+      failure = e;
+    }
+
+    for (CompletableFuture<Void> future : futures) {
+      try {
+        future.join();
+      } catch (CompletionException e) {
+        if (failure == null) {
+          failure = e.getCause() != null ? e.getCause() : e;
+        }
+      }
+    }
+
+    if (failure instanceof BadDepthException) {
+      throw (BadDepthException) failure;
+    } else if (failure instanceof TauIntegralException) {
+      throw (TauIntegralException) failure;
+    } else if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    } else if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+
+    return travelTimes;
+  }
+
+  /**
+   * This function gets the travel times for a pick group at the current hypocenter. The travel
+   * times last computed for the group are reused if the hypocenter hasn't moved (or has moved less
+   * than the move tolerance) since. Otherwise they're taken from the travel times computed up
+   * front, if any, or computed with the travel-time session set up last, and remembered in the
+   * group.
+   *
+   * @param groupIndex An int containing the index of the pick group
+   * @param groupTravelTimes An array of TravelTime objects containing the travel times computed up
+   *     front by computeGroupTravelTimes, or null if there aren't any
+   * @return A TravelTime object containing the travel times for the pick group
+   */
+  TravelTime getTravelTimes(int groupIndex, TravelTime[] groupTravelTimes) {
+    PickGroup group = event.getPickGroupList().get(groupIndex);
+    String earthModel = event.getEarthModel();
+    boolean isTectonic = context.getIsTectonic();
+    double sessionDepth = travelTimeSessions.getSessionDepth();
+
+    TravelTime travelTimes =
+        group.getTravelTimes(
+            earthModel,
+            isTectonic,
+            hypo.getLatitude(),
+            hypo.getLongitude(),
+            sessionDepth,
+            moveTolerance);
+    if (travelTimes != null) {
+      return travelTimes;
+    }
+
+    if (groupTravelTimes != null) {
+      travelTimes = groupTravelTimes[groupIndex];
+    } else {
+      Station station = group.getStation();
+      travelTimes =
+          travelTimeSessions
+              .getSession()
+              .getTravelTimes(
+                  station.getLatitude(),
+                  station.getLongitude(),
+                  station.getElevation(),
+                  group.getDistance(),
+                  group.getAzimuth());
+    }
+
+    group.setTravelTimes(
+        travelTimes, earthModel, isTectonic, hypo.getLatitude(), hypo.getLongitude(), sessionDepth);
+    return travelTimes;
+  }
+
+  /**
+   * This function computes the travel times for every stride'th pick group using one travel-time
+   * session, skipping the groups whose last travel times can be reused.
+   *
+   * @param session A TravelTimeSession object already set up for the current hypocenter
+   * @param first An int containing the index of the first pick group to do
+   * @param stride An int containing the step between the pick groups to do
+   * @param usedOnly If true, skip the pick groups that have no used picks
+   * @param travelTimes An array of TravelTime objects to store the travel times in by pick group
+   * @throws BadDepthException If source depth is out of range
+   * @throws TauIntegralException If the tau integrals fail
+   */
+  private void computeTravelTimes(
+      TravelTimeSession session, int first, int stride, boolean usedOnly, TravelTime[] travelTimes)
+      throws BadDepthException, TauIntegralException {
+    ArrayList<PickGroup> groups = event.getPickGroupList();
+    String earthModel = event.getEarthModel();
+    boolean isTectonic = context.getIsTectonic();
+    double sessionDepth = travelTimeSessions.getSessionDepth();
+
+    for (int j = first; j < travelTimes.length; j += stride) {
+      PickGroup group = groups.get(j);
+      if ((usedOnly && group.getNumPicksUsed() == 0)
+          || group.getTravelTimes(
+                  earthModel,
+                  isTectonic,
+                  hypo.getLatitude(),
+                  hypo.getLongitude(),
+                  sessionDepth,
+                  moveTolerance)
+              != null) {
+        continue;
+      }
+
+      Station station = group.getStation();
+      travelTimes[j] =
+          session.getTravelTimes(
+              station.getLatitude(),
+              station.getLongitude(),
+              station.getElevation(),
+              group.getDistance(),
+              group.getAzimuth());
+    }
+  }
+
   /**
    * This function tries to re-identifies only if the identification is invalid. During the location
    * iteration, we don't want to re-identify phases, but sometimes re-identification is thrust upon
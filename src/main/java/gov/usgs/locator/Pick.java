@@ -320,6 +320,15 @@ public class Pick implements Comparable<Pick> {
     return statisticalFoM;
   }
 
+  /**
+   * Function to get whether the association should be forced.
+   *
+   * @return A boolean flag indicating whether the association should be forced.
+   */
+  public boolean getForceAssociation() {
+    return forceAssociation;
+  }
+
   /**
    * Function to get whether this pick is a surface wave. Surface wave phases can't be re-identified
    *
@@ -1,7 +1,10 @@
 package gov.usgs.locator;
 
 import gov.usgs.locaux.LocUtil;
+import gov.usgs.traveltime.TravelTime;
+import gov.usgs.traveltime.TravelTimeData;
 import java.util.ArrayList;
+import java.util.Objects;
 
 /**
  * The PickGroup class contains all the picks observed at one station for one event. This construct
@@ -30,6 +33,69 @@ public class PickGroup {
   /** A double containing the cumulative figure-of-merit for this pick group. */
   private double cumulativeFoM;
 
+  /** A TravelTime object containing the travel times last computed for this group, or null. */
+  private TravelTime travelTimes = null;
+
+  /** A String containing the earth model the travel times were computed for. */
+  private String ttEarthModel;
+
+  /** A boolean flag, true if the travel times were computed for a tectonic source. */
+  private boolean ttIsTectonic;
+
+  /** A double containing the source latitude in degrees the travel times were computed for. */
+  private double ttLatitude;
+
+  /** A double containing the source longitude in degrees the travel times were computed for. */
+  private double ttLongitude;
+
+  /** A double containing the source depth in kilometers the travel times were computed for. */
+  private double ttDepth;
+
+  /** A boolean flag, true if the last phase identification of this group has been saved. */
+  private boolean hasIdentification = false;
+
+  /** A boolean flag, true if the saved phase identification was a full re-identification. */
+  private boolean idReidentify;
+
+  /** A double containing the "other" weight the saved phase identification was done with. */
+  private double idOtherWeight;
+
+  /** A double containing the sticky weight the saved phase identification was done with. */
+  private double idStickyWeight;
+
+  /** An array of doubles containing the pick travel times going into the saved identification. */
+  private double[] idTravelTimes;
+
+  /** An array of booleans containing the pick use flags going into the saved identification. */
+  private boolean[] idIsUsed;
+
+  /** An array of Strings containing the current phase codes going into the saved identification. */
+  private String[] idCurrentPhaseCodes;
+
+  /** An array of Strings containing the best phase codes going into the saved identification. */
+  private String[] idBestPhaseCodes;
+
+  /**
+   * An array of TravelTimeData objects containing the pick identifications before (index 0) and
+   * after (index 1) the saved identification.
+   */
+  private TravelTimeData[][] idMinFoM;
+
+  /**
+   * An array of doubles containing the pick figures-of-merit before (index 0) and after (index 1)
+   * the saved identification.
+   */
+  private double[][] idFoM;
+
+  /**
+   * An array of booleans containing the pick forced association flags before (index 0) and after
+   * (index 1) the saved identification.
+   */
+  private boolean[][] idForceAssociation;
+
+  /** A double containing the cumulative figure-of-merit after the saved identification. */
+  private double idCumulativeFoM;
+
   /**
    * Function to return the pick group station.
    *
@@ -161,10 +227,9 @@ public class PickGroup {
    */
   public void updateHypo(Hypocenter hypo) {
     // Distance and azimuth are group level parameters.
-    distance = LocUtil.computeDistAzm(hypo, station);
-
-    // note computeDistAzm() stores computed azimuth result via LocUtil.azimuth
-    azimuth = LocUtil.azimuth;
+    double[] receiverAzimuth = new double[1];
+    distance = LocUtil.computeDistAzm(hypo, station, receiverAzimuth);
+    azimuth = receiverAzimuth[0];
   }
 
   /**
@@ -179,6 +244,187 @@ public class PickGroup {
     }
   }
 
+  /**
+   * Function to get the travel times last computed for this group if they can be used for a
+   * source. They can if the source has the same earth model and tectonic flag, and has moved no
+   * more than the tolerance since they were computed.
+   *
+   * @param earthModel A String containing the earth model name
+   * @param isTectonic A boolean flag, true if the source is in a tectonic province
+   * @param latitude A double containing the source geographic latitude in degrees
+   * @param longitude A double containing the source geographic longitude in degrees
+   * @param depth A double containing the source depth in kilometers the travel-time session was set
+   *     up for
+   * @param tolerance A double containing how far in kilometers the source may have moved, zero to
+   *     only reuse travel times computed for exactly the same source
+   * @return A TravelTime object containing the travel times, or null if they need to be computed
+   */
+  public TravelTime getTravelTimes(
+      String earthModel,
+      boolean isTectonic,
+      double latitude,
+      double longitude,
+      double depth,
+      double tolerance) {
+    if (travelTimes == null
+        || ttIsTectonic != isTectonic
+        || !Objects.equals(ttEarthModel, earthModel)) {
+      return null;
+    }
+
+    if (tolerance <= 0d) {
+      if (ttLatitude == latitude && ttLongitude == longitude && ttDepth == depth) {
+        return travelTimes;
+      }
+      return null;
+    }
+
+    double north = (latitude - ttLatitude) * LocUtil.DEG2KM;
+    double east =
+        (longitude - ttLongitude) * LocUtil.DEG2KM * Math.cos(Math.toRadians(latitude));
+    double down = depth - ttDepth;
+
+    if (north * north + east * east + down * down <= tolerance * tolerance) {
+      return travelTimes;
+    }
+    return null;
+  }
+
+  /**
+   * Function to remember the travel times computed for this group. This also forgets the saved
+   * phase identification, which refers to the old travel times.
+   *
+   * @param travelTimes A TravelTime object containing the travel times
+   * @param earthModel A String containing the earth model name
+   * @param isTectonic A boolean flag, true if the source is in a tectonic province
+   * @param latitude A double containing the source geographic latitude in degrees
+   * @param longitude A double containing the source geographic longitude in degrees
+   * @param depth A double containing the source depth in kilometers the travel-time session was set
+   *     up for
+   */
+  public void setTravelTimes(
+      TravelTime travelTimes,
+      String earthModel,
+      boolean isTectonic,
+      double latitude,
+      double longitude,
+      double depth) {
+    this.travelTimes = travelTimes;
+    ttEarthModel = earthModel;
+    ttIsTectonic = isTectonic;
+    ttLatitude = latitude;
+    ttLongitude = longitude;
+    ttDepth = depth;
+    hasIdentification = false;
+  }
+
+  /**
+   * This function saves the state of the picks going into a phase identification of this group.
+   * Together with saveIdentificationResult, this lets a later identification with the same inputs
+   * be skipped.
+   *
+   * @param reidentify A boolean flag, true if this is a full re-identification
+   * @param otherWeight A double containing the weight for phases that don't match the current
+   *     phase identification or phase group
+   * @param stickyWeight A double containing the weight for an exact match
+   */
+  public void saveIdentificationInputs(
+      boolean reidentify, double otherWeight, double stickyWeight) {
+    int numPicks = picks.size();
+    if (idTravelTimes == null || idTravelTimes.length != numPicks) {
+      idTravelTimes = new double[numPicks];
+      idIsUsed = new boolean[numPicks];
+      idCurrentPhaseCodes = new String[numPicks];
+      idBestPhaseCodes = new String[numPicks];
+      idMinFoM = new TravelTimeData[2][numPicks];
+      idFoM = new double[2][numPicks];
+      idForceAssociation = new boolean[2][numPicks];
+    }
+
+    idReidentify = reidentify;
+    idOtherWeight = otherWeight;
+    idStickyWeight = stickyWeight;
+
+    for (int j = 0; j < numPicks; j++) {
+      Pick pick = picks.get(j);
+      idTravelTimes[j] = pick.getTravelTime();
+      idIsUsed[j] = pick.getIsUsed();
+      idCurrentPhaseCodes[j] = pick.getCurrentPhaseCode();
+      idBestPhaseCodes[j] = pick.getBestPhaseCode();
+      idMinFoM[0][j] = pick.getTTStatisticalMinFoM();
+      idFoM[0][j] = pick.getStatisticalFoM();
+      idForceAssociation[0][j] = pick.getForceAssociation();
+    }
+
+    hasIdentification = false;
+  }
+
+  /**
+   * This function saves the result of the phase identification of this group whose inputs were
+   * saved by saveIdentificationInputs.
+   */
+  public void saveIdentificationResult() {
+    for (int j = 0; j < picks.size(); j++) {
+      Pick pick = picks.get(j);
+      idMinFoM[1][j] = pick.getTTStatisticalMinFoM();
+      idFoM[1][j] = pick.getStatisticalFoM();
+      idForceAssociation[1][j] = pick.getForceAssociation();
+    }
+
+    idCumulativeFoM = cumulativeFoM;
+    hasIdentification = true;
+  }
+
+  /**
+   * This function repeats the saved phase identification of this group if the picks are in the
+   * same state as they were going into it and it was done the same way. Since the travel times are
+   * saved with the identification, this also requires that they haven't been recomputed since.
+   *
+   * @param reidentify A boolean flag, true if this is a full re-identification
+   * @param otherWeight A double containing the weight for phases that don't match the current
+   *     phase identification or phase group
+   * @param stickyWeight A double containing the weight for an exact match
+   * @param timeTolerance A double containing how far in seconds the pick travel times may have
+   *     moved (as the origin time changes), zero to only repeat an identification of exactly the
+   *     same travel times
+   * @return True if the saved identification was repeated, false if the group must be identified
+   */
+  public boolean repeatIdentification(
+      boolean reidentify, double otherWeight, double stickyWeight, double timeTolerance) {
+    if (!hasIdentification
+        || idReidentify != reidentify
+        || idOtherWeight != otherWeight
+        || idStickyWeight != stickyWeight) {
+      return false;
+    }
+
+    for (int j = 0; j < picks.size(); j++) {
+      Pick pick = picks.get(j);
+      double travelTime = pick.getTravelTime();
+
+      if (!(travelTime == idTravelTimes[j]
+              || Math.abs(travelTime - idTravelTimes[j]) <= timeTolerance)
+          || pick.getIsUsed() != idIsUsed[j]
+          || !pick.getCurrentPhaseCode().equals(idCurrentPhaseCodes[j])
+          || !pick.getBestPhaseCode().equals(idBestPhaseCodes[j])
+          || pick.getTTStatisticalMinFoM() != idMinFoM[0][j]
+          || Double.compare(pick.getStatisticalFoM(), idFoM[0][j]) != 0
+          || pick.getForceAssociation() != idForceAssociation[0][j]) {
+        return false;
+      }
+    }
+
+    for (int j = 0; j < picks.size(); j++) {
+      Pick pick = picks.get(j);
+      pick.setTTStatisticalMinFoM(idMinFoM[1][j]);
+      pick.setStatisticalFoM(idFoM[1][j]);
+      pick.setForceAssociation(idForceAssociation[1][j]);
+    }
+
+    cumulativeFoM = idCumulativeFoM;
+    return true;
+  }
+
   /**
    * This function updates the phase identifications for all picks in this group.
    *
@@ -6,6 +6,13 @@ import java.util.ArrayList;
 /**
  * The RankSumEstimator class is the Rank-sum estimator implementation for the NEIC Locator.
  *
+ * <p>The medians only need the middle one or two values, so they are found by selection over
+ * primitive arrays of sort keys rather than by sorting the weighted residuals. The dispersions
+ * really do need rank order, so the weighted residuals are sorted, but by sorting an array of
+ * indices on primitive keys and then permuting the list once. Because a median no longer reorders
+ * the list, its sort keys are kept to break ties in the selections and sorts that follow, so that
+ * ties come out exactly as they did when every median was a stable sort of the list.
+ *
  * @author Ray Buland
  */
 public class RankSumEstimator {
@@ -46,14 +53,51 @@ public class RankSumEstimator {
   private double bayesianContribution;
 
   /**
-   * A double[] holding the interpolation scores used in dispersion(), compSteepestDescDir(), and
-   * makeScores().
+   * A double[] holding the interpolation scores used in dispersion() and compSteepestDescDir().
+   * These usually come from the shared score table, so they must not be modified.
    */
   private double[] scores;
 
   /** An ArrayList of WeightedResidual objects containing the weighted residuals of the picks. */
   private ArrayList<WeightedResidual> weightedResiduals;
 
+  /** An int containing the most median orders to keep before sorting the list into them. */
+  private static final int MAXTIELEVELS = 4;
+
+  /**
+   * A double[][] containing the sort keys in list order. The first row holds the current sort
+   * values and the following rows hold the sort values of the medians selected since the list was
+   * last sorted, most recent first. Each breaks ties in the rows before it.
+   */
+  private double[][] sortKeys = new double[MAXTIELEVELS + 1][0];
+
+  /** An int containing the number of median orders being kept to break ties. */
+  private int numTieLevels = 0;
+
+  /**
+   * An array of WeightedResidual objects containing the list as it was when the sort keys were last
+   * loaded, in list order, so that the median orders are only kept while the list is unchanged.
+   */
+  private WeightedResidual[] tieLevelsOrder = new WeightedResidual[0];
+
+  /** An int containing the number of weighted residuals in tieLevelsOrder. */
+  private int numTieLevelsOrder = 0;
+
+  /** An int[] containing the indices being selected or sorted. */
+  private int[] sortIndices = new int[0];
+
+  /** An int[] containing merge sort scratch space. */
+  private int[] mergeScratch = new int[0];
+
+  /** An array of WeightedResidual objects used to permute the list into sorted order. */
+  private WeightedResidual[] permuteScratch = new WeightedResidual[0];
+
+  /**
+   * An array of WeightedResidual objects containing the weighted residuals at the half index and
+   * the one before it in the order of the last median, used by deMedianDesignMatrix().
+   */
+  private WeightedResidual[] medianResiduals = new WeightedResidual[2];
+
   /**
    * Get the Bayesian contribution to the latest dispersion computed.
    *
@@ -80,6 +124,27 @@ public class RankSumEstimator {
     this.weightedResiduals = weightedResiduals;
   }
 
+  /**
+   * This function rebinds the estimator to the weighted residuals of a new event. The cached
+   * medians are cleared, but the interpolated scores are kept, since they depend only on the number
+   * of data and are simply looked up again if that changes.
+   *
+   * @param weightedResiduals An ArrayList of WeightedResidual objects containing the weighted
+   *     residuals of the picks.
+   */
+  public void reset(ArrayList<WeightedResidual> weightedResiduals) {
+    numTieLevels = 0;
+    numTieLevelsOrder = 0;
+    medianResiduals[0] = null;
+    medianResiduals[1] = null;
+    halfIndex = -1;
+    weightedResidualsLength = -1;
+    residualsMedian = 0d;
+    linearEstimatesMedian = 0d;
+    bayesianContribution = 0d;
+    this.weightedResiduals = weightedResiduals;
+  }
+
   /**
    * This function computes the median of the travel-time residuals stored in weightedResiduals
    * (excluding the Bayesian depth residual, of course).
@@ -102,21 +167,18 @@ public class RankSumEstimator {
       weightedResiduals.get(j).setSortValue();
     }
 
-    // Sort the travel-time residuals.
-    weightedResiduals.sort(null);
-
-    // Do the median.
+    // Select the middle travel-time residuals.
     weightedResidualsLength = Math.max(weightedResiduals.size() - 1, 1);
     halfIndex = weightedResidualsLength / 2;
+    selectMedian();
 
+    // Do the median.
     if (weightedResidualsLength % 2 == 0) {
       residualsMedian =
-          0.5d
-              * (weightedResiduals.get(halfIndex - 1).getResidual()
-                  + weightedResiduals.get(halfIndex).getResidual());
+          0.5d * (medianResiduals[0].getResidual() + medianResiduals[1].getResidual());
       return residualsMedian;
     } else {
-      residualsMedian = weightedResiduals.get(halfIndex).getResidual();
+      residualsMedian = medianResiduals[1].getResidual();
       return residualsMedian;
     }
   }
@@ -138,18 +200,18 @@ public class RankSumEstimator {
     for (int j = 0; j < weightedResiduals.size(); j++) {
       weightedResiduals.get(j).setSortValueSpread(residualsMedian);
     }
-    weightedResiduals.sort(null);
 
     // Do the median of the demeaned absolute residuals.
     weightedResidualsLength = weightedResiduals.size() - 1;
     halfIndex = weightedResidualsLength / 2;
+    selectMedian();
+
     if (weightedResidualsLength % 2 == 0) {
       return LocUtil.MADNORM
           * 0.5d
-          * (weightedResiduals.get(halfIndex - 1).getSortValue()
-              + weightedResiduals.get(halfIndex).getSortValue());
+          * (medianResiduals[0].getSortValue() + medianResiduals[1].getSortValue());
     } else {
-      return LocUtil.MADNORM * weightedResiduals.get(halfIndex).getSortValue();
+      return LocUtil.MADNORM * medianResiduals[1].getSortValue();
     }
   }
 
@@ -182,12 +244,12 @@ public class RankSumEstimator {
       for (int i = 0; i < medianValues.length; i++) {
         medianValues[i] =
             0.5d
-                * (weightedResiduals.get(halfIndex - 1).getSpatialDerivatives()[i]
-                    + weightedResiduals.get(halfIndex).getSpatialDerivatives()[i]);
+                * (medianResiduals[0].getSpatialDerivatives()[i]
+                    + medianResiduals[1].getSpatialDerivatives()[i]);
       }
     } else {
       for (int i = 0; i < medianValues.length; i++) {
-        medianValues[i] = weightedResiduals.get(halfIndex).getSpatialDerivatives()[i];
+        medianValues[i] = medianResiduals[1].getSpatialDerivatives()[i];
       }
     }
 
@@ -229,7 +291,7 @@ public class RankSumEstimator {
       weightedResiduals.get(j).setSortValueDispersion(residualsMedian);
     }
 
-    weightedResiduals.sort(null);
+    sortResiduals();
 
     // Compute the dispersion function.
     return computeWRDispersion();
@@ -248,7 +310,7 @@ public class RankSumEstimator {
     // Interpolate the scores.
     if (weightedResiduals.size() != lastIndex) {
       lastIndex = weightedResiduals.size();
-      makeScores(lastIndex);
+      scores = RankSumScores.getScores(lastIndex);
     }
 
     // The dispersion is just a dot product.
@@ -318,21 +380,19 @@ public class RankSumEstimator {
       weightedResiduals.get(j).setSortValueLinEstRes();
     }
 
-    // Sort the estimated travel-time residuals.
-    weightedResiduals.sort(null);
-
-    // Do the median.
+    // Select the middle estimated travel-time residuals.
     weightedResidualsLength = weightedResiduals.size() - 1;
     halfIndex = weightedResidualsLength / 2;
+    selectMedian();
 
+    // Do the median.
     if (weightedResidualsLength % 2 == 0) {
       linearEstimatesMedian =
           0.5d
-              * (weightedResiduals.get(halfIndex - 1).getLinEstResidual()
-                  + weightedResiduals.get(halfIndex).getLinEstResidual());
+              * (medianResiduals[0].getLinEstResidual() + medianResiduals[1].getLinEstResidual());
       return linearEstimatesMedian;
     } else {
-      linearEstimatesMedian = weightedResiduals.get(halfIndex).getLinEstResidual();
+      linearEstimatesMedian = medianResiduals[1].getLinEstResidual();
       return linearEstimatesMedian;
     }
   }
@@ -365,78 +425,284 @@ public class RankSumEstimator {
       weightedResiduals.get(j).setSortValueLinEstDisp(linearEstimatesMedian, reWeight);
     }
 
-    weightedResiduals.sort(null);
+    sortResiduals();
 
     // Compute the penalty function.
     return computeWRDispersion();
   }
 
   /**
-   * This funtion interpolates the score generating function onto the data available.
+   * This function finds the weighted residuals that a sort on the current sort values would put at
+   * the half index and the one before it, and remembers them in medianResiduals. The list itself
+   * is not reordered, but the sort values are kept to break ties later.
+   */
+  private void selectMedian() {
+    int numData = weightedResiduals.size();
+    loadSortKeys(numData);
+
+    // Don't let the median orders pile up indefinitely.
+    if (numTieLevels == MAXTIELEVELS) {
+      sortIndices(numData, 1);
+      permuteResiduals(numData);
+      numTieLevels = 0;
+      loadSortKeys(numData);
+    }
+
+    for (int j = 0; j < numData; j++) {
+      sortIndices[j] = j;
+    }
+
+    // Put the weighted residual at the half index in place, with everything that sorts before it
+    // ahead of it.
+    int k = Math.min(halfIndex, numData - 1);
+    select(k, numData);
+    medianResiduals[1] = weightedResiduals.get(sortIndices[k]);
+
+    // The one before it is the largest of those ahead of it.
+    if (k > 0) {
+      int before = 0;
+      for (int j = 1; j < k; j++) {
+        if (compareIndices(sortIndices[j], sortIndices[before], 0) > 0) {
+          before = j;
+        }
+      }
+      medianResiduals[0] = weightedResiduals.get(sortIndices[before]);
+    } else {
+      medianResiduals[0] = medianResiduals[1];
+    }
+
+    // Keep this order to break ties later.
+    double[] keys = sortKeys[numTieLevels + 1];
+    System.arraycopy(sortKeys, 0, sortKeys, 1, numTieLevels + 1);
+    sortKeys[0] = keys;
+    numTieLevels++;
+  }
+
+  /**
+   * This function sorts the weighted residuals into the order of their current sort values, as a
+   * stable sort following the medians selected since the last sort would, by sorting indices on
+   * primitive keys and then permuting the list.
+   */
+  private void sortResiduals() {
+    int numData = weightedResiduals.size();
+    loadSortKeys(numData);
+    sortIndices(numData, 0);
+    permuteResiduals(numData);
+    numTieLevels = 0;
+
+    // Keep the median positions pointing at the same places in the list as before.
+    if (halfIndex >= 0 && halfIndex < numData) {
+      medianResiduals[1] = weightedResiduals.get(halfIndex);
+      medianResiduals[0] = weightedResiduals.get(Math.max(halfIndex - 1, 0));
+    }
+  }
+
+  /**
+   * This function copies the current sort values into the sort key array, making sure the scratch
+   * arrays are big enough. In the same pass, it drops the median orders kept to break ties if the
+   * list has been changed since the sort keys were last loaded.
    *
-   * @param numData An int containing number of data we need scores for
-   */
-  private void makeScores(int numData) {
-    // Piecewise linear interpolation of optimal non-decreasing score
-    // generating function created by Steve Heustis using a simplex
-    // algorithm.  Note that the theoretically optimal weights depend
-    // only on the travel-time residual distribution.  However, these turn
-    // out to be non-monotonic which, in practice, cause convergence
-    // problems.
-    final double[] scoreGenP = {
-      0d, 0.1375d, 0.1625d, 0.1875d, 0.2125d, 0.2375d, 0.2625d, 0.2875d, 0.3125d, 0.3375d, 0.3625d,
-      0.3875d, 0.4125d, 0.4375d, 0.4625d, 0.4875d, 0.5125d, 0.5375d, 0.5625d, 0.5875d, 0.6125d,
-      0.6375d, 0.6625d, 0.6875d, 0.7125d, 0.7375d, 0.7625d, 0.7875d, 1d
-    };
-    final double[] scoreGenF = {
-      0.0775d, 0.0775d, 0.1546d, 0.5328d, 0.8679d, 1.1714d, 1.4542d, 1.7266d, 1.9987d, 2.2802d,
-      2.5803d, 2.9068d, 3.2657d, 3.6603d, 4.0912d, 4.5554d, 5.0470d, 5.5572d, 6.0754d, 6.5906d,
-      7.0919d, 7.5702d, 8.0194d, 8.4365d, 8.8223d, 9.1812d, 9.5207d, 9.5974d, 9.5974d
-    };
-
-    // Set up the interpolation.
-    lastIndex = numData;
-    double p = 0d;
-    double dp = 1d / (numData + 1);
-    double average = 0d;
-    int k = 1;
-
-    // Create an array to store the scores.
-    scores = new double[numData];
-
-    // Do the interpolation
+   * @param numData An int containing the number of weighted residuals
+   */
+  private void loadSortKeys(int numData) {
+    if (sortIndices.length < numData) {
+      sortIndices = new int[numData];
+      mergeScratch = new int[numData];
+    }
+
+    if (sortKeys[0].length < numData) {
+      sortKeys[0] = new double[numData];
+    }
+
+    if (tieLevelsOrder.length < numData) {
+      tieLevelsOrder = new WeightedResidual[numData];
+    }
+
+    double[] keys = sortKeys[0];
+    boolean unchanged = numTieLevelsOrder == numData;
     for (int j = 0; j < numData; j++) {
-      p += dp;
+      WeightedResidual weightedResidual = weightedResiduals.get(j);
+      keys[j] = weightedResidual.getSortValue();
 
-      while (p > scoreGenP[k]) {
-        k++;
+      if (tieLevelsOrder[j] != weightedResidual) {
+        tieLevelsOrder[j] = weightedResidual;
+        unchanged = false;
       }
+    }
 
-      scores[j] =
-          (p - scoreGenP[k - 1])
-                  * (scoreGenF[k] - scoreGenF[k - 1])
-                  / (scoreGenP[k] - scoreGenP[k - 1])
-              + scoreGenF[k - 1];
-      average += scores[j];
+    numTieLevelsOrder = numData;
+    if (!unchanged) {
+      numTieLevels = 0;
+    }
+  }
+
+  /**
+   * This function sorts the indices of the weighted residuals.
+   *
+   * @param numData An int containing the number of weighted residuals
+   * @param firstLevel An int containing the first row of sort keys to sort on, 0 to include the
+   *     current sort values, 1 to sort on the kept median orders only
+   */
+  private void sortIndices(int numData, int firstLevel) {
+    if (sortIndices.length < numData) {
+      sortIndices = new int[numData];
+      mergeScratch = new int[numData];
     }
 
-    // Give the scores a zero mean.
-    average /= numData;
     for (int j = 0; j < numData; j++) {
-      scores[j] -= average;
+      sortIndices[j] = j;
+    }
+    mergeSort(0, numData, firstLevel);
+  }
+
+  /**
+   * This function rearranges the weighted residuals into the order of the sorted indices.
+   *
+   * @param numData An int containing the number of weighted residuals
+   */
+  private void permuteResiduals(int numData) {
+    if (permuteScratch.length < numData) {
+      permuteScratch = new WeightedResidual[numData];
+    }
+
+    for (int j = 0; j < numData; j++) {
+      permuteScratch[j] = weightedResiduals.get(j);
+    }
+    for (int j = 0; j < numData; j++) {
+      weightedResiduals.set(j, permuteScratch[sortIndices[j]]);
+      permuteScratch[sortIndices[j]] = null;
+    }
+  }
+
+  /**
+   * Function to compare two weighted residuals by their list indices, on each row of sort keys in
+   * turn and finally on their position in the list. This is a total order that matches what a
+   * series of stable sorts would do.
+   *
+   * @param i An int containing the list index of the first weighted residual
+   * @param j An int containing the list index of the second weighted residual
+   * @param firstLevel An int containing the first row of sort keys to compare
+   * @return An int containing -1, 0, or +1 as the first sorts before, with, or after the second
+   */
+  private int compareIndices(int i, int j, int firstLevel) {
+    for (int level = firstLevel; level <= numTieLevels; level++) {
+      // Like WeightedResidual.compareTo, anything not clearly ordered is equal.
+      double[] keys = sortKeys[level];
+      if (keys[i] < keys[j]) {
+        return -1;
+      } else if (keys[i] > keys[j]) {
+        return +1;
+      }
     }
 
-    // The optimal non-decreasing scores, like the travel-time residual
-    // distribution, turn out to be asymmetric.  Unfortunately, this causes
-    // problems for the projected decorrelated data.  Forcing the scores
-    // to be symmetric is a quick and dirty fix for this vexed problem.
-    for (int j = 0; j < numData / 2; j++) {
-      scores[j] = 0.5d * (scores[j] - scores[numData - j - 1]);
-      scores[numData - j - 1] = -scores[j];
+    return Integer.compare(i, j);
+  }
+
+  /**
+   * This function partially orders sortIndices (quickselect) so that the index at position k is
+   * the one a full sort would put there, with all those that sort before it ahead of it.
+   *
+   * @param k An int containing the position to select
+   * @param numData An int containing the number of indices
+   */
+  private void select(int k, int numData) {
+    int left = 0;
+    int right = numData - 1;
+
+    while (right > left) {
+      // Median of three pivot.
+      int middle = (left + right) >>> 1;
+      if (compareIndices(sortIndices[middle], sortIndices[left], 0) < 0) {
+        swapIndices(middle, left);
+      }
+      if (compareIndices(sortIndices[right], sortIndices[left], 0) < 0) {
+        swapIndices(right, left);
+      }
+      if (compareIndices(sortIndices[right], sortIndices[middle], 0) < 0) {
+        swapIndices(right, middle);
+      }
+      int pivot = sortIndices[middle];
+
+      // Partition around the pivot.
+      int i = left;
+      int j = right;
+      while (i <= j) {
+        while (compareIndices(sortIndices[i], pivot, 0) < 0) {
+          i++;
+        }
+        while (compareIndices(sortIndices[j], pivot, 0) > 0) {
+          j--;
+        }
+        if (i <= j) {
+          swapIndices(i++, j--);
+        }
+      }
+
+      // Carry on in the part holding k.
+      if (k <= j) {
+        right = j;
+      } else if (k >= i) {
+        left = i;
+      } else {
+        return;
+      }
     }
+  }
 
-    if (numData % 2 > 0) {
-      scores[numData / 2] = 0d;
+  /**
+   * This function swaps two entries of sortIndices.
+   *
+   * @param i An int containing the first position
+   * @param j An int containing the second position
+   */
+  private void swapIndices(int i, int j) {
+    int index = sortIndices[i];
+    sortIndices[i] = sortIndices[j];
+    sortIndices[j] = index;
+  }
+
+  /**
+   * This function merge sorts a range of sortIndices.
+   *
+   * @param start An int containing the first position to sort
+   * @param end An int containing one past the last position to sort
+   * @param firstLevel An int containing the first row of sort keys to sort on
+   */
+  private void mergeSort(int start, int end, int firstLevel) {
+    // Insertion sort short runs.
+    if (end - start <= 16) {
+      for (int i = start + 1; i < end; i++) {
+        int index = sortIndices[i];
+        int j = i - 1;
+        while (j >= start && compareIndices(sortIndices[j], index, firstLevel) > 0) {
+          sortIndices[j + 1] = sortIndices[j];
+          j--;
+        }
+        sortIndices[j + 1] = index;
+      }
+      return;
+    }
+
+    int middle = (start + end) >>> 1;
+    mergeSort(start, middle, firstLevel);
+    mergeSort(middle, end, firstLevel);
+
+    // Skip the merge if the halves are already in order.
+    if (compareIndices(sortIndices[middle - 1], sortIndices[middle], firstLevel) <= 0) {
+      return;
+    }
+
+    System.arraycopy(sortIndices, start, mergeScratch, start, end - start);
+    int i = start;
+    int j = middle;
+    for (int k = start; k < end; k++) {
+      if (j >= end
+          || (i < middle
+              && compareIndices(mergeScratch[i], mergeScratch[j], firstLevel) <= 0)) {
+        sortIndices[k] = mergeScratch[i++];
+      } else {
+        sortIndices[k] = mergeScratch[j++];
+      }
     }
   }
 }
@@ -0,0 +1,123 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The RankSumScores class provides the rank-sum estimator scores for each number of data. The
+ * scores depend only on the number of data, so they are interpolated once and kept in a table
+ * shared by every rank-sum estimator in the process, up to LocUtil.MAXSCORETABLEDATA data. The
+ * score arrays handed out are shared, so they must not be modified.
+ */
+public final class RankSumScores {
+  /**
+   * An AtomicReferenceArray of double[] containing the scores for each number of data, filled in
+   * as they're needed.
+   */
+  private static final AtomicReferenceArray<double[]> scoreTable =
+      new AtomicReferenceArray<double[]>(LocUtil.MAXSCORETABLEDATA + 1);
+
+  /**
+   * A double[] containing the probabilities at which the score generating function is tabulated.
+   */
+  private static final double[] SCOREGENP = {
+    0d, 0.1375d, 0.1625d, 0.1875d, 0.2125d, 0.2375d, 0.2625d, 0.2875d, 0.3125d, 0.3375d, 0.3625d,
+    0.3875d, 0.4125d, 0.4375d, 0.4625d, 0.4875d, 0.5125d, 0.5375d, 0.5625d, 0.5875d, 0.6125d,
+    0.6375d, 0.6625d, 0.6875d, 0.7125d, 0.7375d, 0.7625d, 0.7875d, 1d
+  };
+
+  /** A double[] containing the score generating function at each tabulated probability. */
+  private static final double[] SCOREGENF = {
+    0.0775d, 0.0775d, 0.1546d, 0.5328d, 0.8679d, 1.1714d, 1.4542d, 1.7266d, 1.9987d, 2.2802d,
+    2.5803d, 2.9068d, 3.2657d, 3.6603d, 4.0912d, 4.5554d, 5.0470d, 5.5572d, 6.0754d, 6.5906d,
+    7.0919d, 7.5702d, 8.0194d, 8.4365d, 8.8223d, 9.1812d, 9.5207d, 9.5974d, 9.5974d
+  };
+
+  /** Private constructor, this class only has static functions. */
+  private RankSumScores() {}
+
+  /**
+   * Function to return the scores for a number of data. Scores within the table size are
+   * interpolated the first time they're asked for and shared after that. Several threads asking
+   * for the same new scores at once may each interpolate them, but they all get the same values.
+   *
+   * @param numData An int containing number of data we need scores for
+   * @return A double[] containing the scores, which must not be modified
+   */
+  public static double[] getScores(int numData) {
+    if (numData < 0 || numData >= scoreTable.length()) {
+      return makeScores(numData);
+    }
+
+    double[] scores = scoreTable.get(numData);
+    if (scores == null) {
+      scores = makeScores(numData);
+      if (!scoreTable.compareAndSet(numData, null, scores)) {
+        scores = scoreTable.get(numData);
+      }
+    }
+
+    return scores;
+  }
+
+  /**
+   * This funtion interpolates the score generating function onto the data available.
+   *
+   * @param numData An int containing number of data we need scores for
+   * @return A double[] containing the scores
+   */
+  private static double[] makeScores(int numData) {
+    // Piecewise linear interpolation of optimal non-decreasing score
+    // generating function created by Steve Heustis using a simplex
+    // algorithm.  Note that the theoretically optimal weights depend
+    // only on the travel-time residual distribution.  However, these turn
+    // out to be non-monotonic which, in practice, cause convergence
+    // problems.
+
+    // Set up the interpolation.
+    double p = 0d;
+    double dp = 1d / (numData + 1);
+    double average = 0d;
+    int k = 1;
+
+    // Create an array to store the scores.
+    double[] scores = new double[numData];
+
+    // Do the interpolation
+    for (int j = 0; j < numData; j++) {
+      p += dp;
+
+      while (p > SCOREGENP[k]) {
+        k++;
+      }
+
+      scores[j] =
+          (p - SCOREGENP[k - 1])
+                  * (SCOREGENF[k] - SCOREGENF[k - 1])
+                  / (SCOREGENP[k] - SCOREGENP[k - 1])
+              + SCOREGENF[k - 1];
+      average += scores[j];
+    }
+
+    // Give the scores a zero mean.
+    average /= numData;
+    for (int j = 0; j < numData; j++) {
+      scores[j] -= average;
+    }
+
+    // The optimal non-decreasing scores, like the travel-time residual
+    // distribution, turn out to be asymmetric.  Unfortunately, this causes
+    // problems for the projected decorrelated data.  Forcing the scores
+    // to be symmetric is a quick and dirty fix for this vexed problem.
+    for (int j = 0; j < numData / 2; j++) {
+      scores[j] = 0.5d * (scores[j] - scores[numData - j - 1]);
+      scores[numData - j - 1] = -scores[j];
+    }
+
+    if (numData % 2 > 0) {
+      scores[numData / 2] = 0d;
+    }
+
+    return scores;
+  }
+}
@@ -11,6 +11,7 @@ import gov.usgs.traveltime.TauUtilities;
 import gov.usgs.traveltime.tables.TauIntegralException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -65,6 +66,14 @@ public class Stepper {
   /** A Decorrelator object used when decorrelating the event picks. */
   private Decorrelator decorrelator;
 
+  /** A boolean flag, true if the decorrelation finds only the eigenvectors it keeps. */
+  private boolean partialEigen = LocUtil.PARTIALEIGEN;
+
+  /**
+   * A LocContext object containing the state shared by the location logic for this location only.
+   */
+  private LocContext context;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(Stepper.class.getName());
 
@@ -82,6 +91,15 @@ public class Stepper {
    */
   private double bayesianContribution = 0d;
 
+  /** An ArrayList of BayesianDepth objects reused to hold the slab depths at the hypocenter. */
+  private final ArrayList<BayesianDepth> slabDepths = new ArrayList<BayesianDepth>();
+
+  /** A LocEnvironmentCache object used to cache the location environment, null to disable. */
+  private LocEnvironmentCache environmentCache = null;
+
+  /** A String containing the slab model resolution used to key the location environment cache. */
+  private String slabRes = null;
+
   /**
    * The Stepper constructor. Set the event, phaseID logic, and auxiliary locator information to the
    * provided values
@@ -91,9 +109,18 @@ public class Stepper {
    * @param auxLoc An AuxLocRef object containing auxiliary locator information used when performing
    *     Stepper calculations.
    * @param slabStats A Slabs object containing the slab part of the auxiliary data
+   * @param context A LocContext object containing the state of this location
+   * @param tuning A LocTuning object containing the settings for how to locate
    */
-  public Stepper(Event event, PhaseID phaseIDLogic, AuxLocRef auxLoc, Slabs slabStats) {
+  public Stepper(
+      Event event,
+      PhaseID phaseIDLogic,
+      AuxLocRef auxLoc,
+      Slabs slabStats,
+      LocContext context,
+      LocTuning tuning) {
     this.event = event;
+    this.context = context;
     hypo = event.getHypo();
     cratons = auxLoc.getCratons();
     zoneStats = auxLoc.getZoneStats();
@@ -102,11 +129,60 @@ public class Stepper {
     this.phaseIDLogic = phaseIDLogic;
     rawRankSumEstimator = event.getRawRankSumEstimator();
     projectedRankSumEstimator = event.getProjectedRankSumEstimator();
-    linearStep = new LinearStep(event);
-    decorrelator = event.getDecorrelator();
+    linearStep = new LinearStep(event, context, tuning.getLineSearchCandidates());
+    partialEigen = tuning.getPartialEigen();
+    setDecorrelator(event.getDecorrelator());
   }
 
-  public Stepper() {}
+  /**
+   * This function rebinds the Stepper (and its linear step logic) to a new event so that it can be
+   * reused, clearing everything remembered from the last event located.
+   *
+   * @param event An Event object containing the event to use when performing Stepper calculations.
+   */
+  public void reset(Event event) {
+    this.event = event;
+    hypo = event.getHypo();
+    rawRankSumEstimator = event.getRawRankSumEstimator();
+    projectedRankSumEstimator = event.getProjectedRankSumEstimator();
+    setDecorrelator(event.getDecorrelator());
+    linearStep.reset(event);
+    firstDecorrelationDone = false;
+    rSumEstResult = null;
+    residualsMedian = 0d;
+    lastContribution = 0d;
+    bayesianContribution = 0d;
+  }
+
+  /**
+   * This function sets the decorrelator of the event being located, telling it how to solve the
+   * eigenvalue problem.
+   *
+   * @param decorrelator A Decorrelator object containing the event decorrelator, null if the event
+   *     isn't decorrelated
+   */
+  private void setDecorrelator(Decorrelator decorrelator) {
+    this.decorrelator = decorrelator;
+    if (decorrelator != null) {
+      decorrelator.setPartialEigen(partialEigen);
+    }
+  }
+
+  public Stepper() {
+    context = new LocContext();
+  }
+
+  /**
+   * Function to set the cache used to look up the location environment, which may be shared with
+   * other locator engines using the same models.
+   *
+   * @param environmentCache A LocEnvironmentCache object containing the cache, null to disable
+   * @param slabRes A String containing the slab model resolution of this Stepper's slab model
+   */
+  public void setEnvironmentCache(LocEnvironmentCache environmentCache, String slabRes) {
+    this.environmentCache = environmentCache;
+    this.slabRes = slabRes;
+  }
 
   /**
    * The Stepper phase identification function. Sets the tectonic flag and Bayesian depth
@@ -179,7 +255,7 @@ public class Stepper {
 
     double dispersion;
     lastContribution = bayesianContribution;
-    if (LocUtil.useDecorrelation) {
+    if (context.getUseDecorrelation()) {
       // Demedian the raw residuals.
       residualsMedian = rawRankSumEstimator.computeMedian();
       rawRankSumEstimator.deMedianResiduals();
@@ -240,7 +316,7 @@ public class Stepper {
    * internalPhaseID because we don't want to update the direction during step length damping.
    */
   private void updateStepDirection() {
-    if (LocUtil.useDecorrelation) {
+    if (context.getUseDecorrelation()) {
       hypo.setStepDirectionUnitVector(
           projectedRankSumEstimator.compSteepestDescDir(hypo.getDegreesOfFreedom()));
     } else {
@@ -276,7 +352,7 @@ public class Stepper {
 
     // Get the linearized step.
     hypo.setNumOfTimesStepLengthDampening(0);
-    double damp = LocUtil.computeDampeningFactor();
+    double damp = context.computeDampeningFactor();
     hypo.setStepLength(Math.max(hypo.getStepLength(), 2d * LocUtil.CONVERGENCESTAGELIMITS[stage]));
     rSumEstResult =
         linearStep.stepLength(
@@ -414,22 +490,27 @@ public class Stepper {
 
   /**
    * This function sets the location environment by determining if the location is in a craton or
-   * tectonic area and setting the Bayesian depth.
+   * tectonic area and setting the Bayesian depth. The environment comes from the location
+   * environment cache if there is one.
    */
   protected void setLocEnvironment() {
-    // Set the tectonic flag.  Note that everything outside cratons is considered tectonic.
-    if (cratons.isCraton(hypo.getLatitude(), hypo.getLongitude())) {
-      LocUtil.isTectonic = false;
+    LocEnvironmentCache.Environment environment;
+    if (environmentCache != null) {
+      environment =
+          environmentCache.get(
+              slabRes, hypo.getLatitude(), hypo.getLongitude(), this::getEnvironment);
     } else {
-      LocUtil.isTectonic = true;
+      environment = getEnvironment(hypo.getLatitude(), hypo.getLongitude());
     }
 
-    LOGGER.debug("Tectonic = " + LocUtil.isTectonic);
+    // Set the tectonic flag.
+    context.setIsTectonic(environment.getIsTectonic());
+
+    LOGGER.debug("Tectonic = " + context.getIsTectonic());
 
     if (!event.getIsDepthManual()) {
       // Update the Bayesian depth if it wasn't set by the analyst.
-      ArrayList<BayesianDepth> bayesList =
-          getBayesDepth(hypo.getLatitude(), hypo.getLongitude(), false);
+      List<BayesianDepth> bayesList = environment.getBayesianDepths();
       /*
        * At this point, we should have a complete set of possible depths (in increasing
        * depth order).  If the Bayesian condition was set up as a sum of Gaussians, we
@@ -457,6 +538,20 @@ public class Stepper {
             hypo.getBayesianDepth(), hypo.getBayesianDepthWeight(), event.getIsDepthManual()));
   }
 
+  /**
+   * This function computes the location environment at a point: whether it is in a craton or
+   * tectonic area, and the list of possible Bayesian depths.
+   *
+   * @param latitude A double containing the geographic latitude in degrees
+   * @param longitude A double containing the geographic longitude in degrees
+   * @return A LocEnvironmentCache.Environment object containing the location environment
+   */
+  private LocEnvironmentCache.Environment getEnvironment(double latitude, double longitude) {
+    // Note that everything outside cratons is considered tectonic.
+    return new LocEnvironmentCache.Environment(
+        !cratons.isCraton(latitude, longitude), getBayesDepth(latitude, longitude, false));
+  }
+
   /**
    * Compile a list of all possible Bayesian depths by combining the Slab model and the ZoneStats
    * statistics. There are three depth categories: 1) shallow, 2) deeper, but presumably inducing
@@ -471,7 +566,6 @@ public class Stepper {
     double deepest;
     BayesianDepth oldZone = null;
     BayesianDepth newZone = null;
-    ArrayList<BayesianDepth> slabDepths;
     ArrayList<BayesianDepth> bayesList;
 
     // Create the empty list.
@@ -482,9 +576,9 @@ public class Stepper {
         new BayesianDepth(LocUtil.DEFAULTDEPTH, LocUtil.DEFAULTDEPTHSE, DepthSource.SHALLOW));
 
     // Get the slab depths.
-    slabDepths = slabStats.getDepth(latitude, longitude);
+    slabStats.getDepth(latitude, longitude, slabDepths);
 
-    if (slabDepths != null) {
+    if (!slabDepths.isEmpty()) {
       for (BayesianDepth slab : slabDepths) {
         if (slab.getDepth() <= LocUtil.SLABMERGEDEPTH) {
           /**
@@ -652,7 +746,7 @@ public class Stepper {
    * @param depth Hypocenter depth in kilometers
    * @return Best Bayesian depth
    */
-  private BayesianDepth bestBayesDepth(ArrayList<BayesianDepth> bayesList, double depth) {
+  private BayesianDepth bestBayesDepth(List<BayesianDepth> bayesList, double depth) {
     double slabDiff = TauUtilities.MAXIMUMDOUBLE;
     BayesianDepth slabDepth = null;
 
@@ -700,7 +794,7 @@ public class Stepper {
   private void logStep(String id, int stage, int iteration, LocStatus status) {
     int used;
 
-    if (LocUtil.useDecorrelation) {
+    if (context.getUseDecorrelation()) {
       used = event.getNumProjectedPhasesUsed();
     } else {
       used = event.getNumPhasesUsed();
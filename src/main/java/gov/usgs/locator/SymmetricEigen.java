@@ -0,0 +1,664 @@
+package gov.usgs.locator;
+
+import java.util.Arrays;
+import java.util.Random;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The SymmetricEigen class solves the eigenvalue problem for a real symmetric matrix when only some
+ * of the eigenvectors are needed, as in the decorrelation, where only the eigenvectors of the
+ * largest eigenvalues are kept. The matrix is reduced to tridiagonal form by Householder
+ * reflections without accumulating them, all the eigenvalues are found from the tridiagonal matrix
+ * by the implicit QL algorithm, and then the eigenvectors are found only for the eigenvalues
+ * requested by inverse iteration on the tridiagonal matrix (after the LAPACK routine dstein) and
+ * transformed back with the stored reflections.
+ *
+ * <p>The reduction is the only cubic step, and it's a small fraction of the work of a full
+ * decomposition, which also accumulates the transformations and carries the eigenvectors through
+ * the QL iterations. Each eigenvector requested then costs a multiple of the size of the matrix
+ * squared. Eigenvectors of close eigenvalues have to be kept orthogonal, though, so if many of the
+ * eigenvalues requested are bunched together, the eigenvectors of the tridiagonal matrix are found
+ * by accumulating the QL rotations instead.
+ */
+public class SymmetricEigen {
+  /** An int containing the maximum number of QL iterations for each eigenvalue. */
+  private static final int MAXQLITERATIONS = 30;
+
+  /** An int containing the maximum number of inverse iterations for each eigenvector. */
+  private static final int MAXINVERSEITERATIONS = 5;
+
+  /** An int containing the number of extra inverse iterations after convergence. */
+  private static final int EXTRAINVERSEITERATIONS = 2;
+
+  /**
+   * An int containing the rough cost of finding an eigenvector by inverse iteration, measured in
+   * orthogonalizations of one vector against another.
+   */
+  private static final int VECTORCOST = 12;
+
+  /**
+   * An int containing the rough cost of accumulating the eigenvectors through the QL iterations,
+   * measured in orthogonalizations, as the square of the order of the matrix divided by this.
+   */
+  private static final int QLCOSTDIVISOR = 16;
+
+  /** A long containing the seed for the inverse iteration starting vectors. */
+  private static final long STARTSEED = 4021L;
+
+  /** A double containing the machine precision. */
+  private static final double EPSILON = Math.ulp(1d);
+
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(SymmetricEigen.class.getName());
+
+  /** An int containing the order of the matrix. */
+  private final int size;
+
+  /**
+   * A double[][] containing the matrix, overwritten by the reduction, with the Householder vector
+   * of each step stored in the row of that step to the right of the diagonal.
+   */
+  private final double[][] reflections;
+
+  /** A double array containing the Householder scale factors, zero if a step was skipped. */
+  private final double[] betas;
+
+  /** A double array containing the diagonal of the tridiagonal matrix. */
+  private final double[] diagonal;
+
+  /** A double array containing the off diagonal of the tridiagonal matrix. */
+  private final double[] offDiagonal;
+
+  /** A double array containing the eigenvalues in increasing order. */
+  private final double[] eigenvalues;
+
+  /**
+   * The SymmetricEigen constructor. This constructor reduces the matrix to tridiagonal form and
+   * computes all the eigenvalues. Only the upper left size by size block of the matrix is used
+   * (there may be more and longer rows), and it is overwritten.
+   *
+   * @param matrix A double[][] containing the symmetric matrix, which is overwritten
+   * @param size An int containing the order of the matrix
+   */
+  public SymmetricEigen(double[][] matrix, int size) {
+    this.size = size;
+    reflections = matrix;
+    betas = new double[size];
+    diagonal = new double[size];
+    offDiagonal = new double[size];
+
+    reduce();
+
+    eigenvalues = Arrays.copyOf(diagonal, size);
+    double[] work = Arrays.copyOf(offDiagonal, size);
+    computeEigenvalues(eigenvalues, work);
+    Arrays.sort(eigenvalues);
+  }
+
+  /**
+   * Function to return the eigenvalues.
+   *
+   * @return A double array containing all the eigenvalues in increasing order
+   */
+  public double[] getEigenvalues() {
+    return eigenvalues;
+  }
+
+  /**
+   * This function computes the eigenvectors for the largest eigenvalues.
+   *
+   * @param first An int containing the index of the smallest eigenvalue whose eigenvector is
+   *     needed
+   * @return A double[][] containing the unit eigenvectors of eigenvalues first through size - 1,
+   *     one per row, so that row i - first is the eigenvector of eigenvalue i. The sign of each
+   *     eigenvector is set so that its largest element in the tridiagonal basis is positive.
+   */
+  public double[][] getEigenvectors(int first) {
+    // Work out the norm and tolerances for the tridiagonal matrix.
+    double norm = 0d;
+    for (int i = 0; i < size; i++) {
+      double rowSum = Math.abs(diagonal[i]) + Math.abs(offDiagonal[i]);
+      if (i > 0) {
+        rowSum += Math.abs(offDiagonal[i - 1]);
+      }
+      norm = Math.max(norm, rowSum);
+    }
+    double orthogonalTolerance = 1e-3 * norm;
+
+    // Group close eigenvalues so their eigenvectors can be kept orthogonal.
+    int[] clusterStarts = new int[size];
+    long numOrthogonalizations = 0L;
+    for (int j = first; j < size; j++) {
+      if (j == first || eigenvalues[j] - eigenvalues[j - 1] > orthogonalTolerance) {
+        clusterStarts[j] = j;
+      } else {
+        clusterStarts[j] = clusterStarts[j - 1];
+      }
+      numOrthogonalizations += j - clusterStarts[j];
+    }
+
+    // Inverse iteration is much faster unless there are big clusters to keep orthogonal, in which
+    // case it's cheaper to carry all the eigenvectors through the QL iterations.
+    double[][] vectors;
+    if (VECTORCOST * (long) (size - first) + numOrthogonalizations
+        <= (long) size * size / QLCOSTDIVISOR) {
+      vectors = inverseIterate(first, norm, clusterStarts);
+    } else {
+      vectors = accumulateVectors(first);
+    }
+
+    // Transform the eigenvectors back to the original basis.
+    for (double[] vector : vectors) {
+      transformBack(vector);
+    }
+
+    return vectors;
+  }
+
+  /**
+   * This function computes the eigenvectors of the tridiagonal matrix for the largest eigenvalues
+   * by inverse iteration.
+   *
+   * @param first An int containing the index of the smallest eigenvalue whose eigenvector is
+   *     needed
+   * @param norm A double containing the norm of the tridiagonal matrix
+   * @param clusterStarts An array of ints containing the index of the first eigenvalue of the
+   *     cluster each eigenvalue belongs to
+   * @return A double[][] containing the unit eigenvectors of eigenvalues first through size - 1,
+   *     one per row
+   */
+  private double[][] inverseIterate(int first, double norm, int[] clusterStarts) {
+    double[][] vectors = new double[size - first][];
+    double convergedNorm = Math.sqrt(0.1d / size);
+
+    double[] pivots = new double[size];
+    double[] upper = new double[size];
+    double[] upper2 = new double[size];
+    double[] multipliers = new double[size];
+    boolean[] swapped = new boolean[size];
+    Random random = new Random(STARTSEED);
+
+    double lastShift = 0d;
+    for (int j = first; j < size; j++) {
+      // Separate equal eigenvalues slightly so inverse iteration finds different vectors.
+      double shift = eigenvalues[j];
+      if (j > first) {
+        double perturbation = 10d * Math.abs(EPSILON * shift);
+        if (shift - lastShift < perturbation) {
+          shift = lastShift + perturbation;
+        }
+      }
+      lastShift = shift;
+
+      factor(shift, norm, pivots, upper, upper2, multipliers, swapped);
+
+      double[] vector = new double[size];
+      for (int i = 0; i < size; i++) {
+        vector[i] = 2d * random.nextDouble() - 1d;
+      }
+
+      for (int iteration = 0, converged = 0; iteration < MAXINVERSEITERATIONS; iteration++) {
+        // Scale the starting vector to keep the solution in range.
+        double sum = 0d;
+        for (int i = 0; i < size; i++) {
+          sum += Math.abs(vector[i]);
+        }
+        double scale = size * norm * Math.max(EPSILON, Math.abs(pivots[size - 1])) / sum;
+        for (int i = 0; i < size; i++) {
+          vector[i] *= scale;
+        }
+
+        solve(vector, pivots, upper, upper2, multipliers, swapped);
+
+        // Keep it orthogonal to the rest of the cluster.
+        for (int l = clusterStarts[j]; l < j; l++) {
+          double[] other = vectors[l - first];
+          double dot = 0d;
+          for (int i = 0; i < size; i++) {
+            dot += vector[i] * other[i];
+          }
+          for (int i = 0; i < size; i++) {
+            vector[i] -= dot * other[i];
+          }
+        }
+
+        // The solution grows a lot once the vector has converged.
+        if (Math.abs(vector[findLargest(vector)]) >= convergedNorm
+            && ++converged > EXTRAINVERSEITERATIONS) {
+          break;
+        }
+      }
+
+      normalize(vector);
+      vectors[j - first] = vector;
+    }
+
+    return vectors;
+  }
+
+  /**
+   * This function computes the eigenvectors of the tridiagonal matrix for the largest eigenvalues
+   * by accumulating the QL rotations.
+   *
+   * @param first An int containing the index of the smallest eigenvalue whose eigenvector is
+   *     needed
+   * @return A double[][] containing the unit eigenvectors of eigenvalues first through size - 1,
+   *     one per row
+   */
+  private double[][] accumulateVectors(int first) {
+    double[] d = Arrays.copyOf(diagonal, size);
+    double[] e = Arrays.copyOf(offDiagonal, size);
+    double[][] z = computeEigenvectors(d, e);
+
+    // Sort the eigenvectors into eigenvalue order.
+    Integer[] order = new Integer[size];
+    for (int i = 0; i < size; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (i, j) -> Double.compare(d[i], d[j]));
+
+    double[][] vectors = new double[size - first][];
+    for (int j = first; j < size; j++) {
+      vectors[j - first] = z[order[j]];
+      normalize(vectors[j - first]);
+    }
+
+    return vectors;
+  }
+
+  /**
+   * This function scales a vector to unit length, with its largest element positive.
+   *
+   * @param vector A double array containing the vector, which is scaled in place
+   */
+  private void normalize(double[] vector) {
+    double sum = 0d;
+    for (int i = 0; i < size; i++) {
+      sum += vector[i] * vector[i];
+    }
+
+    double scale = 1d / Math.sqrt(sum);
+    if (vector[findLargest(vector)] < 0d) {
+      scale = -scale;
+    }
+    for (int i = 0; i < size; i++) {
+      vector[i] *= scale;
+    }
+  }
+
+  /**
+   * This function reduces the matrix to tridiagonal form with Householder reflections, keeping the
+   * reflections for transforming the eigenvectors back.
+   */
+  private void reduce() {
+    double[] product = new double[size];
+
+    for (int k = 0; k < size - 2; k++) {
+      double[] row = reflections[k];
+      diagonal[k] = row[k];
+
+      double sigma = 0d;
+      for (int i = k + 1; i < size; i++) {
+        sigma += row[i] * row[i];
+      }
+
+      if (sigma == 0d) {
+        // This column is already reduced.
+        offDiagonal[k] = 0d;
+        betas[k] = 0d;
+        continue;
+      }
+
+      // Set up the reflection, leaving its vector in place of the row.
+      double x0 = row[k + 1];
+      double alpha = -Math.copySign(Math.sqrt(sigma), x0);
+      row[k + 1] = x0 - alpha;
+      double beta = 1d / (sigma - alpha * x0);
+      offDiagonal[k] = alpha;
+      betas[k] = beta;
+
+      // Apply it to both sides of the rest of the matrix.
+      double dot = 0d;
+      for (int i = k + 1; i < size; i++) {
+        double[] rowI = reflections[i];
+        double sum = 0d;
+        for (int j = k + 1; j < size; j++) {
+          sum += rowI[j] * row[j];
+        }
+        product[i] = beta * sum;
+        dot += row[i] * product[i];
+      }
+
+      double half = 0.5d * beta * dot;
+      for (int i = k + 1; i < size; i++) {
+        product[i] -= half * row[i];
+      }
+
+      for (int i = k + 1; i < size; i++) {
+        double[] rowI = reflections[i];
+        double vi = row[i];
+        double wi = product[i];
+        for (int j = k + 1; j < size; j++) {
+          rowI[j] -= vi * product[j] + wi * row[j];
+        }
+      }
+    }
+
+    // Pick up the last two diagonal elements.
+    if (size > 1) {
+      diagonal[size - 2] = reflections[size - 2][size - 2];
+      offDiagonal[size - 2] = reflections[size - 2][size - 1];
+    }
+    if (size > 0) {
+      diagonal[size - 1] = reflections[size - 1][size - 1];
+      offDiagonal[size - 1] = 0d;
+    }
+  }
+
+  /**
+   * This function computes the eigenvalues of the tridiagonal matrix with the implicit QL
+   * algorithm.
+   *
+   * @param d A double array containing the diagonal, which is replaced by the eigenvalues
+   * @param e A double array containing the off diagonal, which is destroyed
+   */
+  private void computeEigenvalues(double[] d, double[] e) {
+    for (int l = 0; l < size; l++) {
+      int iterations = 0;
+      int m;
+
+      do {
+        // Look for a small off diagonal element to split the matrix.
+        for (m = l; m < size - 1; m++) {
+          if (Math.abs(e[m]) <= EPSILON * (Math.abs(d[m]) + Math.abs(d[m + 1]))) {
+            break;
+          }
+        }
+
+        if (m != l) {
+          if (iterations++ == MAXQLITERATIONS) {
+            warnNotConverged(l);
+            break;
+          }
+
+          // Form the shift.
+          double g = (d[l + 1] - d[l]) / (2d * e[l]);
+          double r = Math.hypot(g, 1d);
+          g = d[m] - d[l] + e[l] / (g + Math.copySign(r, g));
+
+          double s = 1d;
+          double c = 1d;
+          double p = 0d;
+          int i;
+          for (i = m - 1; i >= l; i--) {
+            double f = s * e[i];
+            double b = c * e[i];
+            r = Math.hypot(f, g);
+            e[i + 1] = r;
+
+            if (r == 0d) {
+              // Recover from underflow.
+              d[i + 1] -= p;
+              e[m] = 0d;
+              break;
+            }
+
+            s = f / r;
+            c = g / r;
+            g = d[i + 1] - p;
+            r = (d[i] - g) * s + 2d * c * b;
+            p = s * r;
+            d[i + 1] = g + p;
+            g = c * r - b;
+          }
+
+          if (r == 0d && i >= l) {
+            continue;
+          }
+
+          d[l] -= p;
+          e[l] = g;
+          e[m] = 0d;
+        }
+      } while (m != l);
+    }
+  }
+
+  /**
+   * This function logs a QL iteration that didn't converge. The eigenvalue is left as it was after
+   * the last iteration, which is usually close, but the eigenvalues and eigenvectors that depend on
+   * it may be inaccurate.
+   *
+   * @param index An int containing the index of the diagonal element that didn't converge
+   */
+  private void warnNotConverged(int index) {
+    LOGGER.warn(
+        String.format(
+            "QL iteration did not converge in %d iterations for eigenvalue %d of %d",
+            MAXQLITERATIONS, index, size));
+  }
+
+  /**
+   * This function computes the eigenvalues and all the eigenvectors of the tridiagonal matrix with
+   * the implicit QL algorithm. This is the same iteration as computeEigenvalues, but with the
+   * rotations accumulated.
+   *
+   * @param d A double array containing the diagonal, which is replaced by the eigenvalues
+   * @param e A double array containing the off diagonal, which is destroyed
+   * @return A double[][] containing the eigenvector of each element of d in the corresponding row
+   */
+  private double[][] computeEigenvectors(double[] d, double[] e) {
+    double[][] z = new double[size][size];
+    for (int i = 0; i < size; i++) {
+      z[i][i] = 1d;
+    }
+
+    for (int l = 0; l < size; l++) {
+      int iterations = 0;
+      int m;
+
+      do {
+        for (m = l; m < size - 1; m++) {
+          if (Math.abs(e[m]) <= EPSILON * (Math.abs(d[m]) + Math.abs(d[m + 1]))) {
+            break;
+          }
+        }
+
+        if (m != l) {
+          if (iterations++ == MAXQLITERATIONS) {
+            warnNotConverged(l);
+            break;
+          }
+
+          double g = (d[l + 1] - d[l]) / (2d * e[l]);
+          double r = Math.hypot(g, 1d);
+          g = d[m] - d[l] + e[l] / (g + Math.copySign(r, g));
+
+          double s = 1d;
+          double c = 1d;
+          double p = 0d;
+          int i;
+          for (i = m - 1; i >= l; i--) {
+            double f = s * e[i];
+            double b = c * e[i];
+            r = Math.hypot(f, g);
+            e[i + 1] = r;
+
+            if (r == 0d) {
+              d[i + 1] -= p;
+              e[m] = 0d;
+              break;
+            }
+
+            s = f / r;
+            c = g / r;
+            g = d[i + 1] - p;
+            r = (d[i] - g) * s + 2d * c * b;
+            p = s * r;
+            d[i + 1] = g + p;
+            g = c * r - b;
+
+            // Accumulate the rotation.
+            double[] zi = z[i];
+            double[] zi1 = z[i + 1];
+            for (int k = 0; k < size; k++) {
+              f = zi1[k];
+              zi1[k] = s * zi[k] + c * f;
+              zi[k] = c * zi[k] - s * f;
+            }
+          }
+
+          if (r == 0d && i >= l) {
+            continue;
+          }
+
+          d[l] -= p;
+          e[l] = g;
+          e[m] = 0d;
+        }
+      } while (m != l);
+    }
+
+    return z;
+  }
+
+  /**
+   * This function factors the shifted tridiagonal matrix by Gaussian elimination with partial
+   * pivoting. Zero pivots are replaced by a small number so that the solve can go on.
+   *
+   * @param shift A double containing the shift
+   * @param norm A double containing the norm of the tridiagonal matrix
+   * @param pivots A double array to hold the diagonal of the upper factor
+   * @param upper A double array to hold the first super diagonal of the upper factor
+   * @param upper2 A double array to hold the second super diagonal of the upper factor
+   * @param multipliers A double array to hold the multipliers of the lower factor
+   * @param swapped A boolean array to hold whether each row was interchanged with the next
+   */
+  private void factor(
+      double shift,
+      double norm,
+      double[] pivots,
+      double[] upper,
+      double[] upper2,
+      double[] multipliers,
+      boolean[] swapped) {
+    double tiny = EPSILON * Math.max(norm, Double.MIN_NORMAL);
+
+    for (int i = 0; i < size; i++) {
+      pivots[i] = diagonal[i] - shift;
+      upper[i] = offDiagonal[i];
+      upper2[i] = 0d;
+      multipliers[i] = offDiagonal[i];
+    }
+
+    for (int i = 0; i < size - 1; i++) {
+      if (Math.abs(pivots[i]) >= Math.abs(multipliers[i])) {
+        // No interchange.
+        if (pivots[i] == 0d) {
+          pivots[i] = tiny;
+        }
+        double multiplier = multipliers[i] / pivots[i];
+        multipliers[i] = multiplier;
+        pivots[i + 1] -= multiplier * upper[i];
+        swapped[i] = false;
+      } else {
+        // Interchange this row with the next.
+        double multiplier = pivots[i] / multipliers[i];
+        pivots[i] = multipliers[i];
+        multipliers[i] = multiplier;
+        double temp = pivots[i + 1];
+        pivots[i + 1] = upper[i] - multiplier * temp;
+        if (i < size - 2) {
+          upper2[i] = upper[i + 1];
+          upper[i + 1] = -multiplier * upper2[i];
+        }
+        upper[i] = temp;
+        swapped[i] = true;
+      }
+    }
+
+    if (size > 0 && pivots[size - 1] == 0d) {
+      pivots[size - 1] = tiny;
+    }
+  }
+
+  /**
+   * This function solves the factored shifted tridiagonal system in place.
+   *
+   * @param x A double array containing the right hand side, which is replaced by the solution
+   * @param pivots A double array containing the diagonal of the upper factor
+   * @param upper A double array containing the first super diagonal of the upper factor
+   * @param upper2 A double array containing the second super diagonal of the upper factor
+   * @param multipliers A double array containing the multipliers of the lower factor
+   * @param swapped A boolean array containing whether each row was interchanged with the next
+   */
+  private void solve(
+      double[] x,
+      double[] pivots,
+      double[] upper,
+      double[] upper2,
+      double[] multipliers,
+      boolean[] swapped) {
+    // Solve the lower factor.
+    for (int i = 0; i < size - 1; i++) {
+      if (swapped[i]) {
+        double temp = x[i];
+        x[i] = x[i + 1];
+        x[i + 1] = temp - multipliers[i] * x[i];
+      } else {
+        x[i + 1] -= multipliers[i] * x[i];
+      }
+    }
+
+    // Solve the upper factor.
+    x[size - 1] /= pivots[size - 1];
+    if (size > 1) {
+      x[size - 2] = (x[size - 2] - upper[size - 2] * x[size - 1]) / pivots[size - 2];
+    }
+    for (int i = size - 3; i >= 0; i--) {
+      x[i] = (x[i] - upper[i] * x[i + 1] - upper2[i] * x[i + 2]) / pivots[i];
+    }
+  }
+
+  /**
+   * This function transforms an eigenvector of the tridiagonal matrix into an eigenvector of the
+   * original matrix.
+   *
+   * @param vector A double array containing the eigenvector, which is transformed in place
+   */
+  private void transformBack(double[] vector) {
+    for (int k = size - 3; k >= 0; k--) {
+      if (betas[k] == 0d) {
+        continue;
+      }
+
+      double[] row = reflections[k];
+      double dot = 0d;
+      for (int i = k + 1; i < size; i++) {
+        dot += row[i] * vector[i];
+      }
+      dot *= betas[k];
+      for (int i = k + 1; i < size; i++) {
+        vector[i] -= dot * row[i];
+      }
+    }
+  }
+
+  /**
+   * This function finds the element of a vector with the largest magnitude.
+   *
+   * @param vector A double array containing the vector
+   * @return An int containing the index of the largest element
+   */
+  private int findLargest(double[] vector) {
+    int largest = 0;
+    for (int i = 1; i < size; i++) {
+      if (Math.abs(vector[i]) > Math.abs(vector[largest])) {
+        largest = i;
+      }
+    }
+
+    return largest;
+  }
+}
@@ -0,0 +1,255 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import gov.usgs.traveltime.BadDepthException;
+import gov.usgs.traveltime.TravelTimeSession;
+import gov.usgs.traveltime.tables.TauIntegralException;
+import java.util.Objects;
+
+/**
+ * The TravelTimeSessionCache class sets up travel-time sessions for the locator. Setting up a
+ * session for a new source depth means correcting the travel-time tables for that depth, which is
+ * a significant part of the cost of each location iteration. This class avoids it where it can.
+ *
+ * <p>Each travel-time session holds the tables for one earth model, source depth, and tectonic
+ * flag at a time. The cache keeps one or more sessions, each remembering what it was last set up
+ * for, and hands out the session already set up for the requested earth model, depth, and tectonic
+ * flag when there is one, replacing the least recently used session otherwise. A session that is
+ * asked for exactly what it was last set up for isn't set up again at all.
+ *
+ * <p>If a depth tolerance is set, source depths are rounded to the nearest multiple of the
+ * tolerance before being used, so that the small depth changes of converging steps and damping
+ * retries keep hitting the same depth tables. This trades up to half the tolerance in source depth
+ * for speed, so it is off (zero) unless the tuning sets it. The rounding doesn't depend on what
+ * was located before, so locations are still reproducible.
+ *
+ * <p>The cache must own its sessions. A session set up through the cache must not be set up any
+ * other way, and like the sessions themselves, the cache must only be used by one thread at a time.
+ */
+public class TravelTimeSessionCache {
+  /** An array of TravelTimeSession objects containing the cached sessions. */
+  private TravelTimeSession[] sessions;
+
+  /** An array of Strings containing the earth model each session was last set up for. */
+  private String[] earthModels;
+
+  /** An array of doubles containing the source depth in kilometers each session was set up for. */
+  private double[] depths;
+
+  /** An array of doubles containing the source latitude each session was last set up for. */
+  private double[] latitudes;
+
+  /** An array of doubles containing the source longitude each session was last set up for. */
+  private double[] longitudes;
+
+  /** An array of booleans containing the tectonic flag each session was last set up for. */
+  private boolean[] isTectonic;
+
+  /** An array of longs containing when each session was last used, zero if never. */
+  private long[] lastUsed;
+
+  /** A long containing the number of sessions handed out so far. */
+  private long useCount = 0L;
+
+  /** An int containing the index of the session handed out last. */
+  private int current = 0;
+
+  /** A double containing the source depth tolerance in kilometers, zero to use exact depths. */
+  private double depthTolerance = LocUtil.TTDEPTHTOLERANCE;
+
+  /**
+   * An array of TravelTimeSessionCache objects each containing one of the extra sessions used to
+   * compute station travel times in parallel, empty to compute them serially. Each worker is set up
+   * for exactly the source the main session was set up for, and, like the main session, isn't set
+   * up again if that hasn't changed.
+   */
+  private TravelTimeSessionCache[] workers = new TravelTimeSessionCache[0];
+
+  /**
+   * The TravelTimeSessionCache constructor.
+   *
+   * @param session A TravelTimeSession object containing the first (and by default only) session
+   */
+  public TravelTimeSessionCache(TravelTimeSession session) {
+    setSessions(new TravelTimeSession[] {session});
+  }
+
+  /**
+   * Function to set the sessions to cache, forgetting what any of them were set up for.
+   *
+   * @param sessions An array of TravelTimeSession objects containing at least one session, all set
+   *     up from the same models
+   */
+  public void setSessions(TravelTimeSession[] sessions) {
+    this.sessions = sessions.clone();
+    earthModels = new String[sessions.length];
+    depths = new double[sessions.length];
+    latitudes = new double[sessions.length];
+    longitudes = new double[sessions.length];
+    isTectonic = new boolean[sessions.length];
+    lastUsed = new long[sessions.length];
+    current = 0;
+  }
+
+  /**
+   * Function to get the number of cached sessions.
+   *
+   * @return An int containing the number of cached sessions
+   */
+  public int getNumSessions() {
+    return sessions.length;
+  }
+
+  /**
+   * Function to set the extra sessions used to compute station travel times in parallel. Each must
+   * have been set up from the same models as the cached sessions, and must not be used by anything
+   * else.
+   *
+   * @param workers An array of TravelTimeSession objects containing the extra sessions, empty to
+   *     compute the travel times serially
+   */
+  public void setWorkers(TravelTimeSession[] workers) {
+    this.workers = new TravelTimeSessionCache[workers.length];
+    for (int i = 0; i < workers.length; i++) {
+      this.workers[i] = new TravelTimeSessionCache(workers[i]);
+      this.workers[i].setDepthTolerance(0d);
+    }
+  }
+
+  /**
+   * Function to get the extra sessions used to compute station travel times in parallel. Each
+   * worker must only be set up with the source depth the main session was set up for (see
+   * getSessionDepth), and only be used by one thread at a time.
+   *
+   * @return An array of TravelTimeSessionCache objects each containing one extra session, empty if
+   *     the travel times are computed serially
+   */
+  public TravelTimeSessionCache[] getWorkers() {
+    return workers;
+  }
+
+  /**
+   * Function to set the source depth tolerance.
+   *
+   * @param depthTolerance A double containing the source depth tolerance in kilometers, zero to use
+   *     exact depths
+   */
+  public void setDepthTolerance(double depthTolerance) {
+    this.depthTolerance = Math.max(depthTolerance, 0d);
+  }
+
+  /**
+   * Function to get the source depth tolerance.
+   *
+   * @return A double containing the source depth tolerance in kilometers, zero if exact depths are
+   *     used
+   */
+  public double getDepthTolerance() {
+    return depthTolerance;
+  }
+
+  /**
+   * This function rounds a source depth to the nearest multiple of the depth tolerance, keeping it
+   * within the depth range the locator allows. Depths outside that range are left alone so that the
+   * travel-time session can reject them as before.
+   *
+   * @param depth A double containing the source depth in kilometers
+   * @return A double containing the source depth to set the travel-time session up for
+   */
+  public double quantizeDepth(double depth) {
+    if (depthTolerance <= 0d || depth < LocUtil.DEPTHMIN || depth > LocUtil.DEPTHMAX) {
+      return depth;
+    }
+
+    double quantized = Math.rint(depth / depthTolerance) * depthTolerance;
+    return Math.min(Math.max(quantized, LocUtil.DEPTHMIN), LocUtil.DEPTHMAX);
+  }
+
+  /**
+   * This function gets a travel-time session set up for a source.
+   *
+   * @param earthModel A String containing the earth model name
+   * @param depth A double containing the source depth in kilometers
+   * @param latitude A double containing the source geographic latitude in degrees
+   * @param longitude A double containing the source geographic longitude in degrees
+   * @param isTectonic A boolean flag, true if the source is in a tectonic province
+   * @return A TravelTimeSession object set up for the source
+   * @throws BadDepthException If source depth is out of range
+   * @throws TauIntegralException If the tau integrals fail
+   */
+  public TravelTimeSession newSession(
+      String earthModel, double depth, double latitude, double longitude, boolean isTectonic)
+      throws BadDepthException, TauIntegralException {
+    double sessionDepth = quantizeDepth(depth);
+
+    // Look for a session that already has the right depth tables, otherwise take the least
+    // recently used one.
+    int index = -1;
+    int oldest = 0;
+    for (int j = 0; j < sessions.length; j++) {
+      if (lastUsed[j] > 0L
+          && depths[j] == sessionDepth
+          && this.isTectonic[j] == isTectonic
+          && Objects.equals(earthModels[j], earthModel)) {
+        index = j;
+        break;
+      }
+
+      if (lastUsed[j] < lastUsed[oldest]) {
+        oldest = j;
+      }
+    }
+
+    if (index < 0) {
+      index = oldest;
+    }
+
+    // Set it up unless it's already set up for exactly this source.
+    if (lastUsed[index] == 0L
+        || depths[index] != sessionDepth
+        || latitudes[index] != latitude
+        || longitudes[index] != longitude
+        || this.isTectonic[index] != isTectonic
+        || !Objects.equals(earthModels[index], earthModel)) {
+      // Forget what it was set up for in case this fails part way through.
+      lastUsed[index] = 0L;
+      sessions[index].newSession(
+          earthModel,
+          sessionDepth,
+          LocUtil.PHASELIST,
+          latitude,
+          longitude,
+          LocUtil.SUPRESSUNLIKELYPHASES,
+          LocUtil.SUPRESSBACKBRANCHES,
+          isTectonic);
+
+      earthModels[index] = earthModel;
+      depths[index] = sessionDepth;
+      latitudes[index] = latitude;
+      longitudes[index] = longitude;
+      this.isTectonic[index] = isTectonic;
+    }
+
+    lastUsed[index] = ++useCount;
+    current = index;
+    return sessions[index];
+  }
+
+  /**
+   * Function to get the session handed out last.
+   *
+   * @return A TravelTimeSession object containing the session handed out last
+   */
+  public TravelTimeSession getSession() {
+    return sessions[current];
+  }
+
+  /**
+   * Function to get the source depth the session handed out last was set up for.
+   *
+   * @return A double containing the source depth in kilometers
+   */
+  public double getSessionDepth() {
+    return depths[current];
+  }
+}
@@ -1,7 +1,6 @@
 package gov.usgs.locator;
 
 import gov.usgs.traveltime.TauUtilities;
-import java.util.Arrays;
 
 /**
  * The WeightedResidual class combines the residuals and weights for picks and the Bayesian depth,
@@ -232,23 +231,54 @@ public class WeightedResidual implements Comparable<WeightedResidual> {
     this.weight = weight;
     this.isBayesianDepth = isBayesianDepth;
 
-    spatialDerivatives = new double[3];
+    // Reuse the derivative storage if we already have it.
+    if (spatialDerivatives == null) {
+      spatialDerivatives = new double[3];
+      deMedSpaDerivatives = new double[3];
+      spreadDerivatives = new double[2];
+    }
+
     spatialDerivatives[0] = travelTimeLatDeriv;
     spatialDerivatives[1] = travelTimeLonDeriv;
     spatialDerivatives[2] = travelTimeDepthDeriv;
 
-    spreadDerivatives = new double[2];
     spreadDerivatives[0] = spreadLatDeriv;
     spreadDerivatives[1] = spreadLonDeriv;
 
     // Initialize the demedianed derivatives.
-    deMedSpaDerivatives = Arrays.copyOf(spatialDerivatives, spatialDerivatives.length);
+    System.arraycopy(spatialDerivatives, 0, deMedSpaDerivatives, 0, spatialDerivatives.length);
     linEstResidual = 0d;
     linEstWeight = weight;
     twoNorm = Double.NaN;
     sortValue = Double.NaN;
   }
 
+  /**
+   * This function makes this weighted residual a copy of another one, reusing its storage.
+   *
+   * @param weightedResidual A WeightedResidual object containing the weighted residual to copy
+   */
+  public void copyFrom(WeightedResidual weightedResidual) {
+    reInit(
+        weightedResidual.pick,
+        weightedResidual.residual,
+        weightedResidual.weight,
+        weightedResidual.isBayesianDepth,
+        weightedResidual.spatialDerivatives[0],
+        weightedResidual.spatialDerivatives[1],
+        weightedResidual.spatialDerivatives[2],
+        weightedResidual.spreadDerivatives[0],
+        weightedResidual.spreadDerivatives[1]);
+    System.arraycopy(
+        weightedResidual.deMedSpaDerivatives,
+        0,
+        deMedSpaDerivatives,
+        0,
+        deMedSpaDerivatives.length);
+    linEstResidual = weightedResidual.linEstResidual;
+    linEstWeight = weightedResidual.linEstWeight;
+  }
+
   /**
    * This function removes the median from the travel-time residuals.
    *
@@ -411,6 +441,29 @@ public class WeightedResidual implements Comparable<WeightedResidual> {
     }
   }
 
+  /**
+   * This function sets the projected residual and spatial derivatives all at once, for when the
+   * projection has been summed elsewhere.
+   *
+   * @param residual A double containing the projected residual
+   * @param travelTimeLatDeriv A double containing the projected derivative of the travel time with
+   *     respect to latitude
+   * @param travelTimeLonDeriv A double containing the projected derivative of the travel time with
+   *     respect to longitude
+   * @param travelTimeDepthDeriv A double containing the projected derivative of the travel time
+   *     with respect to depth
+   */
+  public void setProjection(
+      double residual,
+      double travelTimeLatDeriv,
+      double travelTimeLonDeriv,
+      double travelTimeDepthDeriv) {
+    this.residual = residual;
+    spatialDerivatives[0] = travelTimeLatDeriv;
+    spatialDerivatives[1] = travelTimeLonDeriv;
+    spatialDerivatives[2] = travelTimeDepthDeriv;
+  }
+
   /**
    * This function contributes to projecting the estimated weighted residuals.
    *
@@ -468,8 +521,17 @@ public class WeightedResidual implements Comparable<WeightedResidual> {
    * @return A double[] containing the weighted derivative vector
    */
   public double[] calculateWeightedDeriv(int degreesOfFreedom) {
-    double[] weightedDeriv = new double[degreesOfFreedom];
+    return calculateWeightedDeriv(degreesOfFreedom, new double[degreesOfFreedom]);
+  }
 
+  /**
+   * Calculate the weighted derivatives for computing the "normal" matrix into existing storage.
+   *
+   * @param degreesOfFreedom An int contaiing the number of degrees of freedom
+   * @param weightedDeriv A double[] to hold the weighted derivative vector
+   * @return A double[] containing the weighted derivative vector
+   */
+  public double[] calculateWeightedDeriv(int degreesOfFreedom, double[] weightedDeriv) {
     for (int j = 0; j < degreesOfFreedom; j++) {
       weightedDeriv[j] = weight * spatialDerivatives[j];
     }
@@ -484,8 +546,18 @@ public class WeightedResidual implements Comparable<WeightedResidual> {
    * @return A double[] containing the weighted derivative vector
    */
   public double[] calculateWeightedDeMedDeriv(int degreesOfFreedom) {
-    double[] weightedDeMedDeriv = new double[degreesOfFreedom];
+    return calculateWeightedDeMedDeriv(degreesOfFreedom, new double[degreesOfFreedom]);
+  }
 
+  /**
+   * Calculate the weighted, demedianed derivatives for computing the projected "normal" matrix
+   * into existing storage.
+   *
+   * @param degreesOfFreedom An int contaiing the number of degrees of freedom
+   * @param weightedDeMedDeriv A double[] to hold the weighted derivative vector
+   * @return A double[] containing the weighted derivative vector
+   */
+  public double[] calculateWeightedDeMedDeriv(int degreesOfFreedom, double[] weightedDeMedDeriv) {
     for (int j = 0; j < degreesOfFreedom; j++) {
       weightedDeMedDeriv[j] = weight * deMedSpaDerivatives[j];
     }
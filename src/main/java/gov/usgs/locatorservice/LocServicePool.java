@@ -0,0 +1,195 @@
+package gov.usgs.locatorservice;
+
+import gov.usgs.locator.LocEnginePool;
+import gov.usgs.locator.LocService;
+import gov.usgs.locator.LocTuning;
+import gov.usgs.locaux.LocUtil;
+import gov.usgs.processingformats.LocationException;
+import gov.usgs.processingformats.LocationRequest;
+import gov.usgs.processingformats.LocationResult;
+import gov.usgs.processingformats.Utility;
+import io.micronaut.context.annotation.Context;
+import jakarta.inject.Inject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The LocServicePool class holds the warm locator engines for the locator web service. The
+ * engines themselves are pooled by a LocEnginePool, which is created once when the application
+ * context starts, so that the models are already loaded when a request arrives.
+ *
+ * <p>Once the engines are loaded, a background warm-up runs a few bundled events through every
+ * engine at each configured slab resolution. This loads the slab models, builds the lazily
+ * created zone statistics interpolation, and gives the JIT a chance to compile the location logic,
+ * so the first real requests don't pay for it. The pool reports itself ready (see
+ * LocatorReadinessIndicator) only once the warm-up has finished.
+ */
+@Context
+public class LocServicePool {
+  /** An int containing the default number of engines in the pool. */
+  public static final int DEFAULT_POOL_SIZE = LocEnginePool.DEFAULT_POOL_SIZE;
+
+  /** An array of Strings containing the class path resources of the bundled warm-up events. */
+  public static final String[] WARMUP_EVENTS = {
+    "warmup/globalWarmup.json", "warmup/cusWarmup.json"
+  };
+
+  /** A LocEnginePool containing the locator engines. */
+  private final LocEnginePool engines;
+
+  /** An array of Strings containing the slab resolutions to load during the warm-up. */
+  private final String[] warmupResolutions;
+
+  /**
+   * A boolean flag, true if requests for a slab resolution that isn't loaded yet wait for it to
+   * load, false if they are located with the default resolution while it loads in the background.
+   */
+  private final boolean waitForSlabs;
+
+  /** A boolean flag, true once the warm-up has finished and the pool is ready for traffic. */
+  private volatile boolean isReady = false;
+
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(LocServicePool.class.getName());
+
+  /**
+   * The LocServicePool constructor. The configuration is automatically populated by Micronaut from
+   * the locator.* properties (see LocatorConfiguration). All engines are created (and their models
+   * loaded) before the constructor returns. The warm-up, if enabled, is started in the background.
+   *
+   * @param config A LocatorConfiguration object containing the locator web service settings
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException if an engine
+   *     could not load its models
+   */
+  @Inject
+  public LocServicePool(LocatorConfiguration config) throws LocationException {
+    boolean warmupEnabled = config.getWarmup().getEnabled();
+    warmupResolutions = config.getWarmup().getResolutions().trim().split("\\s*,\\s*");
+
+    // The warm-up needs the slab resolutions it asks for, so it always waits.
+    LocTuning tuning = config.getTuning();
+    waitForSlabs = tuning.getWaitForSlabs();
+    tuning.setWaitForSlabs(waitForSlabs || warmupEnabled);
+
+    engines =
+        new LocEnginePool(
+            config.getModel().getPath(),
+            config.getSerialized().getPath(),
+            config.getPool().getSize(),
+            tuning);
+
+    if (warmupEnabled) {
+      Thread warmupThread = new Thread(this::warmUp, "locator-warmup");
+      warmupThread.setDaemon(true);
+      warmupThread.start();
+    } else {
+      isReady = true;
+    }
+  }
+
+  /**
+   * Function to get the path to the locator models.
+   *
+   * @return A String containing the path to the locator models
+   */
+  public String getModelPath() {
+    return engines.getModelPath();
+  }
+
+  /**
+   * Function to get the path to the locator serialized files.
+   *
+   * @return A String containing the path to the locator serialized files
+   */
+  public String getSerializedPath() {
+    return engines.getSerializedPath();
+  }
+
+  /**
+   * Function to get the number of engines in the pool.
+   *
+   * @return An int containing the number of engines in the pool
+   */
+  public int getPoolSize() {
+    return engines.getPoolSize();
+  }
+
+  /**
+   * Function to get whether the pool is ready for traffic, i.e. whether the warm-up has finished.
+   *
+   * @return A boolean flag, true if the pool is ready
+   */
+  public boolean getIsReady() {
+    return isReady;
+  }
+
+  /**
+   * Function to get a location using a pooled engine.
+   *
+   * @param request a final LocationRequest containing the location request
+   * @return A LocationResult containing the resulting location
+   * @throws gov.usgs.processingformats.LocationException Throws a LocationException upon certain
+   *     severe errors.
+   */
+  public LocationResult getLocation(final LocationRequest request) throws LocationException {
+    return engines.getLocation(request);
+  }
+
+  /**
+   * This function warms up each engine in turn by locating every bundled warm-up event at every
+   * configured slab resolution. Failures are logged but otherwise ignored, since a cold engine is
+   * still a working engine. The pool is marked ready when the warm-up finishes.
+   */
+  private void warmUp() {
+    long warmupStartTime = System.currentTimeMillis();
+
+    try {
+      // The queue is first in, first out, so borrowing poolSize times visits every engine.
+      for (int i = 0; i < engines.getPoolSize(); i++) {
+        LocService engine = engines.borrow();
+        try {
+          for (String slabRes : warmupResolutions) {
+            for (String eventName : WARMUP_EVENTS) {
+              try {
+                LocationRequest request = readWarmupEvent(eventName);
+                request.SlabResolution = slabRes;
+                engine.getLocation(request);
+              } catch (Exception e) {
+                LOGGER.warn("Warm-up of " + eventName + " at " + slabRes + " failed: " + e);
+              }
+            }
+          }
+        } finally {
+          engine.setWaitForSlabs(waitForSlabs);
+          engines.release(engine);
+        }
+      }
+    } catch (LocationException e) {
+      LOGGER.warn("Warm-up interrupted: " + e.getMessage());
+    }
+
+    isReady = true;
+    LOGGER.info(LocUtil.endTimer("Time to warm up the locator engine(s)", warmupStartTime));
+  }
+
+  /**
+   * This function reads a bundled warm-up event from the class path.
+   *
+   * @param eventName A String containing the class path resource name of the event
+   * @return A LocationRequest containing the warm-up event
+   * @throws Exception Throws an Exception if the resource can't be read or parsed
+   */
+  private LocationRequest readWarmupEvent(String eventName) throws Exception {
+    try (InputStream in = LocServicePool.class.getClassLoader().getResourceAsStream(eventName)) {
+      if (in == null) {
+        throw new IOException("Missing warm-up event " + eventName);
+      }
+
+      String inputString = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      return new LocationRequest(Utility.fromJSONString(inputString));
+    }
+  }
+}
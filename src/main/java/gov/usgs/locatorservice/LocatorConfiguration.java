@@ -0,0 +1,570 @@
+package gov.usgs.locatorservice;
+
+import gov.usgs.locator.LocTuning;
+import gov.usgs.locaux.LocUtil;
+import io.micronaut.context.annotation.ConfigurationProperties;
+
+/**
+ * The LocatorConfiguration class holds the locator web service settings, automatically populated
+ * by Micronaut from the locator.* properties (or the matching environment variables):
+ *
+ * <ul>
+ *   <li>locator.model.path and locator.serialized.path, the paths to the locator models and
+ *       serialized files, both defaulting to ./build/models/
+ *   <li>locator.pool.size, the number of locator engines, defaulting to 1
+ *   <li>locator.warmup.enabled, true (the default) to warm up the engines before reporting ready
+ *   <li>locator.warmup.resolutions, a comma separated list of the slab resolutions to load during
+ *       the warm-up, defaulting to 2spd
+ *   <li>locator.slabs.wait, true to make requests for a slab resolution that isn't loaded yet wait
+ *       for it, false (the default) to locate them with the default resolution (flagged in the
+ *       result) while the requested one loads in the background
+ *   <li>locator.linesearch.candidates, the number of trial step lengths each line search evaluates
+ *       in parallel, defaulting to 1 (one at a time)
+ *   <li>locator.phaseid.threads, the number of threads used to compute the station travel times
+ *       during phase identification, defaulting to 1 (serially)
+ *   <li>locator.phaseid.move-tolerance and locator.phaseid.time-tolerance, how far in kilometers
+ *       the hypocenter and in seconds the pick travel times may move before a pick group is
+ *       identified again, both defaulting to 0 to identify again whenever they move at all
+ *   <li>locator.traveltime.sessions, the number of travel-time sessions kept set up for different
+ *       source depths, defaulting to 1
+ *   <li>locator.traveltime.depth-tolerance, the source depth tolerance in kilometers to which
+ *       travel-time sessions are set up, defaulting to 0 to use exact depths
+ *   <li>locator.environment.cell-size, the size in degrees of the cells the location environment
+ *       (tectonic flag and Bayesian depths) is cached by, defaulting to 0 to cache by exact
+ *       position
+ * </ul>
+ *
+ * <p>The settings that change how an engine locates are handed to the engines as one LocTuning
+ * object (see getTuning). Those that trade accuracy for speed (the environment cell size, the
+ * travel-time depth tolerance, and the phase identification tolerances) default to 0, as in the
+ * engines and batch mode, so that a request gets the same location from the web service as from
+ * LocMain. Any other value moves the locations slightly, and should only be used once
+ * LocatorTuningTest has passed with it against the travel-time library and models.
+ *
+ * <p>Each travel-time session and each phase identification thread after the first is a full
+ * TravelTimeSession of its own, reading and holding its own copy of the travel-time tables rather
+ * than sharing one. An engine therefore holds sessions + threads - 1 copies of the tables, and the
+ * pool up to size * (sessions + threads - 1), all read while the service starts, so raise these
+ * settings together with the memory the service is given.
+ */
+@ConfigurationProperties("locator")
+public class LocatorConfiguration {
+  /** A ModelProperties object containing the locator.model properties. */
+  private ModelProperties model = new ModelProperties();
+
+  /** A SerializedProperties object containing the locator.serialized properties. */
+  private SerializedProperties serialized = new SerializedProperties();
+
+  /** A PoolProperties object containing the locator.pool properties. */
+  private PoolProperties pool = new PoolProperties();
+
+  /** A WarmupProperties object containing the locator.warmup properties. */
+  private WarmupProperties warmup = new WarmupProperties();
+
+  /** A SlabsProperties object containing the locator.slabs properties. */
+  private SlabsProperties slabs = new SlabsProperties();
+
+  /** A LineSearchProperties object containing the locator.linesearch properties. */
+  private LineSearchProperties linesearch = new LineSearchProperties();
+
+  /** A PhaseIDProperties object containing the locator.phaseid properties. */
+  private PhaseIDProperties phaseid = new PhaseIDProperties();
+
+  /** A TravelTimeProperties object containing the locator.traveltime properties. */
+  private TravelTimeProperties traveltime = new TravelTimeProperties();
+
+  /** An EnvironmentProperties object containing the locator.environment properties. */
+  private EnvironmentProperties environment = new EnvironmentProperties();
+
+  /**
+   * Function to get the settings that change how an engine locates.
+   *
+   * @return A LocTuning object containing the tuning for the locator engines
+   */
+  public LocTuning getTuning() {
+    LocTuning tuning = new LocTuning();
+    tuning.setWaitForSlabs(slabs.getWait());
+    tuning.setLineSearchCandidates(linesearch.getCandidates());
+    tuning.setPhaseIDThreads(phaseid.getThreads());
+    tuning.setPhaseIDMoveTolerance(phaseid.getMoveTolerance());
+    tuning.setPhaseIDTimeTolerance(phaseid.getTimeTolerance());
+    tuning.setTravelTimeSessions(traveltime.getSessions());
+    tuning.setTravelTimeDepthTolerance(traveltime.getDepthTolerance());
+    tuning.setEnvironmentCellSize(environment.getCellSize());
+    return tuning;
+  }
+
+  /**
+   * Function to get the locator.model properties.
+   *
+   * @return A ModelProperties object containing the locator.model properties
+   */
+  public ModelProperties getModel() {
+    return model;
+  }
+
+  /**
+   * Function to set the locator.model properties.
+   *
+   * @param model A ModelProperties object containing the locator.model properties
+   */
+  public void setModel(ModelProperties model) {
+    this.model = model;
+  }
+
+  /**
+   * Function to get the locator.serialized properties.
+   *
+   * @return A SerializedProperties object containing the locator.serialized properties
+   */
+  public SerializedProperties getSerialized() {
+    return serialized;
+  }
+
+  /**
+   * Function to set the locator.serialized properties.
+   *
+   * @param serialized A SerializedProperties object containing the locator.serialized properties
+   */
+  public void setSerialized(SerializedProperties serialized) {
+    this.serialized = serialized;
+  }
+
+  /**
+   * Function to get the locator.pool properties.
+   *
+   * @return A PoolProperties object containing the locator.pool properties
+   */
+  public PoolProperties getPool() {
+    return pool;
+  }
+
+  /**
+   * Function to set the locator.pool properties.
+   *
+   * @param pool A PoolProperties object containing the locator.pool properties
+   */
+  public void setPool(PoolProperties pool) {
+    this.pool = pool;
+  }
+
+  /**
+   * Function to get the locator.warmup properties.
+   *
+   * @return A WarmupProperties object containing the locator.warmup properties
+   */
+  public WarmupProperties getWarmup() {
+    return warmup;
+  }
+
+  /**
+   * Function to set the locator.warmup properties.
+   *
+   * @param warmup A WarmupProperties object containing the locator.warmup properties
+   */
+  public void setWarmup(WarmupProperties warmup) {
+    this.warmup = warmup;
+  }
+
+  /**
+   * Function to get the locator.slabs properties.
+   *
+   * @return A SlabsProperties object containing the locator.slabs properties
+   */
+  public SlabsProperties getSlabs() {
+    return slabs;
+  }
+
+  /**
+   * Function to set the locator.slabs properties.
+   *
+   * @param slabs A SlabsProperties object containing the locator.slabs properties
+   */
+  public void setSlabs(SlabsProperties slabs) {
+    this.slabs = slabs;
+  }
+
+  /**
+   * Function to get the locator.linesearch properties.
+   *
+   * @return A LineSearchProperties object containing the locator.linesearch properties
+   */
+  public LineSearchProperties getLinesearch() {
+    return linesearch;
+  }
+
+  /**
+   * Function to set the locator.linesearch properties.
+   *
+   * @param linesearch A LineSearchProperties object containing the locator.linesearch properties
+   */
+  public void setLinesearch(LineSearchProperties linesearch) {
+    this.linesearch = linesearch;
+  }
+
+  /**
+   * Function to get the locator.phaseid properties.
+   *
+   * @return A PhaseIDProperties object containing the locator.phaseid properties
+   */
+  public PhaseIDProperties getPhaseid() {
+    return phaseid;
+  }
+
+  /**
+   * Function to set the locator.phaseid properties.
+   *
+   * @param phaseid A PhaseIDProperties object containing the locator.phaseid properties
+   */
+  public void setPhaseid(PhaseIDProperties phaseid) {
+    this.phaseid = phaseid;
+  }
+
+  /**
+   * Function to get the locator.traveltime properties.
+   *
+   * @return A TravelTimeProperties object containing the locator.traveltime properties
+   */
+  public TravelTimeProperties getTraveltime() {
+    return traveltime;
+  }
+
+  /**
+   * Function to set the locator.traveltime properties.
+   *
+   * @param traveltime A TravelTimeProperties object containing the locator.traveltime properties
+   */
+  public void setTraveltime(TravelTimeProperties traveltime) {
+    this.traveltime = traveltime;
+  }
+
+  /**
+   * Function to get the locator.environment properties.
+   *
+   * @return An EnvironmentProperties object containing the locator.environment properties
+   */
+  public EnvironmentProperties getEnvironment() {
+    return environment;
+  }
+
+  /**
+   * Function to set the locator.environment properties.
+   *
+   * @param environment An EnvironmentProperties object containing the locator.environment
+   *     properties
+   */
+  public void setEnvironment(EnvironmentProperties environment) {
+    this.environment = environment;
+  }
+
+  /** The ModelProperties class holds the locator.model properties. */
+  @ConfigurationProperties("model")
+  public static class ModelProperties {
+    /** A String containing the path to the locator models. */
+    private String path = "./build/models/";
+
+    /**
+     * Function to get the path to the locator models.
+     *
+     * @return A String containing the path to the locator models
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Function to set the path to the locator models.
+     *
+     * @param path A String containing the path to the locator models
+     */
+    public void setPath(String path) {
+      this.path = path;
+    }
+  }
+
+  /** The SerializedProperties class holds the locator.serialized properties. */
+  @ConfigurationProperties("serialized")
+  public static class SerializedProperties {
+    /** A String containing the path to the locator serialized files. */
+    private String path = "./build/models/";
+
+    /**
+     * Function to get the path to the locator serialized files.
+     *
+     * @return A String containing the path to the locator serialized files
+     */
+    public String getPath() {
+      return path;
+    }
+
+    /**
+     * Function to set the path to the locator serialized files.
+     *
+     * @param path A String containing the path to the locator serialized files
+     */
+    public void setPath(String path) {
+      this.path = path;
+    }
+  }
+
+  /** The PoolProperties class holds the locator.pool properties. */
+  @ConfigurationProperties("pool")
+  public static class PoolProperties {
+    /** An int containing the number of engines in the pool. */
+    private int size = LocServicePool.DEFAULT_POOL_SIZE;
+
+    /**
+     * Function to get the number of engines in the pool.
+     *
+     * @return An int containing the number of engines in the pool
+     */
+    public int getSize() {
+      return size;
+    }
+
+    /**
+     * Function to set the number of engines in the pool.
+     *
+     * @param size An int containing the number of engines in the pool
+     */
+    public void setSize(int size) {
+      this.size = size;
+    }
+  }
+
+  /** The WarmupProperties class holds the locator.warmup properties. */
+  @ConfigurationProperties("warmup")
+  public static class WarmupProperties {
+    /** A boolean flag, true to warm up the engines before reporting ready. */
+    private boolean enabled = true;
+
+    /** A String containing a comma separated list of the slab resolutions to warm up. */
+    private String resolutions = "2spd";
+
+    /**
+     * Function to get whether the engines are warmed up before reporting ready.
+     *
+     * @return A boolean flag, true to warm up the engines
+     */
+    public boolean getEnabled() {
+      return enabled;
+    }
+
+    /**
+     * Function to set whether the engines are warmed up before reporting ready.
+     *
+     * @param enabled A boolean flag, true to warm up the engines
+     */
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    /**
+     * Function to get the slab resolutions to load during the warm-up.
+     *
+     * @return A String containing a comma separated list of the slab resolutions
+     */
+    public String getResolutions() {
+      return resolutions;
+    }
+
+    /**
+     * Function to set the slab resolutions to load during the warm-up.
+     *
+     * @param resolutions A String containing a comma separated list of the slab resolutions
+     */
+    public void setResolutions(String resolutions) {
+      this.resolutions = resolutions;
+    }
+  }
+
+  /** The SlabsProperties class holds the locator.slabs properties. */
+  @ConfigurationProperties("slabs")
+  public static class SlabsProperties {
+    /** A boolean flag, true if requests wait for slab resolutions that aren't loaded yet. */
+    private boolean wait = false;
+
+    /**
+     * Function to get whether requests wait for slab resolutions that aren't loaded yet.
+     *
+     * @return A boolean flag, true if requests wait
+     */
+    public boolean getWait() {
+      return wait;
+    }
+
+    /**
+     * Function to set whether requests wait for slab resolutions that aren't loaded yet.
+     *
+     * @param wait A boolean flag, true if requests wait
+     */
+    public void setWait(boolean wait) {
+      this.wait = wait;
+    }
+  }
+
+  /** The LineSearchProperties class holds the locator.linesearch properties. */
+  @ConfigurationProperties("linesearch")
+  public static class LineSearchProperties {
+    /** An int containing the number of trial step lengths each line search evaluates at once. */
+    private int candidates = LocUtil.LINESEARCHCANDIDATES;
+
+    /**
+     * Function to get the number of trial step lengths each line search evaluates at once.
+     *
+     * @return An int containing the number of trial step lengths
+     */
+    public int getCandidates() {
+      return candidates;
+    }
+
+    /**
+     * Function to set the number of trial step lengths each line search evaluates at once.
+     *
+     * @param candidates An int containing the number of trial step lengths
+     */
+    public void setCandidates(int candidates) {
+      this.candidates = candidates;
+    }
+  }
+
+  /** The PhaseIDProperties class holds the locator.phaseid properties. */
+  @ConfigurationProperties("phaseid")
+  public static class PhaseIDProperties {
+    /** An int containing the number of threads used to compute station travel times. */
+    private int threads = LocUtil.PHASEIDTHREADS;
+
+    /** A double containing how far in kilometers the hypocenter may move before reidentifying. */
+    private double moveTolerance = LocUtil.PHASEIDMOVETOLERANCE;
+
+    /** A double containing how far in seconds pick travel times may move before reidentifying. */
+    private double timeTolerance = LocUtil.PHASEIDTIMETOLERANCE;
+
+    /**
+     * Function to get the number of threads used to compute station travel times.
+     *
+     * @return An int containing the number of threads
+     */
+    public int getThreads() {
+      return threads;
+    }
+
+    /**
+     * Function to set the number of threads used to compute station travel times.
+     *
+     * @param threads An int containing the number of threads
+     */
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    /**
+     * Function to get how far the hypocenter may move before reidentifying.
+     *
+     * @return A double containing the distance in kilometers
+     */
+    public double getMoveTolerance() {
+      return moveTolerance;
+    }
+
+    /**
+     * Function to set how far the hypocenter may move before reidentifying.
+     *
+     * @param moveTolerance A double containing the distance in kilometers
+     */
+    public void setMoveTolerance(double moveTolerance) {
+      this.moveTolerance = moveTolerance;
+    }
+
+    /**
+     * Function to get how far the pick travel times may move before reidentifying.
+     *
+     * @return A double containing the time in seconds
+     */
+    public double getTimeTolerance() {
+      return timeTolerance;
+    }
+
+    /**
+     * Function to set how far the pick travel times may move before reidentifying.
+     *
+     * @param timeTolerance A double containing the time in seconds
+     */
+    public void setTimeTolerance(double timeTolerance) {
+      this.timeTolerance = timeTolerance;
+    }
+  }
+
+  /** The TravelTimeProperties class holds the locator.traveltime properties. */
+  @ConfigurationProperties("traveltime")
+  public static class TravelTimeProperties {
+    /** An int containing the number of travel-time sessions kept set up by depth. */
+    private int sessions = LocUtil.TTSESSIONS;
+
+    /** A double containing the source depth tolerance in kilometers for travel-time sessions. */
+    private double depthTolerance = LocUtil.TTDEPTHTOLERANCE;
+
+    /**
+     * Function to get the number of travel-time sessions kept set up by depth.
+     *
+     * @return An int containing the number of sessions
+     */
+    public int getSessions() {
+      return sessions;
+    }
+
+    /**
+     * Function to set the number of travel-time sessions kept set up by depth.
+     *
+     * @param sessions An int containing the number of sessions
+     */
+    public void setSessions(int sessions) {
+      this.sessions = sessions;
+    }
+
+    /**
+     * Function to get the source depth tolerance for travel-time sessions.
+     *
+     * @return A double containing the source depth tolerance in kilometers
+     */
+    public double getDepthTolerance() {
+      return depthTolerance;
+    }
+
+    /**
+     * Function to set the source depth tolerance for travel-time sessions.
+     *
+     * @param depthTolerance A double containing the source depth tolerance in kilometers, zero to
+     *     use exact depths
+     */
+    public void setDepthTolerance(double depthTolerance) {
+      this.depthTolerance = depthTolerance;
+    }
+  }
+
+  /** The EnvironmentProperties class holds the locator.environment properties. */
+  @ConfigurationProperties("environment")
+  public static class EnvironmentProperties {
+    /** A double containing the size in degrees of the location environment cache cells. */
+    private double cellSize = LocUtil.ENVIRONMENTCELLSIZE;
+
+    /**
+     * Function to get the size of the location environment cache cells.
+     *
+     * @return A double containing the cell size in degrees
+     */
+    public double getCellSize() {
+      return cellSize;
+    }
+
+    /**
+     * Function to set the size of the location environment cache cells.
+     *
+     * @param cellSize A double containing the cell size in degrees, zero to cache by exact
+     *     position
+     */
+    public void setCellSize(double cellSize) {
+      this.cellSize = cellSize;
+    }
+  }
+}
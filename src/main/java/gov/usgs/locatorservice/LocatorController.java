@@ -1,10 +1,8 @@
 package gov.usgs.locatorservice;
 
-import gov.usgs.locator.LocService;
 import gov.usgs.processingformats.LocationException;
 import gov.usgs.processingformats.LocationRequest;
 import gov.usgs.processingformats.LocationResult;
-import io.micronaut.context.annotation.Value;
 import io.micronaut.http.HttpResponse;
 import io.micronaut.http.MediaType;
 import io.micronaut.http.annotation.Body;
@@ -12,26 +10,26 @@ import io.micronaut.http.annotation.Controller;
 import io.micronaut.http.annotation.Get;
 import io.micronaut.http.annotation.Post;
 import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.inject.Inject;
 import java.net.URI;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 @Controller("/locationservices")
 public class LocatorController {
 
   /**
-   * A string containing the path to the locator models, automatically populated by Micronaut from
-   * the locator.model.path environment varible, defaulting to ./build/models/ if the environment
-   * varible is not present.
+   * A LocServicePool containing the warm locator engines, automatically injected by Micronaut. The
+   * engines are created once at startup and shared by all requests.
    */
-  @Value("${locator.model.path:./build/models/}")
-  protected String modelPath;
+  @Inject protected LocServicePool enginePool;
 
-  /**
-   * A string containing the path to the locator serialized files, automatically populated by
-   * Micronaut from the locator.serialized.path environment varible, defaulting to ./build/models/
-   * if the environment varible is not present.
-   */
-  @Value("${locator.serialized.path:./build/models/}")
-  protected String serializedPath;
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(LocatorController.class.getName());
 
   /**
    * Function to setup the default root endpoint, pointing to index.html
@@ -54,7 +52,46 @@ public class LocatorController {
    */
   @Post(uri = "/locate", consumes = MediaType.APPLICATION_JSON)
   public LocationResult getLocation(@Body LocationRequest request) throws LocationException {
-    LocService service = new LocService(modelPath, serializedPath);
-    return service.getLocation(request);
+    return enginePool.getLocation(request);
+  }
+
+  /**
+   * Function to setup the batch locate endpoint. The requests (a JSON array or a JSON stream) are
+   * located in parallel on the shared engine pool, and each result is streamed back as a line of
+   * JSON as soon as it is finished. Results are returned in the order they finish, not the order of
+   * the requests, so the result ID should be used to match results to requests. A request that
+   * cannot be located produces a result containing only the request ID and a "Failed" exit code.
+   *
+   * @param requests a Publisher of LocationRequest objects containing the location requests
+   * @return A Flux of LocationResult objects containing the resulting locations
+   */
+  @Post(
+      uri = "/locate/batch",
+      consumes = {MediaType.APPLICATION_JSON, MediaType.APPLICATION_JSON_STREAM},
+      produces = MediaType.APPLICATION_JSON_STREAM)
+  public Flux<LocationResult> getLocations(@Body Publisher<LocationRequest> requests) {
+    return Flux.from(requests)
+        .flatMap(
+            request ->
+                Mono.fromCallable(() -> enginePool.getLocation(request))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .onErrorResume(e -> Mono.just(failedLocation(request, e))),
+            enginePool.getPoolSize());
+  }
+
+  /**
+   * This function builds the result reported for a batch request that could not be located.
+   *
+   * @param request A LocationRequest containing the request that failed
+   * @param error A Throwable containing the reason the request failed
+   * @return A LocationResult containing the request ID and a "Failed" exit code
+   */
+  private LocationResult failedLocation(LocationRequest request, Throwable error) {
+    LOGGER.error("Batch location of " + request.ID + " failed: " + error.toString());
+
+    LocationResult result = new LocationResult();
+    result.ID = request.ID;
+    result.LocatorExitCode = "Failed";
+    return result;
   }
 }
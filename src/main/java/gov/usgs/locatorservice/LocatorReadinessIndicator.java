@@ -0,0 +1,37 @@
+package gov.usgs.locatorservice;
+
+import io.micronaut.health.HealthStatus;
+import io.micronaut.management.health.indicator.HealthIndicator;
+import io.micronaut.management.health.indicator.HealthResult;
+import io.micronaut.management.health.indicator.annotation.Readiness;
+import jakarta.inject.Inject;
+import jakarta.inject.Singleton;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Mono;
+
+/**
+ * The LocatorReadinessIndicator class reports the locator web service as ready (via
+ * /health/readiness) only once the locator engines have been loaded and warmed up, so that an
+ * orchestrator doesn't route traffic to a cold service.
+ */
+@Singleton
+@Readiness
+public class LocatorReadinessIndicator implements HealthIndicator {
+  /** A String containing the name of this health indicator. */
+  public static final String NAME = "locator";
+
+  /** A LocServicePool containing the locator engines, automatically injected by Micronaut. */
+  @Inject protected LocServicePool enginePool;
+
+  /**
+   * Function to get the readiness of the locator engines.
+   *
+   * @return A Publisher of HealthResult objects containing UP if the engines are warm, and DOWN
+   *     otherwise
+   */
+  @Override
+  public Publisher<HealthResult> getResult() {
+    HealthStatus status = enginePool.getIsReady() ? HealthStatus.UP : HealthStatus.DOWN;
+    return Mono.just(HealthResult.builder(NAME, status).build());
+  }
+}
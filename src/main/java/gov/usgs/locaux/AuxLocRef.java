@@ -3,17 +3,14 @@ package gov.usgs.locaux;
 import gov.usgs.traveltime.FileChanged;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.DataOutputStream;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.IntBuffer;
-import java.nio.channels.FileLock;
 import java.util.Iterator;
 import java.util.Scanner;
 import org.apache.logging.log4j.LogManager;
@@ -33,10 +30,10 @@ import org.json.simple.parser.ParseException;
  */
 public class AuxLocRef {
   /** A Cratons object containing the continental craton boundaries. */
-  private final Cratons cratons;
+  private Cratons cratons = null;
 
   /** A ZoneStats object containing the classic earthquake statistics by geographic location. */
-  private final ZoneStats zoneStats;
+  private ZoneStats zoneStats = null;
 
   /** A new ZoneStats object built the new updated JSON formatted file. */
   private NewZoneStats newZoneStats = null;
@@ -55,8 +52,8 @@ public class AuxLocRef {
   /** Default path for model files. */
   public static final String DEFAULT_MODEL_PATH = "./models/";
 
-  /** A String containing the serialized file name. */
-  private String serializedFileName = "locaux.ser";
+  /** A String containing the serialized file name (see LocAuxFile for the format). */
+  private String serializedFileName = "locaux.bin";
 
   /** An array of String objects containing the raw input model file names. */
   private String[] modelFileNames = {
@@ -78,7 +75,7 @@ public class AuxLocRef {
    * @param modelPath A string containing the path to model files, null to use default
    * @param serializedPath A string containing the path to the serialized files, null to use default
    * @throws IOException On any read error
-   * @throws ClassNotFoundException In input serialization is hosed
+   * @throws ClassNotFoundException Retained for compatibility, no longer thrown
    */
   public AuxLocRef(String modelPath, String serializedPath)
       throws IOException, ClassNotFoundException {
@@ -88,11 +85,6 @@ public class AuxLocRef {
     BufferedInputStream inCratons;
     BufferedReader inNewZoneStats;
     RandomAccessFile inZones;
-    FileInputStream serIn;
-    FileOutputStream serOut;
-    ObjectInputStream objIn;
-    ObjectOutputStream objOut;
-    FileLock lock;
 
     if (modelPath == null) {
       this.modelPath = DEFAULT_MODEL_PATH;
@@ -112,9 +104,11 @@ public class AuxLocRef {
       absNames[j] = modelPath + modelFileNames[j];
     }
 
-    // If any of the raw input files have changed, regenerate the
-    // serialized file.
-    if (FileChanged.isChanged(serializedPath + serializedFileName, absNames)) {
+    // If any of the raw input files have changed, or the serialized file can't
+    // be used, regenerate the serialized file.
+    String binaryFileName = this.serializedPath + serializedFileName;
+    if (FileChanged.isChanged(binaryFileName, absNames)
+        || !LocAuxFile.read(binaryFileName, LocAuxFile.TYPE_LOCAUX, this::readBinary)) {
       // Open and read the cratons file.
       inCratons = new BufferedInputStream(new FileInputStream(absNames[0]));
       scan = new Scanner(inCratons);
@@ -126,6 +120,7 @@ public class AuxLocRef {
 
       scan.close();
       inCratons.close();
+      cratons.makeGrid(LocUtil.CRATONGRIDRESOLUTION);
 
       // Open and read the zone key file.
       inZones = new RandomAccessFile(absNames[1], "r");
@@ -146,13 +141,6 @@ public class AuxLocRef {
 
       // Write out the serialized file.
       LOGGER.debug("Recreate the serialized file.");
-      serOut = new FileOutputStream(serializedPath + serializedFileName);
-      objOut = new ObjectOutputStream(serOut);
-
-      // Wait for an exclusive lock for writing.
-      lock = serOut.getChannel().lock();
-      LOGGER.debug(
-          "AuxLocRef write lock: valid = " + lock.isValid() + " shared = " + lock.isShared());
 
       /*
        * The auxiliary data can be read and written very quickly, so for persistent
@@ -161,40 +149,38 @@ public class AuxLocRef {
        * that start and stop frequently, the serialization should save some set up
        * time.
        */
-      objOut.writeObject(cratons);
-      objOut.writeObject(zoneStats);
-      objOut.writeObject(newZoneStats);
-
-      if (lock.isValid()) {
-        lock.release();
-      }
-
-      // close files
-      objOut.close();
-      serOut.close();
+      LocAuxFile.write(binaryFileName, LocAuxFile.TYPE_LOCAUX, this::writeBinary);
     } else {
-      // Read in the serialized file.
       LOGGER.debug("Read the serialized file.");
-      serIn = new FileInputStream(serializedPath + serializedFileName);
-      objIn = new ObjectInputStream(serIn);
-
-      // Wait for a shared lock for reading.
-      lock = serIn.getChannel().lock(0, Long.MAX_VALUE, true);
-      LOGGER.debug(
-          "AuxLocRef read lock: valid = " + lock.isValid() + " shared = " + lock.isShared());
-
-      // load the cratons and zoneStats
-      cratons = (Cratons) objIn.readObject();
-      zoneStats = (ZoneStats) objIn.readObject();
-      newZoneStats = (NewZoneStats) objIn.readObject();
+    }
+  }
 
-      if (lock.isValid()) {
-        lock.release();
-      }
+  /**
+   * Function to write the cratons and zone statistics to the serialized file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  private void writeBinary(DataOutputStream out) throws IOException {
+    cratons.writeBinary(out);
+    zoneStats.writeBinary(out);
+    newZoneStats.writeBinary(out);
+  }
 
-      // close files
-      objIn.close();
-      serIn.close();
+  /**
+   * Function to read the cratons and zone statistics from the serialized file.
+   *
+   * @param in A ByteBuffer to read from
+   */
+  private void readBinary(ByteBuffer in) {
+    cratons = Cratons.readBinary(in);
+    zoneStats = ZoneStats.readBinary(in);
+    newZoneStats = NewZoneStats.readBinary(in);
+
+    // The grid resolution may have been changed since the file was written.
+    if (cratons.getGridResolution() != LocUtil.CRATONGRIDRESOLUTION) {
+      LOGGER.debug("Remake the craton grid.");
+      cratons.makeGrid(LocUtil.CRATONGRIDRESOLUTION);
     }
   }
 
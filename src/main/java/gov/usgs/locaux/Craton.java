@@ -1,7 +1,11 @@
 package gov.usgs.locaux;
 
 import gov.usgs.traveltime.TauUtilities;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * The Craton class keeps track of the geometry of a single craton.
@@ -83,6 +87,53 @@ public class Craton implements Serializable {
     return (numCrossings % 2) > 0;
   }
 
+  /**
+   * This function computes the latitudes at which a given meridian crosses the sides of this
+   * craton, using exactly the same test as isCraton. An epicenter on the meridian is inside this
+   * craton if an odd number of the crossing latitudes are at or north of it.
+   *
+   * @param longitude A double containing the geographic longitude of the meridian in degrees, which
+   *     should be away from the date line
+   * @return An array of doubles containing the crossing latitudes in degrees in ascending order
+   */
+  public double[] getCrossingLatitudes(double longitude) {
+    double[] crossings = new double[latitudePoints.length];
+    int numCrossings = 0;
+
+    for (int j = 1; j < latitudePoints.length; j++) {
+      double slope =
+          (longitudePoints[j] - longitudePoints[j - 1])
+              / (latitudePoints[j] - latitudePoints[j - 1]);
+      double testLat = (longitude - longitudePoints[j - 1] + slope * latitudePoints[j - 1]) / slope;
+
+      if (((testLat - latitudePoints[j]) * (testLat - latitudePoints[j - 1])) <= 0d) {
+        crossings[numCrossings++] = testLat;
+      }
+    }
+
+    crossings = Arrays.copyOf(crossings, numCrossings);
+    Arrays.sort(crossings);
+    return crossings;
+  }
+
+  /**
+   * Function to return the geographic latitude points of the craton boundary.
+   *
+   * @return An array of doubles containing the latitude points in degrees
+   */
+  public double[] getLatitudePoints() {
+    return latitudePoints;
+  }
+
+  /**
+   * Function to return the geographic longitude points of the craton boundary.
+   *
+   * @return An array of doubles containing the longitude points in degrees
+   */
+  public double[] getLongitudePoints() {
+    return longitudePoints;
+  }
+
   /**
    * This function writes the data for this craton.
    *
@@ -96,4 +147,30 @@ public class Craton implements Serializable {
 
     return cratonString;
   }
+
+  /**
+   * Function to write the craton to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    LocAuxFile.writeString(out, name);
+    LocAuxFile.writeDoubles(out, latitudePoints);
+    LocAuxFile.writeDoubles(out, longitudePoints);
+  }
+
+  /**
+   * Function to read a craton from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A Craton object containing the craton read
+   */
+  public static Craton readBinary(ByteBuffer in) {
+    String name = LocAuxFile.readString(in);
+    double[] latitudePoints = LocAuxFile.readDoubles(in);
+    double[] longitudePoints = LocAuxFile.readDoubles(in);
+
+    return new Craton(name, latitudePoints, longitudePoints);
+  }
 }
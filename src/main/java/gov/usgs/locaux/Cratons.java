@@ -1,7 +1,11 @@
 package gov.usgs.locaux;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * The Cratons class keeps track of the geographic boundaries of continental cratons. Both travel
@@ -18,9 +22,45 @@ public class Cratons implements Serializable {
    */
   private static final long serialVersionUID = 1L;
 
+  /** A byte constant flagging a grid cell that is entirely outside all cratons. */
+  private static final byte CELL_OUTSIDE = 0;
+
+  /** A byte constant flagging a grid cell that is entirely inside a craton. */
+  private static final byte CELL_INSIDE = 1;
+
+  /**
+   * A byte constant flagging a grid cell that a craton boundary passes through, or that touches
+   * the poles or the date line, where the exact polygon test is needed.
+   */
+  private static final byte CELL_MIXED = 2;
+
+  /**
+   * A double containing the margin in degrees by which grid cells are padded when testing them
+   * against craton boundaries, so that boundaries running along a cell edge mark both cells.
+   */
+  private static final double CELL_MARGIN = 1e-6;
+
   /** An ArrayList of Craton objects. */
   private ArrayList<Craton> cratons;
 
+  /** An int containing the resolution of the craton grid in cells per degree, 0 if none. */
+  private int gridResolution = 0;
+
+  /**
+   * An array of bytes containing the rasterized craton grid, stored by latitude row (from the south
+   * pole) and then longitude column (from the date line), or null if no grid has been made.
+   */
+  private byte[] grid = null;
+
+  /**
+   * An array of doubles containing the longitudes of the craton boundary points in ascending order,
+   * or null if no grid has been made. The polygon test can count the two sides meeting at a
+   * boundary point twice (or not at all) on the meridian through it, which flips the test for
+   * every epicenter south of the point on that meridian, so epicenters on those meridians don't
+   * use the grid.
+   */
+  private double[] vertexLongitudes = null;
+
   /** The Cratons constructor. Allocates an empty array list of Craton objects. */
   public Cratons() {
     cratons = new ArrayList<Craton>();
@@ -37,6 +77,11 @@ public class Cratons implements Serializable {
    */
   public void add(String name, double[] latitudePoints, double[] longitudePoints) {
     cratons.add(new Craton(name, latitudePoints, longitudePoints));
+
+    // Any grid is now out of date.
+    gridResolution = 0;
+    grid = null;
+    vertexLongitudes = null;
   }
 
   /**
@@ -47,6 +92,28 @@ public class Cratons implements Serializable {
    * @return True if the epicenter is inside a craton in the list, false otherwise
    */
   public boolean isCraton(double latitude, double longitude) {
+    byte[] grid = this.grid;
+    double[] vertexLongitudes = this.vertexLongitudes;
+    if (grid != null && vertexLongitudes != null) {
+      int cell = getGridCell(latitude, longitude);
+
+      if (cell >= 0 && grid[cell] != CELL_MIXED && !isNearVertex(vertexLongitudes, longitude)) {
+        return grid[cell] == CELL_INSIDE;
+      }
+    }
+
+    return isCratonExact(latitude, longitude);
+  }
+
+  /**
+   * Function to determine if a given epicenter is inside a craton using the polygon test against
+   * every craton.
+   *
+   * @param latitude A double containing the geographical epicenter latitude in degrees
+   * @param longitude A double containing the geographical epicenter longitude in degrees
+   * @return True if the epicenter is inside a craton in the list, false otherwise
+   */
+  public boolean isCratonExact(double latitude, double longitude) {
     for (int j = 0; j < cratons.size(); j++) {
       if (cratons.get(j).isCraton(latitude, longitude)) {
         return true;
@@ -56,10 +123,307 @@ public class Cratons implements Serializable {
     return false;
   }
 
+  /**
+   * Function to return the resolution of the craton grid.
+   *
+   * @return An int containing the resolution of the craton grid in cells per degree, 0 if no grid
+   *     has been made
+   */
+  public int getGridResolution() {
+    return gridResolution;
+  }
+
+  /**
+   * This function rasterizes the cratons onto a global grid so that isCraton is usually a single
+   * array lookup. Cells that a craton boundary passes through, and cells touching the poles or the
+   * date line (where the polygon test nudges the epicenter), are flagged as mixed, and fall back to
+   * the exact polygon test. Every other cell is entirely inside or entirely outside the cratons, so
+   * it takes the value of the polygon test at its center. The centers are computed a meridian at a
+   * time from the latitudes where each meridian crosses the craton boundaries. Epicenters within
+   * CELL_MARGIN of the meridian through a boundary point also fall back to the polygon test, which
+   * may count the sides meeting there differently.
+   *
+   * @param resolution An int containing the resolution of the grid in cells per degree
+   */
+  public void makeGrid(int resolution) {
+    int numRows = 180 * resolution;
+    int numCols = 360 * resolution;
+    byte[] newGrid = new byte[numRows * numCols];
+
+    // Flag the poles and the date line.
+    for (int col = 0; col < numCols; col++) {
+      newGrid[col] = CELL_MIXED;
+      newGrid[(numRows - 1) * numCols + col] = CELL_MIXED;
+    }
+    for (int row = 0; row < numRows; row++) {
+      newGrid[row * numCols] = CELL_MIXED;
+      newGrid[row * numCols + numCols - 1] = CELL_MIXED;
+    }
+
+    // Flag the cells the craton boundaries pass through.
+    for (Craton craton : cratons) {
+      double[] lats = craton.getLatitudePoints();
+      double[] lons = craton.getLongitudePoints();
+
+      for (int j = 1; j < lats.length; j++) {
+        flagBoundary(newGrid, resolution, lats[j - 1], lons[j - 1], lats[j], lons[j]);
+      }
+    }
+
+    // Fill in the rest from the cell centers, one meridian at a time.
+    double[][] crossings = new double[cratons.size()][];
+    for (int col = 1; col < numCols - 1; col++) {
+      double longitude = (col + 0.5d) / resolution - 180d;
+
+      for (int k = 0; k < cratons.size(); k++) {
+        crossings[k] = cratons.get(k).getCrossingLatitudes(longitude);
+      }
+
+      for (int row = 1; row < numRows - 1; row++) {
+        int cell = row * numCols + col;
+        if (newGrid[cell] == CELL_MIXED) {
+          continue;
+        }
+
+        double latitude = (row + 0.5d) / resolution - 90d;
+        newGrid[cell] = CELL_OUTSIDE;
+        for (int k = 0; k < crossings.length; k++) {
+          // Count the crossings at or north of the cell center.
+          int south = Arrays.binarySearch(crossings[k], latitude);
+          if (south < 0) {
+            south = -south - 1;
+          } else {
+            while (south > 0 && crossings[k][south - 1] == latitude) {
+              south--;
+            }
+          }
+
+          if (((crossings[k].length - south) % 2) > 0) {
+            newGrid[cell] = CELL_INSIDE;
+            break;
+          }
+        }
+      }
+    }
+
+    vertexLongitudes = makeVertexLongitudes();
+    gridResolution = resolution;
+    grid = newGrid;
+  }
+
+  /**
+   * Function to collect the longitudes of all the craton boundary points.
+   *
+   * @return An array of doubles containing the longitudes in ascending order
+   */
+  private double[] makeVertexLongitudes() {
+    int numPoints = 0;
+    for (Craton craton : cratons) {
+      numPoints += craton.getLongitudePoints().length;
+    }
+
+    double[] longitudes = new double[numPoints];
+    numPoints = 0;
+    for (Craton craton : cratons) {
+      double[] lons = craton.getLongitudePoints();
+      System.arraycopy(lons, 0, longitudes, numPoints, lons.length);
+      numPoints += lons.length;
+    }
+
+    Arrays.sort(longitudes);
+    return longitudes;
+  }
+
+  /**
+   * Function to determine if an epicenter is within CELL_MARGIN of the meridian through any craton
+   * boundary point.
+   *
+   * @param vertexLongitudes An array of doubles containing the longitudes of the craton boundary
+   *     points in ascending order
+   * @param longitude A double containing the geographical epicenter longitude in degrees
+   * @return True if the epicenter is near the meridian of a boundary point, false otherwise
+   */
+  private static boolean isNearVertex(double[] vertexLongitudes, double longitude) {
+    int j = Arrays.binarySearch(vertexLongitudes, longitude);
+    if (j >= 0) {
+      return true;
+    }
+
+    j = -j - 1;
+    return (j < vertexLongitudes.length && vertexLongitudes[j] - longitude <= CELL_MARGIN)
+        || (j > 0 && longitude - vertexLongitudes[j - 1] <= CELL_MARGIN);
+  }
+
+  /**
+   * Function to return the craton grid cell containing an epicenter.
+   *
+   * @param latitude A double containing the geographical epicenter latitude in degrees
+   * @param longitude A double containing the geographical epicenter longitude in degrees
+   * @return An int containing the index of the grid cell, or -1 if the epicenter is off the grid
+   */
+  private int getGridCell(double latitude, double longitude) {
+    // Written this way so that NaNs are off the grid as well.
+    if (!(latitude >= -90d && latitude <= 90d && longitude >= -180d && longitude <= 180d)) {
+      return -1;
+    }
+
+    int numRows = 180 * gridResolution;
+    int numCols = 360 * gridResolution;
+    int row = Math.min((int) ((latitude + 90d) * gridResolution), numRows - 1);
+    int col = Math.min((int) ((longitude + 180d) * gridResolution), numCols - 1);
+
+    return row * numCols + col;
+  }
+
+  /**
+   * Function to flag the grid cells that one side of a craton boundary passes through as mixed.
+   * Each cell in the bounding box of the side is clipped against the side (Liang-Barsky), so long
+   * diagonal sides don't flag their whole bounding box.
+   *
+   * @param grid An array of bytes containing the craton grid
+   * @param resolution An int containing the resolution of the grid in cells per degree
+   * @param lat0 A double containing the latitude of the start of the side in degrees
+   * @param lon0 A double containing the longitude of the start of the side in degrees
+   * @param lat1 A double containing the latitude of the end of the side in degrees
+   * @param lon1 A double containing the longitude of the end of the side in degrees
+   */
+  private static void flagBoundary(
+      byte[] grid, int resolution, double lat0, double lon0, double lat1, double lon1) {
+    int numRows = 180 * resolution;
+    int numCols = 360 * resolution;
+
+    int minRow = gridIndex(Math.min(lat0, lat1) + 90d - CELL_MARGIN, resolution, numRows);
+    int maxRow = gridIndex(Math.max(lat0, lat1) + 90d + CELL_MARGIN, resolution, numRows);
+    int minCol = gridIndex(Math.min(lon0, lon1) + 180d - CELL_MARGIN, resolution, numCols);
+    int maxCol = gridIndex(Math.max(lon0, lon1) + 180d + CELL_MARGIN, resolution, numCols);
+
+    for (int row = minRow; row <= maxRow; row++) {
+      double south = (double) row / resolution - 90d - CELL_MARGIN;
+      double north = (double) (row + 1) / resolution - 90d + CELL_MARGIN;
+
+      for (int col = minCol; col <= maxCol; col++) {
+        double west = (double) col / resolution - 180d - CELL_MARGIN;
+        double east = (double) (col + 1) / resolution - 180d + CELL_MARGIN;
+
+        if (sideHitsCell(lat0, lon0, lat1, lon1, south, north, west, east)) {
+          grid[row * numCols + col] = CELL_MIXED;
+        }
+      }
+    }
+  }
+
+  /**
+   * Function to convert a coordinate offset from the grid origin into a clamped grid index.
+   *
+   * @param offset A double containing the offset from the grid origin in degrees
+   * @param resolution An int containing the resolution of the grid in cells per degree
+   * @param size An int containing the number of grid cells along this axis
+   * @return An int containing the grid index
+   */
+  private static int gridIndex(double offset, int resolution, int size) {
+    return Math.max(0, Math.min((int) Math.floor(offset * resolution), size - 1));
+  }
+
+  /**
+   * Function to determine if one side of a craton boundary passes through a grid cell.
+   *
+   * @param lat0 A double containing the latitude of the start of the side in degrees
+   * @param lon0 A double containing the longitude of the start of the side in degrees
+   * @param lat1 A double containing the latitude of the end of the side in degrees
+   * @param lon1 A double containing the longitude of the end of the side in degrees
+   * @param south A double containing the southern edge of the cell in degrees
+   * @param north A double containing the northern edge of the cell in degrees
+   * @param west A double containing the western edge of the cell in degrees
+   * @param east A double containing the eastern edge of the cell in degrees
+   * @return True if any part of the side is inside the cell, false otherwise
+   */
+  private static boolean sideHitsCell(
+      double lat0,
+      double lon0,
+      double lat1,
+      double lon1,
+      double south,
+      double north,
+      double west,
+      double east) {
+    double dLat = lat1 - lat0;
+    double dLon = lon1 - lon0;
+    double[] p = {-dLat, dLat, -dLon, dLon};
+    double[] q = {lat0 - south, north - lat0, lon0 - west, east - lon0};
+    double tEnter = 0d;
+    double tExit = 1d;
+
+    for (int j = 0; j < 4; j++) {
+      if (p[j] == 0d) {
+        // Parallel to this edge of the cell, so it's either always outside or never.
+        if (q[j] < 0d) {
+          return false;
+        }
+      } else {
+        double t = q[j] / p[j];
+        if (p[j] < 0d) {
+          tEnter = Math.max(tEnter, t);
+        } else {
+          tExit = Math.min(tExit, t);
+        }
+      }
+    }
+
+    return tEnter <= tExit;
+  }
+
   /** Function to print the data for all cratons to the screen. */
   public void printCratons() {
     for (int j = 0; j < cratons.size(); j++) {
       cratons.get(j).printCraton();
     }
   }
+
+  /**
+   * Function to write the cratons, and their grid if one was made, to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeInt(cratons.size());
+
+    for (Craton craton : cratons) {
+      craton.writeBinary(out);
+    }
+
+    out.writeInt(gridResolution);
+    if (grid == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(grid.length);
+      out.write(grid);
+    }
+  }
+
+  /**
+   * Function to read the cratons, and their grid if one was made, from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A Cratons object containing the cratons read
+   */
+  public static Cratons readBinary(ByteBuffer in) {
+    Cratons cratons = new Cratons();
+    int numCratons = in.getInt();
+
+    for (int j = 0; j < numCratons; j++) {
+      cratons.cratons.add(Craton.readBinary(in));
+    }
+
+    int gridResolution = in.getInt();
+    int gridLength = in.getInt();
+    if (gridLength >= 0) {
+      cratons.grid = new byte[gridLength];
+      in.get(cratons.grid);
+      cratons.vertexLongitudes = cratons.makeVertexLongitudes();
+      cratons.gridResolution = gridResolution;
+    }
+
+    return cratons;
+  }
 }
@@ -0,0 +1,304 @@
+package gov.usgs.locaux;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The LocAuxFile class reads and writes the flat binary files used to cache the auxiliary locator
+ * data (cratons, zone statistics, and slab models) between runs. Each file starts with a fixed
+ * header (magic number, format version, and content type) followed by the data laid out as plain
+ * big-endian primitives and primitive arrays. Files are read by memory mapping them read-only. The
+ * slab depths, which are most of the data, are used in place from the mapping (see viewDoubles),
+ * so several locators on one host share them through the page cache rather than each holding its
+ * own copy. Everything else (the cratons, the zone statistics, and the slab area, row, and segment
+ * ranges) is small, and is copied out in bulk rather than rebuilt object by object as with Java
+ * serialization.
+ *
+ * <p>Since mapped data keeps being read after the file is closed, a file is never rewritten in
+ * place. A new file is written alongside and moved over the old one, so locators that already
+ * have the old file mapped keep reading the old data.
+ *
+ * <p>Arrays are written as an int length followed by the values, with a length of -1 standing for a
+ * null array. Strings are written as a UTF-8 byte array.
+ */
+public class LocAuxFile {
+  /** An int containing the magic number identifying a locator auxiliary binary file ("LOCA"). */
+  public static final int MAGIC = 0x4c4f4341;
+
+  /**
+   * An int containing the binary format version. Bump this whenever the layout of any of the
+   * auxiliary data classes changes, so that stale files are regenerated rather than misread.
+   */
+  public static final int VERSION = 2;
+
+  /** An int identifying a file containing the cratons and zone statistics. */
+  public static final int TYPE_LOCAUX = 1;
+
+  /** An int identifying a file containing one slab model resolution. */
+  public static final int TYPE_SLABS = 2;
+
+  /** An int containing the size of the file header in bytes. */
+  public static final int HEADER_SIZE = 12;
+
+  /** Private logging object. */
+  private static final Logger LOGGER = LogManager.getLogger(LocAuxFile.class.getName());
+
+  /** The Writer interface is implemented by code that writes the body of an auxiliary file. */
+  public interface Writer {
+    /**
+     * This function writes the body of the file.
+     *
+     * @param out A DataOutputStream to write the data to
+     * @throws IOException On any write error
+     */
+    void write(DataOutputStream out) throws IOException;
+  }
+
+  /** The Reader interface is implemented by code that reads the body of an auxiliary file. */
+  public interface Reader {
+    /**
+     * This function reads the body of the file.
+     *
+     * @param in A ByteBuffer positioned at the start of the body
+     */
+    void read(ByteBuffer in);
+  }
+
+  /** Private constructor, this class only has static functions. */
+  private LocAuxFile() {}
+
+  /**
+   * This function writes an auxiliary binary file. The file is written under a temporary name in
+   * the same directory and then moved into place, so readers only ever see a complete file, and a
+   * file already mapped by a reader is replaced rather than truncated.
+   *
+   * @param fileName A String containing the path to the file to write
+   * @param type An int containing the content type of the file
+   * @param body A Writer object used to write the body of the file
+   * @throws IOException On any write error
+   */
+  public static void write(String fileName, int type, Writer body) throws IOException {
+    File file = new File(fileName).getAbsoluteFile();
+    File tempFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+
+    try {
+      try (FileOutputStream fileOut = new FileOutputStream(tempFile)) {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(type);
+        body.write(out);
+        out.flush();
+      }
+
+      try {
+        Files.move(
+            tempFile.toPath(),
+            file.toPath(),
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+    } finally {
+      Files.deleteIfExists(tempFile.toPath());
+    }
+  }
+
+  /**
+   * This function reads an auxiliary binary file by memory mapping it. The mapping stays valid after
+   * the file is closed, for as long as any view of it made by viewDoubles is in use.
+   *
+   * @param fileName A String containing the path to the file to read
+   * @param type An int containing the expected content type of the file
+   * @param body A Reader object used to read the body of the file
+   * @return A boolean flag, false if the file is missing, is not an auxiliary binary file of the
+   *     expected type, or was written by a different format version, in which case it should be
+   *     regenerated
+   * @throws IOException On any read error
+   */
+  public static boolean read(String fileName, int type, Reader body) throws IOException {
+    if (!new File(fileName).canRead()) {
+      return false;
+    }
+
+    try (FileInputStream fileIn = new FileInputStream(fileName)) {
+      FileChannel channel = fileIn.getChannel();
+      if (channel.size() < HEADER_SIZE) {
+        return false;
+      }
+
+      ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      int magic = in.getInt();
+      int version = in.getInt();
+      int fileType = in.getInt();
+
+      if (magic != MAGIC || version != VERSION || fileType != type) {
+        LOGGER.info(
+            String.format(
+                "%s is not a version %d type %d file (%x %d %d), regenerating",
+                fileName, VERSION, type, magic, version, fileType));
+        return false;
+      }
+
+      try {
+        body.read(in);
+      } catch (BufferUnderflowException
+          | IndexOutOfBoundsException
+          | IllegalArgumentException
+          | NegativeArraySizeException e) {
+        LOGGER.warn(fileName + " is truncated or corrupt, regenerating: " + e);
+        return false;
+      }
+
+      return true;
+    }
+  }
+
+  /**
+   * This function writes an array of doubles.
+   *
+   * @param out A DataOutputStream to write to
+   * @param values An array of doubles to write, may be null
+   * @throws IOException On any write error
+   */
+  public static void writeDoubles(DataOutputStream out, double[] values) throws IOException {
+    if (values == null) {
+      out.writeInt(-1);
+      return;
+    }
+
+    out.writeInt(values.length);
+    for (double value : values) {
+      out.writeDouble(value);
+    }
+  }
+
+  /**
+   * This function reads an array of doubles in bulk.
+   *
+   * @param in A ByteBuffer to read from
+   * @return An array of doubles, or null if a null array was written
+   */
+  public static double[] readDoubles(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+
+    double[] values = new double[length];
+    in.asDoubleBuffer().get(values);
+    in.position(in.position() + length * Double.BYTES);
+    return values;
+  }
+
+  /**
+   * This function writes the contents of a buffer of doubles as an array of doubles.
+   *
+   * @param out A DataOutputStream to write to
+   * @param values A DoubleBuffer containing the values to write, from zero to its limit
+   * @throws IOException On any write error
+   */
+  public static void writeDoubles(DataOutputStream out, DoubleBuffer values) throws IOException {
+    out.writeInt(values.limit());
+    for (int j = 0; j < values.limit(); j++) {
+      out.writeDouble(values.get(j));
+    }
+  }
+
+  /**
+   * This function reads an array of doubles as a read-only view of the buffer, without copying it.
+   * When the buffer is a mapped file, the values are read from the page cache each time they're
+   * used.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A DoubleBuffer containing the values, or null if a null array was written
+   */
+  public static DoubleBuffer viewDoubles(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+
+    DoubleBuffer values = in.slice().asDoubleBuffer().asReadOnlyBuffer();
+    values.limit(length);
+    in.position(in.position() + length * Double.BYTES);
+    return values;
+  }
+
+  /**
+   * This function writes an array of ints.
+   *
+   * @param out A DataOutputStream to write to
+   * @param values An array of ints to write, may be null
+   * @throws IOException On any write error
+   */
+  public static void writeInts(DataOutputStream out, int[] values) throws IOException {
+    if (values == null) {
+      out.writeInt(-1);
+      return;
+    }
+
+    out.writeInt(values.length);
+    for (int value : values) {
+      out.writeInt(value);
+    }
+  }
+
+  /**
+   * This function reads an array of ints in bulk.
+   *
+   * @param in A ByteBuffer to read from
+   * @return An array of ints, or null if a null array was written
+   */
+  public static int[] readInts(ByteBuffer in) {
+    int length = in.getInt();
+    if (length < 0) {
+      return null;
+    }
+
+    int[] values = new int[length];
+    in.asIntBuffer().get(values);
+    in.position(in.position() + length * Integer.BYTES);
+    return values;
+  }
+
+  /**
+   * This function writes a String.
+   *
+   * @param out A DataOutputStream to write to
+   * @param value A String to write
+   * @throws IOException On any write error
+   */
+  public static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /**
+   * This function reads a String.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A String containing the value read
+   */
+  public static String readString(ByteBuffer in) {
+    byte[] bytes = new byte[in.getInt()];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
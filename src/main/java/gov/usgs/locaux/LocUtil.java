@@ -153,6 +153,48 @@ public class LocUtil {
    */
   public static final double DEG2KM = 6371d * Math.PI / 180d;
 
+  /**
+   * An int constant representing the resolution of the rasterized craton lookup grid in cells per
+   * degree. Finer grids leave fewer cells straddling a craton boundary (which fall back to the exact
+   * polygon test) at the cost of memory (180 x 360 x the square of this value bytes).
+   */
+  public static final int CRATONGRIDRESOLUTION = 4;
+
+  /**
+   * A double constant representing the default size in degrees of the cells used to cache the
+   * location environment (the tectonic flag and candidate Bayesian depths). Zero caches the
+   * environment by exact position, which never changes a location. The slab depths and zone
+   * statistics are interpolated, so with larger cells, which are computed at the cell center, the
+   * locations move slightly in exchange for more cache hits.
+   */
+  public static final double ENVIRONMENTCELLSIZE = 0d;
+
+  /** An int constant representing the maximum number of location environment cells to cache. */
+  public static final int ENVIRONMENTCELLS = 10000;
+
+  /**
+   * An int constant representing the default number of trial step lengths the linear step search
+   * evaluates at once. With one, the trials are evaluated one at a time on the event's own
+   * residuals. With more, the trials the search may need next are evaluated in parallel on copies
+   * of the residuals.
+   */
+  public static final int LINESEARCHCANDIDATES = 1;
+
+  /**
+   * An int constant representing the largest number of data for which the rank-sum estimator
+   * scores are kept in the shared score table. Scores for more data are interpolated as needed.
+   */
+  public static final int MAXSCORETABLEDATA = 2000;
+
+  /**
+   * A long constant representing the most memory in bytes, as estimated by Slabs.getMemorySize,
+   * that the slab model resolutions kept for each set of models may use, however many locator
+   * engines share them (see LocSlabCache). The least recently used resolutions are dropped to stay
+   * under it, except for the default resolution and the one just loaded, so a single resolution
+   * bigger than this is still kept.
+   */
+  public static final long MAXSLABMEMORY = 512L * 1024L * 1024L;
+
   /** An int constant representing the maximum number of iteration stages to attempt. */
   /** JMP 1/13/2022 Added a third stage due to large number of events that did not converge */
   public static final int STAGELIMIT = 3;
@@ -260,6 +302,93 @@ public class LocUtil {
    */
   public static final int MAXPICKSTODECORRELATE = 449;
 
+  /**
+   * An int constant representing the largest number of stations for which the decorrelator
+   * remembers the station to station correlations during a location. Pairs involving any further
+   * stations are recomputed each time the covariance matrix is built.
+   */
+  public static final int MAXCORRELATIONSTATIONS = 1000;
+
+  /**
+   * An int constant representing the largest number of picks for which the decorrelator keeps a
+   * copy of the covariance matrix, so that the next one only needs the rows and columns of the
+   * picks that changed. The copy takes 8 MB at this size, and bigger covariance matrices are
+   * rebuilt in full.
+   */
+  public static final int MAXINCREMENTALCOVARIANCEPICKS = 1000;
+
+  /**
+   * An int constant representing the number of picks at which the decorrelator starts building the
+   * covariance matrix in parallel on the common fork-join pool. Smaller matrices are built
+   * serially.
+   */
+  public static final int PARALLELCOVARIANCEPICKS = 200;
+
+  /**
+   * An int constant representing the default number of threads used to compute the station travel
+   * times during phase identification. With one, the travel times are computed serially on the
+   * locator's own travel-time session. Each extra thread needs its own copy of the travel-time
+   * session.
+   */
+  public static final int PHASEIDTHREADS = 1;
+
+  /**
+   * An int constant representing the number of stations at which phase identification starts
+   * computing the station travel times in parallel, if it has been given extra travel-time
+   * sessions. Smaller events are done serially.
+   */
+  public static final int PARALLELPHASEIDSTATIONS = 40;
+
+  /**
+   * An int constant representing the most threads used to compute the station travel times during
+   * phase identification. Every extra thread holds a full copy of the travel-time tables for each
+   * engine in the pool, so memory grows as the pool size times the thread count, and with at least
+   * PARALLELPHASEIDSTATIONS stations to share out, more threads gain little.
+   */
+  public static final int MAXPHASEIDTHREADS = 4;
+
+  /**
+   * A double constant representing the default source depth tolerance in kilometers used when
+   * setting up travel-time sessions. Source depths are rounded to the nearest multiple of the
+   * tolerance so that small depth changes reuse the depth corrected travel-time tables. Zero uses
+   * exact depths, which never changes a location. Any other tolerance moves the locations slightly
+   * in exchange for fewer travel-time table corrections.
+   */
+  public static final double TTDEPTHTOLERANCE = 0d;
+
+  /**
+   * An int constant representing the default number of travel-time sessions kept set up for
+   * different source depths. Each session past the first needs its own copy of the travel-time
+   * tables.
+   */
+  public static final int TTSESSIONS = 1;
+
+  /**
+   * An int constant representing the most travel-time sessions kept set up for different source
+   * depths. Every extra session holds a full copy of the travel-time tables for each engine in the
+   * pool, and a location only moves back and forth between a few depths at a time.
+   */
+  public static final int MAXTTSESSIONS = 4;
+
+  /**
+   * A double constant representing the default distance in kilometers the hypocenter may move
+   * before the travel times of a pick group are recomputed during phase identification. Zero only
+   * reuses travel times computed for exactly the same hypocenter, which never changes a location.
+   * That happens where a phase identification is done again without moving the hypocenter, after
+   * the initial phase identification and at the start of each stage.
+   */
+  public static final double PHASEIDMOVETOLERANCE = 0d;
+
+  /**
+   * A double constant representing the default amount in seconds the pick travel times may change
+   * (with the origin time) before an otherwise unchanged pick group is identified again. Zero only
+   * skips the identification if the travel times are exactly the same, which never changes a
+   * location, but hardly ever saves anything either. The origin time moves with every step, and
+   * where it doesn't (at the start of each stage) the identification is done a different way than
+   * the one before it.
+   */
+  public static final double PHASEIDTIMETOLERANCE = 0d;
+
   /**
    * A double constant representing the limit of largest eigenvalues (adding up to at least 95%) to
    * keep when decorrelating.
@@ -272,6 +401,15 @@ public class LocUtil {
    */
   public static final double EIGENVALUESTHRESH = 0.01d;
 
+  /**
+   * A boolean constant, true if the decorrelation should by default find only the eigenvectors it
+   * keeps (see SymmetricEigen) rather than doing Jama's full eigen decomposition. The eigenvectors
+   * agree with Jama's only up to sign and the choice of basis for repeated eigenvalues, which can
+   * move a location, so the full decomposition stays the default until the regression tests pass
+   * with the partial one.
+   */
+  public static final boolean PARTIALEIGEN = false;
+
   /**
    * An array of string constants representing the phases to use in locations. The Locator always
    * uses all phases (i.e., a null phase list).
@@ -287,28 +425,9 @@ public class LocUtil {
   /** A boolean constant that if true indicates that the locator should suppress back branches. */
   public static final boolean SUPRESSBACKBRANCHES = false;
 
-  /**
-   * A boolean flag indicating if the decorrelation algorithm is to be used. Note that it is never
-   * used in the initial pass, hence the default.
-   */
-  public static boolean useDecorrelation = false;
-
-  /**
-   * A boolean flag indicating if the the event is in a tectonic area where Pb and Sb are extensions
-   * of Pg and Sg respectively or in a craton with a well defined Conrad discontinuity and distinct
-   * Pb and Sb phases.
-   */
-  public static boolean isTectonic = false;
-
   /** Normally false. Set true only if this is a synthetic bayesian depth test. */
   public static final boolean isSynthetic = true;
 
-  /**
-   * A double containing the receiver azimuth relative to the source in degrees clockwise from north
-   * (available after calling computeDistAzm).
-   */
-  public static double azimuth = Double.NaN;
-
   // The following are private constants and variables used by static
   // methods below:
 
@@ -389,10 +508,10 @@ public class LocUtil {
   private static final double RESVALIDITYOFFSET = 5d;
 
   /**
-   * A double constant representing the anti-loop jiggle dampening value, used by
-   * computeDampeningFactor.
+   * A double constant representing the starting anti-loop jiggle dampening value for each location,
+   * used by computeDampeningFactor.
    */
-  private static double DAMPENINGVALUE = 0.45d;
+  public static final double DAMPENINGVALUE = 0.45d;
 
   /**
    * A double constant representing the anti-loop jiggle dampening limit, used by
@@ -430,18 +549,6 @@ public class LocUtil {
    * experiments.
    */
   private static BufferedWriter recordOut = null;
-  /*
-   * A double representing the system time, used as a timer. Needed by
-   * startTimer and endTimer.
-   */
-  private static long systemTime;
-
-  /*
-   * A double representing the system time, used as a timer. Needed by
-   * startLocationTimer and endLocationTimer.
-   */
-  private static long locationTime;
-
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(LocUtil.class.getName());
 
@@ -451,19 +558,21 @@ public class LocUtil {
    * Fortran (actually in the days before subroutines) and beaten into it's current Fortran form by
    * Ray Buland in the early 1980s. It's optimized with respect to computing sines and cosines
    * (probably still worthwhile) and it computes exactly what's needed--no more, no less. Note that
-   * the azimuth is returned in static variable azimuth.
+   * the azimuth is returned in the caller supplied array, so that the function may be safely used
+   * by several locations at once.
    *
    * @param hypo A Hypocenter object containing the hypocenter to compute the the source-receiver
    *     distance and the receiver azimuth
    * @param sta A Station object containing the station to compute the the source-receiver distance
    *     and the receiver azimuth
-   * @return A double containing the distance (delta) in degrees. the distance in degrees is
-   *     returned in the azimuth class variable
+   * @param azimuth A double[] of at least one element, the receiver azimuth in degrees is returned
+   *     in the first element
+   * @return A double containing the distance (delta) in degrees
    */
-  public static double computeDistAzm(Hypocenter hypo, Station sta) {
+  public static double computeDistAzm(Hypocenter hypo, Station sta, double[] azimuth) {
     // South Pole (only tests the station because the South Pole is aseismic).
     if (sta.getCoLatitudeSine() <= TauUtilities.DOUBLETOLERANCE) {
-      azimuth = 180d;
+      azimuth[0] = 180d;
       return Math.toDegrees(Math.PI - Math.acos(hypo.getCoLatitudeCosine()));
     }
 
@@ -494,12 +603,12 @@ public class LocUtil {
     if (Math.abs(tm1) <= TauUtilities.DOUBLETOLERANCE
         && Math.abs(tm2) <= TauUtilities.DOUBLETOLERANCE) {
       // North Pole.
-      azimuth = 0d;
+      azimuth[0] = 0d;
     } else {
-      azimuth = Math.toDegrees(Math.atan2(tm1, tm2));
+      azimuth[0] = Math.toDegrees(Math.atan2(tm1, tm2));
 
-      if (azimuth < 0d) {
-        azimuth += 360;
+      if (azimuth[0] < 0d) {
+        azimuth[0] += 360;
       }
     }
 
@@ -588,9 +697,24 @@ public class LocUtil {
     }
 
     // Otherwise, we have to compute it.
-    Station sta1 = pick1.getStation();
-    Station sta2 = pick2.getStation();
+    double covariance =
+        computeStationCorrelation(pick1.getStation(), pick2.getStation())
+            / (pick1.getWeight() * pick2.getWeight());
+
+    return covariance;
+  }
 
+  /**
+   * This function computes the distance dependent part of the empirical covariance between picks
+   * of the same phase at two stations, which only depends on where the stations are. Dividing by
+   * the product of the pick weights gives the covariance. Note that the result may differ in the
+   * last bit if the stations are swapped.
+   *
+   * @param sta1 A Station object containing the station of the first pick
+   * @param sta2 A Station object containing the station of the second pick
+   * @return A double containing the unweighted correlation between the two stations
+   */
+  public static double computeStationCorrelation(Station sta1, Station sta2) {
     // South Pole.
     double delta;
     if (sta1.getCoLatitudeSine() <= TauUtilities.DOUBLETOLERANCE) {
@@ -630,12 +754,8 @@ public class LocUtil {
       }
     }
 
-    // Compute covariance.
-    double covariance =
-        (1d - Math.pow(delta / (Math.abs(delta - COVOFFSET) + COVCONST), COVPOWER))
-            / (pick1.getWeight() * pick2.getWeight());
-
-    return covariance;
+    // Compute the correlation.
+    return 1d - Math.pow(delta / (Math.abs(delta - COVOFFSET) + COVCONST), COVPOWER);
   }
 
   /**
@@ -743,16 +863,16 @@ public class LocUtil {
    * damping is required. Note that, the step length will be damped by multiplying it by the damping
    * factor.
    *
+   * @param dampeningValue A double containing the previous damping factor (DAMPENINGVALUE at the
+   *     start of a location)
    * @return A double containing an updated damping factor
    */
-  public static double computeDampeningFactor() {
-    if (DAMPENINGVALUE <= DAMPENINGLIMIT) {
-      DAMPENINGVALUE += 0.0390625d;
+  public static double computeDampeningFactor(double dampeningValue) {
+    if (dampeningValue <= DAMPENINGLIMIT) {
+      return dampeningValue + 0.0390625d;
     } else {
-      DAMPENINGVALUE -= 0.21875d;
+      return dampeningValue - 0.21875d;
     }
-
-    return DAMPENINGVALUE;
   }
 
   /**
@@ -1130,46 +1250,17 @@ public class LocUtil {
     }
   }
 
-  /**
-   * This timer function sets the systemTime variable to the current system time in milliseconds.
-   * This function is used in conjunction with endTimer
-   */
-  public static void startTimer() {
-    systemTime = System.currentTimeMillis();
-  }
-
-  /**
-   * This timer function ends the timer and returns a string holding the result in seconds.
-   *
-   * @param label A String used to identify the timer
-   * @return A String containing the timer results
-   */
-  public static String endTimer(String label) {
-    //    String timerString = label + " time: " + 0.001 * (System.currentTimeMillis() -
-    // systemTime);
-    String timerString =
-        String.format("%s time:%7.3f", label, 0.001 * (System.currentTimeMillis() - systemTime));
-
-    return (timerString);
-  }
-
-  /**
-   * This timer function sets the locationTime variable to the current system time in milliseconds.
-   * This function is used in conjunction with endLocationTimer
-   */
-  public static void startLocationTimer() {
-    locationTime = System.currentTimeMillis();
-  }
-
   /**
    * This timer function ends the location timer and returns a string holding the result in seconds.
    *
+   * @param locationStartTime A long value containing the start time of the location in
+   *     milliseconds
    * @return A String containing the timer results
    */
-  public static String endLocationTimer() {
+  public static String endLocationTimer(long locationStartTime) {
     String timerString =
         String.format(
-            "Compute time %7.3f seconds", 0.001 * (System.currentTimeMillis() - locationTime));
+            "Compute time %7.3f seconds", 0.001 * (System.currentTimeMillis() - locationStartTime));
 
     return (timerString);
   }
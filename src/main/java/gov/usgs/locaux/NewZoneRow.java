@@ -1,6 +1,9 @@
 package gov.usgs.locaux;
 
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * Keep track of statistics for one latitude row. Note that in this model grid points are in
@@ -102,4 +105,65 @@ public class NewZoneRow implements Serializable {
   public String toString() {
     return String.format("NewZoneRow: lat = %8.4f lonSpacing = %8.4f", lat, lonSpacing);
   }
+
+  /**
+   * Function to write the row to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeDouble(lat);
+    out.writeDouble(lonSpacing);
+    out.writeInt(numLons);
+
+    // Only write the columns that have samples.
+    int numSamples = 0;
+    if (samples != null) {
+      for (NewZonePoint sample : samples) {
+        if (sample != null) {
+          numSamples++;
+        }
+      }
+    }
+
+    out.writeInt(numSamples);
+    for (int column = 0; numSamples > 0 && column < samples.length; column++) {
+      NewZonePoint sample = samples[column];
+
+      if (sample != null) {
+        out.writeInt(column);
+        out.writeDouble(sample.getLon());
+        out.writeInt(sample.getDataCount());
+        out.writeDouble(sample.getDepth());
+        out.writeDouble(sample.getDepthError());
+      }
+    }
+  }
+
+  /**
+   * Function to read a row from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A NewZoneRow object containing the row read
+   */
+  public static NewZoneRow readBinary(ByteBuffer in) {
+    double lat = in.getDouble();
+    double lonSpacing = in.getDouble();
+    int numLons = in.getInt();
+    NewZoneRow row = new NewZoneRow(lat, lonSpacing, numLons);
+
+    int numSamples = in.getInt();
+    for (int j = 0; j < numSamples; j++) {
+      int column = in.getInt();
+      double lon = in.getDouble();
+      int count = in.getInt();
+      double depth = in.getDouble();
+      double depthError = in.getDouble();
+
+      row.putSample(column, new NewZonePoint(lon, count, depth, depthError));
+    }
+
+    return row;
+  }
 }
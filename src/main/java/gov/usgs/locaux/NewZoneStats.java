@@ -2,8 +2,10 @@ package gov.usgs.locaux;
 
 import gov.usgs.locator.BayesianDepth;
 import gov.usgs.locator.DepthSource;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -338,4 +340,45 @@ public class NewZoneStats extends AbstractZoneStats implements Serializable {
 
     LOGGER.info("A valid depth was found in %6.2f%% of cases.\n", (100d * depthFound) / maxTrials);
   }
+
+  /**
+   * Function to write the new zone statistics to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeDouble(firstRowLat);
+    out.writeDouble(lastRowLat);
+    out.writeDouble(latSpacing);
+
+    out.writeInt(latRows.length);
+    for (NewZoneRow row : latRows) {
+      row.writeBinary(out);
+    }
+  }
+
+  /**
+   * Function to read the new zone statistics from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A NewZoneStats object containing the new zone statistics read
+   */
+  public static NewZoneStats readBinary(ByteBuffer in) {
+    double firstRowLat = in.getDouble();
+    double lastRowLat = in.getDouble();
+    double latSpacing = in.getDouble();
+    int numLats = in.getInt();
+
+    // The stored latitudes are already colatitudes.
+    NewZoneStats newZoneStats = new NewZoneStats(0d, 0d, latSpacing, numLats);
+    newZoneStats.firstRowLat = firstRowLat;
+    newZoneStats.lastRowLat = lastRowLat;
+
+    for (int row = 0; row < numLats; row++) {
+      newZoneStats.latRows[row] = NewZoneRow.readBinary(in);
+    }
+
+    return newZoneStats;
+  }
 }
@@ -0,0 +1,264 @@
+package gov.usgs.locaux;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.InputMismatchException;
+import java.util.NoSuchElementException;
+
+/**
+ * The NumberScanner class reads whitespace separated numbers from a text stream. It is a drop in
+ * replacement for the hasNextDouble and nextDouble functions of java.util.Scanner for the large
+ * numeric model files (such as the slab models), which Scanner reads very slowly because it matches
+ * every token against a locale sensitive regular expression.
+ *
+ * <p>Tokens are found directly in a byte buffer. Plain decimal numbers with up to 15 significant
+ * digits (which covers the model files) are converted with a single exact multiply or divide by a
+ * power of ten, which gives the correctly rounded value, so the results are identical to
+ * Double.parseDouble. Anything else, including NaN and numbers with more digits, is handed to
+ * Double.parseDouble.
+ */
+public class NumberScanner {
+  /** An int containing the size of the read buffer in bytes. */
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  /** An int containing the longest token allowed. */
+  private static final int MAX_TOKEN = 256;
+
+  /** An int containing the most significant digits that can be converted exactly. */
+  private static final int MAX_DIGITS = 15;
+
+  /** An array of doubles containing the powers of ten that are exactly representable. */
+  private static final double[] POWERS_OF_TEN = {
+    1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16,
+    1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+  };
+
+  /** An InputStream containing the text to scan. */
+  private final InputStream in;
+
+  /** An array of bytes containing the read buffer. */
+  private final byte[] buffer = new byte[BUFFER_SIZE];
+
+  /** An int containing the position of the next unread byte in the buffer. */
+  private int position = 0;
+
+  /** An int containing the number of valid bytes in the buffer. */
+  private int limit = 0;
+
+  /** An array of chars containing the current token. */
+  private final char[] token = new char[MAX_TOKEN];
+
+  /** An int containing the length of the current token, or -1 if there isn't one. */
+  private int tokenLength = -1;
+
+  /** A double containing the value of the current token. */
+  private double tokenValue = Double.NaN;
+
+  /** A boolean flag, true if the current token is a number. */
+  private boolean tokenIsNumber = false;
+
+  /**
+   * The NumberScanner constructor. Note that the stream is read in large blocks, so it doesn't need
+   * to be buffered.
+   *
+   * @param in An InputStream containing the text to scan
+   */
+  public NumberScanner(InputStream in) {
+    this.in = in;
+  }
+
+  /**
+   * Function to determine if the next token is a number.
+   *
+   * @return True if there is another token and it is a number, false otherwise
+   * @throws UncheckedIOException On any read error
+   */
+  public boolean hasNextDouble() {
+    if (tokenLength < 0) {
+      readToken();
+    }
+
+    return tokenIsNumber;
+  }
+
+  /**
+   * Function to return the next token as a number.
+   *
+   * @return A double containing the value of the next token
+   * @throws NoSuchElementException If there are no more tokens
+   * @throws InputMismatchException If the next token isn't a number
+   * @throws UncheckedIOException On any read error
+   */
+  public double nextDouble() {
+    if (tokenLength < 0) {
+      readToken();
+    }
+
+    if (tokenLength < 0) {
+      throw new NoSuchElementException();
+    }
+
+    if (!tokenIsNumber) {
+      throw new InputMismatchException(new String(token, 0, tokenLength));
+    }
+
+    tokenLength = -1;
+    return tokenValue;
+  }
+
+  /** Function to read the next token, if any, and work out its value. */
+  private void readToken() {
+    tokenIsNumber = false;
+
+    // Skip white space.
+    int next = read();
+    while (next >= 0 && next <= ' ') {
+      next = read();
+    }
+
+    if (next < 0) {
+      tokenLength = -1;
+      return;
+    }
+
+    tokenLength = 0;
+    while (next > ' ') {
+      if (tokenLength == MAX_TOKEN) {
+        throw new InputMismatchException("Token too long");
+      }
+
+      token[tokenLength++] = (char) next;
+      next = read();
+    }
+
+    tokenValue = parse();
+    tokenIsNumber = true;
+
+    if (Double.isNaN(tokenValue)) {
+      // Let Java decide if it really is a NaN.
+      try {
+        tokenValue = Double.parseDouble(new String(token, 0, tokenLength));
+      } catch (NumberFormatException e) {
+        tokenIsNumber = false;
+      }
+    }
+  }
+
+  /**
+   * Function to convert a plain decimal token exactly.
+   *
+   * @return A double containing the value of the token, or NaN if the token needs to be converted
+   *     by Double.parseDouble
+   */
+  private double parse() {
+    int j = 0;
+    boolean negative = false;
+    if (token[j] == '-' || token[j] == '+') {
+      negative = token[j++] == '-';
+    }
+
+    long mantissa = 0L;
+    int digits = 0;
+    int significant = 0;
+    int scale = 0;
+    boolean point = false;
+
+    for (; j < tokenLength; j++) {
+      char c = token[j];
+
+      if (c >= '0' && c <= '9') {
+        digits++;
+        if (mantissa != 0L || c != '0') {
+          if (++significant > MAX_DIGITS) {
+            return Double.NaN;
+          }
+        }
+
+        mantissa = 10L * mantissa + (c - '0');
+        if (point) {
+          scale--;
+        }
+      } else if (c == '.' && !point) {
+        point = true;
+      } else if ((c == 'e' || c == 'E') && digits > 0) {
+        int exponent = parseExponent(j + 1);
+        if (exponent == Integer.MIN_VALUE) {
+          return Double.NaN;
+        }
+
+        scale += exponent;
+        break;
+      } else {
+        return Double.NaN;
+      }
+    }
+
+    if (digits == 0 || scale < -(POWERS_OF_TEN.length - 1) || scale > POWERS_OF_TEN.length - 1) {
+      return Double.NaN;
+    }
+
+    double value = (double) mantissa;
+    if (scale < 0) {
+      value /= POWERS_OF_TEN[-scale];
+    } else {
+      value *= POWERS_OF_TEN[scale];
+    }
+
+    return negative ? -value : value;
+  }
+
+  /**
+   * Function to convert the exponent of a token.
+   *
+   * @param start An int containing the index of the first character after the 'e'
+   * @return An int containing the exponent, or Integer.MIN_VALUE if it is malformed or too big
+   */
+  private int parseExponent(int start) {
+    int j = start;
+    boolean negative = false;
+    if (j < tokenLength && (token[j] == '-' || token[j] == '+')) {
+      negative = token[j++] == '-';
+    }
+
+    if (j == tokenLength || tokenLength - j > 3) {
+      return Integer.MIN_VALUE;
+    }
+
+    int exponent = 0;
+    for (; j < tokenLength; j++) {
+      char c = token[j];
+      if (c < '0' || c > '9') {
+        return Integer.MIN_VALUE;
+      }
+
+      exponent = 10 * exponent + (c - '0');
+    }
+
+    return negative ? -exponent : exponent;
+  }
+
+  /**
+   * Function to read the next byte, refilling the buffer as needed.
+   *
+   * @return An int containing the next byte, or -1 at the end of the stream
+   * @throws UncheckedIOException On any read error
+   */
+  private int read() {
+    if (position == limit) {
+      try {
+        limit = in.read(buffer, 0, buffer.length);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      position = 0;
+      if (limit <= 0) {
+        limit = 0;
+        return -1;
+      }
+    }
+
+    return buffer[position++] & 0xff;
+  }
+}
@@ -1,7 +1,9 @@
 package gov.usgs.locaux;
 
 import gov.usgs.traveltime.TauUtilities;
-import java.io.Serializable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,13 +13,7 @@ import org.apache.logging.log4j.Logger;
  *
  * @author Ray Buland
  */
-public class SlabArea implements Serializable {
-  /**
-   * A long containing the serializable class version number, used during deserialization to verify
-   * compatibility.
-   */
-  private static final long serialVersionUID = 1L;
-
+public class SlabArea {
   /** An integer containing which row the epicenter was in */
   private int rowFound = -1;
 
@@ -42,6 +38,24 @@ public class SlabArea implements Serializable {
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(SlabArea.class.getName());
 
+  /**
+   * Function to retrieve the slab area latitude search range.
+   *
+   * @return An array of doubles containing the minimum and maximum colatitudes in degrees
+   */
+  public double[] getLatRange() {
+    return latRange;
+  }
+
+  /**
+   * Function to retrieve the slab area longitude search range.
+   *
+   * @return An array of doubles containing the minimum and maximum longitudes in degrees
+   */
+  public double[] getLonRange() {
+    return lonRange;
+  }
+
   /**
    * SlabArea constructor, sets up storage for the rows, segments, and depths.
    *
@@ -396,4 +410,60 @@ public class SlabArea implements Serializable {
     return String.format(
         "(%6.2f,%6.2f) - (%6.2f,%6.2f)", latRange[0], lonRange[0], latRange[1], lonRange[1]);
   }
+
+  /**
+   * Function to estimate the memory used by this slab area and its rows.
+   *
+   * @return A long containing the estimated size in bytes
+   */
+  public long getMemorySize() {
+    long size = 128L;
+
+    for (SlabRow row : slabRows) {
+      size += 8L + row.getMemorySize();
+    }
+
+    return size;
+  }
+
+  /**
+   * Function to write the slab area to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeDouble(slabInc);
+    out.writeDouble(slabHalfInc);
+    out.writeDouble(latBase);
+    LocAuxFile.writeDoubles(out, latRange);
+    LocAuxFile.writeDoubles(out, lonRange);
+
+    out.writeInt(slabRows.size());
+    for (SlabRow row : slabRows) {
+      row.writeBinary(out);
+    }
+  }
+
+  /**
+   * Function to read a slab area from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A SlabArea object containing the slab area read
+   */
+  public static SlabArea readBinary(ByteBuffer in) {
+    SlabArea area = new SlabArea(in.getDouble());
+    area.slabHalfInc = in.getDouble();
+    area.latBase = in.getDouble();
+    area.latRange = LocAuxFile.readDoubles(in);
+    area.lonRange = LocAuxFile.readDoubles(in);
+
+    int numRows = in.getInt();
+    area.slabRows.ensureCapacity(numRows);
+    for (int j = 0; j < numRows; j++) {
+      area.slabRows.add(SlabRow.readBinary(in));
+    }
+
+    return area;
+  }
 }
@@ -1,6 +1,8 @@
 package gov.usgs.locaux;
 
-import java.io.Serializable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 
 /**
@@ -10,13 +12,7 @@ import java.util.ArrayList;
  *
  * @author Ray Buland
  */
-public class SlabRow implements Serializable {
-  /**
-   * A long containing the serializable class version number, used during deserialization to verify
-   * compatibility.
-   */
-  private static final long serialVersionUID = 1L;
-
+public class SlabRow {
   /** An integer containing the last segment where the epicenter was found */
   private int segFound = -1;
 
@@ -316,4 +312,62 @@ public class SlabRow implements Serializable {
       }
     }
   }
+
+  /**
+   * Function to estimate the memory used by this (squeezed) slab row and its segments.
+   *
+   * @return A long containing the estimated size in bytes
+   */
+  public long getMemorySize() {
+    long size = 96L;
+
+    if (slabSegs != null) {
+      for (SlabSeg seg : slabSegs) {
+        size += 8L + seg.getMemorySize();
+      }
+    }
+
+    return size;
+  }
+
+  /**
+   * Function to write the (squeezed) slab row to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeDouble(lat);
+    LocAuxFile.writeDoubles(out, lonRange);
+
+    if (slabSegs == null) {
+      out.writeInt(-1);
+    } else {
+      out.writeInt(slabSegs.size());
+      for (SlabSeg seg : slabSegs) {
+        seg.writeBinary(out);
+      }
+    }
+  }
+
+  /**
+   * Function to read a slab row from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A SlabRow object containing the slab row read
+   */
+  public static SlabRow readBinary(ByteBuffer in) {
+    SlabRow row = new SlabRow(in.getDouble());
+    row.lonRange = LocAuxFile.readDoubles(in);
+
+    int numSegs = in.getInt();
+    if (numSegs >= 0) {
+      row.slabSegs = new ArrayList<SlabSeg>(numSegs);
+      for (int j = 0; j < numSegs; j++) {
+        row.slabSegs.add(SlabSeg.readBinary(in));
+      }
+    }
+
+    return row;
+  }
 }
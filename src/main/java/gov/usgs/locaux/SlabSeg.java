@@ -1,6 +1,9 @@
 package gov.usgs.locaux;
 
-import java.io.Serializable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
 import java.util.List;
 
 /**
@@ -9,13 +12,7 @@ import java.util.List;
  *
  * @author Ray Buland
  */
-public class SlabSeg implements Serializable {
-  /**
-   * A long containing the serializable class version number, used during deserialization to verify
-   * compatibility.
-   */
-  private static final long serialVersionUID = 1L;
-
+public class SlabSeg {
   /** An integer containing where in the segment the epicenter was */
   private int pointFound = -1;
 
@@ -25,8 +22,12 @@ public class SlabSeg implements Serializable {
   /** An array of doubles containing the longitude range of this segment */
   private double[] lonRange;
 
-  /** An array of SlabDepth objects containing the depths for this segment */
-  private SlabDepth[] depths;
+  /**
+   * A DoubleBuffer containing the depth triplets for this segment as flat (lower, center, upper)
+   * values. When the segment is read from an auxiliary binary file, this is a view of the mapped
+   * file rather than a copy.
+   */
+  private DoubleBuffer depths;
 
   /**
    * Function to calculate the longitude associated with the latest point found.
@@ -42,6 +43,9 @@ public class SlabSeg implements Serializable {
     }
   }
 
+  /** Private SlabSeg constructor, used when reading the segment from an auxiliary binary file. */
+  private SlabSeg() {}
+
   /**
    * SlabSeg constructor, creates the segment from a list of depth points.
    *
@@ -53,11 +57,15 @@ public class SlabSeg implements Serializable {
     lonRange = new double[2];
     lonRange[0] = lonBase - slabInc / 2d;
     lonRange[1] = points.get(points.size() - 1).getLon() + slabInc / 2d;
-    depths = new SlabDepth[points.size()];
+    double[] flatDepths = new double[3 * points.size()];
 
     for (int j = 0; j < points.size(); j++) {
-      depths[j] = points.get(j).getDep();
+      SlabDepth depth = points.get(j).getDep();
+      flatDepths[3 * j] = depth.getLower();
+      flatDepths[3 * j + 1] = depth.getEqDepth();
+      flatDepths[3 * j + 2] = depth.getUpper();
     }
+    depths = DoubleBuffer.wrap(flatDepths);
   }
 
   /**
@@ -90,7 +98,7 @@ public class SlabSeg implements Serializable {
     if (lon >= lonRange[0] && lon <= lonRange[1]) {
       pointFound = (int) ((lon - lonBase) / slabInc);
 
-      return depths[pointFound];
+      return getDepth(pointFound);
     }
 
     pointFound = -1;
@@ -105,8 +113,8 @@ public class SlabSeg implements Serializable {
    */
   public SlabDepth getNextDepth() {
     if (pointFound >= 0) {
-      if (++pointFound < depths.length) {
-        return depths[pointFound];
+      if (++pointFound < getNumPoints()) {
+        return getDepth(pointFound);
       }
     }
 
@@ -114,11 +122,70 @@ public class SlabSeg implements Serializable {
     return null;
   }
 
+  /**
+   * Function to get the number of points in this segment.
+   *
+   * @return An int containing the number of points
+   */
+  private int getNumPoints() {
+    return depths.limit() / 3;
+  }
+
+  /**
+   * Function to get the slab depth triplet at one point of this segment.
+   *
+   * @param point An int containing the index of the point
+   * @return A SlabDepth object containing the slab depth triplet
+   */
+  private SlabDepth getDepth(int point) {
+    return new SlabDepth(
+        depths.get(3 * point + 1), depths.get(3 * point), depths.get(3 * point + 2));
+  }
+
+  /**
+   * Function to estimate the memory used by this segment, including its depth triplets whether
+   * they are on the heap or mapped from an auxiliary binary file.
+   *
+   * @return A long containing the estimated size in bytes
+   */
+  public long getMemorySize() {
+    return 128L + 8L * depths.limit();
+  }
+
   /** Function to provide a toString suitable for traditional printing and logging. */
   @Override
   public String toString() {
     return String.format(
         "%6.2f-%6.2f: %6.2f-%6.2f",
-        lonRange[0], lonRange[1], depths[0].getEqDepth(), depths[depths.length - 1].getEqDepth());
+        lonRange[0], lonRange[1], depths.get(1), depths.get(depths.limit() - 2));
+  }
+
+  /**
+   * Function to write the slab segment to an auxiliary binary file. The depth triplets are written
+   * as one flat array of (lower, center, upper) values.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeDouble(lonBase);
+    LocAuxFile.writeDoubles(out, lonRange);
+    LocAuxFile.writeDoubles(out, depths);
+  }
+
+  /**
+   * Function to read a slab segment from an auxiliary binary file. The depth triplets are used in
+   * place rather than copied.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A SlabSeg object containing the slab segment read
+   */
+  public static SlabSeg readBinary(ByteBuffer in) {
+    SlabSeg seg = new SlabSeg();
+    seg.lonBase = in.getDouble();
+    seg.lonRange = LocAuxFile.readDoubles(in);
+    seg.depths = LocAuxFile.viewDoubles(in);
+
+    return seg;
   }
 }
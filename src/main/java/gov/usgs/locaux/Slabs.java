@@ -1,7 +1,9 @@
 package gov.usgs.locaux;
 
 import gov.usgs.locator.BayesianDepth;
-import java.io.Serializable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -11,13 +13,7 @@ import org.apache.logging.log4j.Logger;
  *
  * @author Ray Buland
  */
-public class Slabs implements Serializable {
-  /**
-   * A long containing the serializable class version number, used during deserialization to verify
-   * compatibility.
-   */
-  private static final long serialVersionUID = 1L;
-
+public class Slabs {
   /** A double containing the The latitude-longitude grid spacing for the slab model. */
   private double slabInc = Double.NaN;
 
@@ -31,6 +27,22 @@ public class Slabs implements Serializable {
    */
   double bayesSpread;
 
+  /** An int containing the number of colatitude cells in the slab area index. */
+  private static final int INDEX_LATS = 180;
+
+  /** An int containing the number of longitude cells in the slab area index. */
+  private static final int INDEX_LONS = 360;
+
+  /** An array of ints used for the index cells that aren't covered by any slab area. */
+  private static final int[] NO_AREAS = new int[0];
+
+  /**
+   * A two dimensional array of ints containing, for each one degree colatitude-longitude cell, the
+   * indices of the slab areas whose bounding boxes overlap the cell. The index is built when first
+   * needed, and dropped whenever an area is added.
+   */
+  private volatile int[][] areaIndex = null;
+
   /** Private logging object. */
   private static final Logger LOGGER = LogManager.getLogger(Slabs.class.getName());
 
@@ -74,6 +86,7 @@ public class Slabs implements Serializable {
   public void add(SlabArea slabArea) {
     slabArea.fixGaps();
     slabAreas.add(slabArea);
+    areaIndex = null;
   }
 
   /**
@@ -83,6 +96,7 @@ public class Slabs implements Serializable {
    */
   public void add(TiltedArea tiltedArea) {
     slabAreas.add(tiltedArea.getSlabArea());
+    areaIndex = null;
   }
 
   /**
@@ -93,12 +107,38 @@ public class Slabs implements Serializable {
    *
    * @param lat A double containing the geographic latitude in degrees
    * @param lon A double containing the geographic longitude in degrees
-   * @return An ArrayList of BayesianDepth objects containing the slab depths
+   * @return An ArrayList of BayesianDepth objects containing the slab depths, or null if there are
+   *     none
    */
   public ArrayList<BayesianDepth> getDepth(double lat, double lon) {
+    ArrayList<BayesianDepth> depths = new ArrayList<BayesianDepth>();
+    getDepth(lat, lon, depths);
+
+    if (depths.isEmpty()) {
+      return null;
+    }
+
+    return depths;
+  }
+
+  /**
+   * Function to retrieve the bayesian depth list for a geographic point into a list supplied (and
+   * reused) by the caller.
+   *
+   * <p>Only the slab areas whose bounding boxes overlap the index cell containing the point are
+   * probed. Note that with overturned slabs, etc. it is possible to sample at least two slabs for
+   * one geographic point.
+   *
+   * @param lat A double containing the geographic latitude in degrees
+   * @param lon A double containing the geographic longitude in degrees
+   * @param depths An ArrayList of BayesianDepth objects to be cleared and filled with the slab
+   *     depths in order of increasing earthquake depth
+   */
+  public void getDepth(double lat, double lon, ArrayList<BayesianDepth> depths) {
     double lat0, lon0;
     SlabDepth depth;
-    ArrayList<BayesianDepth> depths = null;
+
+    depths.clear();
 
     // The slab lookup works in colatitude and longitude from 0 to 360
     // degrees
@@ -109,15 +149,18 @@ public class Slabs implements Serializable {
       lon0 = lon;
     }
 
-    for (SlabArea area : slabAreas) {
+    int[][] index = areaIndex;
+    if (index == null) {
+      index = buildIndex();
+    }
+
+    for (int j : index[latCell(lat0) * INDEX_LONS + lonCell(lon0)]) {
+      SlabArea area = slabAreas.get(j);
+
       if (area.isFound(lat0, lon0)) {
         depth = area.getDepth(lat0, lon0);
 
         if (depth != null) {
-          if (depths == null) {
-            depths = new ArrayList<BayesianDepth>();
-          }
-
           depths.add(new BayesianDepth(depth));
         }
       }
@@ -125,11 +168,76 @@ public class Slabs implements Serializable {
 
     // Sort the deep earthquake zones into the order of increasing
     // earthquake depth.
-    if (depths != null) {
+    if (depths.size() > 1) {
       depths.sort(null);
     }
+  }
 
-    return depths;
+  /**
+   * Function to build the slab area index. Each area is entered in every cell its latitude and
+   * longitude search ranges touch, in area order, so probing a cell visits candidate areas in the
+   * same order as a scan of all areas would.
+   *
+   * @return A two dimensional array of ints containing the slab area index
+   */
+  private int[][] buildIndex() {
+    int[] counts = new int[INDEX_LATS * INDEX_LONS];
+    int[][] index = new int[INDEX_LATS * INDEX_LONS][];
+
+    // Count the areas in each cell, then fill the cells.
+    for (int pass = 0; pass < 2; pass++) {
+      for (int j = 0; j < slabAreas.size(); j++) {
+        double[] latRange = slabAreas.get(j).getLatRange();
+        double[] lonRange = slabAreas.get(j).getLonRange();
+
+        // Skip areas that never got any rows.
+        if (latRange[0] > latRange[1] || lonRange[0] > lonRange[1]) {
+          continue;
+        }
+
+        for (int i = latCell(latRange[0]); i <= latCell(latRange[1]); i++) {
+          for (int k = lonCell(lonRange[0]); k <= lonCell(lonRange[1]); k++) {
+            int cell = i * INDEX_LONS + k;
+
+            if (pass == 0) {
+              counts[cell]++;
+            } else {
+              index[cell][counts[cell]++] = j;
+            }
+          }
+        }
+      }
+
+      if (pass == 0) {
+        for (int cell = 0; cell < counts.length; cell++) {
+          index[cell] = counts[cell] > 0 ? new int[counts[cell]] : NO_AREAS;
+          counts[cell] = 0;
+        }
+      }
+    }
+
+    areaIndex = index;
+    return index;
+  }
+
+  /**
+   * Function to get the index cell row for a colatitude.
+   *
+   * @param lat A double containing the geographic colatitude in degrees (0-180 degrees)
+   * @return An int containing the index cell row
+   */
+  private static int latCell(double lat) {
+    return Math.min(Math.max((int) Math.floor(lat), 0), INDEX_LATS - 1);
+  }
+
+  /**
+   * Function to get the index cell column for a longitude.
+   *
+   * @param lon A double containing the geographic longitude in degrees (0-360 degrees)
+   * @return An int containing the index cell column
+   */
+  private static int lonCell(double lon) {
+    return Math.min(Math.max((int) Math.floor(lon), 0), INDEX_LONS - 1);
   }
 
   /** Function to perform a debug check on the status of all rows in all areas. */
@@ -158,4 +266,62 @@ public class Slabs implements Serializable {
 
     return areaString;
   }
+
+  /**
+   * Function to estimate the memory used by this slab model, including its slab area index and
+   * the slab depths, whether they are on the heap or mapped from an auxiliary binary file.
+   *
+   * @return A long containing the estimated size in bytes
+   */
+  public long getMemorySize() {
+    long size = 8L * INDEX_LATS * INDEX_LONS;
+
+    for (SlabArea area : slabAreas) {
+      // The area itself, and its entries in the index cells it overlaps.
+      double[] latRange = area.getLatRange();
+      double[] lonRange = area.getLonRange();
+      long numCells =
+          Math.max(latCell(latRange[1]) - latCell(latRange[0]) + 1, 0)
+              * Math.max(lonCell(lonRange[1]) - lonCell(lonRange[0]) + 1, 0);
+      size += 8L + area.getMemorySize() + 4L * numCells;
+    }
+
+    return size;
+  }
+
+  /**
+   * Function to write the slab model to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeDouble(slabInc);
+    out.writeDouble(bayesSpread);
+
+    out.writeInt(slabAreas.size());
+    for (SlabArea area : slabAreas) {
+      area.writeBinary(out);
+    }
+  }
+
+  /**
+   * Function to read a slab model from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A Slabs object containing the slab model read
+   */
+  public static Slabs readBinary(ByteBuffer in) {
+    Slabs slabs = new Slabs();
+    slabs.slabInc = in.getDouble();
+    slabs.bayesSpread = in.getDouble();
+
+    int numAreas = in.getInt();
+    slabs.slabAreas.ensureCapacity(numAreas);
+    for (int j = 0; j < numAreas; j++) {
+      slabs.slabAreas.add(SlabArea.readBinary(in));
+    }
+
+    return slabs;
+  }
 }
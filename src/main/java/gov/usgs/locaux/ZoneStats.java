@@ -2,8 +2,10 @@ package gov.usgs.locaux;
 
 import gov.usgs.locator.BayesianDepth;
 import gov.usgs.locator.DepthSource;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -309,4 +311,60 @@ public class ZoneStats extends AbstractZoneStats implements Serializable {
     BayesianDepth bayes = interpolateBayesDepth(lat, lon);
     LOGGER.info(bayes);
   }
+
+  /**
+   * Function to write the zone statistics to an auxiliary binary file.
+   *
+   * @param out A DataOutputStream to write to
+   * @throws IOException On any write error
+   */
+  public void writeBinary(DataOutputStream out) throws IOException {
+    out.writeInt(numYears);
+
+    out.writeInt(zoneKeys.length);
+    for (int[] keys : zoneKeys) {
+      LocAuxFile.writeInts(out, keys);
+    }
+
+    // Each statistic is preceded by a flag, since many are missing.
+    out.writeInt(zoneStats.length);
+    for (ZoneStat stat : zoneStats) {
+      out.writeBoolean(stat != null);
+
+      if (stat != null) {
+        out.writeDouble(stat.getMeanFreeDepth());
+        out.writeDouble(stat.getMinimumFreeDepth());
+        out.writeDouble(stat.getMaximumFreeDepth());
+      }
+    }
+  }
+
+  /**
+   * Function to read the zone statistics from an auxiliary binary file.
+   *
+   * @param in A ByteBuffer to read from
+   * @return A ZoneStats object containing the zone statistics read
+   */
+  public static ZoneStats readBinary(ByteBuffer in) {
+    int numYears = in.getInt();
+
+    int[][] zoneKeys = new int[in.getInt()][];
+    for (int j = 0; j < zoneKeys.length; j++) {
+      zoneKeys[j] = LocAuxFile.readInts(in);
+    }
+
+    ZoneStat[] stats = new ZoneStat[in.getInt()];
+    for (int j = 0; j < stats.length; j++) {
+      if (in.get() != 0) {
+        double meanDepth = in.getDouble();
+        double minDepth = in.getDouble();
+        double maxDepth = in.getDouble();
+        stats[j] = new ZoneStat(meanDepth, minDepth, maxDepth);
+      }
+    }
+
+    ZoneStats zoneStats = new ZoneStats(zoneKeys);
+    zoneStats.addStats(numYears, stats);
+    return zoneStats;
+  }
 }
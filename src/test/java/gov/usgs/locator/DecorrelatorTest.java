@@ -0,0 +1,137 @@
+package gov.usgs.locator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests comparing the decorrelator's correlation sum sort with a stable sort of a list, the
+ * way the triage used to keep the correlation sums in order. The sums are drawn from a few values
+ * so that there are lots of ties.
+ */
+public class DecorrelatorTest {
+  /** An array of doubles containing the values correlations are drawn from. */
+  private static final double[] VALUES = {0d, -0d, 0.25d, 0.5d, 0.5d, 1d};
+
+  /** A Random object used to make the correlation sums. */
+  private Random random = new Random(1357L);
+
+  @Test
+  public void testSortCorrelationSums() {
+    for (int length : new int[] {0, 1, 2, 3, 7, 64, 65, 300}) {
+      for (int trial = 0; trial < 20; trial++) {
+        double[] corrSums = new double[length + 5];
+        for (int j = 0; j < corrSums.length; j++) {
+          corrSums[j] = random.nextInt(5) * VALUES[random.nextInt(VALUES.length)];
+        }
+
+        // Start from a random order, with a few rows past the end that must be left alone.
+        ArrayList<Integer> rows = new ArrayList<Integer>();
+        for (int j = 0; j < corrSums.length; j++) {
+          rows.add(j);
+        }
+        Collections.shuffle(rows, random);
+        int[] order = new int[corrSums.length];
+        for (int j = 0; j < order.length; j++) {
+          order[j] = rows.get(j);
+        }
+
+        int[] expected = stableSort(order, length, corrSums);
+        Decorrelator.sortCorrelationSums(order, length, corrSums, new int[order.length]);
+        Assertions.assertArrayEquals(expected, order, length + " rows, trial " + trial);
+      }
+    }
+  }
+
+  @Test
+  public void testTriage() {
+    for (int numRows : new int[] {10, 50, 130}) {
+      for (int trial = 0; trial < 10; trial++) {
+        checkTriage(randomCovariance(numRows), numRows / 3);
+      }
+    }
+  }
+
+  /**
+   * This function eliminates the rows with the biggest correlation sums the way the triage does,
+   * and checks the order of the remaining rows against a stable sort after every elimination.
+   *
+   * @param covMatrix A double[][] containing a symmetric covariance matrix
+   * @param numKept An int containing the number of rows to keep
+   */
+  private void checkTriage(double[][] covMatrix, int numKept) {
+    int numRows = covMatrix.length;
+    double[] corrSums = new double[numRows];
+    int[] order = new int[numRows];
+    int[] scratch = new int[numRows];
+
+    for (int i = 0; i < numRows; i++) {
+      for (int j = 0; j < numRows; j++) {
+        if (i != j) {
+          corrSums[i] += covMatrix[i][j];
+        }
+      }
+      order[i] = i;
+    }
+
+    int[] expected = stableSort(order, numRows, corrSums);
+    Decorrelator.sortCorrelationSums(order, numRows, corrSums, scratch);
+    Assertions.assertArrayEquals(expected, order, numRows + " rows, initial sort");
+
+    for (int i = numRows - 1; i >= numKept; i--) {
+      int k = order[i];
+      for (int j = 0; j < i; j++) {
+        corrSums[order[j]] -= covMatrix[k][order[j]];
+      }
+
+      expected = stableSort(order, i, corrSums);
+      Decorrelator.sortCorrelationSums(order, i, corrSums, scratch);
+      Assertions.assertArrayEquals(expected, order, numRows + " rows, " + i + " left");
+    }
+  }
+
+  /**
+   * Function to stably sort the first rows of an order on their correlation sums, comparing the
+   * sums the way the old CorrelationsSum class did.
+   *
+   * @param order An array of ints containing the row indices in their previous order
+   * @param length An int containing the number of rows to sort
+   * @param corrSums An array of doubles containing the correlation sums indexed by row
+   * @return An array of ints containing the new order, with the rest of the rows unchanged
+   */
+  private int[] stableSort(int[] order, int length, double[] corrSums) {
+    ArrayList<Integer> rows = new ArrayList<Integer>();
+    for (int j = 0; j < length; j++) {
+      rows.add(order[j]);
+    }
+
+    rows.sort((a, b) -> corrSums[a] > corrSums[b] ? 1 : corrSums[a] < corrSums[b] ? -1 : 0);
+
+    int[] sorted = Arrays.copyOf(order, order.length);
+    for (int j = 0; j < length; j++) {
+      sorted[j] = rows.get(j);
+    }
+    return sorted;
+  }
+
+  /**
+   * Function to make a random symmetric covariance matrix.
+   *
+   * @param numRows An int containing the order of the matrix
+   * @return A double[][] containing the matrix
+   */
+  private double[][] randomCovariance(int numRows) {
+    double[][] covMatrix = new double[numRows][numRows];
+    for (int i = 0; i < numRows; i++) {
+      covMatrix[i][i] = 1d;
+      for (int j = 0; j < i; j++) {
+        covMatrix[i][j] = random.nextInt(3) == 0 ? VALUES[random.nextInt(VALUES.length)] : 0d;
+        covMatrix[j][i] = covMatrix[i][j];
+      }
+    }
+    return covMatrix;
+  }
+}
@@ -0,0 +1,110 @@
+package gov.usgs.locator;
+
+import java.util.ArrayList;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the location environment cache. */
+public class LocEnvironmentCacheTest {
+  /** An ArrayList of double arrays containing the points the environment was computed at. */
+  private ArrayList<double[]> computed = new ArrayList<double[]>();
+
+  /**
+   * This function stands in for the craton, slab, and zone statistics lookups, recording where it
+   * was asked to compute the environment.
+   *
+   * @param latitude A double containing the geographic latitude in degrees
+   * @param longitude A double containing the geographic longitude in degrees
+   * @return A LocEnvironmentCache.Environment object containing a dummy environment
+   */
+  private LocEnvironmentCache.Environment compute(double latitude, double longitude) {
+    computed.add(new double[] {latitude, longitude});
+    return new LocEnvironmentCache.Environment(latitude > 0d, new ArrayList<BayesianDepth>());
+  }
+
+  @Test
+  public void testHitsAndMisses() {
+    LocEnvironmentCache cache = new LocEnvironmentCache(1d, 100);
+
+    LocEnvironmentCache.Environment first = cache.get("2spd", 10.2, 20.3, this::compute);
+    LocEnvironmentCache.Environment second = cache.get("2spd", 10.7, 20.9, this::compute);
+    cache.get("2spd", 11.1, 20.3, this::compute);
+
+    Assertions.assertSame(first, second, "Same cell");
+    Assertions.assertEquals(1L, cache.getHits(), "Hits");
+    Assertions.assertEquals(2L, cache.getMisses(), "Misses");
+    Assertions.assertEquals(2, computed.size(), "Computed");
+    Assertions.assertEquals(2, cache.getSize(), "Size");
+
+    // The same point with another slab resolution is another cell.
+    cache.get("4spd", 10.2, 20.3, this::compute);
+    Assertions.assertEquals(3L, cache.getMisses(), "Slab resolution");
+
+    cache.clear();
+    Assertions.assertEquals(0, cache.getSize(), "Cleared size");
+    Assertions.assertEquals(0L, cache.getHits(), "Cleared hits");
+    Assertions.assertEquals(0L, cache.getMisses(), "Cleared misses");
+  }
+
+  @Test
+  public void testCellCenter() {
+    LocEnvironmentCache cache = new LocEnvironmentCache(0.5, 100);
+
+    // Whichever point fills the cell, the environment is computed at its center.
+    cache.get("2spd", 10.2, -20.3, this::compute);
+    cache.get("2spd", 10.4, -20.1, this::compute);
+    cache.get("2spd", -0.1, 179.9, this::compute);
+
+    Assertions.assertEquals(2, computed.size(), "Computed");
+    Assertions.assertEquals(10.25, computed.get(0)[0], 1e-12, "Latitude");
+    Assertions.assertEquals(-20.25, computed.get(0)[1], 1e-12, "Longitude");
+    Assertions.assertEquals(-0.25, computed.get(1)[0], 1e-12, "Southern latitude");
+    Assertions.assertEquals(179.75, computed.get(1)[1], 1e-12, "Eastern longitude");
+  }
+
+  @Test
+  public void testExactPositions() {
+    LocEnvironmentCache cache = new LocEnvironmentCache(0d, 100);
+
+    cache.get("2spd", 10.2, -20.3, this::compute);
+    cache.get("2spd", 10.2 + 1e-9, -20.3, this::compute);
+    cache.get("2spd", 10.2, -20.3, this::compute);
+
+    Assertions.assertEquals(1L, cache.getHits(), "Hits");
+    Assertions.assertEquals(2L, cache.getMisses(), "Misses");
+    Assertions.assertEquals(10.2, computed.get(0)[0], 0d, "Latitude");
+    Assertions.assertEquals(-20.3, computed.get(0)[1], 0d, "Longitude");
+    Assertions.assertEquals(10.2 + 1e-9, computed.get(1)[0], 0d, "Nearby latitude");
+  }
+
+  @Test
+  public void testEviction() {
+    LocEnvironmentCache cache = new LocEnvironmentCache(1d, 2);
+
+    cache.get("2spd", 0.5, 0.5, this::compute);
+    cache.get("2spd", 1.5, 0.5, this::compute);
+    // Touch the first cell so that the second is the least recently used.
+    cache.get("2spd", 0.5, 0.5, this::compute);
+    cache.get("2spd", 2.5, 0.5, this::compute);
+    Assertions.assertEquals(2, cache.getSize(), "Size");
+    Assertions.assertEquals(3L, cache.getMisses(), "Misses before");
+
+    // The first cell is still there, the second was evicted.
+    cache.get("2spd", 0.5, 0.5, this::compute);
+    Assertions.assertEquals(3L, cache.getMisses(), "First kept");
+    cache.get("2spd", 1.5, 0.5, this::compute);
+    Assertions.assertEquals(4L, cache.getMisses(), "Second evicted");
+    Assertions.assertEquals(2, cache.getSize(), "Size after");
+  }
+
+  @Test
+  public void testSharedCaches() {
+    LocEnvironmentCache exact = LocEnvironmentCache.getShared("models/", 0d);
+    LocEnvironmentCache cells = LocEnvironmentCache.getShared("models/", 0.01);
+
+    Assertions.assertSame(exact, LocEnvironmentCache.getShared("models/", 0d), "Shared");
+    Assertions.assertNotSame(exact, cells, "Cell size");
+    Assertions.assertNotSame(cells, LocEnvironmentCache.getShared("other/", 0.01), "Model path");
+    Assertions.assertEquals(0.01, cells.getCellSize(), 0d, "Cell size");
+  }
+}
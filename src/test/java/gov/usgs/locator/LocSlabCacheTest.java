@@ -0,0 +1,75 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.Slabs;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for the shared slab model cache. */
+public class LocSlabCacheTest {
+  /** An ArrayList of String objects containing the slab resolutions that were loaded. */
+  private ArrayList<String> loaded = new ArrayList<String>();
+
+  /**
+   * This function stands in for reading the slab model files, recording what it was asked to load.
+   *
+   * @param slabRes A String containing the slab model resolution in samples per degree
+   * @return A Slabs object containing an empty slab model
+   */
+  private Slabs load(String slabRes) {
+    loaded.add(slabRes);
+    return new Slabs();
+  }
+
+  @Test
+  public void testShared() throws IOException {
+    LocSlabCache cache = LocSlabCache.getShared("./sharedTest/");
+    Assertions.assertSame(cache, LocSlabCache.getShared("./sharedTest/"), "Same models");
+    Assertions.assertNotSame(cache, LocSlabCache.getShared("./otherTest/"), "Other models");
+
+    // However many sessions ask for a resolution, it is only loaded once.
+    Slabs first = cache.waitFor("4spd", this::load);
+    Slabs second = LocSlabCache.getShared("./sharedTest/").waitFor("4spd", this::load);
+
+    Assertions.assertSame(first, second, "Same slabs");
+    Assertions.assertEquals(1, loaded.size(), "Loaded");
+    Assertions.assertSame(first, cache.get("4spd"), "Get");
+    Assertions.assertNull(cache.get("8spd"), "Not loaded");
+    Assertions.assertTrue(cache.holds("4spd", first), "Holds");
+    Assertions.assertFalse(cache.holds("4spd", new Slabs()), "Other slabs");
+    Assertions.assertFalse(cache.holds("8spd", first), "Other resolution");
+  }
+
+  @Test
+  public void testBackgroundLoad() throws IOException {
+    LocSlabCache cache = LocSlabCache.getShared("./backgroundTest/");
+
+    CompletableFuture<Slabs> pending = cache.load("4spd", this::load, true);
+    Slabs slabs = LocSlabCache.waitFor("4spd", pending);
+
+    Assertions.assertSame(slabs, cache.get("4spd"), "Added");
+    Assertions.assertTrue(cache.load("4spd", this::load, true).isDone(), "Already loaded");
+    Assertions.assertEquals(1, loaded.size(), "Loaded");
+  }
+
+  @Test
+  public void testFailedLoad() throws IOException {
+    LocSlabCache cache = LocSlabCache.getShared("./failedTest/");
+
+    Assertions.assertThrows(
+        IOException.class,
+        () ->
+            cache.waitFor(
+                "4spd",
+                slabRes -> {
+                  throw new IOException("No slab file");
+                }));
+    Assertions.assertNull(cache.get("4spd"), "Not added");
+
+    // A failed load is forgotten, so the next request tries again.
+    Assertions.assertNotNull(cache.waitFor("4spd", this::load), "Retried");
+    Assertions.assertEquals(1, loaded.size(), "Loaded");
+  }
+}
@@ -8,6 +8,7 @@ import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.HashMap;
 import org.json.simple.parser.ParseException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -61,6 +62,67 @@ public class LocatorRegressionTest {
     runLocTest("build/resources/test/cusInput.json", "build/resources/test/cusVerification.json");
   }
 
+  @Test
+  public void runReusedEngineTest() {
+    System.out.println("runReusedEngineTest:");
+    // A pooled engine locates one event after another, reusing its Locate, rank-sum estimators,
+    // and decorrelator, so nothing left over from one event may change the next.
+    String[] firstOrder = {"global", "deep", "big", "wus", "cus"};
+    String[] secondOrder = {"cus", "big", "wus", "global", "deep"};
+
+    HashMap<String, String> freshResults = new HashMap<String, String>();
+    for (String event : firstOrder) {
+      freshResults.put(event, locateToJSON(newService(), event));
+    }
+
+    for (String[] order : new String[][] {firstOrder, secondOrder}) {
+      LocService service = newService();
+      String previous = "nothing";
+
+      for (String event : order) {
+        Assertions.assertEquals(
+            freshResults.get(event), locateToJSON(service, event), event + " after " + previous);
+        previous = event;
+      }
+    }
+  }
+
+  /**
+   * This function makes a new locator engine.
+   *
+   * @return A LocService object containing the engine
+   */
+  private LocService newService() {
+    try {
+      return new LocService("build/models/", "build/models/");
+    } catch (LocationException e) {
+      Assertions.fail(e.toString());
+      return null;
+    }
+  }
+
+  /**
+   * This function locates a regression test event with the given engine.
+   *
+   * @param service A LocService object containing the engine to use
+   * @param event A String containing the name of the event
+   * @return A String containing the location result as JSON
+   */
+  private String locateToJSON(LocService service, String event) {
+    String inputString = loadFromFile("build/resources/test/" + event + "Input.json");
+    Assertions.assertNotEquals(EMPTYSTRING, inputString, event + " Loaded Input");
+
+    LocationResult result = null;
+    try {
+      result = service.getLocation(new LocationRequest(Utility.fromJSONString(inputString)));
+    } catch (LocationException | ParseException e) {
+      Assertions.fail(event + ": " + e.toString());
+    }
+    Assertions.assertNotNull(result, event + " Location Result");
+
+    return Utility.toJSONString(result.toJSON());
+  }
+
   public void runLocTest(String inputFile, String verificationFile) {
     // parse input string into request
     String inputString = loadFromFile(inputFile);
@@ -0,0 +1,202 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import gov.usgs.processingformats.LocationException;
+import gov.usgs.processingformats.LocationRequest;
+import gov.usgs.processingformats.LocationResult;
+import gov.usgs.processingformats.Utility;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.json.simple.parser.ParseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Regression tests for the locator tuning. Each test locates the LocatorRegressionTest events with
+ * a tuning setting changed. Settings that trade accuracy for speed must keep every location within
+ * a tenth of its own error estimates of the verified location, and settings that only trade
+ * memory or threads for speed must not change the location at all.
+ */
+public class LocatorTuningTest {
+  /** An array of Strings containing the names of the regression test events. */
+  public static final String[] EVENTS = {"global", "deep", "big", "wus", "cus"};
+
+  /** A double containing the largest drift allowed, as a fraction of the error estimates. */
+  public static final double DRIFTFRACTION = 0.1;
+
+  /** A double containing the location environment cell size tried, in degrees (about 1 km). */
+  public static final double CELLSIZE = 0.01;
+
+  /** A double containing the travel-time source depth tolerance tried, in kilometers. */
+  public static final double DEPTHTOLERANCE = 0.1;
+
+  /** A double containing the phase identification hypocenter move tolerance tried, in km. */
+  public static final double MOVETOLERANCE = 0.1;
+
+  /** A double containing the phase identification travel-time tolerance tried, in seconds. */
+  public static final double TIMETOLERANCE = 0.01;
+
+  @Test
+  public void testEnvironmentCellSize() {
+    LocTuning tuning = new LocTuning();
+    tuning.setEnvironmentCellSize(CELLSIZE);
+
+    for (String event : EVENTS) {
+      assertDrift(event, loadVerification(event), locate(event, tuning));
+    }
+  }
+
+  @Test
+  public void testTravelTimeDepthTolerance() {
+    LocTuning tuning = new LocTuning();
+    tuning.setTravelTimeSessions(2);
+    tuning.setTravelTimeDepthTolerance(DEPTHTOLERANCE);
+
+    for (String event : EVENTS) {
+      assertDrift(event, loadVerification(event), locate(event, tuning));
+    }
+  }
+
+  @Test
+  public void testPhaseIDTolerances() {
+    LocTuning tuning = new LocTuning();
+    tuning.setPhaseIDMoveTolerance(MOVETOLERANCE);
+    tuning.setPhaseIDTimeTolerance(TIMETOLERANCE);
+
+    for (String event : EVENTS) {
+      assertDrift(event, loadVerification(event), locate(event, tuning));
+    }
+  }
+
+  @Test
+  public void testPartialEigen() {
+    LocTuning tuning = new LocTuning();
+    tuning.setPartialEigen(true);
+
+    for (String event : EVENTS) {
+      assertDrift(event, loadVerification(event), locate(event, tuning));
+    }
+  }
+
+  @Test
+  public void testLineSearchCandidates() {
+    // Evaluating trial steps in parallel must not change the location at all.
+    LocTuning parallel = new LocTuning();
+    parallel.setLineSearchCandidates(4);
+
+    for (String event : EVENTS) {
+      Assertions.assertEquals(
+          Utility.toJSONString(locate(event, new LocTuning()).toJSON()),
+          Utility.toJSONString(locate(event, parallel).toJSON()),
+          event + " parallel line search");
+    }
+  }
+
+  @Test
+  public void testPhaseIDThreads() {
+    // Identifying phases with several threads must not change the location at all.
+    LocTuning threaded = new LocTuning();
+    threaded.setPhaseIDThreads(4);
+
+    for (String event : EVENTS) {
+      Assertions.assertEquals(
+          Utility.toJSONString(locate(event, new LocTuning()).toJSON()),
+          Utility.toJSONString(locate(event, threaded).toJSON()),
+          event + " phase identification threads");
+    }
+  }
+
+  /**
+   * This function checks that a location is within DRIFTFRACTION of the verified location's error
+   * estimates of the verified location, horizontally, in depth, and in origin time.
+   *
+   * @param event A String containing the name of the event
+   * @param verification A LocationResult containing the verified location
+   * @param result A LocationResult containing the location to check
+   */
+  private void assertDrift(String event, LocationResult verification, LocationResult result) {
+    double latitudeDrift =
+        LocUtil.DEG2KM * Math.abs(result.Hypocenter.Latitude - verification.Hypocenter.Latitude);
+    double longitudeDrift =
+        LocUtil.DEG2KM
+            * Math.cos(Math.toRadians(verification.Hypocenter.Latitude))
+            * Math.abs(result.Hypocenter.Longitude - verification.Hypocenter.Longitude);
+    double depthDrift = Math.abs(result.Hypocenter.Depth - verification.Hypocenter.Depth);
+    double timeDrift =
+        Math.abs(result.Hypocenter.Time.getTime() - verification.Hypocenter.Time.getTime()) / 1000d;
+
+    Assertions.assertTrue(
+        latitudeDrift <= DRIFTFRACTION * verification.Hypocenter.LatitudeError,
+        event + " latitude drift " + latitudeDrift + " km");
+    Assertions.assertTrue(
+        longitudeDrift <= DRIFTFRACTION * verification.Hypocenter.LongitudeError,
+        event + " longitude drift " + longitudeDrift + " km");
+    Assertions.assertTrue(
+        depthDrift <= DRIFTFRACTION * verification.Hypocenter.DepthError,
+        event + " depth drift " + depthDrift + " km");
+    Assertions.assertTrue(
+        timeDrift <= DRIFTFRACTION * verification.Hypocenter.TimeError,
+        event + " origin time drift " + timeDrift + " s");
+  }
+
+  /**
+   * This function locates a regression test event with a new locator engine.
+   *
+   * @param event A String containing the name of the event
+   * @param tuning A LocTuning object containing the settings for the engine
+   * @return A LocationResult containing the location
+   */
+  private LocationResult locate(String event, LocTuning tuning) {
+    LocationResult result = null;
+    try {
+      LocService service = new LocService("build/models/", "build/models/", tuning);
+      result =
+          service.getLocation(
+              new LocationRequest(
+                  Utility.fromJSONString(
+                      loadFromFile("build/resources/test/" + event + "Input.json"))));
+    } catch (LocationException | ParseException e) {
+      Assertions.fail(event + ": " + e.toString());
+    }
+
+    Assertions.assertNotNull(result, event + " location result");
+    return result;
+  }
+
+  /**
+   * This function loads the verified location of a regression test event.
+   *
+   * @param event A String containing the name of the event
+   * @return A LocationResult containing the verified location
+   */
+  private LocationResult loadVerification(String event) {
+    LocationResult verification = null;
+    try {
+      verification =
+          new LocationResult(
+              Utility.fromJSONString(
+                  loadFromFile("build/resources/test/" + event + "Verification.json")));
+    } catch (ParseException e) {
+      Assertions.fail(event + ": " + e.toString());
+    }
+
+    return verification;
+  }
+
+  /**
+   * This function loads the data in the given file path as a string.
+   *
+   * @param filePath A String containing the path to the file to load
+   * @return A String containing the data in the file
+   */
+  private String loadFromFile(String filePath) {
+    try {
+      return new String(Files.readAllBytes(Paths.get(filePath)), StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      Assertions.fail(filePath + ": " + e.toString());
+      return "";
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import gov.usgs.traveltime.BadDepthException;
+import gov.usgs.traveltime.TravelTime;
+import gov.usgs.traveltime.TravelTimeSession;
+import gov.usgs.traveltime.tables.TauIntegralException;
+import java.io.IOException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests for saving and repeating the phase identification of a pick group. */
+public class PickGroupTest {
+  /** A Hypocenter object containing the source the picks are identified for. */
+  private Hypocenter hypo = new Hypocenter(1000d, 35d, -100d, 10d);
+
+  /** A PickGroup object containing a P and an S pick at one station. */
+  private PickGroup group;
+
+  /** A TravelTime object containing the theoretical arrivals at the station. */
+  private TravelTime travelTimes;
+
+  /**
+   * This function sets up a pick group with a P and an S pick and the theoretical arrivals at its
+   * station.
+   */
+  private void setUp() {
+    Station station = new Station(new StationID("ANMO", "00", "IU"), 34.95, -106.46, 1.82);
+    group = new PickGroup(station, new Pick(station, "BHZ", 1080d, true, "Pn"));
+    group.addPick(new Pick(station, "BHE", 1140d, true, "Sn"));
+    group.updateHypoAndTime(hypo);
+
+    try {
+      TravelTimeSession session =
+          new TravelTimeSession(true, true, true, "build/models/", "build/models/");
+      session.newSession(
+          "ak135",
+          hypo.getDepth(),
+          LocUtil.PHASELIST,
+          hypo.getLatitude(),
+          hypo.getLongitude(),
+          LocUtil.SUPRESSUNLIKELYPHASES,
+          LocUtil.SUPRESSBACKBRANCHES,
+          false);
+      travelTimes =
+          session.getTravelTimes(
+              station.getLatitude(),
+              station.getLongitude(),
+              station.getElevation(),
+              group.getDistance(),
+              group.getAzimuth());
+    } catch (IOException | ClassNotFoundException | BadDepthException | TauIntegralException e) {
+      Assertions.fail(e.toString());
+    }
+
+    Assertions.assertTrue(travelTimes.getNumPhases() > 1, "Theoretical arrivals");
+  }
+
+  /** This function stands in for a phase identification, leaving a figure-of-merit state behind. */
+  private void identify() {
+    group.getPick(0).setStatisticalFoM(travelTimes.getPhase(0), 1.5d);
+    group.getPick(0).setForceAssociation(true);
+    group.getPick(1).setStatisticalFoM(travelTimes.getPhase(1), 2.5d);
+    group.setCumulativeFoM(4d);
+  }
+
+  @Test
+  public void testRepeatIdentification() {
+    setUp();
+    group.saveIdentificationInputs(false, 0.01d, 5d);
+    identify();
+    group.saveIdentificationResult();
+
+    // Put the picks back the way they were going in and repeat the identification.
+    group.initializeFoM(0, group.getNumPicks());
+    Assertions.assertTrue(group.repeatIdentification(false, 0.01d, 5d, 0d), "Repeated");
+
+    Assertions.assertSame(
+        travelTimes.getPhase(0), group.getPick(0).getTTStatisticalMinFoM(), "First arrival");
+    Assertions.assertEquals(1.5d, group.getPick(0).getStatisticalFoM(), 0d, "First FoM");
+    Assertions.assertTrue(group.getPick(0).getForceAssociation(), "First forced");
+    Assertions.assertSame(
+        travelTimes.getPhase(1), group.getPick(1).getTTStatisticalMinFoM(), "Second arrival");
+    Assertions.assertEquals(2.5d, group.getPick(1).getStatisticalFoM(), 0d, "Second FoM");
+    Assertions.assertFalse(group.getPick(1).getForceAssociation(), "Second forced");
+    Assertions.assertEquals(4d, group.getCumulativeFoM(), 0d, "Cumulative FoM");
+
+    // Repeating it again from the same state gives the same result.
+    group.initializeFoM(0, group.getNumPicks());
+    Assertions.assertTrue(group.repeatIdentification(false, 0.01d, 5d, 0d), "Repeated again");
+    Assertions.assertEquals(4d, group.getCumulativeFoM(), 0d, "Cumulative FoM again");
+  }
+
+  @Test
+  public void testChangedInputs() {
+    setUp();
+    group.saveIdentificationInputs(false, 0.01d, 5d);
+    identify();
+    group.saveIdentificationResult();
+    group.initializeFoM(0, group.getNumPicks());
+
+    // An identification done another way isn't repeated.
+    Assertions.assertFalse(group.repeatIdentification(true, 0.1d, 1d, 0d), "Reidentify");
+    Assertions.assertFalse(group.repeatIdentification(false, 0.1d, 5d, 0d), "Other weight");
+
+    // Nor is one whose picks are in another state.
+    group.getPick(1).setIsUsed(false);
+    Assertions.assertFalse(group.repeatIdentification(false, 0.01d, 5d, 0d), "Use flag");
+    group.getPick(1).setIsUsed(true);
+    group.getPick(0).setStatisticalFoM(0.5d);
+    Assertions.assertFalse(group.repeatIdentification(false, 0.01d, 5d, 0d), "FoM");
+    group.getPick(0).setStatisticalFoM(0d);
+
+    // Nothing was restored by the failed attempts.
+    Assertions.assertNull(group.getPick(0).getTTStatisticalMinFoM(), "Not restored");
+    Assertions.assertEquals(0d, group.getCumulativeFoM(), 0d, "Cumulative FoM not restored");
+
+    // New travel times forget the saved identification.
+    group.setTravelTimes(
+        travelTimes, "ak135", false, hypo.getLatitude(), hypo.getLongitude(), hypo.getDepth());
+    Assertions.assertFalse(group.repeatIdentification(false, 0.01d, 5d, 0d), "New travel times");
+  }
+
+  @Test
+  public void testTimeTolerance() {
+    setUp();
+    group.saveIdentificationInputs(false, 0.01d, 5d);
+    identify();
+    group.saveIdentificationResult();
+    group.initializeFoM(0, group.getNumPicks());
+
+    // Moving the origin time moves the pick travel times.
+    group.updateTime(new Hypocenter(1000.005d, 35d, -100d, 10d));
+    Assertions.assertFalse(group.repeatIdentification(false, 0.01d, 5d, 0d), "Exact");
+    Assertions.assertTrue(group.repeatIdentification(false, 0.01d, 5d, 0.01d), "Within");
+    Assertions.assertEquals(4d, group.getCumulativeFoM(), 0d, "Cumulative FoM");
+
+    group.initializeFoM(0, group.getNumPicks());
+    group.updateTime(new Hypocenter(1000.02d, 35d, -100d, 10d));
+    Assertions.assertFalse(group.repeatIdentification(false, 0.01d, 5d, 0.01d), "Beyond");
+  }
+}
@@ -0,0 +1,307 @@
+package gov.usgs.locator;
+
+import gov.usgs.locaux.LocUtil;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests comparing the rank-sum estimator's median selections and sorts with stable sorts of
+ * the list after every median, the way the medians used to be done. The residuals are drawn from a
+ * few values so that there are lots of ties.
+ */
+public class RankSumEstimatorTest {
+  /** An array of doubles containing the values residuals are drawn from. */
+  private static final double[] VALUES = {-1d, -0.5d, 0d, 0d, 0d, 0.5d, 1d, 2d};
+
+  /** An array of doubles containing the values weights are drawn from. */
+  private static final double[] WEIGHTS = {0.5d, 1d, 1d, 2d};
+
+  /** A Random object used to make the test residuals and choose the operations. */
+  private Random random = new Random(5678L);
+
+  /** An ArrayList of WeightedResidual objects containing the residuals the estimator works on. */
+  private ArrayList<WeightedResidual> residuals = new ArrayList<WeightedResidual>();
+
+  /** An ArrayList of WeightedResidual objects containing copies of them, sorted the old way. */
+  private ArrayList<WeightedResidual> sorted = new ArrayList<WeightedResidual>();
+
+  /** An IdentityHashMap containing the copy of each weighted residual. */
+  private IdentityHashMap<WeightedResidual, WeightedResidual> copies =
+      new IdentityHashMap<WeightedResidual, WeightedResidual>();
+
+  /** A double containing the residual median remembered by the old way. */
+  private double residualsMedian;
+
+  /** An int containing the index of the upper median remembered by the old way. */
+  private int halfIndex;
+
+  /** An int containing the last index used by the median remembered by the old way. */
+  private int lastIndex;
+
+  @Test
+  public void testMediansAndSorts() {
+    for (int numData : new int[] {2, 3, 8, 9, 25, 40}) {
+      for (int trial = 0; trial < 20; trial++) {
+        makeResiduals(numData);
+        RankSumEstimator estimator = new RankSumEstimator(residuals);
+        String label = numData + " data, trial " + trial;
+
+        for (int step = 0; step < 30; step++) {
+          switch (random.nextInt(6)) {
+            case 0:
+              checkMedian(estimator, label);
+              break;
+
+            case 1:
+              checkMedian(estimator, label);
+              Assertions.assertEquals(spread(), estimator.computeSpread(), 0d, label + " spread");
+              break;
+
+            case 2:
+              checkMedian(estimator, label);
+              estimator.deMedianResiduals();
+              for (WeightedResidual weightedResidual : sorted) {
+                weightedResidual.deMedianResiduals(residualsMedian);
+              }
+              residualsMedian = 0d;
+              checkDispersion(estimator, label);
+              break;
+
+            case 3:
+              checkLinearEstimates(estimator, label);
+              break;
+
+            case 4:
+              checkDispersion(estimator, label);
+              break;
+
+            default:
+              // Rebuild the list in a new order, as a new phase identification would.
+              Collections.shuffle(sorted, random);
+              residuals.clear();
+              for (WeightedResidual copy : sorted) {
+                for (WeightedResidual weightedResidual : copies.keySet()) {
+                  if (copies.get(weightedResidual) == copy) {
+                    residuals.add(weightedResidual);
+                  }
+                }
+              }
+              break;
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testReset() {
+    makeResiduals(12);
+    RankSumEstimator estimator = new RankSumEstimator(residuals);
+    checkMedian(estimator, "before reset");
+    checkMedian(estimator, "before reset");
+
+    // A new event that happens to reuse the same residuals in the same order starts over from
+    // the list order.
+    estimator.reset(residuals);
+    sorted.clear();
+    for (WeightedResidual weightedResidual : residuals) {
+      sorted.add(copies.get(weightedResidual));
+    }
+    checkMedian(estimator, "after reset");
+    checkDispersion(estimator, "after reset");
+  }
+
+  /**
+   * This function makes a new set of weighted residuals and their copies, in the same order.
+   *
+   * @param numData An int containing the number of weighted residuals
+   */
+  private void makeResiduals(int numData) {
+    residuals.clear();
+    sorted.clear();
+    copies.clear();
+    residualsMedian = 0d;
+
+    for (int j = 0; j < numData; j++) {
+      WeightedResidual weightedResidual =
+          new WeightedResidual(
+              null,
+              VALUES[random.nextInt(VALUES.length)],
+              WEIGHTS[random.nextInt(WEIGHTS.length)],
+              j == numData - 1 && numData > 3,
+              random.nextInt(3),
+              random.nextInt(3),
+              random.nextInt(3),
+              0d,
+              0d);
+      WeightedResidual copy = new WeightedResidual();
+      copy.copyFrom(weightedResidual);
+
+      residuals.add(weightedResidual);
+      sorted.add(copy);
+      copies.put(weightedResidual, copy);
+    }
+  }
+
+  /**
+   * This function checks the residual median and the design matrix medians against the old way.
+   *
+   * @param estimator A RankSumEstimator object containing the estimator being checked
+   * @param label A String containing the test case
+   */
+  private void checkMedian(RankSumEstimator estimator, String label) {
+    double median = estimator.computeMedian();
+    estimator.deMedianDesignMatrix();
+
+    // The old way.
+    for (WeightedResidual weightedResidual : sorted) {
+      weightedResidual.setSortValue();
+    }
+    sorted.sort(null);
+    lastIndex = Math.max(sorted.size() - 1, 1);
+    halfIndex = lastIndex / 2;
+    if (lastIndex % 2 == 0) {
+      residualsMedian =
+          0.5d * (sorted.get(halfIndex - 1).getResidual() + sorted.get(halfIndex).getResidual());
+    } else {
+      residualsMedian = sorted.get(halfIndex).getResidual();
+    }
+
+    double[] medianValues = new double[3];
+    for (int i = 0; i < medianValues.length; i++) {
+      if (lastIndex % 2 == 0) {
+        medianValues[i] =
+            0.5d
+                * (sorted.get(halfIndex - 1).getSpatialDerivatives()[i]
+                    + sorted.get(halfIndex).getSpatialDerivatives()[i]);
+      } else {
+        medianValues[i] = sorted.get(halfIndex).getSpatialDerivatives()[i];
+      }
+    }
+    for (WeightedResidual weightedResidual : sorted) {
+      weightedResidual.deMedianDerivatives(medianValues);
+    }
+
+    Assertions.assertEquals(residualsMedian, median, 0d, label + " median");
+    for (WeightedResidual weightedResidual : residuals) {
+      Assertions.assertArrayEquals(
+          copies.get(weightedResidual).getDeMedSpaDerivatives(),
+          weightedResidual.getDeMedSpaDerivatives(),
+          label + " demedianed derivatives");
+    }
+  }
+
+  /**
+   * Function to compute the spread the old way.
+   *
+   * @return A double containing the spread
+   */
+  private double spread() {
+    for (WeightedResidual weightedResidual : sorted) {
+      weightedResidual.setSortValueSpread(residualsMedian);
+    }
+    sorted.sort(null);
+
+    lastIndex = sorted.size() - 1;
+    halfIndex = lastIndex / 2;
+    if (lastIndex % 2 == 0) {
+      return LocUtil.MADNORM
+          * 0.5d
+          * (sorted.get(halfIndex - 1).getSortValue() + sorted.get(halfIndex).getSortValue());
+    } else {
+      return LocUtil.MADNORM * sorted.get(halfIndex).getSortValue();
+    }
+  }
+
+  /**
+   * This function checks the dispersion and the sort order it leaves against the old way.
+   *
+   * @param estimator A RankSumEstimator object containing the estimator being checked
+   * @param label A String containing the test case
+   */
+  private void checkDispersion(RankSumEstimator estimator, String label) {
+    double dispersion = estimator.computeDispersionValue();
+
+    for (WeightedResidual weightedResidual : sorted) {
+      weightedResidual.setSortValueDispersion(residualsMedian);
+    }
+    sorted.sort(null);
+
+    checkOrder(label + " dispersion order");
+    Assertions.assertEquals(dispersion(), dispersion, 0d, label + " dispersion");
+  }
+
+  /**
+   * This function checks the linear estimate median, dispersion, and sort order against the old
+   * way.
+   *
+   * @param estimator A RankSumEstimator object containing the estimator being checked
+   * @param label A String containing the test case
+   */
+  private void checkLinearEstimates(RankSumEstimator estimator, String label) {
+    for (WeightedResidual weightedResidual : residuals) {
+      double linEstResidual = VALUES[random.nextInt(VALUES.length)];
+      weightedResidual.setLinEstResidual(linEstResidual);
+      copies.get(weightedResidual).setLinEstResidual(linEstResidual);
+    }
+
+    double median = estimator.computeLinEstMedian();
+    estimator.deMedianEstResiduals();
+    double dispersion = estimator.computeEstDispersionValue(false);
+
+    // The old way.
+    for (WeightedResidual weightedResidual : sorted) {
+      weightedResidual.setSortValueLinEstRes();
+    }
+    sorted.sort(null);
+    int estLastIndex = sorted.size() - 1;
+    int estHalfIndex = estLastIndex / 2;
+    double expected;
+    if (estLastIndex % 2 == 0) {
+      expected =
+          0.5d
+              * (sorted.get(estHalfIndex - 1).getLinEstResidual()
+                  + sorted.get(estHalfIndex).getLinEstResidual());
+    } else {
+      expected = sorted.get(estHalfIndex).getLinEstResidual();
+    }
+    for (WeightedResidual weightedResidual : sorted) {
+      weightedResidual.deMedianEstResiduals(expected);
+      weightedResidual.setSortValueLinEstDisp(0d, false);
+    }
+    sorted.sort(null);
+
+    Assertions.assertEquals(expected, median, 0d, label + " linear estimate median");
+    checkOrder(label + " linear estimate order");
+    Assertions.assertEquals(dispersion(), dispersion, 0d, label + " linear estimate dispersion");
+  }
+
+  /**
+   * Function to compute the dispersion of the copies in their sorted order.
+   *
+   * @return A double containing the dispersion
+   */
+  private double dispersion() {
+    double[] scores = RankSumScores.getScores(sorted.size());
+    double dispersion = 0d;
+    for (int j = 0; j < sorted.size(); j++) {
+      dispersion += scores[j] * sorted.get(j).getSortValue();
+    }
+    return dispersion;
+  }
+
+  /**
+   * This function checks that the estimator's list is in the same order as the copies.
+   *
+   * @param label A String containing the test case
+   */
+  private void checkOrder(String label) {
+    for (int j = 0; j < residuals.size(); j++) {
+      Assertions.assertSame(sorted.get(j), copies.get(residuals.get(j)), label + " at " + j);
+    }
+  }
+}
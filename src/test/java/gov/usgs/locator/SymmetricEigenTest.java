@@ -0,0 +1,223 @@
+package gov.usgs.locator;
+
+import Jama.EigenvalueDecomposition;
+import Jama.Matrix;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/** Unit tests comparing the symmetric eigenvalue solver with the Jama eigenvalue decomposition. */
+public class SymmetricEigenTest {
+  /** A double containing the tolerance relative to the size of the matrix. */
+  private static final double TOLERANCE = 1e-10;
+
+  /** A Random object used to make the test matrices. */
+  private Random random = new Random(1234L);
+
+  @Test
+  public void testRandomMatrices() {
+    for (int size : new int[] {1, 2, 3, 10, 60}) {
+      double[][] matrix = randomSymmetric(size);
+      checkEigen("random " + size, matrix, Math.max(size - 3, 0));
+      checkEigen("random " + size, matrix, 0);
+    }
+  }
+
+  @Test
+  public void testBlockDiagonalMatrices() {
+    // Correlations only within each phase make the covariance matrix block diagonal.
+    int[] blockSizes = {7, 1, 12, 4, 20};
+    int size = 0;
+    for (int blockSize : blockSizes) {
+      size += blockSize;
+    }
+
+    double[][] matrix = new double[size][size];
+    int start = 0;
+    for (int blockSize : blockSizes) {
+      double[][] block = randomSymmetric(blockSize);
+      for (int i = 0; i < blockSize; i++) {
+        System.arraycopy(block[i], 0, matrix[start + i], start, blockSize);
+      }
+      start += blockSize;
+    }
+
+    checkEigen("block diagonal", matrix, size - 5);
+    checkEigen("block diagonal", matrix, 0);
+  }
+
+  @Test
+  public void testDegenerateMatrices() {
+    double[] eigenvalues = {0d, 0d, 0d, 1d, 2d, 2d, 5d, 5d, 5d, 5d, 9d, 9d, 9d, 9d, 9d, 9d};
+    double[][] matrix = withEigenvalues(eigenvalues);
+    checkEigen("degenerate", matrix, eigenvalues.length - 6);
+    checkEigen("degenerate", matrix, eigenvalues.length - 10);
+    checkEigen("degenerate", matrix, 0);
+
+    // A bigger matrix, so the eigenvectors of the repeated largest eigenvalues are found by inverse
+    // iteration rather than by accumulating the QL rotations.
+    double[] bigEigenvalues = new double[80];
+    for (int i = 0; i < bigEigenvalues.length; i++) {
+      bigEigenvalues[i] = i < 77 ? 0.1d * i : 20d;
+    }
+    checkEigen("big degenerate", withEigenvalues(bigEigenvalues), bigEigenvalues.length - 4);
+
+    double[][] identity = new double[8][8];
+    for (int i = 0; i < identity.length; i++) {
+      identity[i][i] = 1d;
+    }
+    checkEigen("identity", identity, 5);
+    checkEigen("zero", new double[8][8], 5);
+  }
+
+  /**
+   * This function checks the eigenvalues and the eigenvectors of the largest eigenvalues against
+   * the Jama eigenvalue decomposition. Since the eigenvectors of equal eigenvalues aren't unique,
+   * each eigenvector is checked to lie in the Jama eigenspace of its eigenvalue, and to be
+   * orthogonal to the others.
+   *
+   * @param name A String containing the name of the test case
+   * @param matrix A double[][] containing the symmetric matrix, which isn't changed
+   * @param first An int containing the index of the smallest eigenvalue whose eigenvector is
+   *     checked
+   */
+  private void checkEigen(String name, double[][] matrix, int first) {
+    int size = matrix.length;
+    double norm = 0d;
+    for (int i = 0; i < size; i++) {
+      double rowSum = 0d;
+      for (int j = 0; j < size; j++) {
+        rowSum += Math.abs(matrix[i][j]);
+      }
+      norm = Math.max(norm, rowSum);
+    }
+    double tolerance = TOLERANCE * Math.max(norm, 1d) * Math.max(size, 1);
+
+    // Only the upper left block is used, so surround it with junk.
+    double[][] padded = new double[size + 2][size + 3];
+    for (int i = 0; i < padded.length; i++) {
+      for (int j = 0; j < padded[i].length; j++) {
+        padded[i][j] = i < size && j < size ? matrix[i][j] : Double.NaN;
+      }
+    }
+    SymmetricEigen eigen = new SymmetricEigen(padded, size);
+
+    double[][] copy = new double[size][];
+    for (int i = 0; i < size; i++) {
+      copy[i] = matrix[i].clone();
+    }
+    EigenvalueDecomposition jama = new Matrix(copy).eig();
+    double[] expected = jama.getRealEigenvalues();
+    double[][] jamaVectors = jama.getV().getArray();
+
+    double[] eigenvalues = eigen.getEigenvalues();
+    Assertions.assertArrayEquals(expected, eigenvalues, tolerance, name + " eigenvalues");
+
+    double[][] vectors = eigen.getEigenvectors(first);
+    Assertions.assertEquals(size - first, vectors.length, name + " eigenvectors");
+
+    for (int k = 0; k < vectors.length; k++) {
+      double[] vector = vectors[k];
+      double eigenvalue = eigenvalues[first + k];
+      String label = name + " eigenvector " + (first + k) + " of " + size;
+
+      // It's a unit eigenvector.
+      Assertions.assertEquals(1d, dot(vector, vector), tolerance, label + " length");
+      for (int i = 0; i < size; i++) {
+        Assertions.assertEquals(
+            eigenvalue * vector[i], dot(matrix[i], vector), tolerance, label + " residual");
+      }
+
+      // It's in the Jama eigenspace of its eigenvalue.
+      double projection = 0d;
+      for (int j = 0; j < size; j++) {
+        if (Math.abs(expected[j] - eigenvalue) <= Math.sqrt(tolerance)) {
+          double component = 0d;
+          for (int i = 0; i < size; i++) {
+            component += vector[i] * jamaVectors[i][j];
+          }
+          projection += component * component;
+        }
+      }
+      Assertions.assertEquals(1d, projection, Math.sqrt(tolerance), label + " eigenspace");
+
+      // It's orthogonal to the others.
+      for (int l = 0; l < k; l++) {
+        Assertions.assertEquals(0d, dot(vector, vectors[l]), Math.sqrt(tolerance), label);
+      }
+    }
+  }
+
+  /**
+   * Function to make a random symmetric matrix.
+   *
+   * @param size An int containing the order of the matrix
+   * @return A double[][] containing the matrix
+   */
+  private double[][] randomSymmetric(int size) {
+    double[][] matrix = new double[size][size];
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j <= i; j++) {
+        matrix[i][j] = 2d * random.nextDouble() - 1d;
+        matrix[j][i] = matrix[i][j];
+      }
+    }
+    return matrix;
+  }
+
+  /**
+   * Function to make a symmetric matrix with the given eigenvalues and random eigenvectors.
+   *
+   * @param eigenvalues A double array containing the eigenvalues
+   * @return A double[][] containing the matrix
+   */
+  private double[][] withEigenvalues(double[] eigenvalues) {
+    int size = eigenvalues.length;
+
+    // Orthonormalize random vectors.
+    double[][] vectors = new double[size][size];
+    for (int k = 0; k < size; k++) {
+      for (int i = 0; i < size; i++) {
+        vectors[k][i] = 2d * random.nextDouble() - 1d;
+      }
+      for (int l = 0; l < k; l++) {
+        double projection = dot(vectors[k], vectors[l]);
+        for (int i = 0; i < size; i++) {
+          vectors[k][i] -= projection * vectors[l][i];
+        }
+      }
+      double length = Math.sqrt(dot(vectors[k], vectors[k]));
+      for (int i = 0; i < size; i++) {
+        vectors[k][i] /= length;
+      }
+    }
+
+    double[][] matrix = new double[size][size];
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j <= i; j++) {
+        double sum = 0d;
+        for (int k = 0; k < size; k++) {
+          sum += eigenvalues[k] * vectors[k][i] * vectors[k][j];
+        }
+        matrix[i][j] = sum;
+        matrix[j][i] = sum;
+      }
+    }
+    return matrix;
+  }
+
+  /**
+   * Function to compute the dot product of two vectors.
+   *
+   * @param a A double array containing the first vector
+   * @param b A double array containing the second vector
+   * @return A double containing the dot product over the length of the first vector
+   */
+  private double dot(double[] a, double[] b) {
+    double sum = 0d;
+    for (int i = 0; i < a.length; i++) {
+      sum += a[i] * b[i];
+    }
+    return sum;
+  }
+}
@@ -11,9 +11,11 @@ import jakarta.inject.Inject;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 // import javax.inject.Inject;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
 
 @MicronautTest
 public class LocatorControllerTest {
@@ -36,6 +38,26 @@ public class LocatorControllerTest {
     Assertions.assertEquals(8.271562388098651, hypocenter.Depth, 1e-2, "Depth");
   }
 
+  @Test
+  public void exampleBatchRequest() throws Exception {
+    // read request from json file.
+    LocationRequest request = readRequestJson(Paths.get("examples/request.json"));
+
+    LocatorController locator =
+        server.getApplicationContext().createBean(LocatorController.class, server.getURL());
+    List<LocationResult> responses =
+        locator.getLocations(Flux.just(request, request)).collectList().block();
+
+    Assertions.assertEquals(2, responses.size(), "Results");
+    for (LocationResult response : responses) {
+      Hypocenter hypocenter = response.Hypocenter;
+
+      Assertions.assertEquals(73.66259656098615, hypocenter.Latitude, 1e-4, "Latitude");
+      Assertions.assertEquals(-57.15027045506189, hypocenter.Longitude, 1e-4, "Longitude");
+      Assertions.assertEquals(8.271562388098651, hypocenter.Depth, 1e-2, "Depth");
+    }
+  }
+
   public LocationRequest readRequestJson(final Path path) throws Exception {
     byte[] requestBytes = Files.readAllBytes(path);
     ObjectMapper mapper = new ObjectMapper();
@@ -0,0 +1,208 @@
+package gov.usgs.locaux;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Scanner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests comparing the gridded craton lookup with the polygon test against every craton, the
+ * way isCraton used to work.
+ */
+public class CratonsTest {
+  /** An array of doubles containing the latitudes of a diamond craton through cell corners. */
+  private static final double[] DIAMONDLATS = {10d, 15d, 20d, 15d, 10d};
+
+  /** An array of doubles containing the longitudes of a diamond craton through cell corners. */
+  private static final double[] DIAMONDLONS = {35d, 40d, 35d, 30d, 35d};
+
+  /** A Random object used to make the cratons and the points to look up. */
+  private Random random = new Random(8765L);
+
+  /** An ArrayList of double arrays containing the latitude and longitude of each point loaded. */
+  private ArrayList<double[]> boundaryPoints = new ArrayList<double[]>();
+
+  @Test
+  public void testModelCratons() {
+    Cratons cratons = loadCratons("build/models/cratons.txt");
+    cratons.makeGrid(LocUtil.CRATONGRIDRESOLUTION);
+    Assertions.assertEquals(LocUtil.CRATONGRIDRESOLUTION, cratons.getGridResolution());
+
+    checkRandomPoints(cratons, 200000);
+    checkSpecialPoints(cratons, LocUtil.CRATONGRIDRESOLUTION);
+
+    // Look closely around every boundary point, where the cells are mixed.
+    for (double[] point : boundaryPoints) {
+      checkNeighborhood(cratons, point[0], point[1], 0.5d, 1d / 32d);
+    }
+  }
+
+  @Test
+  public void testMadeUpCratons() {
+    for (int resolution : new int[] {1, 2, 4, 10}) {
+      Cratons cratons = new Cratons();
+
+      // Sides through the cell corners, and a craton touching the date line.
+      cratons.add("Diamond", DIAMONDLATS, DIAMONDLONS);
+      cratons.add(
+          "Date line",
+          new double[] {-30d, -25d, -20d, -30d},
+          new double[] {170d, 180d, 175d, 170d});
+      for (int j = 0; j < 10; j++) {
+        addRandomCraton(cratons);
+      }
+
+      cratons.makeGrid(resolution);
+      checkRandomPoints(cratons, 100000);
+      checkSpecialPoints(cratons, resolution);
+      checkNeighborhood(cratons, 15d, 35d, 6d, 0.25d / resolution);
+    }
+  }
+
+  @Test
+  public void testAddedCraton() {
+    Cratons cratons = new Cratons();
+    addRandomCraton(cratons);
+    cratons.makeGrid(2);
+
+    // Adding a craton must drop the grid.
+    cratons.add("Diamond", DIAMONDLATS, DIAMONDLONS);
+    Assertions.assertEquals(0, cratons.getGridResolution());
+    Assertions.assertTrue(cratons.isCraton(15d, 36d));
+    checkRandomPoints(cratons, 10000);
+  }
+
+  /**
+   * This function checks the gridded lookup against the polygon test at random points.
+   *
+   * @param cratons A Cratons object containing the cratons
+   * @param numPoints An int containing the number of points to check
+   */
+  private void checkRandomPoints(Cratons cratons, int numPoints) {
+    for (int j = 0; j < numPoints; j++) {
+      checkPoint(cratons, 180d * random.nextDouble() - 90d, 360d * random.nextDouble() - 180d);
+    }
+  }
+
+  /**
+   * This function checks the gridded lookup against the polygon test on the cell edges and
+   * centers along a few parallels and meridians, at the poles and the date line, and off the grid.
+   *
+   * @param cratons A Cratons object containing the cratons
+   * @param resolution An int containing the resolution of the grid in cells per degree
+   */
+  private void checkSpecialPoints(Cratons cratons, int resolution) {
+    for (int j = 0; j <= 360 * 2 * resolution; j++) {
+      double offset = j / (2d * resolution);
+
+      for (double latitude : new double[] {-90d, -45d, 0d, 15d, 52.5d, 90d}) {
+        checkPoint(cratons, latitude, offset - 180d);
+      }
+      if (offset <= 180d) {
+        for (double longitude : new double[] {-180d, -90d, 0d, 35d, 175d, 180d}) {
+          checkPoint(cratons, offset - 90d, longitude);
+        }
+      }
+    }
+
+    checkPoint(cratons, 91d, 0d);
+    checkPoint(cratons, 0d, 181d);
+    checkPoint(cratons, Double.NaN, 0d);
+  }
+
+  /**
+   * This function checks the gridded lookup against the polygon test on a fine grid of points
+   * around a given point.
+   *
+   * @param cratons A Cratons object containing the cratons
+   * @param latitude A double containing the geographic latitude of the point in degrees
+   * @param longitude A double containing the geographic longitude of the point in degrees
+   * @param halfWidth A double containing the half width of the fine grid in degrees
+   * @param step A double containing the spacing of the fine grid in degrees
+   */
+  private void checkNeighborhood(
+      Cratons cratons, double latitude, double longitude, double halfWidth, double step) {
+    int numSteps = (int) Math.round(halfWidth / step);
+
+    for (int i = -numSteps; i <= numSteps; i++) {
+      for (int k = -numSteps; k <= numSteps; k++) {
+        checkPoint(cratons, latitude + i * step, longitude + k * step);
+      }
+    }
+  }
+
+  /**
+   * This function checks the gridded lookup against the polygon test at one point.
+   *
+   * @param cratons A Cratons object containing the cratons
+   * @param latitude A double containing the geographic latitude in degrees
+   * @param longitude A double containing the geographic longitude in degrees
+   */
+  private void checkPoint(Cratons cratons, double latitude, double longitude) {
+    Assertions.assertEquals(
+        cratons.isCratonExact(latitude, longitude),
+        cratons.isCraton(latitude, longitude),
+        latitude + " " + longitude);
+  }
+
+  /**
+   * This function adds a made up craton, a closed polygon wound around a random center.
+   *
+   * @param cratons A Cratons object to add the craton to
+   */
+  private void addRandomCraton(Cratons cratons) {
+    int numPoints = 4 + random.nextInt(30);
+    double centerLat = 140d * random.nextDouble() - 70d;
+    double centerLon = 320d * random.nextDouble() - 160d;
+    double[] lats = new double[numPoints + 1];
+    double[] lons = new double[numPoints + 1];
+
+    for (int j = 0; j < numPoints; j++) {
+      double angle = 2d * Math.PI * j / numPoints;
+      double radius = 2d + 15d * random.nextDouble();
+      lats[j] = Math.max(Math.min(centerLat + radius * Math.sin(angle), 89d), -89d);
+      lons[j] = Math.max(Math.min(centerLon + radius * Math.cos(angle), 179d), -179d);
+    }
+    lats[numPoints] = lats[0];
+    lons[numPoints] = lons[0];
+
+    cratons.add("Made up", lats, lons);
+  }
+
+  /**
+   * Function to load the cratons from a craton file, remembering their boundary points.
+   *
+   * @param fileName A String containing the path to the craton file
+   * @return A Cratons object containing the cratons
+   */
+  private Cratons loadCratons(String fileName) {
+    Cratons cratons = new Cratons();
+
+    try (Scanner scan = new Scanner(new FileInputStream(fileName))) {
+      while (scan.hasNext()) {
+        String region = scan.next();
+        while (!scan.hasNextInt()) {
+          region = region + " " + scan.next();
+        }
+
+        int len = scan.nextInt();
+        double[] lats = new double[len];
+        double[] lons = new double[len];
+        for (int j = 0; j < len; j++) {
+          lats[j] = scan.nextDouble();
+          lons[j] = scan.nextDouble();
+          boundaryPoints.add(new double[] {lats[j], lons[j]});
+        }
+
+        cratons.add(region, lats, lons);
+      }
+    } catch (IOException e) {
+      Assertions.fail(fileName + ": " + e.toString());
+    }
+
+    return cratons;
+  }
+}
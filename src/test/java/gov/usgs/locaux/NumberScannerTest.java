@@ -0,0 +1,214 @@
+package gov.usgs.locaux;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.Scanner;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests comparing the number scanner with Double.parseDouble, and with java.util.Scanner,
+ * which used to read the slab model files.
+ */
+public class NumberScannerTest {
+  /** An array of Strings containing tokens at the edges of the exact conversion. */
+  private static final String[] SPECIAL_TOKENS = {
+    "0", "-0", "+0", "-0.0", "0.0000", "00012.500", "5.", ".5", "-.5", "+.5", ".", "-", "+",
+    "NaN", "-NaN", "+NaN", "nan", "Infinity", "-Infinity", "1e", "1e+", "1e-", "e5", ".e5",
+    "1E-22", "1e22", "1e23", "1e-23", "1.5e-21", "1e0100", "1e-400", "1e400", "4.9e-324",
+    "123456789012345", "1234567890123456", "12345678901234567890", "0.123456789012345",
+    "0.1234567890123456", "9007199254740993", "100000000000000000000000", "0.1", "0.2", "0.3",
+    "1x", "0x1p3", "1d", "1F", "abc", "1.2.3", "--1", "1..2", "1e2.5", "1e5e5", "1,5"
+  };
+
+  /** A Random object used to make the tokens. */
+  private Random random = new Random(2468L);
+
+  @Test
+  public void testSpecialTokens() {
+    ArrayList<String> numbers = new ArrayList<String>();
+    for (String token : SPECIAL_TOKENS) {
+      checkTokens(new String[] {token});
+      if (parse(token) != null) {
+        numbers.add(token);
+      }
+    }
+
+    // All the numbers in a row, then followed by something that isn't.
+    checkTokens(numbers.toArray(new String[0]));
+    numbers.add("abc");
+    numbers.add("1");
+    checkTokens(numbers.toArray(new String[0]));
+  }
+
+  @Test
+  public void testRandomTokens() {
+    // Enough numbers that some of them straddle the read buffer boundaries.
+    String[] tokens = new String[200000];
+    for (int j = 0; j < tokens.length; j++) {
+      do {
+        tokens[j] = randomToken();
+      } while (parse(tokens[j]) == null);
+    }
+
+    checkTokens(tokens);
+  }
+
+  @Test
+  public void testModelFileLines() {
+    // Lines like the slab model files: longitude, latitude, and three depths that may be NaN.
+    StringBuilder text = new StringBuilder();
+    for (int j = 0; j < 50000; j++) {
+      text.append(
+          String.format(Locale.US, "%.2f\t%.2f", 360d * random.nextDouble(), 90d - j % 181));
+      for (int k = 0; k < 3; k++) {
+        if (random.nextInt(4) == 0) {
+          text.append("\tNaN");
+        } else {
+          text.append(String.format(Locale.US, "\t%.4f", -700d * random.nextDouble()));
+        }
+      }
+      text.append(j % 2 == 0 ? "\n" : "\r\n");
+    }
+
+    NumberScanner scan = newScanner(text.toString());
+    Scanner scanner = new Scanner(text.toString());
+    scanner.useLocale(Locale.US);
+
+    int numValues = 0;
+    while (scanner.hasNextDouble()) {
+      Assertions.assertTrue(scan.hasNextDouble(), "value " + numValues);
+      Assertions.assertEquals(scanner.nextDouble(), scan.nextDouble(), "value " + numValues);
+      numValues++;
+    }
+
+    Assertions.assertEquals(250000, numValues);
+    Assertions.assertFalse(scan.hasNextDouble());
+  }
+
+  @Test
+  public void testExceptions() {
+    NumberScanner scan = newScanner("1.5 abc");
+    Assertions.assertEquals(1.5d, scan.nextDouble());
+    Assertions.assertFalse(scan.hasNextDouble());
+    Assertions.assertThrows(InputMismatchException.class, scan::nextDouble);
+
+    NumberScanner empty = newScanner(" \n\t ");
+    Assertions.assertFalse(empty.hasNextDouble());
+    Assertions.assertThrows(NoSuchElementException.class, empty::nextDouble);
+  }
+
+  /**
+   * This function scans a sequence of tokens, separated by a mixture of white space, and checks
+   * each one against Double.parseDouble. Scanning stops at the first token that isn't a number,
+   * which is left unread.
+   *
+   * @param tokens An array of Strings containing the tokens
+   */
+  private void checkTokens(String[] tokens) {
+    StringBuilder text = new StringBuilder();
+    String[] separators = {" ", "  ", "\t", "\n", "\r\n", " \t "};
+    for (String token : tokens) {
+      text.append(separators[random.nextInt(separators.length)]).append(token);
+    }
+
+    NumberScanner scan = newScanner(text.toString());
+    for (String token : tokens) {
+      Double expected = parse(token);
+
+      if (expected == null) {
+        Assertions.assertFalse(scan.hasNextDouble(), token);
+        Assertions.assertThrows(InputMismatchException.class, scan::nextDouble, token);
+        return;
+      }
+
+      Assertions.assertTrue(scan.hasNextDouble(), token);
+      Assertions.assertEquals(expected.doubleValue(), scan.nextDouble(), token);
+    }
+
+    Assertions.assertFalse(scan.hasNextDouble(), "end");
+    Assertions.assertThrows(NoSuchElementException.class, scan::nextDouble, "end");
+  }
+
+  /**
+   * Function to make up a token, usually a decimal number of some sort.
+   *
+   * @return A String containing the token
+   */
+  private String randomToken() {
+    switch (random.nextInt(5)) {
+      case 0:
+        // Full precision, so too many digits for the exact conversion.
+        double scale = Math.pow(10d, random.nextInt(40) - 20);
+        return Double.toString((random.nextDouble() - 0.5d) * scale);
+
+      case 1:
+        return String.format(
+            Locale.US, "%." + random.nextInt(12) + "f", 2000d * random.nextDouble() - 1000d);
+
+      case 2:
+        return SPECIAL_TOKENS[random.nextInt(SPECIAL_TOKENS.length)];
+
+      default:
+        // Random digit strings, with and without points and exponents.
+        StringBuilder token = new StringBuilder();
+        if (random.nextInt(3) == 0) {
+          token.append(random.nextBoolean() ? '-' : '+');
+        }
+        appendDigits(token, random.nextInt(12));
+        if (random.nextInt(3) > 0) {
+          token.append('.');
+          appendDigits(token, random.nextInt(12));
+        }
+        if (random.nextInt(3) == 0) {
+          token.append(random.nextBoolean() ? 'e' : 'E');
+          if (random.nextBoolean()) {
+            token.append(random.nextBoolean() ? '-' : '+');
+          }
+          appendDigits(token, 1 + random.nextInt(3));
+        }
+        return token.length() > 0 ? token.toString() : "0";
+    }
+  }
+
+  /**
+   * This function appends random digits to a token.
+   *
+   * @param token A StringBuilder containing the token so far
+   * @param numDigits An int containing the number of digits to append
+   */
+  private void appendDigits(StringBuilder token, int numDigits) {
+    for (int j = 0; j < numDigits; j++) {
+      token.append((char) ('0' + random.nextInt(10)));
+    }
+  }
+
+  /**
+   * Function to convert a token with Double.parseDouble.
+   *
+   * @param token A String containing the token
+   * @return A Double containing the value of the token, or null if it isn't a number
+   */
+  private Double parse(String token) {
+    try {
+      return Double.parseDouble(token);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Function to make a number scanner for some text.
+   *
+   * @param text A String containing the text to scan
+   * @return A NumberScanner object to scan the text
+   */
+  private NumberScanner newScanner(String text) {
+    return new NumberScanner(new ByteArrayInputStream(text.getBytes(StandardCharsets.US_ASCII)));
+  }
+}
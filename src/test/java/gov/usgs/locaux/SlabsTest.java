@@ -0,0 +1,226 @@
+package gov.usgs.locaux;
+
+import gov.usgs.locator.BayesianDepth;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit tests comparing the indexed slab depth lookup with a scan of all the slab areas, the way the
+ * depths used to be looked up. The slab areas are made up, overlap each other, and straddle the
+ * index cell boundaries.
+ */
+public class SlabsTest {
+  /** A double containing the latitude-longitude grid spacing of the made up slab areas. */
+  private static final double SLABINC = 0.5d;
+
+  /** A Random object used to make the slab areas and the points to look up. */
+  private Random random = new Random(4321L);
+
+  @Test
+  public void testRandomPoints() {
+    Slabs slabs = makeSlabs(40);
+
+    for (int j = 0; j < 20000; j++) {
+      checkDepths(slabs, 180d * random.nextDouble() - 90d, 360d * random.nextDouble() - 180d);
+    }
+  }
+
+  @Test
+  public void testAreaPoints() {
+    Slabs slabs = makeSlabs(40);
+
+    // Probe each area and its surroundings, including its edges and the cell boundaries.
+    for (SlabArea area : slabs.slabAreas) {
+      double[] latRange = area.getLatRange();
+      double[] lonRange = area.getLonRange();
+
+      for (double lat = latRange[0] - 1d; lat <= latRange[1] + 1d; lat += 0.25d) {
+        for (double lon = lonRange[0] - 1d; lon <= lonRange[1] + 1d; lon += 0.25d) {
+          checkDepths(slabs, 90d - lat, lon > 180d ? lon - 360d : lon);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testAddedAreas() {
+    Slabs slabs = makeSlabs(10);
+    checkDepths(slabs, 0d, 0d);
+
+    // Adding areas after the index is built must drop it.
+    for (int j = 0; j < 10; j++) {
+      slabs.add(makeArea());
+    }
+
+    for (int j = 0; j < 20000; j++) {
+      checkDepths(slabs, 180d * random.nextDouble() - 90d, 360d * random.nextDouble() - 180d);
+    }
+  }
+
+  @Test
+  public void testBinaryFile() throws IOException {
+    Slabs slabs = makeSlabs(40);
+    File file = File.createTempFile("slabs", ".bin");
+
+    try {
+      LocAuxFile.write(file.getPath(), LocAuxFile.TYPE_SLABS, slabs::writeBinary);
+      Slabs[] read = new Slabs[1];
+      Assertions.assertTrue(
+          LocAuxFile.read(
+              file.getPath(), LocAuxFile.TYPE_SLABS, in -> read[0] = Slabs.readBinary(in)));
+      Assertions.assertFalse(
+          LocAuxFile.read(file.getPath(), LocAuxFile.TYPE_LOCAUX, in -> Assertions.fail("type")));
+
+      // The mapped depths count toward the memory used just as the heap copies do.
+      Assertions.assertEquals(slabs.getMemorySize(), read[0].getMemorySize());
+      Assertions.assertTrue(slabs.getMemorySize() > makeSlabs(5).getMemorySize());
+
+      // Replacing the file must not disturb the slab depths still mapped from the old one.
+      LocAuxFile.write(file.getPath(), LocAuxFile.TYPE_SLABS, makeSlabs(5)::writeBinary);
+
+      for (int j = 0; j < 20000; j++) {
+        double lat = 180d * random.nextDouble() - 90d;
+        double lon = 360d * random.nextDouble() - 180d;
+        ArrayList<BayesianDepth> expected = slabs.getDepth(lat, lon);
+        ArrayList<BayesianDepth> depths = read[0].getDepth(lat, lon);
+        String label = String.format("%.4f %.4f", lat, lon);
+
+        if (expected == null) {
+          Assertions.assertNull(depths, label);
+        } else {
+          Assertions.assertNotNull(depths, label);
+          checkSameDepths(expected, depths, label);
+        }
+      }
+    } finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * This function checks the slab depths at a point against a scan of all the slab areas.
+   *
+   * @param slabs A Slabs object containing the slab areas
+   * @param lat A double containing the geographic latitude in degrees
+   * @param lon A double containing the geographic longitude in degrees
+   */
+  private void checkDepths(Slabs slabs, double lat, double lon) {
+    String label = String.format("%.4f %.4f", lat, lon);
+    ArrayList<BayesianDepth> expected = scanAreas(slabs, lat, lon);
+    ArrayList<BayesianDepth> depths = slabs.getDepth(lat, lon);
+
+    if (expected.isEmpty()) {
+      Assertions.assertNull(depths, label);
+      return;
+    }
+
+    Assertions.assertNotNull(depths, label);
+    checkSameDepths(expected, depths, label);
+  }
+
+  /**
+   * This function checks that two lists of slab depths are the same.
+   *
+   * @param expected An ArrayList of BayesianDepth objects containing the expected slab depths
+   * @param depths An ArrayList of BayesianDepth objects containing the slab depths to check
+   * @param label A String containing the point being checked
+   */
+  private void checkSameDepths(
+      ArrayList<BayesianDepth> expected, ArrayList<BayesianDepth> depths, String label) {
+    Assertions.assertEquals(expected.size(), depths.size(), label + " number of depths");
+    for (int j = 0; j < expected.size(); j++) {
+      Assertions.assertEquals(expected.get(j).getDepth(), depths.get(j).getDepth(), label);
+      Assertions.assertEquals(
+          expected.get(j).getLowerBound(), depths.get(j).getLowerBound(), label + " lower");
+      Assertions.assertEquals(
+          expected.get(j).getUpperBound(), depths.get(j).getUpperBound(), label + " upper");
+    }
+  }
+
+  /**
+   * Function to look up the slab depths at a point by scanning all the slab areas.
+   *
+   * @param slabs A Slabs object containing the slab areas
+   * @param lat A double containing the geographic latitude in degrees
+   * @param lon A double containing the geographic longitude in degrees
+   * @return An ArrayList of BayesianDepth objects containing the slab depths, in order of
+   *     increasing earthquake depth
+   */
+  private ArrayList<BayesianDepth> scanAreas(Slabs slabs, double lat, double lon) {
+    double lat0 = 90d - lat;
+    double lon0 = lon < 0d ? 360d + lon : lon;
+    ArrayList<BayesianDepth> depths = new ArrayList<BayesianDepth>();
+
+    for (SlabArea area : slabs.slabAreas) {
+      if (area.isFound(lat0, lon0)) {
+        SlabDepth depth = area.getDepth(lat0, lon0);
+
+        if (depth != null) {
+          depths.add(new BayesianDepth(depth));
+        }
+      }
+    }
+
+    depths.sort(null);
+    return depths;
+  }
+
+  /**
+   * Function to make up a set of slab areas.
+   *
+   * @param numAreas An int containing the number of slab areas
+   * @return A Slabs object containing the slab areas
+   */
+  private Slabs makeSlabs(int numAreas) {
+    Slabs slabs = new Slabs();
+    slabs.setSlabInc(SLABINC);
+
+    for (int j = 0; j < numAreas; j++) {
+      slabs.add(makeArea());
+    }
+
+    return slabs;
+  }
+
+  /**
+   * Function to make up a slab area the way the slab model reader builds them, a row of points at a
+   * time, with a few gaps where the earthquake depth is NaN.
+   *
+   * @return A SlabArea object containing the slab area
+   */
+  private SlabArea makeArea() {
+    SlabArea area = new SlabArea(SLABINC);
+    double firstLat = 20d + SLABINC * random.nextInt(280);
+    int numRows = 2 + random.nextInt(20);
+    int numPoints = 2 + random.nextInt(30);
+    double firstLon = SLABINC * random.nextInt(720 - numPoints);
+    double baseDepth = -50d - 500d * random.nextDouble();
+
+    for (int i = 0; i < numRows; i++) {
+      SlabRow row = new SlabRow();
+
+      for (int k = 0; k < numPoints; k++) {
+        double center = baseDepth - 5d * i - 3d * k + 10d * random.nextDouble();
+        if (k > 0 && random.nextInt(8) == 0) {
+          center = Double.NaN;
+        }
+        row.add(
+            new SlabPoint(
+                firstLat + SLABINC * i,
+                firstLon + SLABINC * k,
+                center,
+                -5d * random.nextDouble(),
+                5d * random.nextDouble()));
+      }
+
+      row.squeeze(SLABINC);
+      area.add(row);
+    }
+
+    return area;
+  }
+}